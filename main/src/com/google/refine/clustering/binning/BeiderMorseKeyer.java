@@ -25,4 +25,8 @@ public class BeiderMorseKeyer extends Keyer {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -48,4 +48,8 @@ public class ColognePhoneticKeyer extends Keyer {
         return _codec.colognePhonetic(s);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
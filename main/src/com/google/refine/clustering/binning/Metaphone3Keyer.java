@@ -48,4 +48,8 @@ public class Metaphone3Keyer extends Keyer {
         return _metaphone3.GetMetaph();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
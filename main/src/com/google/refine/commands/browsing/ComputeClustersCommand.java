@@ -34,6 +34,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.commands.browsing;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -44,8 +46,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.browsing.Engine;
-import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
+import com.google.refine.clustering.ClusteringJob;
+import com.google.refine.clustering.ClusteringJobManager;
 import com.google.refine.clustering.binning.KeyerFactory;
 import com.google.refine.clustering.binning.UserDefinedKeyer;
 import com.google.refine.clustering.knn.DistanceFactory;
@@ -58,6 +61,42 @@ public class ComputeClustersCommand extends Command {
 
     final static Logger logger = LoggerFactory.getLogger("compute-clusters_command");
 
+    /**
+     * With a "jobID" parameter, reports on a clustering job: its status, its progress and the clusters it found so
+     * far, or all of them once it is done. Without it, reports how many clustering jobs are running for the project,
+     * and the progress of the least advanced one.
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        try {
+            Project project = getProject(request);
+            ClusteringJobManager manager = project.getClusteringJobManager();
+            String jobID = request.getParameter("jobID");
+            if (jobID != null) {
+                ClusteringJob job = manager.getJob(Long.parseLong(jobID));
+                if (job == null) {
+                    respondCodeError(response, "No clustering job with ID " + jobID);
+                } else {
+                    respondJSON(response, job);
+                }
+                return;
+            }
+            List<ClusteringJob> running = manager.getRunningJobs();
+            int progress = running.stream().mapToInt(ClusteringJob::getProgress).min().orElse(100);
+            respondJSON(response, Map.of("code", "ok", "running", running.size(), "progress", progress));
+        } catch (Exception e) {
+            respondException(response, e);
+        }
+    }
+
+    /**
+     * Computes clusters in a clustering job. With the "async" parameter set to true, responds at once with the job,
+     * whose clusters are then fetched with GET requests; otherwise responds with the clusters once they are computed.
+     * <p>
+     * With the "cancel" parameter set to true, stops the job given by the "jobID" parameter, or all the clustering jobs
+     * of the project, so that abandoned requests do not keep running.
+     */
     @Override
     public void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -67,6 +106,27 @@ public class ComputeClustersCommand extends Command {
             return;
         }
 
+        if ("true".equals(request.getParameter("cancel"))) {
+            try {
+                ClusteringJobManager manager = getProject(request).getClusteringJobManager();
+                String jobID = request.getParameter("jobID");
+                int canceled;
+                if (jobID != null) {
+                    ClusteringJob job = manager.getJob(Long.parseLong(jobID));
+                    canceled = job == null || job.isDone() ? 0 : 1;
+                    if (job != null) {
+                        job.cancel();
+                    }
+                } else {
+                    canceled = manager.cancelAll();
+                }
+                respondJSON(response, Map.of("code", "ok", "canceled", canceled));
+            } catch (Exception e) {
+                respondException(response, e);
+            }
+            return;
+        }
+
         try {
             long start = System.currentTimeMillis();
             Project project = getProject(request);
@@ -76,27 +136,43 @@ public class ComputeClustersCommand extends Command {
             JsonNode jsonObject = ParsingUtilities.mapper.readTree(clusterer_conf);
             JsonNode params = jsonObject.get("params");
 
-            if (params != null && params.has("expression")) {
-                String expression = params.get("expression").asText();
-                if (jsonObject.has("function") && "UserDefinedKeyer".equals(jsonObject.get("function").asText())) {
-                    KeyerFactory.put("userdefinedkeyer", new UserDefinedKeyer(expression));
-                } else {
-                    DistanceFactory.put("userdefineddistance", new UserDefinedDistance(expression));
+            ClusteringJob job;
+            try {
+                if (params != null && params.has("expression")) {
+                    String expression = params.get("expression").asText();
+                    if (jsonObject.has("function") && "UserDefinedKeyer".equals(jsonObject.get("function").asText())) {
+                        KeyerFactory.put("userdefinedkeyer", new UserDefinedKeyer(expression));
+                    } else {
+                        DistanceFactory.put("userdefineddistance", new UserDefinedDistance(expression));
+                    }
                 }
-            }
-
-            ClustererConfig clustererConfig = ParsingUtilities.mapper.readValue(clusterer_conf, ClustererConfig.class);
 
-            Clusterer clusterer = clustererConfig.apply(project);
+                ClustererConfig clustererConfig = ParsingUtilities.mapper.treeToValue(jsonObject, ClustererConfig.class);
 
-            clusterer.computeClusters(engine);
+                // the expression of user-defined functions is only part of the parameters as sent
+                String configKey = ParsingUtilities.mapper.writeValueAsString(jsonObject);
+                job = project.getClusteringJobManager().submit(project, clustererConfig, configKey, engine);
+            } finally {
+                KeyerFactory.remove("userdefinedkeyer");
+                DistanceFactory.remove("userdefineddistance");
+            }
 
-            KeyerFactory.remove("userdefinedkeyer");
-            DistanceFactory.remove("userdefineddistance");
+            if ("true".equals(request.getParameter("async"))) {
+                respondJSON(response, job);
+                return;
+            }
 
-            respondJSON(response, clusterer);
-            logger.info("computed clusters [{}] in {}ms",
-                    new Object[] { clustererConfig.getType(), Long.toString(System.currentTimeMillis() - start) });
+            job.await();
+            if (ClusteringJob.CANCELED.equals(job.getStatus())) {
+                logger.info("computation of clusters canceled");
+                respondJSON(response, Map.of("code", "canceled"));
+            } else if (job.getError() != null) {
+                respondException(response, job.getError());
+            } else {
+                respondJSON(response, job.getClusterer());
+                logger.info("computed clusters [{}] in {}ms",
+                        new Object[] { jsonObject.path("type").asText(), Long.toString(System.currentTimeMillis() - start) });
+            }
         } catch (Exception e) {
             respondException(response, e);
         }
@@ -42,6 +42,7 @@ import javax.servlet.http.HttpServletResponse;
 import com.google.refine.browsing.Engine;
 import com.google.refine.commands.Command;
 import com.google.refine.model.Project;
+import com.google.refine.model.RowStore;
 
 public class ComputeFacetsCommand extends Command {
 
@@ -58,7 +59,10 @@ public class ComputeFacetsCommand extends Command {
             Project project = getProject(request);
             Engine engine = getEngine(request, project);
 
-            engine.computeFacets();
+            // all facets are computed on the same version of the rows
+            try (RowStore.Version pinned = project.getRowStore().pin()) {
+                engine.computeFacets();
+            }
 
             respondJSON(response, engine);
         } catch (Exception e) {
@@ -61,6 +61,7 @@ import com.google.refine.exporters.StreamExporter;
 import com.google.refine.exporters.WriterExporter;
 import com.google.refine.exporters.sql.SqlExporterException;
 import com.google.refine.model.Project;
+import com.google.refine.model.RowStore;
 
 public class ExportRowsCommand extends Command {
 
@@ -95,8 +96,11 @@ public class ExportRowsCommand extends Command {
 
         ProjectManager.singleton.setBusy(true);
 
+        RowStore.Version pinned = null;
         try {
             Project project = getProject(request);
+            // export a single version of the rows, even if changes are applied meanwhile
+            pinned = project.getRowStore().pin();
             Engine engine = getEngine(request, project);
             Map<String, String> params = getParameters(request);
 
@@ -159,6 +163,9 @@ public class ExportRowsCommand extends Command {
             }
             throw new ServletException(e);
         } finally {
+            if (pinned != null) {
+                pinned.close();
+            }
             ProjectManager.singleton.setBusy(false);
         }
     }
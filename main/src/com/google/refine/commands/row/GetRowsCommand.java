@@ -48,8 +48,6 @@ import com.fasterxml.jackson.annotation.JsonUnwrapped;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.Engine.Mode;
-import com.google.refine.browsing.FilteredRecords;
-import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.commands.Command;
@@ -59,9 +57,10 @@ import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 import com.google.refine.model.Row;
+import com.google.refine.model.RowStore;
+import com.google.refine.sorting.SortedViewCache;
+import com.google.refine.sorting.SortedViewCache.SortedView;
 import com.google.refine.sorting.SortingConfig;
-import com.google.refine.sorting.SortingRecordVisitor;
-import com.google.refine.sorting.SortingRowVisitor;
 import com.google.refine.util.Pool;
 
 /**
@@ -188,6 +187,7 @@ public class GetRowsCommand extends Command {
     protected void internalRespond(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
+        RowStore.Version pinned = null;
         try {
             checkJSONP(request); // We used to support JSONP, but don't anymore
             Project project = null;
@@ -204,6 +204,8 @@ public class GetRowsCommand extends Command {
             if (project == null) {
                 project = getProject(request);
             }
+            // render a single version of the rows, without waiting for changes being applied
+            pinned = project.getRowStore().pin();
 
             Engine engine = getEngine(request, project);
 
@@ -231,32 +233,16 @@ public class GetRowsCommand extends Command {
                 return;
             }
 
-            if (engine.getMode() == Mode.RowBased) {
-                FilteredRows filteredRows = engine.getAllFilteredRows();
-                RowVisitor visitor = rwv;
-
-                if (sortingConfig != null) {
-                    SortingRowVisitor srv = new SortingRowVisitor(visitor);
-
-                    srv.initializeFromConfig(project, sortingConfig);
-                    if (srv.hasCriteria()) {
-                        visitor = srv;
-                    }
-                }
-                filteredRows.accept(project, visitor);
+            if (sortingConfig != null && sortingConfig.getCriteria().length > 0) {
+                // Projects of importing jobs are not tracked by their history, so their sorted views cannot be cached
+                SortedView view = importingJobID == null
+                        ? project.getSortedViewCache().getSortedView(project, engine, sortingConfig)
+                        : SortedViewCache.computeSortedView(project, engine, sortingConfig);
+                rwv.visitSortedView(project, view);
+            } else if (engine.getMode() == Mode.RowBased) {
+                engine.getAllFilteredRows().accept(project, (RowVisitor) rwv);
             } else {
-                FilteredRecords filteredRecords = engine.getFilteredRecords();
-                RecordVisitor visitor = rwv;
-
-                if (sortingConfig != null) {
-                    SortingRecordVisitor srv = new SortingRecordVisitor(visitor);
-
-                    srv.initializeFromConfig(project, sortingConfig);
-                    if (srv.hasCriteria()) {
-                        visitor = srv;
-                    }
-                }
-                filteredRecords.accept(project, visitor);
+                engine.getFilteredRecords().accept(project, (RecordVisitor) rwv);
             }
 
             // Pool all the recons occurring in the rows seen
@@ -289,7 +275,7 @@ public class GetRowsCommand extends Command {
 
             JsonResult result = new JsonResult(engine.getMode(),
                     rwv.results, rwv.total,
-                    engine.getMode() == Mode.RowBased ? project.rows.size() : project.recordModel.getRecordCount(),
+                    engine.getMode() == Mode.RowBased ? project.rows.size() : project.getRecordModel().getRecordCount(),
                     rwv.totalRows, start, end, limit, pool, previousPageEnd, nextPageStart);
 
             respondJSON(response, result);
@@ -297,6 +283,10 @@ public class GetRowsCommand extends Command {
             respondNoJsonpException(request, response);
         } catch (Exception e) {
             respondException(response, e);
+        } finally {
+            if (pinned != null) {
+                pinned.close();
+            }
         }
     }
 
@@ -374,6 +364,32 @@ public class GetRowsCommand extends Command {
             return false;
         }
 
+        /**
+         * Visits the page of a sorted view, without going through the rows or records outside of this page.
+         */
+        public void visitSortedView(Project project, SortedView view) {
+            int from;
+            int to;
+            if (start != -1) {
+                from = view.getPosition(start);
+                to = Math.min(view.size(), from + limit);
+            } else {
+                to = view.getPosition(end);
+                from = Math.max(0, to - limit);
+            }
+            for (int position = from; position < to; position++) {
+                int index = view.order[position];
+                if (view.mode == Mode.RowBased) {
+                    internalVisit(project, index, project.rows.get(index), position);
+                } else {
+                    internalVisit(project, project.getRecordModel().getRecord(index), view.getSortedRowIndex(position));
+                    resultRecordSize++;
+                }
+            }
+            total = view.size();
+            totalRows = view.getRowCount();
+        }
+
         protected boolean internalVisit(Project project, int rowIndex, Row row, int paginationIndex) {
             results.add(new WrappedRow(row, rowIndex, null, paginationIndex));
             return false;
@@ -34,7 +34,14 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.commands.workspace;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -44,6 +51,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
@@ -59,18 +67,118 @@ public class GetAllProjectMetadataCommand extends Command {
         @JsonInclude(Include.NON_NULL)
         @JsonRawValue
         protected String customMetadataColumns;
+        @JsonProperty("total")
+        @JsonInclude(Include.NON_NULL)
+        protected Integer total;
 
         protected AllProjectMetadata(Map<Long, ProjectMetadata> map, String json) {
             projects = map;
             customMetadataColumns = json;
         }
+
+        protected AllProjectMetadata(Map<Long, ProjectMetadata> map, String json, int total) {
+            this(map, json);
+            this.total = total;
+        }
     }
 
+    /**
+     * The comparators of the metadata of projects, by name of the field they sort on.
+     */
+    static protected final Map<String, Comparator<ProjectMetadata>> SORT_FIELDS = Map.of(
+            "name", Comparator.comparing(ProjectMetadata::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "created", Comparator.comparing(ProjectMetadata::getCreated, Comparator.nullsLast(Comparator.naturalOrder())),
+            "modified", Comparator.comparing(ProjectMetadata::getModified, Comparator.nullsLast(Comparator.naturalOrder())),
+            "rowCount", Comparator.comparingInt(ProjectMetadata::getRowCount));
+
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
         String userMeta = (String) ProjectManager.singleton.getPreferenceStore().get("userMetadata");
-        respondJSON(response, new AllProjectMetadata(ProjectManager.singleton.getAllProjectMetadata(), userMeta));
+        Map<Long, ProjectMetadata> allMetadata = ProjectManager.singleton.getAllProjectMetadata();
+        String sortBy = request.getParameter("sortBy");
+        String query = request.getParameter("query");
+        String tag = request.getParameter("tag");
+        if (sortBy == null && request.getParameter("limit") == null && request.getParameter("start") == null
+                && query == null && tag == null) {
+            respondJSON(response, new AllProjectMetadata(allMetadata, userMeta));
+            return;
+        }
+
+        // only the requested page of projects is serialized, in the requested order
+        Comparator<ProjectMetadata> comparator = SORT_FIELDS.get(sortBy == null ? "modified" : sortBy);
+        if (comparator == null) {
+            respondCodeError(response, "Unknown sort field: " + sortBy, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        // by default the most recently modified projects come first
+        String sortOrder = request.getParameter("sortOrder");
+        if (sortOrder == null ? sortBy == null : "desc".equals(sortOrder)) {
+            comparator = comparator.reversed();
+        }
+        List<Entry<Long, ProjectMetadata>> entries;
+        synchronized (ProjectManager.singleton) {
+            entries = new ArrayList<>(allMetadata.entrySet());
+        }
+        entries.removeIf(e -> e.getValue() == null);
+        // the projects are filtered before they are sorted and paged, so that the total counts the matching projects
+        if (tag != null && !tag.isEmpty()) {
+            entries.removeIf(e -> !hasTag(e.getValue(), tag));
+        }
+        if (query != null && !query.isBlank()) {
+            String text = query.trim().toLowerCase(Locale.ROOT);
+            entries.removeIf(e -> !matches(e.getValue(), text));
+        }
+        entries.sort(Entry.<Long, ProjectMetadata> comparingByValue(comparator).thenComparing(Entry.comparingByKey()));
+
+        int start = Math.max(0, getIntegerParameter(request, "start", 0));
+        int limit = Math.max(0, getIntegerParameter(request, "limit", entries.size()));
+        Map<Long, ProjectMetadata> page = new LinkedHashMap<>();
+        for (int i = start; i < entries.size() && i - start < limit; i++) {
+            page.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        respondJSON(response, new AllProjectMetadata(page, userMeta, entries.size()));
+    }
+
+    static protected boolean hasTag(ProjectMetadata metadata, String tag) {
+        String[] tags = metadata.getTags();
+        if (tags != null) {
+            for (String t : tags) {
+                if (tag.equals(t)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the name, tags, creator, subject, description or the value of a user metadata field of a project
+     * contains the given lowercase text, ignoring case.
+     */
+    static protected boolean matches(ProjectMetadata metadata, String text) {
+        Predicate<String> contains = s -> s != null && s.toLowerCase(Locale.ROOT).contains(text);
+        if (contains.test(metadata.getName()) || contains.test(metadata.getCreator())
+                || contains.test(metadata.getSubject()) || contains.test(metadata.getDescription())) {
+            return true;
+        }
+        String[] tags = metadata.getTags();
+        if (tags != null) {
+            for (String t : tags) {
+                if (contains.test(t)) {
+                    return true;
+                }
+            }
+        }
+        if (metadata.getUserMetadata() != null) {
+            for (JsonNode field : metadata.getUserMetadata()) {
+                JsonNode value = field.get("value");
+                if (value != null && contains.test(value.asText())) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 }
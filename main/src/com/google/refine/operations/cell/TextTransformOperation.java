@@ -34,6 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.operations.cell;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -42,6 +43,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
@@ -129,91 +131,109 @@ public class TextTransformOperation extends EngineDependentMassCellOperation {
         Column column = project.columnModel.getColumnByName(_columnName);
 
         Evaluable eval = MetaParser.parse(_expression);
-        Properties bindings = ExpressionUtils.createBindings(project);
 
-        return new RowVisitor() {
+        return new TransformRowVisitor(column.getCellIndex(), eval, cellChanges);
+    }
 
-            int cellIndex;
-            Properties bindings;
-            List<CellChange> cellChanges;
-            Evaluable eval;
+    /**
+     * Evaluates the expression on each row. When the expression can be evaluated from several threads, chunks of rows
+     * are transformed in parallel, each with its own bindings, and their cell changes are concatenated in row order.
+     */
+    protected class TransformRowVisitor implements MergeableRowVisitor {
+
+        final int cellIndex;
+        final Evaluable eval;
+        final List<CellChange> cellChanges;
+        Properties bindings;
+
+        protected TransformRowVisitor(int cellIndex, Evaluable eval, List<CellChange> cellChanges) {
+            this.cellIndex = cellIndex;
+            this.eval = eval;
+            this.cellChanges = cellChanges;
+        }
 
-            public RowVisitor init(int cellIndex, Properties bindings, List<CellChange> cellChanges, Evaluable eval) {
-                this.cellIndex = cellIndex;
-                this.bindings = bindings;
-                this.cellChanges = cellChanges;
-                this.eval = eval;
-                return this;
-            }
+        @Override
+        public void start(Project project) {
+            bindings = ExpressionUtils.createBindings(project);
+        }
 
-            @Override
-            public void start(Project project) {
-                // nothing to do
-            }
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void end(Project project) {
-                // nothing to do
-            }
+        @Override
+        public MergeableRowVisitor createChunkVisitor() {
+            return new TransformRowVisitor(cellIndex, eval, new ArrayList<>());
+        }
+
+        @Override
+        public void merge(MergeableRowVisitor chunkVisitor) {
+            cellChanges.addAll(((TransformRowVisitor) chunkVisitor).cellChanges);
+        }
 
-            @Override
-            public boolean visit(Project project, int rowIndex, Row row) {
-                Cell cell = row.getCell(cellIndex);
-                Cell newCell = null;
+        @Override
+        public boolean isThreadSafe() {
+            return eval.isThreadSafe();
+        }
 
-                Object oldValue = cell != null ? cell.value : null;
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Cell cell = row.getCell(cellIndex);
+            Cell newCell = null;
 
-                ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+            Object oldValue = cell != null ? cell.value : null;
 
-                Object o = eval.evaluate(bindings);
-                if (o == null) {
-                    if (oldValue != null) {
-                        CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, null);
-                        cellChanges.add(cellChange);
-                    }
+            ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+
+            Object o = eval.evaluate(bindings);
+            if (o == null) {
+                if (oldValue != null) {
+                    CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, null);
+                    cellChanges.add(cellChange);
+                }
+            } else {
+                if (o instanceof Cell) {
+                    newCell = (Cell) o;
+                } else if (o instanceof WrappedCell) {
+                    newCell = ((WrappedCell) o).cell;
                 } else {
-                    if (o instanceof Cell) {
-                        newCell = (Cell) o;
-                    } else if (o instanceof WrappedCell) {
-                        newCell = ((WrappedCell) o).cell;
-                    } else {
-                        Serializable newValue = ExpressionUtils.wrapStorable(o);
-                        if (ExpressionUtils.isError(newValue)) {
-                            if (_onError == OnError.KeepOriginal) {
-                                return false;
-                            } else if (_onError == OnError.SetToBlank) {
-                                newValue = null;
-                            }
+                    Serializable newValue = ExpressionUtils.wrapStorable(o);
+                    if (ExpressionUtils.isError(newValue)) {
+                        if (_onError == OnError.KeepOriginal) {
+                            return false;
+                        } else if (_onError == OnError.SetToBlank) {
+                            newValue = null;
                         }
+                    }
 
-                        if (!ExpressionUtils.sameValue(oldValue, newValue)) {
-                            newCell = new Cell(newValue, (cell != null) ? cell.recon : null);
-
-                            if (_repeat) {
-                                for (int i = 0; i < _repeatCount; i++) {
-                                    ExpressionUtils.bind(bindings, row, rowIndex, _columnName, newCell);
+                    if (!ExpressionUtils.sameValue(oldValue, newValue)) {
+                        newCell = new Cell(newValue, (cell != null) ? cell.recon : null);
 
-                                    newValue = ExpressionUtils.wrapStorable(eval.evaluate(bindings));
-                                    if (ExpressionUtils.isError(newValue)) {
-                                        break;
-                                    } else if (ExpressionUtils.sameValue(newCell.value, newValue)) {
-                                        break;
-                                    }
+                        if (_repeat) {
+                            for (int i = 0; i < _repeatCount; i++) {
+                                ExpressionUtils.bind(bindings, row, rowIndex, _columnName, newCell);
 
-                                    newCell = new Cell(newValue, newCell.recon);
+                                newValue = ExpressionUtils.wrapStorable(eval.evaluate(bindings));
+                                if (ExpressionUtils.isError(newValue)) {
+                                    break;
+                                } else if (ExpressionUtils.sameValue(newCell.value, newValue)) {
+                                    break;
                                 }
+
+                                newCell = new Cell(newValue, newCell.recon);
                             }
                         }
                     }
-
-                    if (newCell != null) {
-                        CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, newCell);
-                        cellChanges.add(cellChange);
-                    }
                 }
 
-                return false;
+                if (newCell != null) {
+                    CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, newCell);
+                    cellChanges.add(cellChange);
+                }
             }
-        }.init(column.getCellIndex(), bindings, cellChanges, eval);
+
+            return false;
+        }
     }
 }
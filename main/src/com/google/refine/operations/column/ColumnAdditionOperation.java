@@ -44,8 +44,8 @@ import org.apache.commons.lang.Validate;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.EngineConfig;
-import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
@@ -153,8 +153,12 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
 
         List<CellAtRow> cellsAtRows = new ArrayList<CellAtRow>(project.rows.size());
 
-        FilteredRows filteredRows = engine.getAllFilteredRows();
-        filteredRows.accept(project, createRowVisitor(project, cellsAtRows));
+        RowVisitor visitor = createRowVisitor(project, cellsAtRows);
+        if (visitor instanceof MergeableRowVisitor) {
+            engine.acceptFilteredRows((MergeableRowVisitor) visitor);
+        } else {
+            engine.getAllFilteredRows().accept(project, visitor);
+        }
 
         String description = createDescription(column, cellsAtRows);
 
@@ -168,68 +172,86 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
         Column column = project.columnModel.getColumnByName(_baseColumnName);
 
         Evaluable eval = MetaParser.parse(_expression);
-        Properties bindings = ExpressionUtils.createBindings(project);
 
-        return new RowVisitor() {
+        return new AdditionRowVisitor(column.getCellIndex(), eval, cellsAtRows);
+    }
 
-            int cellIndex;
-            Properties bindings;
-            List<CellAtRow> cellsAtRows;
-            Evaluable eval;
+    /**
+     * Evaluates the expression on each row. When the expression can be evaluated from several threads, chunks of rows
+     * are evaluated in parallel, each with its own bindings, and their new cells are concatenated in row order.
+     */
+    protected class AdditionRowVisitor implements MergeableRowVisitor {
+
+        final int cellIndex;
+        final Evaluable eval;
+        final List<CellAtRow> cellsAtRows;
+        Properties bindings;
+
+        protected AdditionRowVisitor(int cellIndex, Evaluable eval, List<CellAtRow> cellsAtRows) {
+            this.cellIndex = cellIndex;
+            this.eval = eval;
+            this.cellsAtRows = cellsAtRows;
+        }
 
-            public RowVisitor init(int cellIndex, Properties bindings, List<CellAtRow> cellsAtRows, Evaluable eval) {
-                this.cellIndex = cellIndex;
-                this.bindings = bindings;
-                this.cellsAtRows = cellsAtRows;
-                this.eval = eval;
-                return this;
-            }
+        @Override
+        public void start(Project project) {
+            bindings = ExpressionUtils.createBindings(project);
+        }
 
-            @Override
-            public void start(Project project) {
-                // nothing to do
-            }
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void end(Project project) {
-                // nothing to do
-            }
+        @Override
+        public MergeableRowVisitor createChunkVisitor() {
+            return new AdditionRowVisitor(cellIndex, eval, new ArrayList<>());
+        }
 
-            @Override
-            public boolean visit(Project project, int rowIndex, Row row) {
-                Cell cell = row.getCell(cellIndex);
-                Cell newCell = null;
-
-                ExpressionUtils.bind(bindings, row, rowIndex, _baseColumnName, cell);
-
-                Object o = eval.evaluate(bindings);
-                if (o != null) {
-                    if (o instanceof Cell) {
-                        newCell = (Cell) o;
-                    } else if (o instanceof WrappedCell) {
-                        newCell = ((WrappedCell) o).cell;
-                    } else {
-                        Serializable v = ExpressionUtils.wrapStorable(o);
-                        if (ExpressionUtils.isError(v)) {
-                            if (_onError == OnError.SetToBlank) {
-                                return false;
-                            } else if (_onError == OnError.KeepOriginal) {
-                                v = cell != null ? cell.value : null;
-                            }
-                        }
+        @Override
+        public void merge(MergeableRowVisitor chunkVisitor) {
+            cellsAtRows.addAll(((AdditionRowVisitor) chunkVisitor).cellsAtRows);
+        }
 
-                        if (v != null) {
-                            newCell = new Cell(v, null);
+        @Override
+        public boolean isThreadSafe() {
+            return eval.isThreadSafe();
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Cell cell = row.getCell(cellIndex);
+            Cell newCell = null;
+
+            ExpressionUtils.bind(bindings, row, rowIndex, _baseColumnName, cell);
+
+            Object o = eval.evaluate(bindings);
+            if (o != null) {
+                if (o instanceof Cell) {
+                    newCell = (Cell) o;
+                } else if (o instanceof WrappedCell) {
+                    newCell = ((WrappedCell) o).cell;
+                } else {
+                    Serializable v = ExpressionUtils.wrapStorable(o);
+                    if (ExpressionUtils.isError(v)) {
+                        if (_onError == OnError.SetToBlank) {
+                            return false;
+                        } else if (_onError == OnError.KeepOriginal) {
+                            v = cell != null ? cell.value : null;
                         }
                     }
-                }
 
-                if (newCell != null) {
-                    cellsAtRows.add(new CellAtRow(rowIndex, newCell));
+                    if (v != null) {
+                        newCell = new Cell(v, null);
+                    }
                 }
+            }
 
-                return false;
+            if (newCell != null) {
+                cellsAtRows.add(new CellAtRow(rowIndex, newCell));
             }
-        }.init(column.getCellIndex(), bindings, cellsAtRows, eval);
+
+            return false;
+        }
     }
 }
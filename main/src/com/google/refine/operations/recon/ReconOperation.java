@@ -34,11 +34,20 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.operations.recon;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -73,6 +82,20 @@ public class ReconOperation extends EngineDependentOperation {
 
     final static Logger logger = LoggerFactory.getLogger("recon-operation");
 
+    /**
+     * Number of batches sent at once to reconciliation services which allow it, set by the refine.recon.concurrency
+     * system property.
+     */
+    static public final int CONCURRENCY = Integer.getInteger("refine.recon.concurrency", 4);
+
+    /**
+     * Number of milliseconds a reconciliation service should take to reconcile a batch, above which smaller batches are
+     * sent, set by the refine.recon.targetBatchLatency system property.
+     */
+    static public final long TARGET_BATCH_LATENCY = Long.getLong("refine.recon.targetBatchLatency", 5000);
+
+    static private ThreadPoolExecutor s_batchExecutor;
+
     final protected String _columnName;
     final protected ReconConfig _reconConfig;
 
@@ -131,6 +154,60 @@ public class ReconOperation extends EngineDependentOperation {
         }
     }
 
+    static protected class Batch {
+
+        final public List<JobGroup> groups;
+        final public Future<List<Recon>> recons;
+
+        public Batch(List<JobGroup> groups, Future<List<Recon>> recons) {
+            this.groups = groups;
+            this.recons = recons;
+        }
+    }
+
+    /**
+     * The size of the batches sent to a reconciliation service, adapted to the time the service takes to reconcile
+     * them: it is halved when a batch takes longer than {@link #TARGET_BATCH_LATENCY}, and grows back by a quarter, up
+     * to the batch size of the configuration, when batches take less than half of that time.
+     */
+    static protected class BatchSize {
+
+        final protected int _max;
+        protected int _size;
+
+        public BatchSize(int max) {
+            _max = Math.max(1, max);
+            _size = _max;
+        }
+
+        synchronized public int get() {
+            return _size;
+        }
+
+        synchronized public void record(int size, long nanos) {
+            long millis = nanos / 1000000;
+            if (millis > TARGET_BATCH_LATENCY) {
+                _size = Math.max(1, Math.min(_size, size) / 2);
+            } else if (millis < TARGET_BATCH_LATENCY / 2 && size >= _size) {
+                _size = Math.min(_max, _size + Math.max(1, _size / 4));
+            }
+        }
+    }
+
+    static synchronized protected ThreadPoolExecutor getBatchExecutor() {
+        if (s_batchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            s_batchExecutor = new ThreadPoolExecutor(CONCURRENCY, CONCURRENCY, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "recon-batch-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            s_batchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return s_batchExecutor;
+    }
+
     public class ReconProcess extends LongRunningProcess implements Runnable {
 
         final protected Project _project;
@@ -233,6 +310,28 @@ public class ReconOperation extends EngineDependentOperation {
             });
         }
 
+        /**
+         * Starts reconciling a batch, on another thread if batches are reconciled concurrently.
+         */
+        protected Batch startBatch(List<JobGroup> groups, BatchSize batchSize, boolean concurrent) {
+            List<ReconJob> jobs = new ArrayList<>(groups.size());
+            for (JobGroup group : groups) {
+                jobs.add(group.job);
+            }
+            FutureTask<List<Recon>> task = new FutureTask<>(() -> {
+                long start = System.nanoTime();
+                List<Recon> recons = _reconConfig.batchRecon(jobs, _historyEntryID);
+                batchSize.record(jobs.size(), System.nanoTime() - start);
+                return recons;
+            });
+            if (concurrent) {
+                getBatchExecutor().execute(task);
+            } else {
+                task.run();
+            }
+            return new Batch(groups, task);
+        }
+
         @Override
         public void run() {
             try {
@@ -261,67 +360,64 @@ public class ReconOperation extends EngineDependentOperation {
                 group.entries.add(entry);
             }
 
-            int batchSize = _reconConfig.getBatchSize(_project.rows.size());
-            int done = 0;
-
             List<CellChange> cellChanges = new ArrayList<CellChange>(_entries.size());
-            List<JobGroup> groups = new ArrayList<JobGroup>(jobKeyToGroup.values());
+            List<JobGroup> groups = new ArrayList<JobGroup>(jobKeyToGroup.size());
+            int cached = 0;
 
-            List<ReconJob> jobs = new ArrayList<ReconJob>(batchSize);
-            Map<ReconJob, JobGroup> jobToGroup = new HashMap<ReconJob, ReconOperation.JobGroup>();
+            // jobs answered recently are taken from the reconciliation cache rather than sent to the service
+            for (JobGroup group : jobKeyToGroup.values()) {
+                if (_canceled) {
+                    break;
+                }
+                Recon recon = _reconConfig.getCachedRecon(group.job, _historyEntryID);
+                if (recon != null) {
+                    mergeRecon(group, recon, cellChanges);
+                    cached++;
+                    _progress = cached * 100 / jobKeyToGroup.size();
+                } else {
+                    groups.add(group);
+                }
+            }
+            if (cached > 0) {
+                logger.info("Took " + cached + " of " + jobKeyToGroup.size() + " reconciliation jobs from the cache");
+            }
 
-            for (int i = 0; i < groups.size(); /* don't increment here */) {
-                while (jobs.size() < batchSize && i < groups.size()) {
-                    JobGroup group = groups.get(i++);
+            // up to that many batches are sent before the results of the first one are merged, in the order of the
+            // batches
+            int concurrency = _reconConfig.isThreadSafe() ? CONCURRENCY : 1;
+            BatchSize batchSize = new BatchSize(_reconConfig.getBatchSize(_project.rows.size()));
+            Deque<Batch> pending = new ArrayDeque<>();
+            int done = 0;
+            int i = 0;
+            while ((i < groups.size() || !pending.isEmpty()) && !_canceled) {
+                while (pending.size() < concurrency && i < groups.size()) {
+                    List<JobGroup> batchGroups = new ArrayList<>(groups.subList(i, Math.min(groups.size(), i + batchSize.get())));
+                    i += batchGroups.size();
+                    pending.add(startBatch(batchGroups, batchSize, concurrency > 1));
+                }
 
-                    jobs.add(group.job);
-                    jobToGroup.put(group.job, group);
+                Batch batch = pending.peek();
+                List<Recon> recons;
+                try {
+                    recons = batch.recons.get();
+                } catch (InterruptedException e) {
+                    continue;
+                } catch (ExecutionException e) {
+                    logger.warn("Reconciliation of a batch failed", e.getCause());
+                    recons = new ArrayList<>();
                 }
+                pending.remove();
 
-                List<Recon> recons = _reconConfig.batchRecon(jobs, _historyEntryID);
-                for (int j = jobs.size() - 1; j >= 0; j--) {
-                    ReconJob job = jobs.get(j);
+                for (int j = batch.groups.size() - 1; j >= 0; j--) {
                     Recon recon = j < recons.size() ? recons.get(j) : null;
-                    JobGroup group = jobToGroup.get(job);
-                    List<ReconEntry> entries = group.entries;
-
-                    jobToGroup.remove(job);
-                    jobs.remove(j);
+                    mergeRecon(batch.groups.get(j), recon, cellChanges);
                     done++;
-
-                    if (recon != null) {
-                        recon.judgmentBatchSize = entries.size();
-                    }
-
-                    for (ReconEntry entry : entries) {
-                        if (recon == null) {
-                            // TODO add EvalError instead? That is not so convenient
-                            // for users because they would lose the cell contents.
-                            // Better leave the cell unreconciled so they can be reconciled again later.
-                            Cell oldCell = entry.cell;
-                            logger.warn("We have a null recon here" + " " + oldCell + " " + entry.rowIndex);
-                            continue;
-                        }
-                        Cell oldCell = entry.cell;
-                        Cell newCell = new Cell(oldCell.value, recon);
-
-                        CellChange cellChange = new CellChange(
-                                entry.rowIndex,
-                                _cellIndex,
-                                oldCell,
-                                newCell);
-                        cellChanges.add(cellChange);
-                    }
                 }
 
-                _progress = done * 100 / groups.size();
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    if (_canceled) {
-                        break;
-                    }
-                }
+                _progress = (cached + done) * 100 / jobKeyToGroup.size();
+            }
+            for (Batch batch : pending) {
+                batch.recons.cancel(true);
             }
 
             // TODO: Option to keep partial results after cancellation?
@@ -343,5 +439,32 @@ public class ReconOperation extends EngineDependentOperation {
                 _project.processManager.onDoneProcess(this);
             }
         }
+
+        protected void mergeRecon(JobGroup group, Recon recon, List<CellChange> cellChanges) {
+            List<ReconEntry> entries = group.entries;
+            if (recon != null) {
+                recon.judgmentBatchSize = entries.size();
+            }
+
+            for (ReconEntry entry : entries) {
+                if (recon == null) {
+                    // TODO add EvalError instead? That is not so convenient
+                    // for users because they would lose the cell contents.
+                    // Better leave the cell unreconciled so they can be reconciled again later.
+                    Cell oldCell = entry.cell;
+                    logger.warn("We have a null recon here" + " " + oldCell + " " + entry.rowIndex);
+                    continue;
+                }
+                Cell oldCell = entry.cell;
+                Cell newCell = new Cell(oldCell.value, recon);
+
+                CellChange cellChange = new CellChange(
+                        entry.rowIndex,
+                        _cellIndex,
+                        oldCell,
+                        newCell);
+                cellChanges.add(cellChange);
+            }
+        }
     }
 }
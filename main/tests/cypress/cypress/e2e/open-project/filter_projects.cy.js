@@ -30,11 +30,11 @@ describe(__filename, function () {
     cy.get('#projects-list table').contains(project1);
     cy.get('#projects-list table').contains('TestTagOne');
     cy.get('#projectTags ul').children().contains('TestTagOne').click();
-    cy.get('#projects-list table').contains(project2).should('not.be.visible');
-    cy.get('#projects-list table').contains(project1).should('be.visible');
+    cy.get('#projects-list').should('not.contain', project2);
+    cy.get('#projects-list table').should('contain', project1);
     cy.get('#projectTags ul').children().contains('TestTagTwo').click();
-    cy.get('#projects-list table').contains(project2).should('be.visible');
-    cy.get('#projects-list table').contains(project1).should('not.be.visible');
+    cy.get('#projects-list table').should('contain', project2);
+    cy.get('#projects-list').should('not.contain', project1);
   });
 
   it('Ensure projects are being filtered through search', function () {
@@ -49,25 +49,25 @@ describe(__filename, function () {
 
     cy.get('#search-input').type('Project B');
     cy.wait(800); // typing timeout is 500 msec
-    cy.get('#projects-list table').contains(project1).should('not.be.visible');
-    cy.get('#projects-list table').contains(project2).should('be.visible');
+    cy.get('#projects-list').should('not.contain', project1);
+    cy.get('#projects-list table').should('contain', project2);
 
     // Test no results message
     cy.get('#search-input').type('Z');
     cy.wait(800); // typing timeout is 500 msec
-    cy.get('#projects-list table').contains(project1).should('not.be.visible');
-    cy.get('#projects-list table').contains(project2).should('not.be.visible');
+    cy.get('#projects-list').should('not.contain', project1);
+    cy.get('#projects-list').should('not.contain', project2);
     cy.get('#no-results-message').should('be.visible');
 
     // Test matching both project names
     cy.get('#search-input').type('{backspace}{backspace}{backspace}');
     cy.wait(800); // typing timeout is 500 msec
-    cy.get('#projects-list table').contains(project1).should('be.visible');
-    cy.get('#projects-list table').contains(project2).should('be.visible');
+    cy.get('#projects-list table').should('contain', project1);
+    cy.get('#projects-list table').should('contain', project2);
 
     cy.get('#search-input').type(' A');
     cy.wait(800); // typing timeout is 500 msec
-    cy.get('#projects-list table').contains(project1).should('be.visible');
-    cy.get('#projects-list table').contains(project2).should('not.be.visible');
+    cy.get('#projects-list table').should('contain', project1);
+    cy.get('#projects-list').should('not.contain', project2);
   });
 });
@@ -3,9 +3,12 @@ package com.google.refine.commands.browsing;
 
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
 
 import javax.servlet.ServletException;
 
@@ -14,6 +17,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.refine.clustering.ClusteringJob;
 import com.google.refine.commands.Command;
 import com.google.refine.commands.CommandTestBase;
 import com.google.refine.expr.MetaParser;
@@ -70,4 +74,77 @@ public class ComputeClustersCommandTests extends CommandTestBase {
         JsonNode results = ParsingUtilities.mapper.readTree(writer.toString());
         assertEquals(results.get(0).size(), 3);
     }
+
+    @Test
+    public void testAsynchronousClustering() throws Exception {
+        String clusteringConf = "{"
+                + "  \"type\": \"binning\","
+                + "  \"column\": \"foo\","
+                + "  \"params\":{"
+                + "    \"expression\": \"value.fingerprint()\""
+                + "  },"
+                + "  \"function\": \"UserDefinedKeyer\""
+                + "}";
+        when(request.getParameter("project")).thenReturn(Long.toString(project.id));
+        when(request.getParameter("csrf_token")).thenReturn(Command.csrfFactory.getFreshToken());
+        when(request.getParameter("clusterer")).thenReturn(clusteringConf);
+        when(request.getParameter("async")).thenReturn("true");
+
+        command.doPost(request, response);
+
+        long jobID = ParsingUtilities.mapper.readTree(writer.toString()).get("id").asLong();
+        ClusteringJob job = project.getClusteringJobManager().getJob(jobID);
+        job.await();
+        assertEquals(job.getStatus(), ClusteringJob.DONE);
+
+        StringWriter jobWriter = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(jobWriter));
+        when(request.getParameter("jobID")).thenReturn(Long.toString(jobID));
+        command.doGet(request, response);
+
+        JsonNode results = ParsingUtilities.mapper.readTree(jobWriter.toString());
+        assertEquals(results.get("status").asText(), "done");
+        assertEquals(results.get("progress").asInt(), 100);
+        assertEquals(results.get("clusters").get(0).size(), 3);
+
+        // asking for the same clusters again returns the job which computed them
+        when(request.getParameter("csrf_token")).thenReturn(Command.csrfFactory.getFreshToken());
+        StringWriter againWriter = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(againWriter));
+        command.doPost(request, response);
+        assertEquals(ParsingUtilities.mapper.readTree(againWriter.toString()).get("id").asLong(), jobID);
+    }
+
+    @Test
+    public void testClustersOfFacetsDependingOnOutsideStateAreNotShared() throws Exception {
+        String clusteringConf = "{"
+                + "  \"type\": \"binning\","
+                + "  \"column\": \"foo\","
+                + "  \"params\":{"
+                + "    \"expression\": \"value.fingerprint()\""
+                + "  },"
+                + "  \"function\": \"UserDefinedKeyer\""
+                + "}";
+        String engineConf = "{\"mode\":\"row-based\",\"facets\":[{\"type\":\"list\",\"name\":\"foo\","
+                + "\"columnName\":\"foo\",\"expression\":\"now()\",\"omitBlank\":false,\"omitError\":false,"
+                + "\"selection\":[],\"selectBlank\":false,\"selectError\":false,\"invert\":false}]}";
+        when(request.getParameter("project")).thenReturn(Long.toString(project.id));
+        when(request.getParameter("csrf_token")).thenReturn(Command.csrfFactory.getFreshToken());
+        when(request.getParameter("clusterer")).thenReturn(clusteringConf);
+        when(request.getParameter("engine")).thenReturn(engineConf);
+        when(request.getParameter("async")).thenReturn("true");
+
+        command.doPost(request, response);
+        long jobID = ParsingUtilities.mapper.readTree(writer.toString()).get("id").asLong();
+        project.getClusteringJobManager().getJob(jobID).await();
+
+        // the same clusters are computed again, as the rows selected by the facet may have changed
+        when(request.getParameter("csrf_token")).thenReturn(Command.csrfFactory.getFreshToken());
+        StringWriter againWriter = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(againWriter));
+        command.doPost(request, response);
+        long againID = ParsingUtilities.mapper.readTree(againWriter.toString()).get("id").asLong();
+        assertNotEquals(againID, jobID);
+        project.getClusteringJobManager().getJob(againID).await();
+    }
 }
@@ -0,0 +1,105 @@
+package com.google.refine.commands.workspace;
+
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.ServletException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectMetadata;
+import com.google.refine.commands.CommandTestBase;
+import com.google.refine.model.Project;
+import com.google.refine.util.ParsingUtilities;
+
+public class GetAllProjectMetadataCommandTests extends CommandTestBase {
+
+    @BeforeMethod
+    public void setUpCommand() throws IOException {
+        command = new GetAllProjectMetadataCommand();
+
+        createProject("alpha", new String[] { "a" }, new Serializable[][] { { "1" } }, new String[] { "birds" });
+        createProject("beta", new String[] { "a" }, new Serializable[][] { { "1" } }, new String[] { "birds", "cats" });
+        Project gamma = createProject("gamma", new String[] { "a" }, new Serializable[][] { { "1" } },
+                new String[] { "cats" });
+        ProjectMetadata metadata = ProjectManager.singleton.getProjectMetadata(gamma.id);
+        metadata.setDescription("Counts of Alpine birds");
+        metadata.setUserMetadata(
+                (ArrayNode) ParsingUtilities.mapper.readTree("[ {\"name\": \"source\", \"value\": \"Survey\"} ]"));
+    }
+
+    private Project createProject(String name, String[] columnNames, Serializable[][] grid, String[] tags) {
+        Project project = createProject(name, columnNames, grid);
+        ProjectMetadata metadata = ProjectManager.singleton.getProjectMetadata(project.id);
+        metadata.setTags(tags);
+        return project;
+    }
+
+    private List<String> getProjectNames(JsonNode json) {
+        List<String> names = new ArrayList<>();
+        Iterator<JsonNode> projects = json.get("projects").elements();
+        while (projects.hasNext()) {
+            names.add(projects.next().get("name").asText());
+        }
+        return names;
+    }
+
+    private JsonNode getResponse(String query, String tag, String limit) throws ServletException, IOException {
+        when(request.getParameter("sortBy")).thenReturn("name");
+        when(request.getParameter("sortOrder")).thenReturn("asc");
+        when(request.getParameter("query")).thenReturn(query);
+        when(request.getParameter("tag")).thenReturn(tag);
+        when(request.getParameter("limit")).thenReturn(limit);
+        command.doGet(request, response);
+        return ParsingUtilities.mapper.readTree(writer.toString());
+    }
+
+    @Test
+    public void testFilterByQuery() throws ServletException, IOException {
+        JsonNode json = getResponse("ALP", null, null);
+
+        assertEquals(getProjectNames(json), List.of("alpha", "gamma"));
+        assertEquals(json.get("total").asInt(), 2);
+    }
+
+    @Test
+    public void testFilterByUserMetadata() throws ServletException, IOException {
+        JsonNode json = getResponse(" survey ", null, null);
+
+        assertEquals(getProjectNames(json), List.of("gamma"));
+    }
+
+    @Test
+    public void testFilterByTag() throws ServletException, IOException {
+        JsonNode json = getResponse(null, "cats", null);
+
+        assertEquals(getProjectNames(json), List.of("beta", "gamma"));
+        assertEquals(json.get("total").asInt(), 2);
+    }
+
+    @Test
+    public void testFilterBeforePaging() throws ServletException, IOException {
+        JsonNode json = getResponse("a", "birds", "1");
+
+        assertEquals(getProjectNames(json), List.of("alpha"));
+        assertEquals(json.get("total").asInt(), 2);
+    }
+
+    @Test
+    public void testEmptyFiltersMatchAllProjects() throws ServletException, IOException {
+        JsonNode json = getResponse("", "", null);
+
+        assertEquals(getProjectNames(json), List.of("alpha", "beta", "gamma"));
+        assertEquals(json.get("total").asInt(), 3);
+    }
+}
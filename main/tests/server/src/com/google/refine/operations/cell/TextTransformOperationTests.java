@@ -1,6 +1,7 @@
 
 package com.google.refine.operations.cell;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertThrows;
 
 import java.io.Serializable;
@@ -213,4 +214,26 @@ public class TextTransformOperationTests extends RefineTest {
         assertProjectEquals(project, expected);
     }
 
+    @Test
+    public void testParallelTransformKeepsRowOrder() throws Exception {
+        int rowCount = 20000;
+        Serializable[][] rows = new Serializable[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new Serializable[] { "v" + i };
+        }
+        Project bigProject = createProject(new String[] { "foo" }, rows);
+
+        TextTransformOperation operation = new TextTransformOperation(
+                EngineConfig.defaultRowBased(),
+                "foo",
+                "grel:value + '_' + rowIndex",
+                OnError.SetToBlank,
+                true, 1);
+
+        runOperation(operation, bigProject);
+
+        for (int i = 0; i < rowCount; i++) {
+            assertEquals(bigProject.rows.get(i).getCellValue(0), "v" + i + "_" + i + "_" + i);
+        }
+    }
 }
@@ -223,6 +223,44 @@ public class ReconOperationTests extends RefineTest {
         assertProjectEquals(project, expected);
     }
 
+    @Test
+    public void testConcurrentRecon() throws Exception {
+        doReturn(true).when(reconConfig).isThreadSafe();
+        ReconOperation operation = new ReconOperation(EngineConfig.defaultRowBased(), "column", reconConfig);
+
+        runOperation(operation, project);
+
+        Project expected = createProject(
+                new String[] { "column" },
+                new Serializable[][] {
+                        { new Cell("value1", recon1) },
+                        { new Cell("value2", recon2) },
+                        { new Cell("value1", recon1) },
+                        { new Cell("value3", recon3) },
+                        { null }
+                });
+        assertProjectEquals(project, expected);
+    }
+
+    @Test
+    public void testBatchSizeAdaptsToLatency() {
+        ReconOperation.BatchSize batchSize = new ReconOperation.BatchSize(8);
+        long slow = (ReconOperation.TARGET_BATCH_LATENCY + 1) * 1000000;
+        batchSize.record(8, slow);
+        assertEquals(batchSize.get(), 4);
+        batchSize.record(4, slow);
+        assertEquals(batchSize.get(), 2);
+        // a slow batch sent before the size was reduced halves the current size
+        batchSize.record(8, slow);
+        assertEquals(batchSize.get(), 1);
+        batchSize.record(1, 0);
+        assertEquals(batchSize.get(), 2);
+        for (int i = 0; i != 10; i++) {
+            batchSize.record(batchSize.get(), 0);
+        }
+        assertEquals(batchSize.get(), 8);
+    }
+
     @Test
     public void testFailingRecon() throws Exception {
         Project project = createProject("my recon test project",
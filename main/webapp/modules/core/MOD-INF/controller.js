@@ -346,7 +346,7 @@ function registerLanguages() {
 function registerDistances() {
    var DF = Packages.com.google.refine.clustering.knn.DistanceFactory;
    var VicinoDistance = Packages.com.google.refine.clustering.knn.VicinoDistance;
-   DF.put("levenshtein", new VicinoDistance(new Packages.edu.mit.simile.vicino.distances.LevenshteinDistance()));
+   DF.put("levenshtein", new Packages.com.google.refine.clustering.knn.LevenshteinDistance());
    DF.put("ppm", new VicinoDistance(new Packages.edu.mit.simile.vicino.distances.PPMDistance()));
 }
 
@@ -415,7 +415,6 @@ function init() {
       "scripts/util/host.js",
       "scripts/util/sign.js",
       "scripts/util/filter-lists.js",
-      "scripts/util/filter-lists-search.js",
 
       "scripts/index.js",
       "scripts/index/create-project-ui.js",
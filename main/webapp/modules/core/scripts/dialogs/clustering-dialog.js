@@ -439,7 +439,7 @@ ClusteringDialog.prototype._cluster = function() {
     var self = this;
 
     var container = this._elmts.tableContainer.html(
-        '<div style="margin: 1em; font-size: 130%; color: #888;">'+$.i18n('core-dialogs/clustering')+'<img src="images/small-spinner.gif"></div>'
+        '<div style="margin: 1em; font-size: 130%; color: #888;">'+$.i18n('core-dialogs/clustering')+'<img src="images/small-spinner.gif"><div class="clustering-progress"></div></div>'
     );
 
     this._elmts.resultSummary.empty();
@@ -453,17 +453,56 @@ ClusteringDialog.prototype._cluster = function() {
                 'function' : this._function,
                 'column' : this._columnName,
                 'params' : this._params
-            })
+            }),
+            async: true
         },
-        function(data) {
-            self._updateData(data);
-            $(".clustering-dialog-facet").css("display","block");
-            $('#cluster-and-edit-dialog :input').not('.Checkbox_Choice').prop('disabled', false);
+        function(job) {
+            self._jobID = job.id;
+            self._pollClusteringJob(job);
         },
         "json"
     );
 };
 
+ClusteringDialog.prototype._pollClusteringJob = function(job) {
+    var self = this;
+    var enableInputs = function() {
+        $(".clustering-dialog-facet").css("display","block");
+        $('#cluster-and-edit-dialog :input').not('.Checkbox_Choice').prop('disabled', false);
+    };
+
+    if (job.code === "error") {
+        self._jobID = null;
+        alert(job.message);
+        enableInputs();
+    } else if (job.status === "done") {
+        self._jobID = null;
+        self._updateData(job.clusters);
+        enableInputs();
+    } else if (job.status === "failed") {
+        self._jobID = null;
+        alert(job.message);
+        enableInputs();
+    } else if (job.status === "canceled") {
+        self._jobID = null;
+    } else {
+        // show how far the job got while it runs
+        self._elmts.tableContainer.find('.clustering-progress').text(
+            $.i18n('core-dialogs/clustering-progress', job.progress, job.clusters ? job.clusters.length : 0));
+        window.setTimeout(function() {
+            if (self._jobID !== job.id) {
+                return;
+            }
+            $.getJSON(
+                "command/core/compute-clusters?" + $.param({ project: theProject.id, jobID: job.id }),
+                function(data) {
+                    self._pollClusteringJob(data);
+                }
+            );
+        }, 500);
+    }
+};
+
 ClusteringDialog.prototype._updateData = function(data) {
     var clusters = [];
     $.each(data, function() {
@@ -592,6 +631,16 @@ ClusteringDialog.prototype._export = function() {
 };
 
 ClusteringDialog.prototype._dismiss = function() {
+    if (this._jobID) {
+        // do not leave the server computing clusters nobody will see
+        Refine.postCSRF(
+            "command/core/compute-clusters?" + $.param({ project: theProject.id }),
+            { cancel: true, jobID: this._jobID },
+            function() {},
+            "json"
+        );
+        this._jobID = null;
+    }
     DialogSystem.dismissUntil(this._level - 1);
 };
 
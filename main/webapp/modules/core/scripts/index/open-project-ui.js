@@ -56,30 +56,31 @@ Refine.OpenProjectUI = function(elmt) {
   } else {
     $('#projects-workspace-open').hide();
   }
+  // the projects are filtered, paged and sorted by the server
+  this._start = 0;
+  this._sortBy = "modified";
+  this._sortOrder = "desc";
+  this._query = "";
+  this._tag = new URLSearchParams(window.location.search).get('tag') || "";
+  Refine.OpenProjectUI._instance = this;
+
   Refine.TagsManager.allProjectTags = [];
   this._buildTagsAndFetchProjects();
 };
 
-Refine.OpenProjectUI.prototype._fetchProjects = function() {
-  var self = this;
-  $.getJSON(
-      "command/core/get-all-project-metadata",
-      null,
-      function(data) {
-        self._renderProjects(data);
-        self.resize(); // other version of this function excludes this resize
-      },
-      "json"
-  );
+Refine.OpenProjectUI.PAGE_SIZE = 100;
+
+// the fields the server sorts projects on, by index of the column showing them
+Refine.OpenProjectUI.SORT_FIELDS = {
+  2: "modified",
+  3: "name",
+  8: "rowCount"
 };
 
 Refine.OpenProjectUI.prototype._buildTagsAndFetchProjects = function() {
     this._buildProjectSearchPanel();
     Refine.OpenProjectUI.refreshTagsListPanel();
-    this._fetchProjects();
-    var tag = new URLSearchParams(window.location.search).get('tag');
-    if (!tag) tag = '';
-    Refine.OpenProjectUI._filterTags(tag);
+    Refine.OpenProjectUI._filterTags(this._tag);
 };
 
 Refine.OpenProjectUI.prototype._buildProjectSearchPanel = function(){
@@ -121,16 +122,16 @@ Refine.OpenProjectUI._filterTags = function(tag) {
   });
   $('#tagsUl').find('a[href="?tag=' + tag + '#open-project"]').parent().addClass('current');
 
-  $("#tableBody").children().each(function() {
-    if ($(this).hasClass(tag) || tag === "") {
-      $(this).show();
-    } else {
-      $(this).hide();
-    }
-  });
+  var self = Refine.OpenProjectUI._instance;
+  if (self) {
+    self._tag = tag;
+    self._start = 0;
+    self._fetchProjects();
+  }
 };
 
 Refine.OpenProjectUI.prototype._openSearchInput = function() {
+  const self = this;
   const icon = $('#search-icon');
   const input = $('#search-input');
   input.attr("placeholder", $.i18n("core-index-open/search-placeholder"));
@@ -145,7 +146,7 @@ Refine.OpenProjectUI.prototype._openSearchInput = function() {
       input.hide();
       input.val('');
       icon.removeClass("magnifying-glass-open");
-      $("#tableBody").filterListSearch("");
+      self._filterProjects("");
       $("#search-input").hide();
       // $("#tagsUl").show();
     }
@@ -153,6 +154,7 @@ Refine.OpenProjectUI.prototype._openSearchInput = function() {
 };
 
 Refine.OpenProjectUI.prototype._searchInput = function() {
+  const self = this;
   const input = $('#search-input');
   //setup before functions
   let typingTimer;                //timer identifier
@@ -187,12 +189,20 @@ Refine.OpenProjectUI.prototype._searchInput = function() {
   //user is "finished typing," do something
   function doneTyping () {
     const text = input.val();
-    // get the text, get back the projects that contains the text in the metadata
-    $("#tableBody").filterListSearch(text);
+    // get back the projects that contain the text in their metadata
+    self._filterProjects(text);
+  }
+};
+
+Refine.OpenProjectUI.prototype._filterProjects = function(query) {
+  query = query.trim();
+  if (query !== this._query) {
+    this._query = query;
+    this._start = 0;
+    this._fetchProjects();
   }
 };
 
-// FIXME: This is overwriting an earlier function definition
 Refine.OpenProjectUI.prototype._fetchProjects = function() {
     var self = this;
     $.ajax({
@@ -200,13 +210,42 @@ Refine.OpenProjectUI.prototype._fetchProjects = function() {
             url : "command/core/get-all-project-metadata",
             dataType : 'json',
             success : function(data) {
+                    if ($.isEmptyObject(data.projects) && data.total > 0 && self._start > 0) {
+                      // the last projects of the last page were deleted
+                      self._start = Math.floor((data.total - 1) / Refine.OpenProjectUI.PAGE_SIZE) * Refine.OpenProjectUI.PAGE_SIZE;
+                      self._fetchProjects();
+                      return;
+                    }
                     self._renderProjects(data);
             },
-            data : {},
+            data : {
+              start : self._start,
+              limit : Refine.OpenProjectUI.PAGE_SIZE,
+              sortBy : self._sortBy,
+              sortOrder : self._sortOrder,
+              query : self._query,
+              tag : self._tag
+            },
             async : false
     });
 };
 
+Refine.OpenProjectUI.prototype._sortProjects = function(sortBy) {
+  if (sortBy === this._sortBy) {
+    this._sortOrder = this._sortOrder === "asc" ? "desc" : "asc";
+  } else {
+    this._sortBy = sortBy;
+    this._sortOrder = "asc";
+  }
+  this._start = 0;
+  this._fetchProjects();
+};
+
+Refine.OpenProjectUI.prototype._showPage = function(start) {
+  this._start = Math.max(0, start);
+  this._fetchProjects();
+};
+
 Refine.OpenProjectUI.prototype._renderProjects = function(data) {
   const options  = { dateStyle: 'medium', timeStyle: 'medium' };
   const dateFormatter = new Intl.DateTimeFormat(Refine.userLang || navigator.language, options);
@@ -252,7 +291,9 @@ Refine.OpenProjectUI.prototype._renderProjects = function(data) {
   }
 
   var container = self._elmts.projectList.empty();
-  if (!projects.length) {
+  if (!projects.length && (self._query || self._tag)) {
+    $('<div id="no-results-message"></div>').text($.i18n('core-index-open/no-results-message')).show().appendTo(container);
+  } else if (!projects.length) {
     $("#no-project-message").clone().show().appendTo(container);
   } else {
     var projectsUl = $("<ul/>").attr('id', 'projectsUl').appendTo(container);
@@ -278,8 +319,7 @@ Refine.OpenProjectUI.prototype._renderProjects = function(data) {
           
           return htmlDisplay;
       })() +     
-      '</tr></thead><tbody id="tableBody"></tbody></table>  <div id="no-results-message">'
-      +$.i18n('core-index-open/no-results-message')+'</div>'
+      '</tr></thead><tbody id="tableBody"></tbody></table>'
     ).appendTo(projectsUl)[0];
 
     var renderProject = function(project) {
@@ -342,7 +382,6 @@ Refine.OpenProjectUI.prototype._renderProjects = function(data) {
         .addClass("searchable")
         .text(tag)
         .appendTo(tagsCell);
-        $(tr).addClass(tag);
     });
     
     
@@ -373,23 +412,56 @@ Refine.OpenProjectUI.prototype._renderProjects = function(data) {
       renderProject(projects[i]);
     }
 
-    $(table).tablesorter({
-        headers : {
-            0: { sorter: false },
-            1: { sorter: false },
-            2: { sorter: "text" }
-        },
-        sortList: [[2,1]],
-        widthFixed: false
+    $(table).find('thead th').each(function(index) {
+      var sortBy = Refine.OpenProjectUI.SORT_FIELDS[index];
+      if (sortBy) {
+        var th = $(this).addClass("tablesorter-header").css("cursor", "pointer");
+        if (sortBy === self._sortBy) {
+          th.addClass(self._sortOrder === "asc" ? "tablesorter-headerAsc" : "tablesorter-headerDesc");
+        } else {
+          th.addClass("tablesorter-headerUnSorted");
+        }
+        th.on('click', function() {
+          self._sortProjects(sortBy);
+        });
+      }
     });
-    self._addTagFilter();
+    self._renderPagingControls(data.total, projects.length, container);
+  }
+};
+
+Refine.OpenProjectUI.prototype._renderPagingControls = function(total, count, container) {
+  var self = this;
+  var pageSize = Refine.OpenProjectUI.PAGE_SIZE;
+  if (total === undefined || total <= pageSize) {
+    return;
+  }
+  var pagingControls = $('<div>').attr('id', 'projects-paging-controls').appendTo(container);
+
+  var previousPage = $('<a href="javascript:{}">&lsaquo; '+$.i18n('core-views/previous')+'</a>').appendTo(pagingControls);
+  if (self._start > 0) {
+    previousPage.addClass("action").on('click', function() { self._showPage(self._start - pageSize); });
+  } else {
+    previousPage.addClass("inaction");
+  }
+
+  $('<span>')
+    .text($.i18n('core-index-open/page-range', self._start + 1, self._start + count, total))
+    .appendTo(pagingControls);
+
+  var nextPage = $('<a href="javascript:{}">'+$.i18n('core-views/next')+' &rsaquo;</a>').appendTo(pagingControls);
+  if (self._start + pageSize < total) {
+    nextPage.addClass("action").on('click', function() { self._showPage(self._start + pageSize); });
+  } else {
+    nextPage.addClass("inaction");
   }
 };
 
 Refine.OpenProjectUI.prototype._addTagFilter = function() {
-  if (window.location.hash === 'open-project') {
-    var tag = new URLSearchParams(window.location.search).get("tag", "");
-    Refine.OpenProjectUI._filterTags(tag);
+  // the edited metadata of a project may no longer match the search text or the tag
+  var self = Refine.OpenProjectUI._instance;
+  if (self && (self._query || self._tag)) {
+    self._fetchProjects();
   }
 };
 
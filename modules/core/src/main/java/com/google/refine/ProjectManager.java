@@ -43,6 +43,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -55,6 +64,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.Project;
+import com.google.refine.model.recon.ReconCache;
 import com.google.refine.preference.PreferenceStore;
 import com.google.refine.preference.TopList;
 import com.google.refine.util.GetProjectIDException;
@@ -76,6 +86,29 @@ public abstract class ProjectManager {
     // Don't spend more than this much time saving projects if doing a quick save
     static protected final Duration QUICK_SAVE_MAX_TIME = Duration.ofSeconds(30);
 
+    /**
+     * The number of projects which can be saved at the same time, configured with the {@code refine.save.threads}
+     * system property.
+     */
+    static public final int SAVE_THREADS = Integer.getInteger("refine.save.threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    static private ThreadPoolExecutor s_saveExecutor;
+
+    /**
+     * The memory which the projects held in memory may take, in megabytes, configured with the
+     * {@code refine.projects.memoryBudget} system property. Defaults to half of the maximum heap size.
+     */
+    static public final long PROJECT_MEMORY_BUDGET = Long.getLong("refine.projects.memoryBudget",
+            Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024)) * 1024 * 1024;
+
+    /**
+     * How long a project must have been left alone before it can be evicted to make room for others, configured in
+     * seconds with the {@code refine.projects.evictionMinIdle} system property.
+     */
+    static public final Duration EVICTION_MIN_IDLE = Duration.ofSeconds(
+            Long.getLong("refine.projects.evictionMinIdle", 30));
+
     protected Map<Long, ProjectMetadata> _projectsMetadata;
     /**
      * Count of projects which have the given tag
@@ -89,6 +122,8 @@ public abstract class ProjectManager {
      * What caches the lookups of projects.
      */
     transient protected LookupCacheManager _lookupCacheManager = new LookupCacheManager();
+    // the answers of reconciliation services, if they are cached
+    transient protected ReconCache _reconCache = null;
 
     /**
      * Flag for heavy operations like creating or importing projects. Workspace saves are skipped while it's set.
@@ -102,6 +137,25 @@ public abstract class ProjectManager {
      */
     transient protected Map<Long, Project> _projects;
 
+    /**
+     * The saves submitted to the save executor and not completed yet, by project ID.
+     */
+    transient protected final Map<Long, Future<?>> _pendingSaves = new ConcurrentHashMap<>();
+
+    transient protected final SaveMetrics _saveMetrics = new SaveMetrics();
+
+    /**
+     * When each project in memory was last accessed, as given by {@link System#nanoTime()}.
+     */
+    transient protected final Map<Long, Long> _lastAccess = new ConcurrentHashMap<>();
+
+    /**
+     * The estimated memory which the projects in memory may take before the least recently used ones are evicted.
+     */
+    transient protected long _memoryBudget = PROJECT_MEMORY_BUDGET;
+
+    transient protected final ProjectCacheStats _cacheStats = new ProjectCacheStats();
+
     static public ProjectManager singleton;
 
     protected ProjectManager() {
@@ -118,12 +172,15 @@ public abstract class ProjectManager {
 
         for (Project project : _projects.values()) {
             if (project != null) {
-                project.dispose();
+                disposeProject(project);
             }
         }
 
         _projects.clear();
         _projectsMetadata.clear();
+        if (_reconCache != null) {
+            _reconCache.close();
+        }
     }
 
     /**
@@ -137,6 +194,7 @@ public abstract class ProjectManager {
             // Row count is duplicated in metadata, so make sure it is up-to-date
             projectMetadata.setRowCount(project.rows.size());
             _projects.put(project.id, project);
+            _lastAccess.put(project.id, System.nanoTime());
             _projectsMetadata.put(project.id, projectMetadata);
             addProjectTags(projectMetadata.getTags());
         }
@@ -183,6 +241,7 @@ public abstract class ProjectManager {
      * @param id
      */
     public void ensureProjectSaved(long id) {
+        Project project;
         synchronized (this) {
             ProjectMetadata metadata = this.getProjectMetadata(id);
             if (metadata != null) {
@@ -193,17 +252,23 @@ public abstract class ProjectManager {
                 }
             } // FIXME what should be the behaviour if metadata is null? i.e. not found
 
-            Project project = getProject(id);
-            if (project != null && metadata != null && metadata.getModified().isAfter(project.getLastSave())) {
-                try {
-                    saveProject(project);
-                } catch (Exception e) {
-                    logger.error("Error saving project ", e);
-                }
-            } // FIXME what should be the behaviour if project is null? i.e. not found or loaded.
-              // FIXME what should happen if the metadata is found, but not the project? or vice versa?
+            project = getProject(id);
+            if (project == null || metadata == null || !metadata.getModified().isAfter(project.getLastSave())) {
+                return;
+            } // FIXME what should happen if the metadata is found, but not the project? or vice versa?
         }
 
+        // the project is saved outside of the lock of the manager, so that other projects remain available
+        try {
+            Future<?> pending = _pendingSaves.get(id);
+            if (pending != null) {
+                // let an earlier save of the same project complete first
+                pending.get();
+            }
+            timedSave(project);
+        } catch (Exception e) {
+            logger.error("Error saving project ", e);
+        }
     }
 
     /**
@@ -281,14 +346,14 @@ public abstract class ProjectManager {
                         long msecsOverdue = Duration.between(startTimeOfSave, project.getLastSave()).toMillis();
                         records.add(new SaveRecord(project, msecsOverdue));
 
-                    } else if (!project.getProcessManager().hasPending()
-                            && project.getLastSave().plus(PROJECT_FLUSH_DELAY).isBefore(startTimeOfSave)) {
+                    } else if (!project.getProcessManager().hasPending() && !project.getRowStore().isPinned()
+                            && !_pendingSaves.containsKey(id) && project.getLastSave().plus(PROJECT_FLUSH_DELAY).isBefore(startTimeOfSave)) {
 
                         /*
                          * It's been a while since the project was last saved, and it hasn't been modified. We can
                          * safely remove it from the cache to save some memory.
                          */
-                        _projects.remove(id).dispose();
+                        disposeProject(_projects.remove(id));
                     }
                 }
             }
@@ -300,22 +365,327 @@ public abstract class ProjectManager {
 
             logger.info(allModified ? "Saving all modified projects ..." : "Saving some modified projects ...");
 
+            List<Future<?>> saves = new ArrayList<>(records.size());
             for (SaveRecord record : records) {
-                // If we've run out of time, bail out, unless we've been asked to save all modified projects
-                if (!allModified && Instant.now().isAfter(quicksaveDeadline)) {
-                    break;
+                Future<?> save = submitSave(record.project, allModified);
+                if (save != null) {
+                    saves.add(save);
                 }
+            }
+            for (Future<?> save : saves) {
                 try {
-                    saveProject(record.project);
-                } catch (Exception e) {
-                    logger.error("Error when saving projects. Attempting to free memory", e);
-                    // In case we're running low on memory, free as much as we can
-                    disposeUnmodifiedProjects();
+                    if (allModified) {
+                        save.get();
+                    } else {
+                        save.get(Math.max(0, Duration.between(Instant.now(), quicksaveDeadline).toMillis()),
+                                TimeUnit.MILLISECONDS);
+                    }
+                } catch (TimeoutException e) {
+                    // We've run out of time: the remaining saves complete in the background
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    logger.error("Error when saving projects", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits the save of a project to the save executor, unless a save of that project is already pending.
+     *
+     * @param waitForPending
+     *            whether to save the project again after a pending save completes, rather than relying on it
+     * @return the submitted save, or null if no save was submitted
+     */
+    protected Future<?> submitSave(Project project, boolean waitForPending) {
+        long id = project.id;
+        Future<?> waited = null;
+        while (true) {
+            Future<?> pending;
+            FutureTask<Void> save = null;
+            synchronized (_pendingSaves) {
+                pending = _pendingSaves.get(id);
+                // a completed save may still be registered until it has removed itself
+                if (pending == null || pending.isDone()) {
+                    save = newSave(project);
+                    _pendingSaves.put(id, save);
+                }
+            }
+            if (save != null) {
+                _saveMetrics._queued.incrementAndGet();
+                getSaveExecutor().execute(save);
+                return save;
+            } else if (waited != null) {
+                // submitted after the one we waited for, so it saves the changes made before this call
+                return pending;
+            } else if (!waitForPending) {
+                return null;
+            }
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                // already reported by the save itself
+            }
+            waited = pending;
+        }
+    }
+
+    /**
+     * @return a save of the project, which unregisters itself from the pending saves once done
+     */
+    protected FutureTask<Void> newSave(Project project) {
+        long id = project.id;
+        return new FutureTask<Void>(() -> {
+            try {
+                timedSave(project);
+            } catch (Exception e) {
+                logger.error("Error when saving projects. Attempting to free memory", e);
+                // In case we're running low on memory, free as much as we can
+                disposeUnmodifiedProjects();
+            } finally {
+                _saveMetrics._queued.decrementAndGet();
+            }
+        }, null) {
+
+            @Override
+            protected void done() {
+                // a later save of the same project may have been registered in the meantime
+                _pendingSaves.remove(id, this);
+            }
+        };
+    }
+
+    /**
+     * Saves a project in the calling thread, recording how long it took.
+     */
+    protected void timedSave(Project project) throws IOException {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try {
+            saveProject(project);
+            saved = true;
+        } finally {
+            _saveMetrics.record(System.nanoTime() - start, saved);
+        }
+    }
+
+    /**
+     * @return statistics about the saves of projects
+     */
+    @JsonIgnore
+    public SaveMetrics getSaveMetrics() {
+        return _saveMetrics;
+    }
+
+    static synchronized protected ThreadPoolExecutor getSaveExecutor() {
+        if (s_saveExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            s_saveExecutor = new ThreadPoolExecutor(SAVE_THREADS, SAVE_THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "project-save-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            s_saveExecutor.allowCoreThreadTimeOut(true);
+        }
+        return s_saveExecutor;
+    }
+
+    /**
+     * Statistics about the saves of projects: how many were made, how long they took and how many are waiting.
+     */
+    static public class SaveMetrics {
+
+        final protected AtomicInteger _queued = new AtomicInteger();
+        protected long _saveCount;
+        protected long _failureCount;
+        protected long _totalNanos;
+        protected long _maxNanos;
+        protected long _lastNanos;
+
+        synchronized protected void record(long nanos, boolean saved) {
+            if (saved) {
+                _saveCount++;
+                _totalNanos += nanos;
+                _maxNanos = Math.max(_maxNanos, nanos);
+                _lastNanos = nanos;
+            } else {
+                _failureCount++;
+            }
+        }
+
+        /**
+         * @return the number of saves submitted and not completed yet, running ones included
+         */
+        public int getQueueDepth() {
+            return _queued.get();
+        }
+
+        synchronized public long getSaveCount() {
+            return _saveCount;
+        }
+
+        synchronized public long getFailureCount() {
+            return _failureCount;
+        }
+
+        synchronized public Duration getMeanSaveDuration() {
+            return Duration.ofNanos(_saveCount == 0 ? 0 : _totalNanos / _saveCount);
+        }
+
+        synchronized public Duration getMaxSaveDuration() {
+            return Duration.ofNanos(_maxNanos);
+        }
+
+        synchronized public Duration getLastSaveDuration() {
+            return Duration.ofNanos(_lastNanos);
+        }
+    }
+
+    /**
+     * Statistics about the projects held in memory: how often they were found there, how many were evicted to stay
+     * within the memory budget and how much memory they are estimated to take.
+     */
+    static public class ProjectCacheStats {
+
+        protected long _hits;
+        protected long _misses;
+        protected long _evictions;
+        protected long _evictedBytes;
+        protected long _estimatedBytes;
+        protected long _budgetBytes;
+        protected int _projectCount;
+
+        synchronized protected void recordAccess(boolean hit) {
+            if (hit) {
+                _hits++;
+            } else {
+                _misses++;
+            }
+        }
+
+        synchronized protected void recordEviction(long bytes) {
+            _evictions++;
+            _evictedBytes += bytes;
+        }
+
+        synchronized protected void recordSize(long bytes, long budget, int projectCount) {
+            _estimatedBytes = bytes;
+            _budgetBytes = budget;
+            _projectCount = projectCount;
+        }
+
+        synchronized public long getHits() {
+            return _hits;
+        }
+
+        synchronized public long getMisses() {
+            return _misses;
+        }
+
+        synchronized public double getHitRate() {
+            return _hits + _misses == 0 ? 0 : (double) _hits / (_hits + _misses);
+        }
+
+        synchronized public long getEvictions() {
+            return _evictions;
+        }
+
+        synchronized public long getEvictedBytes() {
+            return _evictedBytes;
+        }
+
+        /**
+         * @return the estimated memory taken by the projects in memory when they were last counted
+         */
+        synchronized public long getEstimatedBytes() {
+            return _estimatedBytes;
+        }
+
+        synchronized public long getBudgetBytes() {
+            return _budgetBytes;
+        }
+
+        synchronized public int getProjectCount() {
+            return _projectCount;
+        }
+    }
+
+    /**
+     * @return statistics about the projects held in memory
+     */
+    @JsonIgnore
+    public ProjectCacheStats getProjectCacheStats() {
+        return _cacheStats;
+    }
+
+    /**
+     * Evicts the least recently accessed projects from memory until the estimated size of the projects left fits in the
+     * memory budget. Only projects which are saved, idle, not being processed and whose rows are not pinned by a request
+     * are evicted: the others stay in memory even if the budget is exceeded.
+     *
+     * @param keptID
+     *            the ID of a project to keep in memory, as it is being accessed
+     */
+    protected void evictProjects(long keptID) {
+        synchronized (this) {
+            Map<Long, Long> sizes = new HashMap<>();
+            long total = 0;
+            for (Entry<Long, Project> entry : _projects.entrySet()) {
+                if (entry.getValue() != null) {
+                    long size = entry.getValue().getEstimatedMemorySize();
+                    sizes.put(entry.getKey(), size);
+                    total += size;
                 }
             }
+            if (total > _memoryBudget) {
+                long now = System.nanoTime();
+                List<Long> candidates = new ArrayList<>();
+                for (long id : sizes.keySet()) {
+                    Long lastAccess = _lastAccess.get(id);
+                    if (id != keptID && (lastAccess == null || now - lastAccess >= EVICTION_MIN_IDLE.toNanos())
+                            && isEvictable(id)) {
+                        candidates.add(id);
+                    }
+                }
+                candidates.sort((a, b) -> Long.compare(_lastAccess.getOrDefault(a, 0L), _lastAccess.getOrDefault(b, 0L)));
+                for (long id : candidates) {
+                    if (total <= _memoryBudget) {
+                        break;
+                    }
+                    long size = sizes.get(id);
+                    disposeProject(_projects.remove(id));
+                    _lastAccess.remove(id);
+                    total -= size;
+                    _cacheStats.recordEviction(size);
+                    logger.info("Evicted project {} of about {} MB from memory", id, size / (1024 * 1024));
+                }
+                if (total > _memoryBudget) {
+                    logger.warn("Projects in memory take about {} MB, more than the budget of {} MB",
+                            total / (1024 * 1024), _memoryBudget / (1024 * 1024));
+                }
+            }
+            _cacheStats.recordSize(total, _memoryBudget, _projects.size());
         }
     }
 
+    /**
+     * @return true if the project can be removed from memory without losing any work
+     */
+    protected boolean isEvictable(long id) {
+        Project project = _projects.get(id);
+        ProjectMetadata metadata = getProjectMetadata(id);
+        return project != null && metadata != null && !project.getProcessManager().hasPending()
+                && !project.getRowStore().isPinned() && !_pendingSaves.containsKey(id)
+                && project.getLastSave().isAfter(metadata.getModified());
+    }
+
     /**
      * Flush all unmodified projects from memory.
      */
@@ -324,14 +694,24 @@ public abstract class ProjectManager {
             for (long id : _projectsMetadata.keySet()) {
                 ProjectMetadata metadata = getProjectMetadata(id);
                 Project project = _projects.get(id);
-                if (project != null && !project.getProcessManager().hasPending()
-                        && project.getLastSave().isAfter(metadata.getModified())) {
-                    _projects.remove(id).dispose();
+                if (project != null && !project.getProcessManager().hasPending() && !project.getRowStore().isPinned()
+                        && !_pendingSaves.containsKey(id) && project.getLastSave().isAfter(metadata.getModified())) {
+                    disposeProject(_projects.remove(id));
+                    _lastAccess.remove(id);
                 }
             }
         }
     }
 
+    /**
+     * @return the cache of the answers of reconciliation services shared by the projects, or null if they are not
+     *         cached
+     */
+    @JsonIgnore
+    public ReconCache getReconCache() {
+        return _reconCache;
+    }
+
     /**
      * Gets the LookupCacheManager from memory
      */
@@ -554,11 +934,16 @@ public abstract class ProjectManager {
     public Project getProject(long id) {
         synchronized (this) {
             if (_projects.containsKey(id)) {
+                _cacheStats.recordAccess(true);
+                _lastAccess.put(id, System.nanoTime());
                 return _projects.get(id);
             } else {
+                _cacheStats.recordAccess(false);
                 Project project = loadProject(id);
                 if (project != null) {
                     _projects.put(id, project);
+                    _lastAccess.put(id, System.nanoTime());
+                    evictProjects(id);
                 }
                 return project;
             }
@@ -609,6 +994,13 @@ public abstract class ProjectManager {
      */
     public abstract void deleteProject(long projectID);
 
+    /**
+     * Releases the resources held by a project removed from memory.
+     */
+    protected void disposeProject(Project project) {
+        project.dispose();
+    }
+
     /**
      * Removes project from memory
      * 
@@ -616,8 +1008,9 @@ public abstract class ProjectManager {
      */
     protected void removeProject(long projectID) {
         if (_projects.containsKey(projectID)) {
-            _projects.remove(projectID).dispose();
+            disposeProject(_projects.remove(projectID));
         }
+        _lastAccess.remove(projectID);
         _projectsMetadata.remove(projectID);
     }
 
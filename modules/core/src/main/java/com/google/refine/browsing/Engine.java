@@ -33,20 +33,29 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.browsing.facets.Facet;
+import com.google.refine.browsing.facets.FacetConfig;
+import com.google.refine.browsing.facets.MergeableFacet;
+import com.google.refine.browsing.util.BitSetFilteredRows;
 import com.google.refine.browsing.util.ConjunctiveFilteredRecords;
 import com.google.refine.browsing.util.ConjunctiveFilteredRows;
 import com.google.refine.browsing.util.FilteredRecordsAsFilteredRows;
+import com.google.refine.browsing.util.MergeableRowVisitor;
+import com.google.refine.browsing.util.RowFilterCache;
+import com.google.refine.browsing.util.SharedRowScan;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
+import com.google.refine.model.RecordModel;
 import com.google.refine.model.Row;
 
 /**
@@ -66,6 +75,19 @@ public class Engine {
     public final static String MODE_ROW_BASED = "row-based";
     public final static String MODE_RECORD_BASED = "record-based";
 
+    /**
+     * Number of threads computing facets in row-based mode, set by the refine.facets.parallelism system property. When
+     * greater than 1, facets are computed together in a single scan of the rows, split into chunks visited
+     * concurrently. Otherwise, each facet is computed with its own scan of the rows.
+     */
+    static public final int FACET_PARALLELISM = Integer.getInteger("refine.facets.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    static final int MIN_FACET_CHUNK_SIZE = 4096;
+
+    static private ForkJoinPool s_facetPool;
+
+    static final private BitSet CACHE_UNAVAILABLE = new BitSet(0);
+
     @JsonIgnore
     protected Project _project;
     @JsonProperty("facets")
@@ -90,6 +112,23 @@ public class Engine {
         return _config.getMode();
     }
 
+    /**
+     * @return the configuration this engine was last initialized from
+     */
+    @JsonIgnore
+    public EngineConfig getConfig() {
+        return _config;
+    }
+
+    /**
+     * @return true if the rows and records selected by this engine only depend on the state of the project, so that
+     *         results computed from them can be cached until the project changes
+     */
+    @JsonIgnore
+    public boolean isCacheable() {
+        return _facets.stream().allMatch(Facet::isCacheable);
+    }
+
     public void setMode(Mode mode) {
         _config = new EngineConfig(_config.getFacetConfigs(), mode);
     }
@@ -126,6 +165,11 @@ public class Engine {
         if (_config.getMode().equals(Mode.RecordBased)) {
             return new FilteredRecordsAsFilteredRows(getFilteredRecords(except));
         } else if (_config.getMode().equals(Mode.RowBased)) {
+            BitSet matchingRows = getCachedMatchingRows(except);
+            if (matchingRows != null) {
+                return new BitSetFilteredRows(matchingRows);
+            }
+
             ConjunctiveFilteredRows cfr = new ConjunctiveFilteredRows();
             for (Facet facet : _facets) {
                 if (facet != except) {
@@ -140,6 +184,79 @@ public class Engine {
         throw new InternalError("Unknown mode.");
     }
 
+    /**
+     * Intersects the cached sets of rows matched by each facet but the given one.
+     *
+     * @return null if there is no facet filter to apply, or if the filters cannot be cached
+     */
+    protected BitSet getCachedMatchingRows(Facet except) {
+        BitSet[] allMatchingRows = getCachedMatchingRows();
+        if (allMatchingRows == null) {
+            return null;
+        }
+
+        BitSet result = null;
+        for (int i = 0; i < _facets.size(); i++) {
+            if (_facets.get(i) != except) {
+                BitSet matchingRows = allMatchingRows[i];
+                if (matchingRows == CACHE_UNAVAILABLE) {
+                    return null;
+                } else if (matchingRows != null) {
+                    if (result == null) {
+                        result = (BitSet) matchingRows.clone();
+                    } else {
+                        result.and(matchingRows);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the rows matched by each facet in the cache. The rows of all the facets which are not cached yet are
+     * computed in a single scan, run in parallel if all their filters can be evaluated from several threads.
+     *
+     * @return the rows matched by each facet, null for the facets which do not filter rows, or
+     *         {@link #CACHE_UNAVAILABLE} for those whose rows cannot be cached; null if the project has no cache
+     */
+    protected BitSet[] getCachedMatchingRows() {
+        RowFilterCache cache = _project.getRowFilterCache();
+        List<FacetConfig> configs = _config.getFacetConfigs();
+        if (cache == null || configs.size() != _facets.size()) {
+            return null;
+        }
+
+        int facetCount = _facets.size();
+        BitSet[] matchingRows = new BitSet[facetCount];
+        RowFilter[] filters = new RowFilter[facetCount];
+        boolean threadSafe = true;
+        for (int i = 0; i < facetCount; i++) {
+            Facet facet = _facets.get(i);
+            RowFilter rowFilter = facet.getRowFilter(_project);
+            if (rowFilter == null) {
+                continue;
+            } else if (!facet.isCacheable()) {
+                // its rows may change without the project changing
+                matchingRows[i] = CACHE_UNAVAILABLE;
+                continue;
+            }
+            filters[i] = rowFilter;
+            threadSafe = threadSafe && facet instanceof MergeableFacet && ((MergeableFacet) facet).isThreadSafe();
+        }
+
+        int rowCount = _project.rows.size();
+        int chunkSize = Math.max(MIN_FACET_CHUNK_SIZE, rowCount / (FACET_PARALLELISM * 4));
+        ForkJoinPool pool = threadSafe && FACET_PARALLELISM > 1 && rowCount > chunkSize ? getFacetPool() : null;
+        BitSet[] cachedRows = cache.getMatchingRows(_project, configs, filters, pool, chunkSize);
+        for (int i = 0; i < facetCount; i++) {
+            if (filters[i] != null) {
+                matchingRows[i] = cachedRows[i] != null ? cachedRows[i] : CACHE_UNAVAILABLE;
+            }
+        }
+        return matchingRows;
+    }
+
     @JsonIgnore
     public FilteredRecords getAllRecords() {
         return new FilteredRecords() {
@@ -149,9 +266,10 @@ public class Engine {
                 try {
                     visitor.start(project);
 
-                    int c = project.recordModel.getRecordCount();
+                    RecordModel recordModel = project.getRecordModel();
+                    int c = recordModel.getRecordCount();
                     for (int r = 0; r < c; r++) {
-                        Record record = project.recordModel.getRecord(r);
+                        Record record = recordModel.getRecord(r);
                         visitor.visit(project, record.fromRowIndex, record);
                     }
                 } finally {
@@ -191,10 +309,14 @@ public class Engine {
 
     public void computeFacets() {
         if (_config.getMode().equals(Mode.RowBased)) {
-            for (Facet facet : _facets) {
-                FilteredRows filteredRows = getFilteredRows(facet);
+            if (FACET_PARALLELISM > 1) {
+                computeFacetsInSharedScan();
+            } else {
+                for (Facet facet : _facets) {
+                    FilteredRows filteredRows = getFilteredRows(facet);
 
-                facet.computeChoices(_project, filteredRows);
+                    facet.computeChoices(_project, filteredRows);
+                }
             }
         } else if (_config.getMode().equals(Mode.RecordBased)) {
             for (Facet facet : _facets) {
@@ -206,4 +328,112 @@ public class Engine {
             throw new InternalError("Unknown mode.");
         }
     }
+
+    /**
+     * Computes all the {@link MergeableFacet}s in a single scan of the rows, run in parallel if all the facets can be
+     * evaluated from several threads. Other facets are computed with their own scan, as in the sequential mode.
+     */
+    protected void computeFacetsInSharedScan() {
+        int facetCount = _facets.size();
+        MergeableRowVisitor[] visitors = new MergeableRowVisitor[facetCount];
+        boolean threadSafe = true;
+        boolean shared = false;
+
+        RowFilter[] filters = getRowFilters();
+        for (int i = 0; i < facetCount; i++) {
+            Facet facet = _facets.get(i);
+            if (facet instanceof MergeableFacet) {
+                MergeableFacet mergeableFacet = (MergeableFacet) facet;
+                visitors[i] = mergeableFacet.getChoicesRowVisitor(_project);
+                threadSafe = threadSafe && mergeableFacet.isThreadSafe();
+            } else if (filters[i] != null) {
+                // we do not know whether this filter can be evaluated concurrently
+                threadSafe = false;
+            }
+
+            if (visitors[i] == null) {
+                facet.computeChoices(_project, getFilteredRows(facet));
+            } else {
+                shared = true;
+            }
+        }
+
+        if (shared) {
+            int rowCount = _project.rows.size();
+            int chunkSize = Math.max(MIN_FACET_CHUNK_SIZE, rowCount / (FACET_PARALLELISM * 4));
+            ForkJoinPool pool = threadSafe && rowCount > chunkSize ? getFacetPool() : null;
+
+            SharedRowScan.scan(_project, filters, visitors, pool, chunkSize);
+
+            for (int i = 0; i < facetCount; i++) {
+                if (visitors[i] != null) {
+                    ((MergeableFacet) _facets.get(i)).setChoicesFromRowVisitor(_project, visitors[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the rows selected by all facets, like {@link #getAllFilteredRows()}. In row mode, when the visitor can be
+     * run from several threads, chunks of rows are visited in parallel by chunk visitors whose results are merged in
+     * row order. Otherwise rows are visited one after the other in the current thread.
+     */
+    public void acceptFilteredRows(MergeableRowVisitor visitor) {
+        int rowCount = _project.rows.size();
+        int chunkSize = Math.max(MIN_FACET_CHUNK_SIZE, rowCount / (FACET_PARALLELISM * 4));
+        if (visitor.isThreadSafe() && FACET_PARALLELISM > 1 && rowCount > chunkSize
+                && _config.getMode() == Mode.RowBased) {
+            RowFilter[] filters = getThreadSafeRowFilters();
+            if (filters != null) {
+                // placed after all filters, the visitor only sees the rows accepted by all of them
+                MergeableRowVisitor[] visitors = new MergeableRowVisitor[filters.length + 1];
+                visitors[filters.length] = visitor;
+                SharedRowScan.scan(_project, filters, visitors, getFacetPool(), chunkSize);
+                return;
+            }
+        }
+        getAllFilteredRows().accept(_project, visitor);
+    }
+
+    /**
+     * @return the row filters of all facets, or null if some of them cannot be evaluated from several threads
+     */
+    protected RowFilter[] getThreadSafeRowFilters() {
+        BitSet matchingRows = getCachedMatchingRows(null);
+        if (matchingRows != null) {
+            return new RowFilter[] { RowFilterCache.asRowFilter(matchingRows) };
+        }
+        RowFilter[] filters = getRowFilters();
+        for (int i = 0; i < filters.length; i++) {
+            Facet facet = _facets.get(i);
+            if (filters[i] != null && !(facet instanceof MergeableFacet && ((MergeableFacet) facet).isThreadSafe())) {
+                return null;
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * @return the filters of all facets, null for those which do not filter rows, backed by the cached sets of rows
+     *         they match if possible
+     */
+    protected RowFilter[] getRowFilters() {
+        BitSet[] matchingRows = getCachedMatchingRows();
+        RowFilter[] filters = new RowFilter[_facets.size()];
+        for (int i = 0; i < filters.length; i++) {
+            if (matchingRows == null || matchingRows[i] == CACHE_UNAVAILABLE) {
+                filters[i] = _facets.get(i).getRowFilter(_project);
+            } else if (matchingRows[i] != null) {
+                filters[i] = RowFilterCache.asRowFilter(matchingRows[i]);
+            }
+        }
+        return filters;
+    }
+
+    static synchronized protected ForkJoinPool getFacetPool() {
+        if (s_facetPool == null) {
+            s_facetPool = new ForkJoinPool(FACET_PARALLELISM);
+        }
+        return s_facetPool;
+    }
 }
@@ -33,6 +33,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.facets;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
@@ -51,4 +53,15 @@ public interface Facet {
     public void computeChoices(Project project, FilteredRows filteredRows);
 
     public void computeChoices(Project project, FilteredRecords filteredRecords);
+
+    /**
+     * Whether the rows matched by this facet only depend on its configuration and on the version of the project, so
+     * that they can be cached until the project changes.
+     *
+     * @return false by default (for compatibility with older extensions)
+     */
+    @JsonIgnore
+    public default boolean isCacheable() {
+        return false;
+    }
 }
@@ -56,13 +56,14 @@ import com.google.refine.browsing.filters.AllRowsRecordFilter;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionEqualRowFilter;
 import com.google.refine.browsing.util.ExpressionNominalValueGrouper;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 
-public class ListFacet implements Facet {
+public class ListFacet implements MergeableFacet {
 
     public static final String ERR_TOO_MANY_CHOICES = "Too many choices";
 
@@ -277,7 +278,7 @@ public class ListFacet implements Facet {
     public void initializeFromConfig(ListFacetConfig config, Project project) {
         _config = config;
         if (_config.columnName.length() > 0) {
-            Column column = project.columnModel.getColumnByName(_config.columnName);
+            Column column = project.getColumnModel().getColumnByName(_config.columnName);
             if (column != null) {
                 _cellIndex = column.getCellIndex();
             } else {
@@ -337,6 +338,29 @@ public class ListFacet implements Facet {
         }
     }
 
+    @Override
+    public MergeableRowVisitor getChoicesRowVisitor(Project project) {
+        if (_eval != null && _errorMessage == null) {
+            return new ExpressionNominalValueGrouper(_eval, _config.columnName, _cellIndex);
+        }
+        return null;
+    }
+
+    @Override
+    public void setChoicesFromRowVisitor(Project project, MergeableRowVisitor visitor) {
+        postProcessGrouper((ExpressionNominalValueGrouper) visitor);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _eval == null || _eval.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _eval == null || _eval.isDeterministic();
+    }
+
     protected void postProcessGrouper(ExpressionNominalValueGrouper grouper) {
         _choices.clear();
         _choices.addAll(grouper.choices.values());
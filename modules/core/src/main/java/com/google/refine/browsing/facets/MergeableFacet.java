@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.facets;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import com.google.refine.browsing.util.MergeableRowVisitor;
+import com.google.refine.model.Project;
+
+/**
+ * A facet whose choices can be computed in row-based mode by a {@link MergeableRowVisitor}. This lets the engine
+ * compute several facets in a single scan of the rows, split in chunks which can be visited concurrently.
+ */
+public interface MergeableFacet extends Facet {
+
+    /**
+     * @return a visitor computing the choices of this facet from the rows it is given, or null if the choices should
+     *         be computed by {@link #computeChoices(Project, com.google.refine.browsing.FilteredRows)} instead
+     */
+    public MergeableRowVisitor getChoicesRowVisitor(Project project);
+
+    /**
+     * Updates the choices of this facet from the visitor returned by {@link #getChoicesRowVisitor(Project)}, once it
+     * has been given all the rows matching the other facets.
+     */
+    public void setChoicesFromRowVisitor(Project project, MergeableRowVisitor visitor);
+
+    /**
+     * @return whether the row filter and the choices visitor of this facet can be used from several threads at once
+     */
+    @JsonIgnore
+    public boolean isThreadSafe();
+}
@@ -51,6 +51,7 @@ import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionNumberComparisonRowFilter;
 import com.google.refine.browsing.util.ExpressionBasedRowEvaluable;
 import com.google.refine.browsing.util.ExpressionNumericValueBinner;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.browsing.util.NumericBinIndex;
 import com.google.refine.browsing.util.NumericBinRecordIndex;
 import com.google.refine.browsing.util.NumericBinRowIndex;
@@ -61,7 +62,7 @@ import com.google.refine.expr.ParsingException;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 
-public class RangeFacet implements Facet {
+public class RangeFacet implements MergeableFacet {
 
     public static final String ERR_NO_NUMERIC_VALUE_PRESENT = "No numeric value present.";
 
@@ -292,7 +293,7 @@ public class RangeFacet implements Facet {
         _config = config;
 
         if (_config._columnName.length() > 0) {
-            Column column = project.columnModel.getColumnByName(_config._columnName);
+            Column column = project.getColumnModel().getColumnByName(_config._columnName);
             if (column != null) {
                 _cellIndex = column.getCellIndex();
             } else {
@@ -334,10 +335,19 @@ public class RangeFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
+        MergeableRowVisitor binner = getChoicesRowVisitor(project);
+        if (binner != null) {
+            filteredRows.accept(project, binner);
+            setChoicesFromRowVisitor(project, binner);
+        }
+    }
+
+    @Override
+    public MergeableRowVisitor getChoicesRowVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
 
-            Column column = project.columnModel.getColumnByCellIndex(_cellIndex);
+            Column column = project.getColumnModel().getColumnByCellIndex(_cellIndex);
             String key = "numeric-bin:row-based:" + _config._expression;
             NumericBinIndex index = (NumericBinIndex) column.getPrecompute(key);
             if (index == null) {
@@ -347,11 +357,24 @@ public class RangeFacet implements Facet {
 
             retrieveDataFromBaseBinIndex(index);
 
-            ExpressionNumericValueBinner binner = new ExpressionNumericValueBinner(rowEvaluable, index);
-
-            filteredRows.accept(project, binner);
-            retrieveDataFromBinner(binner);
+            return new ExpressionNumericValueBinner(rowEvaluable, index);
         }
+        return null;
+    }
+
+    @Override
+    public void setChoicesFromRowVisitor(Project project, MergeableRowVisitor visitor) {
+        retrieveDataFromBinner((ExpressionNumericValueBinner) visitor);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _eval == null || _eval.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _eval == null || _eval.isDeterministic();
     }
 
     @Override
@@ -359,7 +382,7 @@ public class RangeFacet implements Facet {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
 
-            Column column = project.columnModel.getColumnByCellIndex(_cellIndex);
+            Column column = project.getColumnModel().getColumnByCellIndex(_cellIndex);
             String key = "numeric-bin:record-based:" + _config._expression;
             NumericBinIndex index = (NumericBinIndex) column.getPrecompute(key);
             if (index == null) {
@@ -381,7 +381,7 @@ public class ScatterplotFacet implements Facet {
         t = createRotationMatrix(config.rotation, config.l);
 
         if (config.columnName_x.length() > 0) {
-            Column x_column = project.columnModel.getColumnByName(config.columnName_x);
+            Column x_column = project.getColumnModel().getColumnByName(config.columnName_x);
             if (x_column != null) {
                 columnIndex_x = x_column.getCellIndex();
 
@@ -402,7 +402,7 @@ public class ScatterplotFacet implements Facet {
         }
 
         if (config.columnName_y.length() > 0) {
-            Column y_column = project.columnModel.getColumnByName(config.columnName_y);
+            Column y_column = project.getColumnModel().getColumnByName(config.columnName_y);
             if (y_column != null) {
                 columnIndex_y = y_column.getCellIndex();
 
@@ -455,13 +455,18 @@ public class ScatterplotFacet implements Facet {
         return rowFilter == null ? null : new AnyRowRecordFilter(rowFilter);
     }
 
+    @Override
+    public boolean isCacheable() {
+        return (eval_x == null || eval_x.isDeterministic()) && (eval_y == null || eval_y.isDeterministic());
+    }
+
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
         if (eval_x != null && eval_y != null && errorMessage_x == null && errorMessage_y == null) {
-            Column column_x = project.columnModel.getColumnByCellIndex(columnIndex_x);
+            Column column_x = project.getColumnModel().getColumnByCellIndex(columnIndex_x);
             NumericBinIndex index_x = getBinIndex(project, column_x, eval_x, config.expression_x, "row-based");
 
-            Column column_y = project.columnModel.getColumnByCellIndex(columnIndex_y);
+            Column column_y = project.getColumnModel().getColumnByCellIndex(columnIndex_y);
             NumericBinIndex index_y = getBinIndex(project, column_y, eval_y, config.expression_y, "row-based");
 
             retrieveDataFromBinIndices(index_x, index_y);
@@ -488,10 +493,10 @@ public class ScatterplotFacet implements Facet {
     @Override
     public void computeChoices(Project project, FilteredRecords filteredRecords) {
         if (eval_x != null && eval_y != null && errorMessage_x == null && errorMessage_y == null) {
-            Column column_x = project.columnModel.getColumnByCellIndex(columnIndex_x);
+            Column column_x = project.getColumnModel().getColumnByCellIndex(columnIndex_x);
             NumericBinIndex index_x = getBinIndex(project, column_x, eval_x, config.expression_x, "record-based");
 
-            Column column_y = project.columnModel.getColumnByCellIndex(columnIndex_y);
+            Column column_y = project.getColumnModel().getColumnByCellIndex(columnIndex_y);
             NumericBinIndex index_y = getBinIndex(project, column_y, eval_y, config.expression_y, "record-based");
 
             retrieveDataFromBinIndices(index_x, index_y);
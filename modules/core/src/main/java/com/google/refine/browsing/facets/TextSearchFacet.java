@@ -47,13 +47,14 @@ import com.google.refine.browsing.RecordFilter;
 import com.google.refine.browsing.RowFilter;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionStringComparisonRowFilter;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.util.PatternSyntaxExceptionParser;
 
-public class TextSearchFacet implements Facet {
+public class TextSearchFacet implements MergeableFacet {
 
     /*
      * Configuration
@@ -149,7 +150,7 @@ public class TextSearchFacet implements Facet {
     public void initializeFromConfig(TextSearchFacetConfig config, Project project) {
         _config = config;
 
-        Column column = project.columnModel.getColumnByName(_config._columnName);
+        Column column = project.getColumnModel().getColumnByName(_config._columnName);
         _cellIndex = column != null ? column.getCellIndex() : -1;
 
         _query = _config._query;
@@ -231,4 +232,25 @@ public class TextSearchFacet implements Facet {
     public void computeChoices(Project project, FilteredRecords filteredRecords) {
         // nothing to do
     }
+
+    @Override
+    public MergeableRowVisitor getChoicesRowVisitor(Project project) {
+        // there are no choices to compute
+        return null;
+    }
+
+    @Override
+    public void setChoicesFromRowVisitor(Project project, MergeableRowVisitor visitor) {
+        // nothing to do
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
 }
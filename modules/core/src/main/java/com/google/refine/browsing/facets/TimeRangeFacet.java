@@ -50,6 +50,7 @@ import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionTimeComparisonRowFilter;
 import com.google.refine.browsing.util.ExpressionBasedRowEvaluable;
 import com.google.refine.browsing.util.ExpressionTimeValueBinner;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.browsing.util.RowEvaluable;
 import com.google.refine.browsing.util.TimeBinIndex;
 import com.google.refine.browsing.util.TimeBinRecordIndex;
@@ -60,7 +61,7 @@ import com.google.refine.expr.ParsingException;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 
-public class TimeRangeFacet implements Facet {
+public class TimeRangeFacet implements MergeableFacet {
 
     /*
      * Configuration, from the client side
@@ -252,7 +253,7 @@ public class TimeRangeFacet implements Facet {
     public void initializeFromConfig(TimeRangeFacetConfig config, Project project) {
         _config = config;
         if (_config._columnName.length() > 0) {
-            Column column = project.columnModel.getColumnByName(_config._columnName);
+            Column column = project.getColumnModel().getColumnByName(_config._columnName);
             if (column != null) {
                 _cellIndex = column.getCellIndex();
             } else {
@@ -287,10 +288,19 @@ public class TimeRangeFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
+        MergeableRowVisitor binner = getChoicesRowVisitor(project);
+        if (binner != null) {
+            filteredRows.accept(project, binner);
+            setChoicesFromRowVisitor(project, binner);
+        }
+    }
+
+    @Override
+    public MergeableRowVisitor getChoicesRowVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
 
-            Column column = project.columnModel.getColumnByCellIndex(_cellIndex);
+            Column column = project.getColumnModel().getColumnByCellIndex(_cellIndex);
             String key = "time-bin:row-based:" + _config._expression;
             TimeBinIndex index = (TimeBinIndex) column.getPrecompute(key);
             if (index == null) {
@@ -300,11 +310,24 @@ public class TimeRangeFacet implements Facet {
 
             retrieveDataFromBaseBinIndex(index);
 
-            ExpressionTimeValueBinner binner = new ExpressionTimeValueBinner(rowEvaluable, index);
-
-            filteredRows.accept(project, binner);
-            retrieveDataFromBinner(binner);
+            return new ExpressionTimeValueBinner(rowEvaluable, index);
         }
+        return null;
+    }
+
+    @Override
+    public void setChoicesFromRowVisitor(Project project, MergeableRowVisitor visitor) {
+        retrieveDataFromBinner((ExpressionTimeValueBinner) visitor);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _eval == null || _eval.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _eval == null || _eval.isDeterministic();
     }
 
     @Override
@@ -312,7 +335,7 @@ public class TimeRangeFacet implements Facet {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
 
-            Column column = project.columnModel.getColumnByCellIndex(_cellIndex);
+            Column column = project.getColumnModel().getColumnByCellIndex(_cellIndex);
             String key = "time-bin:record-based:" + _config._expression;
             TimeBinIndex index = (TimeBinIndex) column.getPrecompute(key);
             if (index == null) {
@@ -39,7 +39,6 @@ import java.util.Properties;
 import com.google.refine.browsing.RowFilter;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -73,14 +72,12 @@ abstract public class DualExpressionsNumberComparisonRowFilter implements RowFil
 
     @Override
     public boolean filterRow(Project project, int rowIndex, Row row) {
-        Cell x_cell = _x_cellIndex < 0 ? null : row.getCell(_x_cellIndex);
         Properties x_bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(x_bindings, row, rowIndex, _x_columnName, x_cell);
+        ExpressionUtils.bind(x_bindings, row, rowIndex, _x_columnName, _x_cellIndex);
         Object x_value = _x_evaluable.evaluate(x_bindings);
 
-        Cell y_cell = _y_cellIndex < 0 ? null : row.getCell(_y_cellIndex);
         Properties y_bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(y_bindings, row, rowIndex, _y_columnName, y_cell);
+        ExpressionUtils.bind(y_bindings, row, rowIndex, _y_columnName, _y_cellIndex);
         Object y_value = _y_evaluable.evaluate(y_bindings);
 
         if (x_value != null && y_value != null) {
@@ -42,7 +42,6 @@ import com.google.refine.browsing.RowFilter;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.util.JsonValueConverter;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -88,10 +87,8 @@ public class ExpressionEqualRowFilter implements RowFilter {
     }
 
     public boolean internalFilterRow(Project project, int rowIndex, Row row) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
         Properties bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, _cellIndex);
 
         Object value = _evaluable.evaluate(bindings);
         if (value != null) {
@@ -127,10 +124,8 @@ public class ExpressionEqualRowFilter implements RowFilter {
     }
 
     public boolean internalInvertedFilterRow(Project project, int rowIndex, Row row) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
         Properties bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, _cellIndex);
 
         Object value = _evaluable.evaluate(bindings);
         if (value != null) {
@@ -42,7 +42,6 @@ import com.google.refine.browsing.RowFilter;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.util.JsonValueConverter;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -66,10 +65,8 @@ abstract public class ExpressionStringComparisonRowFilter implements RowFilter {
 
     @Override
     public boolean filterRow(Project project, int rowIndex, Row row) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
         Properties bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, _cellIndex);
         Boolean invert = _invert;
         Object value = _evaluable.evaluate(bindings);
         if (value != null) {
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.model.Project;
+
+/**
+ * Visits the rows whose indices are set in a bit set.
+ */
+public class BitSetFilteredRows implements FilteredRows {
+
+    final protected BitSet _matchingRows;
+
+    public BitSetFilteredRows(BitSet matchingRows) {
+        _matchingRows = matchingRows;
+    }
+
+    @Override
+    public void accept(Project project, RowVisitor visitor) {
+        try {
+            visitor.start(project);
+
+            int c = project.rows.size();
+            for (int rowIndex = _matchingRows.nextSetBit(0); rowIndex >= 0 && rowIndex < c; rowIndex = _matchingRows
+                    .nextSetBit(rowIndex + 1)) {
+                if (visitor.visit(project, rowIndex, rowIndex, project.rows.get(rowIndex))) {
+                    break;
+                }
+            }
+        } finally {
+            visitor.end(project);
+        }
+    }
+}
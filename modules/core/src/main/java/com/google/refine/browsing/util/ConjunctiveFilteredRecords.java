@@ -41,6 +41,7 @@ import com.google.refine.browsing.RecordFilter;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
+import com.google.refine.model.RecordModel;
 
 /**
  * Encapsulate logic for visiting records that match all given record filters.
@@ -58,9 +59,11 @@ public class ConjunctiveFilteredRecords implements FilteredRecords {
         try {
             visitor.start(project);
 
-            int c = project.recordModel.getRecordCount();
+            // the records of the version of the rows read by this thread
+            RecordModel recordModel = project.getRecordModel();
+            int c = recordModel.getRecordCount();
             for (int r = 0; r < c; r++) {
-                Record record = project.recordModel.getRecord(r);
+                Record record = recordModel.getRecord(r);
                 if (matchRecord(project, record)) {
                     if (visitor.visit(project, record.fromRowIndex, record)) {
                         return;
@@ -37,7 +37,6 @@ import java.util.Properties;
 
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -59,9 +58,7 @@ public class ExpressionBasedRowEvaluable implements RowEvaluable {
     public Object eval(
             Project project, int rowIndex, Row row, Properties bindings) {
 
-        Cell cell = row.getCell(_cellIndex);
-
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, _cellIndex);
 
         return _eval.evaluate(bindings);
     }
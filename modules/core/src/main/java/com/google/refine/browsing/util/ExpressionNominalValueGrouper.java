@@ -42,11 +42,9 @@ import java.util.Properties;
 
 import com.google.refine.browsing.DecoratedValue;
 import com.google.refine.browsing.RecordVisitor;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.facets.NominalFacetChoice;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 import com.google.refine.model.Row;
@@ -55,7 +53,7 @@ import com.google.refine.util.StringUtils;
 /**
  * Visit matched rows or records and group them into facet choices based on the values computed from a given expression.
  */
-public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor {
+public class ExpressionNominalValueGrouper implements MergeableRowVisitor, RecordVisitor {
 
     static public class IndexedNominalFacetChoice extends NominalFacetChoice {
 
@@ -144,6 +142,29 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
         return false;
     }
 
+    @Override
+    public MergeableRowVisitor createChunkVisitor() {
+        return new ExpressionNominalValueGrouper(_evaluable, _columnName, _cellIndex);
+    }
+
+    @Override
+    public void merge(MergeableRowVisitor chunkVisitor) {
+        ExpressionNominalValueGrouper other = (ExpressionNominalValueGrouper) chunkVisitor;
+        for (Map.Entry<Object, IndexedNominalFacetChoice> entry : other.choices.entrySet()) {
+            IndexedNominalFacetChoice otherChoice = entry.getValue();
+            IndexedNominalFacetChoice choice = choices.get(entry.getKey());
+            if (choice == null) {
+                choices.put(entry.getKey(), otherChoice);
+            } else {
+                // chunks do not overlap, so the same row is never counted twice
+                choice.count += otherChoice.count;
+                choice._latestIndex = Math.max(choice._latestIndex, otherChoice._latestIndex);
+            }
+        }
+        blankCount += other.blankCount;
+        errorCount += other.errorCount;
+    }
+
     protected void visitRow(Project project, int rowIndex, Row row, Properties bindings, int index) {
         Object value = evalRow(project, rowIndex, row, bindings);
         if (value != null) {
@@ -165,9 +186,7 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     }
 
     protected Object evalRow(Project project, int rowIndex, Row row, Properties bindings) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, _cellIndex);
 
         return _evaluable.evaluate(bindings);
     }
@@ -37,7 +37,6 @@ import java.util.Collection;
 import java.util.Properties;
 
 import com.google.refine.browsing.RecordVisitor;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
@@ -46,7 +45,7 @@ import com.google.refine.model.Row;
 /**
  * Visit matched rows or records and slot them into bins based on the numbers computed from a given expression.
  */
-public class ExpressionNumericValueBinner implements RowVisitor, RecordVisitor {
+public class ExpressionNumericValueBinner implements MergeableRowVisitor, RecordVisitor {
 
     /*
      * Configuration
@@ -113,6 +112,23 @@ public class ExpressionNumericValueBinner implements RowVisitor, RecordVisitor {
         return false;
     }
 
+    @Override
+    public MergeableRowVisitor createChunkVisitor() {
+        return new ExpressionNumericValueBinner(_rowEvaluable, _index);
+    }
+
+    @Override
+    public void merge(MergeableRowVisitor chunkVisitor) {
+        ExpressionNumericValueBinner other = (ExpressionNumericValueBinner) chunkVisitor;
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        numericCount += other.numericCount;
+        nonNumericCount += other.nonNumericCount;
+        blankCount += other.blankCount;
+        errorCount += other.errorCount;
+    }
+
     protected void resetFlags() {
         hasError = false;
         hasBlank = false;
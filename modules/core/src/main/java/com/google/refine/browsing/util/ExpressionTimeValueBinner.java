@@ -38,7 +38,6 @@ import java.util.Collection;
 import java.util.Properties;
 
 import com.google.refine.browsing.RecordVisitor;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
@@ -47,7 +46,7 @@ import com.google.refine.model.Row;
 /**
  * Visit matched rows or records and slot them into bins based on the date computed from a given expression.
  */
-public class ExpressionTimeValueBinner implements RowVisitor, RecordVisitor {
+public class ExpressionTimeValueBinner implements MergeableRowVisitor, RecordVisitor {
 
     /*
      * Configuration
@@ -114,6 +113,23 @@ public class ExpressionTimeValueBinner implements RowVisitor, RecordVisitor {
         return false;
     }
 
+    @Override
+    public MergeableRowVisitor createChunkVisitor() {
+        return new ExpressionTimeValueBinner(_rowEvaluable, _index);
+    }
+
+    @Override
+    public void merge(MergeableRowVisitor chunkVisitor) {
+        ExpressionTimeValueBinner other = (ExpressionTimeValueBinner) chunkVisitor;
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        timeCount += other.timeCount;
+        nonTimeCount += other.nonTimeCount;
+        blankCount += other.blankCount;
+        errorCount += other.errorCount;
+    }
+
     protected void resetFlags() {
         hasError = false;
         hasBlank = false;
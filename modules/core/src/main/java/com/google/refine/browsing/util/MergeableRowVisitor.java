@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import com.google.refine.browsing.RowVisitor;
+
+/**
+ * A row visitor whose results can be computed independently on several chunks of rows, possibly from different
+ * threads, and combined afterwards.
+ */
+public interface MergeableRowVisitor extends RowVisitor {
+
+    /**
+     * Creates a visitor with the same configuration as this one and empty results, to visit another chunk of rows.
+     */
+    public MergeableRowVisitor createChunkVisitor();
+
+    /**
+     * Adds the results of a visitor created by {@link #createChunkVisitor()}, which visited other rows, to the results
+     * of this visitor.
+     */
+    public void merge(MergeableRowVisitor chunkVisitor);
+
+    /**
+     * Whether chunks of rows can be visited concurrently, each by its own chunk visitor, when this visitor is passed to
+     * {@link com.google.refine.browsing.Engine#acceptFilteredRows(MergeableRowVisitor)}.
+     *
+     * @return false by default
+     */
+    public default boolean isThreadSafe() {
+        return false;
+    }
+}
@@ -39,6 +39,7 @@ import java.util.Properties;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
+import com.google.refine.model.RecordModel;
 import com.google.refine.model.Row;
 
 public class NumericBinRecordIndex extends NumericBinIndex {
@@ -52,10 +53,11 @@ public class NumericBinRecordIndex extends NumericBinIndex {
             Project project, RowEvaluable rowEvaluable, List<Double> allValues) {
 
         Properties bindings = ExpressionUtils.createBindings(project);
-        int count = project.recordModel.getRecordCount();
+        RecordModel recordModel = project.getRecordModel();
+        int count = recordModel.getRecordCount();
 
         for (int r = 0; r < count; r++) {
-            Record record = project.recordModel.getRecord(r);
+            Record record = recordModel.getRecord(r);
 
             preprocessing();
 
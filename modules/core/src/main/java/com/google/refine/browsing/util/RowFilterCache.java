@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.facets.FacetConfig;
+import com.google.refine.history.History;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * Caches, for one project, the set of rows matched by the row filters of facets. Entries are keyed on the facet
+ * configuration and the current state of the project (its last history entry and change count), so that the filters of
+ * facets whose configuration did not change are not evaluated again when another facet is updated, or when the grid is
+ * paged through. Entries are dropped whenever the project changes. Facets whose rows may change without the project
+ * changing, such as those evaluating expressions which read other projects or the current time, are not cached. The
+ * rows of all the facets missing from the cache are computed in a single scan, shared by their filters.
+ */
+public class RowFilterCache {
+
+    /**
+     * Maximum number of row sets kept for each project, set by the refine.facets.filterCacheSize system property.
+     */
+    static public final int MAX_ENTRIES = Integer.getInteger("refine.facets.filterCacheSize", 32);
+
+    final protected Cache<String, BitSet> _cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .recordStats()
+            .build();
+    protected volatile long _changeCount = 0;
+
+    /**
+     * Returns the rows matched by the filter of a facet, computing them if they are not cached yet.
+     *
+     * @param config
+     *            the configuration of the facet the filter was created from
+     * @return the indices of the matching rows, which must not be modified, or null if the facet configuration cannot
+     *         be used as a key
+     */
+    public BitSet getMatchingRows(Project project, FacetConfig config, RowFilter filter) {
+        return getMatchingRows(project, Collections.singletonList(config), new RowFilter[] { filter }, null, 0)[0];
+    }
+
+    /**
+     * Returns the rows matched by the filters of several facets. The rows of all the filters which are not cached yet
+     * are computed in a single scan of the project.
+     *
+     * @param configs
+     *            the configurations of the facets the filters were created from
+     * @param filters
+     *            the filters, null for positions whose rows are not needed
+     * @param pool
+     *            the pool to scan chunks of rows on, or null to scan them in the current thread, in which case the
+     *            filters do not need to be thread-safe
+     * @param chunkSize
+     *            the number of rows scanned by each task on the pool
+     * @return the indices of the rows matched by each filter, which must not be modified, null for positions without a
+     *         filter or whose facet configuration cannot be used as a key
+     */
+    public BitSet[] getMatchingRows(Project project, List<FacetConfig> configs, RowFilter[] filters,
+            ForkJoinPool pool, int chunkSize) {
+        History history = project.history;
+        long changeCount = history.getChangeCount();
+        // when this thread reads a version of the rows which has been changed since, its rows cannot be shared
+        boolean latest = project.getRowStore().isViewingLatest();
+        if (latest && changeCount != _changeCount) {
+            // the rows cached so far were computed on a previous state of the project
+            _cache.invalidateAll();
+            _changeCount = changeCount;
+        }
+
+        BitSet[] matchingRows = new BitSet[filters.length];
+        String[] keys = new String[filters.length];
+        RowFilter[] missingFilters = new RowFilter[filters.length];
+        boolean missing = false;
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i] == null) {
+                continue;
+            }
+            FacetConfig config = configs.get(i);
+            String configKey;
+            try {
+                configKey = config.getClass().getName() + ParsingUtilities.mapper.writeValueAsString(config);
+            } catch (JsonProcessingException e) {
+                continue;
+            }
+            // entries can also be applied or reverted outside of the history, hence the change count in the key
+            keys[i] = history.getCurrentEntryID() + ":" + changeCount + ":" + configKey;
+            matchingRows[i] = latest ? _cache.getIfPresent(keys[i]) : null;
+            if (matchingRows[i] == null) {
+                missingFilters[i] = filters[i];
+                missing = true;
+            }
+        }
+
+        if (missing) {
+            BitSet[] computed = computeMatchingRows(project, missingFilters, pool, chunkSize);
+            // do not cache rows which might have been read while the project was changed
+            boolean cacheable = latest && changeCount % 2 == 0 && history.getChangeCount() == changeCount;
+            for (int i = 0; i < filters.length; i++) {
+                if (missingFilters[i] != null) {
+                    matchingRows[i] = computed[i];
+                    if (cacheable) {
+                        _cache.put(keys[i], computed[i]);
+                    }
+                }
+            }
+        }
+        return matchingRows;
+    }
+
+    /**
+     * Evaluates several filters in a single scan of the rows.
+     *
+     * @return the indices of the rows matched by each filter, null for positions without a filter
+     */
+    static protected BitSet[] computeMatchingRows(Project project, RowFilter[] filters, ForkJoinPool pool,
+            int chunkSize) {
+        List<Row> rows = project.getRowStore().getView();
+        long[][] words = new long[filters.length][];
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i] != null) {
+                words[i] = new long[(rows.size() + 63) / 64];
+            }
+        }
+
+        MatchingRowScan scan = new MatchingRowScan(project, rows, filters, words, 0, rows.size(), chunkSize);
+        if (pool != null) {
+            pool.invoke(scan);
+        } else {
+            scan.scanRows();
+        }
+
+        BitSet[] matchingRows = new BitSet[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            if (words[i] != null) {
+                matchingRows[i] = BitSet.valueOf(words[i]);
+            }
+        }
+        return matchingRows;
+    }
+
+    public CacheStats getStats() {
+        return _cache.stats();
+    }
+
+    public void clear() {
+        _cache.invalidateAll();
+    }
+
+    /**
+     * @return a filter matching the rows in the given set
+     */
+    static public RowFilter asRowFilter(BitSet matchingRows) {
+        return (project, rowIndex, row) -> matchingRows.get(rowIndex);
+    }
+
+    /**
+     * Sets the bits of the rows matched by each filter, splitting the rows into chunks which can be scanned
+     * concurrently. Chunks start at multiples of 64 rows, so that they write to separate words of the bit sets.
+     */
+    static protected class MatchingRowScan extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final protected Project _project;
+        final protected List<Row> _rows;
+        final protected RowFilter[] _filters;
+        final protected long[][] _words;
+        final protected int _fromRowIndex;
+        final protected int _toRowIndex;
+        final protected int _chunkSize;
+
+        protected MatchingRowScan(Project project, List<Row> rows, RowFilter[] filters, long[][] words,
+                int fromRowIndex, int toRowIndex, int chunkSize) {
+            _project = project;
+            _rows = rows;
+            _filters = filters;
+            _words = words;
+            _fromRowIndex = fromRowIndex;
+            _toRowIndex = toRowIndex;
+            _chunkSize = Math.max(64, chunkSize);
+        }
+
+        @Override
+        protected void compute() {
+            if (_toRowIndex - _fromRowIndex <= _chunkSize) {
+                scanRows();
+                return;
+            }
+            int middle = _fromRowIndex + ((((_toRowIndex - _fromRowIndex) >>> 1) + 63) & ~63);
+            invokeAll(new MatchingRowScan(_project, _rows, _filters, _words, _fromRowIndex, middle, _chunkSize),
+                    new MatchingRowScan(_project, _rows, _filters, _words, middle, _toRowIndex, _chunkSize));
+        }
+
+        /**
+         * Scans the rows of this chunk in the current thread.
+         */
+        protected void scanRows() {
+            for (int rowIndex = _fromRowIndex; rowIndex < _toRowIndex; rowIndex++) {
+                Row row = _rows.get(rowIndex);
+                for (int i = 0; i < _filters.length; i++) {
+                    if (_filters[i] != null && _filters[i].filterRow(_project, rowIndex, row)) {
+                        _words[i][rowIndex >> 6] |= 1L << rowIndex;
+                    }
+                }
+            }
+        }
+    }
+}
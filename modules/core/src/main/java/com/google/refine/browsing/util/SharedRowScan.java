@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Feeds several mergeable row visitors in a single scan of the rows of a project. Each visitor is given the rows
+ * matched by all the row filters except the one at the same position, which is how facets are computed: every facet
+ * sees the rows selected by the other facets. The scan is split into chunks of rows which can be visited concurrently
+ * on a {@link ForkJoinPool}, each chunk with its own copies of the visitors, merged at the end.
+ */
+public class SharedRowScan extends RecursiveTask<MergeableRowVisitor[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    final protected Project _project;
+    final protected List<Row> _rows;
+    final protected RowFilter[] _filters;
+    final protected MergeableRowVisitor[] _visitors;
+    final protected int _fromRowIndex;
+    final protected int _toRowIndex;
+    final protected int _chunkSize;
+
+    /**
+     * @param filters
+     *            row filters, null for positions without any filter
+     * @param visitors
+     *            visitors to feed, null for positions without any visitor
+     */
+    public SharedRowScan(Project project, RowFilter[] filters, MergeableRowVisitor[] visitors,
+            int fromRowIndex, int toRowIndex, int chunkSize) {
+        this(project, project.getRowStore().getView(), filters, visitors, fromRowIndex, toRowIndex, chunkSize);
+    }
+
+    /**
+     * @param rows
+     *            the version of the rows to visit, shared by the chunks visited in other threads
+     */
+    protected SharedRowScan(Project project, List<Row> rows, RowFilter[] filters, MergeableRowVisitor[] visitors,
+            int fromRowIndex, int toRowIndex, int chunkSize) {
+        _project = project;
+        _rows = rows;
+        _filters = filters;
+        _visitors = visitors;
+        _fromRowIndex = fromRowIndex;
+        _toRowIndex = toRowIndex;
+        _chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Visits all the rows of the project and merges the results into the given visitors.
+     *
+     * @param pool
+     *            the pool to visit chunks on, or null to visit all rows in the current thread
+     */
+    static public void scan(Project project, RowFilter[] filters, MergeableRowVisitor[] visitors,
+            ForkJoinPool pool, int chunkSize) {
+        List<Row> rows = project.getRowStore().getView();
+        SharedRowScan scan = new SharedRowScan(project, rows, filters, visitors, 0, rows.size(), chunkSize);
+        MergeableRowVisitor[] results = pool != null ? pool.invoke(scan) : scan.visitRows();
+
+        for (int i = 0; i < visitors.length; i++) {
+            if (visitors[i] != null) {
+                visitors[i].start(project);
+                visitors[i].merge(results[i]);
+                visitors[i].end(project);
+            }
+        }
+    }
+
+    @Override
+    protected MergeableRowVisitor[] compute() {
+        if (_toRowIndex - _fromRowIndex <= _chunkSize) {
+            return visitRows();
+        }
+        int middle = (_fromRowIndex + _toRowIndex) >>> 1;
+        SharedRowScan left = new SharedRowScan(_project, _rows, _filters, _visitors, _fromRowIndex, middle,
+                _chunkSize);
+        SharedRowScan right = new SharedRowScan(_project, _rows, _filters, _visitors, middle, _toRowIndex,
+                _chunkSize);
+        left.fork();
+        MergeableRowVisitor[] rightResults = right.compute();
+        MergeableRowVisitor[] results = left.join();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                results[i].merge(rightResults[i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Visits the rows of this chunk in the current thread.
+     *
+     * @return fresh visitors holding the results for this chunk only
+     */
+    protected MergeableRowVisitor[] visitRows() {
+        MergeableRowVisitor[] chunkVisitors = new MergeableRowVisitor[_visitors.length];
+        for (int i = 0; i < _visitors.length; i++) {
+            if (_visitors[i] != null) {
+                chunkVisitors[i] = _visitors[i].createChunkVisitor();
+                chunkVisitors[i].start(_project);
+            }
+        }
+
+        try {
+            for (int rowIndex = _fromRowIndex; rowIndex < _toRowIndex; rowIndex++) {
+                Row row = _rows.get(rowIndex);
+
+                // position of the only filter rejecting the row, -1 if none does
+                int rejectedBy = -1;
+                boolean rejectedTwice = false;
+                for (int i = 0; i < _filters.length; i++) {
+                    if (_filters[i] != null && !_filters[i].filterRow(_project, rowIndex, row)) {
+                        if (rejectedBy >= 0) {
+                            rejectedTwice = true;
+                            break;
+                        }
+                        rejectedBy = i;
+                    }
+                }
+                if (rejectedTwice) {
+                    continue;
+                }
+
+                for (int i = 0; i < chunkVisitors.length; i++) {
+                    if (chunkVisitors[i] != null && (rejectedBy < 0 || rejectedBy == i)) {
+                        chunkVisitors[i].visit(_project, rowIndex, rowIndex, row);
+                    }
+                }
+            }
+        } finally {
+            for (MergeableRowVisitor chunkVisitor : chunkVisitors) {
+                if (chunkVisitor != null) {
+                    chunkVisitor.end(_project);
+                }
+            }
+        }
+        return chunkVisitors;
+    }
+}
@@ -39,6 +39,7 @@ import java.util.Properties;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
+import com.google.refine.model.RecordModel;
 import com.google.refine.model.Row;
 
 public class TimeBinRecordIndex extends TimeBinIndex {
@@ -51,10 +52,11 @@ public class TimeBinRecordIndex extends TimeBinIndex {
     protected void iterate(Project project, RowEvaluable rowEvaluable, List<Long> allValues) {
 
         Properties bindings = ExpressionUtils.createBindings(project);
-        int count = project.recordModel.getRecordCount();
+        RecordModel recordModel = project.getRecordModel();
+        int count = recordModel.getRecordCount();
 
         for (int r = 0; r < count; r++) {
-            Record record = project.recordModel.getRecord(r);
+            Record record = recordModel.getRecord(r);
 
             preprocessing();
 
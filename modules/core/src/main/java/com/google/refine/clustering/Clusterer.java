@@ -33,6 +33,9 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.clustering;
 
+import java.util.Collections;
+import java.util.List;
+
 import com.google.refine.browsing.Engine;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
@@ -44,6 +47,30 @@ public abstract class Clusterer {
 
     public abstract void computeClusters(Engine engine);
 
+    /**
+     * Asks a computation of clusters running in another thread to stop. Clusterers which can be stopped make
+     * {@link #computeClusters(Engine)} throw a {@link java.util.concurrent.CancellationException}, the others ignore
+     * it.
+     */
+    public void cancel() {
+        // most clusterers are quick enough not to need it
+    }
+
+    /**
+     * @return the percentage of the clusters computed so far, or -1 if it is not known
+     */
+    public int getProgress() {
+        return -1;
+    }
+
+    /**
+     * @return the clusters found so far by a computation running in another thread, in the same form as the JSON
+     *         representation of the clusterer once it is done
+     */
+    public List<List<ClusteredEntry>> getPartialClusters() {
+        return Collections.emptyList();
+    }
+
     protected void initializeFromConfig(Project project, ClustererConfig c) {
         _project = project;
 
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import com.google.refine.browsing.Engine;
+
+/**
+ * A computation of clusters running in the background, on behalf of a {@link ClusteringJobManager}. Until it is done,
+ * it reports its progress and the clusters found so far, for the clusterers which can tell.
+ */
+public class ClusteringJob {
+
+    static public final String PENDING = "pending";
+    static public final String RUNNING = "running";
+    static public final String DONE = "done";
+    static public final String CANCELED = "canceled";
+    static public final String FAILED = "failed";
+
+    @JsonProperty("id")
+    final protected long _id;
+    @JsonIgnore
+    final protected String _key;
+    @JsonIgnore
+    final protected Clusterer _clusterer;
+    @JsonIgnore
+    final protected Engine _engine;
+    @JsonIgnore
+    protected volatile String _status = PENDING;
+    @JsonIgnore
+    protected volatile Exception _error;
+    @JsonIgnore
+    final protected CountDownLatch _finished = new CountDownLatch(1);
+
+    protected ClusteringJob(long id, String key, Clusterer clusterer, Engine engine) {
+        _id = id;
+        _key = key;
+        _clusterer = clusterer;
+        _engine = engine;
+    }
+
+    protected void run() {
+        synchronized (this) {
+            if (!PENDING.equals(_status)) {
+                return;
+            }
+            _status = RUNNING;
+        }
+        String status = FAILED;
+        try {
+            _clusterer.computeClusters(_engine);
+            status = DONE;
+        } catch (CancellationException e) {
+            status = CANCELED;
+        } catch (Exception e) {
+            _error = e;
+        } finally {
+            synchronized (this) {
+                _status = CANCELED.equals(_status) ? CANCELED : status;
+            }
+            _finished.countDown();
+        }
+    }
+
+    /**
+     * Stops the job, unless it is finished already.
+     */
+    public void cancel() {
+        boolean pending;
+        synchronized (this) {
+            pending = PENDING.equals(_status);
+            if (!pending && !RUNNING.equals(_status)) {
+                return;
+            }
+            _status = CANCELED;
+        }
+        _clusterer.cancel();
+        if (pending) {
+            _finished.countDown();
+        }
+    }
+
+    /**
+     * Waits for the job to be finished, whether done, canceled or failed.
+     */
+    public void await() throws InterruptedException {
+        _finished.await();
+    }
+
+    public long getID() {
+        return _id;
+    }
+
+    @JsonIgnore
+    public Clusterer getClusterer() {
+        return _clusterer;
+    }
+
+    @JsonProperty("status")
+    public String getStatus() {
+        return _status;
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return _finished.getCount() == 0;
+    }
+
+    @JsonIgnore
+    public Exception getError() {
+        return _error;
+    }
+
+    @JsonProperty("progress")
+    public int getProgress() {
+        String status = _status;
+        if (DONE.equals(status)) {
+            return 100;
+        }
+        return RUNNING.equals(status) ? Math.max(0, _clusterer.getProgress()) : 0;
+    }
+
+    /**
+     * @return the clusters once the job is done, else those found so far
+     */
+    @JsonProperty("clusters")
+    @JsonInclude(Include.NON_NULL)
+    public Object getClusters() {
+        String status = _status;
+        if (DONE.equals(status)) {
+            return _clusterer;
+        }
+        return RUNNING.equals(status) ? _clusterer.getPartialClusters() : null;
+    }
+
+    @JsonProperty("message")
+    @JsonInclude(Include.NON_NULL)
+    public String getMessage() {
+        Exception error = _error;
+        return error == null ? null : error.getLocalizedMessage();
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.history.History;
+import com.google.refine.model.Project;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * Runs, for one project, the computations of clusters in the background, so that they do not hold the requests which
+ * started them, and keeps the finished ones for a while so that their results can be fetched.
+ * <p>
+ * The clusters computed for a column are cached, keyed on the clusterer configuration, the facets and the current
+ * state of the project (its last history entry and change count): asking again for the same clusters returns the job
+ * which computed them, or the one computing them. Cached clusters are dropped whenever the project changes.
+ */
+public class ClusteringJobManager {
+
+    /**
+     * Number of clustering jobs run at once, across projects, set by the refine.clustering.jobThreads system property.
+     */
+    static public final int THREADS = Integer.getInteger("refine.clustering.jobThreads", 2);
+
+    /**
+     * Maximum number of computed clusters cached for each project, set by the refine.clustering.resultCacheSize
+     * system property.
+     */
+    static public final int MAX_RESULTS = Integer.getInteger("refine.clustering.resultCacheSize", 8);
+
+    /**
+     * Number of minutes finished jobs are kept for after their results were last fetched.
+     */
+    static public final int FINISHED_JOB_TIMEOUT = 10;
+
+    static private ThreadPoolExecutor s_executor;
+
+    final protected AtomicLong _nextID = new AtomicLong(1);
+    // the jobs which are not finished, by ID
+    final protected Map<Long, ClusteringJob> _jobs = new ConcurrentHashMap<>();
+    final protected Cache<Long, ClusteringJob> _finished = CacheBuilder.newBuilder()
+            .expireAfterAccess(FINISHED_JOB_TIMEOUT, TimeUnit.MINUTES)
+            .build();
+    // the jobs which computed or compute clusters, by the key of these clusters
+    final protected Cache<String, ClusteringJob> _results = CacheBuilder.newBuilder()
+            .maximumSize(MAX_RESULTS)
+            .recordStats()
+            .build();
+    protected volatile long _changeCount = 0;
+
+    /**
+     * Starts computing clusters, unless the same clusters are being computed or were computed already.
+     *
+     * @param configKey
+     *            identifies the configuration of the clusterer, or null if it cannot be identified
+     * @return the job computing the clusters
+     */
+    public ClusteringJob submit(Project project, ClustererConfig config, String configKey, Engine engine) {
+        String key = configKey == null ? null : getKey(project, configKey, engine);
+        synchronized (this) {
+            if (key != null) {
+                ClusteringJob job = _results.getIfPresent(key);
+                if (job != null && !ClusteringJob.CANCELED.equals(job.getStatus())
+                        && !ClusteringJob.FAILED.equals(job.getStatus())) {
+                    if (job.isDone()) {
+                        // so that its clusters can be fetched for a while again
+                        _finished.put(job.getID(), job);
+                    }
+                    return job;
+                }
+            }
+
+            ClusteringJob job = new ClusteringJob(_nextID.getAndIncrement(), key, config.apply(project), engine);
+            _jobs.put(job.getID(), job);
+            if (key != null) {
+                _results.put(key, job);
+            }
+            long changeCount = project.history.getChangeCount();
+            // canceled jobs are still run, returning at once, so that they are finished in turn
+            getExecutor().submit(() -> {
+                try {
+                    job.run();
+                } finally {
+                    onFinished(project, job, changeCount);
+                }
+            });
+            return job;
+        }
+    }
+
+    protected synchronized void onFinished(Project project, ClusteringJob job, long changeCount) {
+        _jobs.remove(job.getID());
+        _finished.put(job.getID(), job);
+        History history = project.history;
+        // do not keep clusters which might have been computed while the project was changed
+        if (job._key != null && (!ClusteringJob.DONE.equals(job.getStatus())
+                || changeCount % 2 != 0 || history.getChangeCount() != changeCount)) {
+            _results.asMap().remove(job._key, job);
+        }
+    }
+
+    /**
+     * @return the key of the clusters computed by a clusterer, or null if they cannot be cached
+     */
+    protected String getKey(Project project, String configKey, Engine engine) {
+        if (!engine.isCacheable()) {
+            // the rows selected by its facets may change without the project changing
+            return null;
+        }
+        String engineKey;
+        try {
+            engineKey = ParsingUtilities.mapper.writeValueAsString(engine.getConfig());
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        if (!project.getRowStore().isViewingLatest()) {
+            // this thread reads a version of the rows which has been changed since: its clusters cannot be shared
+            return null;
+        }
+        History history = project.history;
+        long changeCount = history.getChangeCount();
+        if (changeCount != _changeCount) {
+            // the clusters cached so far were computed on a previous state of the project
+            _results.invalidateAll();
+            _changeCount = changeCount;
+        }
+        return history.getCurrentEntryID() + ":" + changeCount + ":" + configKey + ":" + engineKey;
+    }
+
+    /**
+     * @return the job of that ID, or null if there is none or it was finished long ago
+     */
+    public ClusteringJob getJob(long id) {
+        ClusteringJob job = _jobs.get(id);
+        return job != null ? job : _finished.getIfPresent(id);
+    }
+
+    /**
+     * @return the jobs which are pending or running
+     */
+    public List<ClusteringJob> getRunningJobs() {
+        return new ArrayList<>(_jobs.values());
+    }
+
+    /**
+     * Cancels all the jobs which are not finished.
+     *
+     * @return the number of jobs canceled
+     */
+    public int cancelAll() {
+        List<ClusteringJob> jobs = getRunningJobs();
+        jobs.forEach(ClusteringJob::cancel);
+        return jobs.size();
+    }
+
+    public CacheStats getStats() {
+        return _results.stats();
+    }
+
+    static synchronized protected ThreadPoolExecutor getExecutor() {
+        if (s_executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            s_executor = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "clustering-job-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            s_executor.allowCoreThreadTimeOut(true);
+        }
+        return s_executor;
+    }
+}
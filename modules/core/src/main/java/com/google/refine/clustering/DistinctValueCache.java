@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.history.History;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * Caches, for one project, the distinct values of the columns being clustered, and the keys computed for them by the
+ * keying functions tried in turn. Entries are keyed on the column, the facets and the current state of the project (its
+ * last history entry and change count), so that switching to another keying function does not scan the column again,
+ * and keying functions tried already are not run again. Entries are dropped whenever the project changes.
+ */
+public class DistinctValueCache {
+
+    /**
+     * Maximum number of columns whose distinct values are kept for each project, set by the
+     * refine.clustering.cacheSize system property.
+     */
+    static public final int MAX_ENTRIES = Integer.getInteger("refine.clustering.cacheSize", 4);
+
+    /**
+     * Number of distinct values from which they are keyed on several threads.
+     */
+    static public final int PARALLEL_THRESHOLD = 1000;
+
+    final protected Cache<String, DistinctValues> _cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .recordStats()
+            .build();
+    protected volatile long _changeCount = 0;
+
+    /**
+     * The distinct values of a column in the filtered rows, with the number of rows holding each of them. Values which
+     * are not strings are converted to strings.
+     */
+    static public class DistinctValues {
+
+        final protected String[] _values;
+        final protected int[] _counts;
+        // the keys of the values, by keying function
+        final protected Map<Object, String[]> _keys = new ConcurrentHashMap<>();
+
+        protected DistinctValues(String[] values, int[] counts) {
+            _values = values;
+            _counts = counts;
+        }
+
+        public int size() {
+            return _values.length;
+        }
+
+        public String getValue(int index) {
+            return _values[index];
+        }
+
+        public int getCount(int index) {
+            return _counts[index];
+        }
+
+        /**
+         * Returns the keys of the distinct values, computing them unless they were computed for the same keying
+         * function already.
+         *
+         * @param keyingID
+         *            identifies the keying function and its parameters
+         * @param threadSafe
+         *            whether the keying function can be run on several threads at once
+         * @return the key of each distinct value, at the same index
+         */
+        public String[] getKeys(Object keyingID, boolean threadSafe, UnaryOperator<String> keying) {
+            return _keys.computeIfAbsent(keyingID, id -> {
+                String[] keys = new String[_values.length];
+                IntStream indices = IntStream.range(0, _values.length);
+                if (threadSafe && _values.length >= PARALLEL_THRESHOLD) {
+                    indices = indices.parallel();
+                }
+                indices.forEach(i -> keys[i] = keying.apply(_values[i]));
+                return keys;
+            });
+        }
+    }
+
+    static protected class DistinctValueVisitor implements RowVisitor {
+
+        final protected int _cellIndex;
+        final protected Map<String, int[]> _counts = new HashMap<>();
+
+        protected DistinctValueVisitor(int cellIndex) {
+            _cellIndex = cellIndex;
+        }
+
+        @Override
+        public void start(Project project) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Object v = row.getCellValue(_cellIndex);
+            if (v != null) {
+                String s = (v instanceof String) ? ((String) v) : v.toString();
+                int[] count = _counts.get(s);
+                if (count == null) {
+                    _counts.put(s, new int[] { 1 });
+                } else {
+                    count[0]++;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
+
+        protected DistinctValues getDistinctValues() {
+            String[] values = new String[_counts.size()];
+            int[] counts = new int[_counts.size()];
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : _counts.entrySet()) {
+                values[i] = entry.getKey();
+                counts[i] = entry.getValue()[0];
+                i++;
+            }
+            return new DistinctValues(values, counts);
+        }
+    }
+
+    /**
+     * Returns the distinct values of a column in the rows filtered by the engine, scanning the column unless they are
+     * cached.
+     */
+    public DistinctValues getDistinctValues(Project project, int cellIndex, Engine engine) {
+        if (!engine.isCacheable()) {
+            // the rows selected by its facets may change without the project changing
+            return computeDistinctValues(project, cellIndex, engine.getAllFilteredRows());
+        }
+        String configKey;
+        try {
+            configKey = ParsingUtilities.mapper.writeValueAsString(engine.getConfig());
+        } catch (JsonProcessingException e) {
+            return computeDistinctValues(project, cellIndex, engine.getAllFilteredRows());
+        }
+
+        History history = project.history;
+        long changeCount = history.getChangeCount();
+        if (!project.getRowStore().isViewingLatest()) {
+            // this thread reads a version of the rows which has been changed since: its values cannot be shared
+            return computeDistinctValues(project, cellIndex, engine.getAllFilteredRows());
+        }
+        if (changeCount != _changeCount) {
+            // the values cached so far were computed on a previous state of the project
+            _cache.invalidateAll();
+            _changeCount = changeCount;
+        }
+        String key = history.getCurrentEntryID() + ":" + changeCount + ":" + cellIndex + ":" + configKey;
+        DistinctValues values = _cache.getIfPresent(key);
+        if (values == null) {
+            values = computeDistinctValues(project, cellIndex, engine.getAllFilteredRows());
+            // do not cache values which might have been read while the project was changed
+            if (changeCount % 2 == 0 && history.getChangeCount() == changeCount) {
+                _cache.put(key, values);
+            }
+        }
+        return values;
+    }
+
+    static protected DistinctValues computeDistinctValues(Project project, int cellIndex, FilteredRows rows) {
+        DistinctValueVisitor visitor = new DistinctValueVisitor(cellIndex);
+        rows.accept(project, visitor);
+        return visitor.getDistinctValues();
+    }
+
+    /**
+     * @return an identifier of a keying function and its parameters, for {@link DistinctValues#getKeys}
+     */
+    static public Object getKeyingID(Object function, Object... params) {
+        return Arrays.asList(function, params == null ? null : Arrays.asList(params));
+    }
+
+    public CacheStats getStats() {
+        return _cache.stats();
+    }
+
+    public void clear() {
+        _cache.invalidateAll();
+    }
+}
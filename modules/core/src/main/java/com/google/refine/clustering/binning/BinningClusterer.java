@@ -53,14 +53,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.browsing.Engine;
-import com.google.refine.browsing.FilteredRows;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
-import com.google.refine.model.Cell;
+import com.google.refine.clustering.DistinctValueCache;
+import com.google.refine.clustering.DistinctValueCache.DistinctValues;
 import com.google.refine.model.Project;
-import com.google.refine.model.Row;
 
 public class BinningClusterer extends Clusterer {
 
@@ -128,63 +126,6 @@ public class BinningClusterer extends Clusterer {
 
     List<Map<String, Integer>> _clusters;
 
-    class BinningRowVisitor implements RowVisitor {
-
-        Keyer _keyer;
-        Object[] _params;
-        BinningParameters _parameters;
-
-        Map<String, Map<String, Integer>> _map = new HashMap<String, Map<String, Integer>>();
-
-        public BinningRowVisitor(Keyer k, BinningParameters parameters) {
-            _keyer = k;
-            _parameters = parameters;
-            if (k instanceof NGramFingerprintKeyer) {
-                if (_parameters != null) {
-                    _params = new Object[1];
-                    _params[0] = _parameters.ngramSize;
-                }
-            }
-        }
-
-        @Override
-        public void start(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public void end(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public boolean visit(Project project, int rowIndex, Row row) {
-            Cell cell = row.getCell(_colindex);
-            if (cell != null && cell.value != null) {
-                Object v = cell.value;
-                String s = (v instanceof String) ? ((String) v) : v.toString();
-                String key = _keyer.key(s, _params);
-                if (_map.containsKey(key)) {
-                    Map<String, Integer> m = _map.get(key);
-                    if (m.containsKey(s)) {
-                        m.put(s, m.get(s) + 1);
-                    } else {
-                        m.put(s, 1);
-                    }
-                } else {
-                    Map<String, Integer> m = new TreeMap<String, Integer>();
-                    m.put(s, 1);
-                    _map.put(key, m);
-                }
-            }
-            return false;
-        }
-
-        public Map<String, Map<String, Integer>> getMap() {
-            return _map;
-        }
-    }
-
     public static class SizeComparator implements Comparator<Map<String, Integer>>, Serializable {
 
         private static final long serialVersionUID = -1390696157208674054L;
@@ -225,14 +166,48 @@ public class BinningClusterer extends Clusterer {
         _parameters = config.getParameters();
     }
 
+    /**
+     * Computes the clusters in two passes: the distinct values of the column are counted in a single scan of the
+     * filtered rows, and only those distinct values are then keyed, on several threads if the keyer allows it. Both
+     * the distinct values and their keys are cached by the project, so that clustering the same column again with
+     * another keyer, or with the same keyer, does not scan the column again.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public void computeClusters(Engine engine) {
-        BinningRowVisitor visitor = new BinningRowVisitor(_keyer, _parameters);
-        FilteredRows filteredRows = engine.getAllFilteredRows();
-        filteredRows.accept(_project, visitor);
+        Object[] params = null;
+        if (_keyer instanceof NGramFingerprintKeyer && _parameters != null) {
+            params = new Object[] { _parameters.ngramSize };
+        }
+        Object[] keyerParams = params;
+        DistinctValues values = _project.getDistinctValueCache().getDistinctValues(_project, _colindex, engine);
+        String[] keys = values.getKeys(DistinctValueCache.getKeyingID(_keyer, keyerParams), _keyer.isThreadSafe(),
+                s -> _keyer.key(s, keyerParams));
+
+        // the values of each key, as indices of the distinct values: most keys have a single value
+        Map<String, Object> bins = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            Object bin = bins.putIfAbsent(keys[i], i);
+            if (bin instanceof Integer) {
+                List<Integer> indices = new ArrayList<>();
+                indices.add((Integer) bin);
+                indices.add(i);
+                bins.put(keys[i], indices);
+            } else if (bin != null) {
+                ((List<Integer>) bin).add(i);
+            }
+        }
 
-        Map<String, Map<String, Integer>> map = visitor.getMap();
-        _clusters = new ArrayList<Map<String, Integer>>(map.values());
+        _clusters = new ArrayList<Map<String, Integer>>();
+        for (Object bin : bins.values()) {
+            if (bin instanceof List) {
+                Map<String, Integer> cluster = new TreeMap<String, Integer>();
+                for (int i : (List<Integer>) bin) {
+                    cluster.put(values.getValue(i), values.getCount(i));
+                }
+                _clusters.add(cluster);
+            }
+        }
         Collections.sort(_clusters, new SizeComparator());
     }
 
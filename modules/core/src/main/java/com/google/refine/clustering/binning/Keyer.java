@@ -41,4 +41,12 @@ public abstract class Keyer {
 
     public abstract String key(String string, Object... params);
 
+    /**
+     * @return true if {@link #key(String, Object...)} can be called from several threads at once, in which case values
+     *         are keyed in parallel when clustering
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
 }
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering.knn;
+
+/**
+ * The Levenshtein distance between two strings, ignoring case: the number of characters to insert, delete or replace
+ * to turn one into the other. It gives the same distances as the one of the Vicino library, but only computes the
+ * cells of the edit matrix which can be within the bound it is given, and stops as soon as the bound is exceeded.
+ */
+public class LevenshteinDistance implements SimilarityDistance {
+
+    @Override
+    public double compute(String a, String b) {
+        return distance(a, b, Math.max(a.length(), b.length()));
+    }
+
+    @Override
+    public double compute(String a, String b, double bound) {
+        if (bound < 0) {
+            return compute(a, b);
+        }
+        // the distance never exceeds the length of the longest string
+        return distance(a, b, (int) Math.min(bound, Math.max(a.length(), b.length())));
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * @return the distance between the strings, or {@code max + 1} if it exceeds {@code max}
+     */
+    static public int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        char[] target = new char[m];
+        for (int j = 0; j < m; j++) {
+            target[j] = Character.toLowerCase(b.charAt(j));
+        }
+
+        // only the cells within max of the diagonal are computed, the others being known to exceed max
+        int exceeded = max + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, exceeded);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = (int) Math.min(m, (long) i + max);
+            current[0] = Math.min(i, exceeded);
+            if (from > 1) {
+                current[from - 1] = exceeded;
+            }
+            int rowMin = from == 1 ? current[0] : exceeded;
+            char c = Character.toLowerCase(a.charAt(i - 1));
+            for (int j = from; j <= to; j++) {
+                int d = previous[j - 1] + (c == target[j - 1] ? 0 : 1);
+                d = Math.min(d, previous[j] + 1);
+                d = Math.min(d, current[j - 1] + 1);
+                d = Math.min(d, exceeded);
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (to < m) {
+                current[to + 1] = exceeded;
+            }
+            if (rowMin >= exceeded) {
+                return exceeded;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+}
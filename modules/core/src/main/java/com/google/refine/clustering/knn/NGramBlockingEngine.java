@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering.knn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the values which are within a radius of each other, comparing only the values which share an n-gram of their
+ * normalized forms (their "block"), as the Vicino {@code NGramClusterer} does.
+ * <p>
+ * The values are searched on several threads when the distance is thread-safe, each value being compared once to each
+ * of the values it shares a block with, however many blocks they share. Blocks larger than {@link #MAX_BLOCK_SIZE}
+ * (n-grams common to a large part of the values) are not compared in full: each value is only compared to the values
+ * following it in the block, in the alphabetical order of the normalized forms, up to that size. The search can be
+ * canceled from another thread, and reports how many values were searched and the clusters found so far.
+ */
+public class NGramBlockingEngine {
+
+    /**
+     * Maximum number of values of a block each value is compared to, set by the refine.clustering.knn.maxBlockSize
+     * system property.
+     */
+    static public final int MAX_BLOCK_SIZE = Integer.getInteger("refine.clustering.knn.maxBlockSize", 500);
+
+    /**
+     * Number of threads the values are searched on, set by the refine.clustering.knn.threads system property.
+     */
+    static public final int THREADS = Integer.getInteger("refine.clustering.knn.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    // number of values each thread takes from the others at once
+    static final protected int CHUNK_SIZE = 64;
+
+    static final protected Pattern EXTRA = Pattern.compile("\\p{Cntrl}|\\p{Punct}");
+    static final protected Pattern WHITESPACE = Pattern.compile("\\p{Space}+");
+
+    static private ThreadPoolExecutor s_executor;
+
+    final protected SimilarityDistance _distance;
+    final protected double _radius;
+    final protected int _ngramSize;
+    final protected AtomicInteger _searched = new AtomicInteger();
+    protected volatile int _total = 0;
+    protected volatile boolean _canceled = false;
+    // the indices of the values found within the radius of each other, the first in the high bits
+    final protected Queue<Long> _pairs = new ConcurrentLinkedQueue<>();
+
+    public NGramBlockingEngine(SimilarityDistance distance, double radius, int ngramSize) {
+        _distance = distance;
+        _radius = radius;
+        _ngramSize = ngramSize;
+    }
+
+    /**
+     * A block: the values sharing an n-gram, by rank.
+     */
+    static protected class Block {
+
+        protected int[] _ranks = new int[2];
+        protected int _size = 0;
+
+        protected void add(int rank) {
+            if (_size == _ranks.length) {
+                _ranks = Arrays.copyOf(_ranks, _size * 2);
+            }
+            _ranks[_size++] = rank;
+        }
+    }
+
+    /**
+     * Finds the clusters of values: for each value within the radius of others, the set of that value and of those
+     * others. Identical sets are only returned once.
+     *
+     * @param values
+     *            the distinct values to cluster
+     * @return the clusters, as indices of the values, largest first
+     * @throws CancellationException
+     *             if the search was canceled
+     */
+    public List<int[]> getClusters(String[] values) {
+        int n = values.length;
+        _total = n;
+        _searched.set(0);
+        _pairs.clear();
+
+        // values are ranked by their normalized form, so that the values compared in large blocks are alike
+        String[] normalized = new String[n];
+        for (int i = 0; i != n; i++) {
+            normalized[i] = normalize(values[i]);
+        }
+        int[] indices = IntStream.range(0, n).boxed()
+                .sorted((i, j) -> normalized[i].compareTo(normalized[j]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        Map<String, Block> blocksByNgram = new HashMap<>();
+        Block[][] blocks = new Block[n][];
+        List<Block> valueBlocks = new ArrayList<>();
+        for (int rank = 0; rank != n; rank++) {
+            checkCanceled();
+            String s = normalized[indices[rank]];
+            valueBlocks.clear();
+            for (int start = 0; start + _ngramSize <= s.length(); start++) {
+                Block block = blocksByNgram.computeIfAbsent(s.substring(start, start + _ngramSize), k -> new Block());
+                // a value repeating an n-gram is only added once to its block
+                if (block._size == 0 || block._ranks[block._size - 1] != rank) {
+                    block.add(rank);
+                    valueBlocks.add(block);
+                }
+            }
+            blocks[rank] = valueBlocks.toArray(new Block[valueBlocks.size()]);
+        }
+        blocksByNgram = null;
+
+        // each thread takes chunks of values in turn and compares them to the values ranked after them
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        int threads = _distance.isThreadSafe() ? Math.max(1, Math.min(THREADS, n / CHUNK_SIZE + 1)) : 1;
+        for (int t = 0; t != threads; t++) {
+            futures.add(getExecutor().submit(() -> search(values, blocks, indices, nextChunk)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            _canceled = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Clustering was interrupted");
+        } catch (ExecutionException e) {
+            _canceled = true;
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        checkCanceled();
+
+        return toClusters(new ArrayList<>(_pairs));
+    }
+
+    /**
+     * @return the clusters of the values found within the radius of each other so far, while
+     *         {@link #getClusters(String[])} runs in another thread
+     */
+    public List<int[]> getPartialClusters() {
+        return toClusters(new ArrayList<>(_pairs));
+    }
+
+    protected void search(String[] values, Block[][] blocks, int[] indices, AtomicInteger nextChunk) {
+        int n = indices.length;
+        // the rank of the last value each value was compared to, so that values sharing several blocks are compared
+        // once
+        int[] comparedTo = new int[n];
+        Arrays.fill(comparedTo, -1);
+        int chunk;
+        while (!_canceled && (chunk = nextChunk.getAndIncrement()) * CHUNK_SIZE < n) {
+            int end = Math.min(n, (chunk + 1) * CHUNK_SIZE);
+            for (int rank = chunk * CHUNK_SIZE; rank != end && !_canceled; rank++) {
+                String value = values[indices[rank]];
+                for (Block block : blocks[rank]) {
+                    int position = Arrays.binarySearch(block._ranks, 0, block._size, rank);
+                    int last = Math.min(block._size, position + 1 + MAX_BLOCK_SIZE);
+                    for (int k = position + 1; k < last; k++) {
+                        int other = block._ranks[k];
+                        if (comparedTo[other] == rank) {
+                            continue;
+                        }
+                        comparedTo[other] = rank;
+                        if (_radius < 0 || _distance.compute(value, values[indices[other]], _radius) <= _radius) {
+                            _pairs.add(((long) indices[rank] << 32) | indices[other]);
+                        }
+                    }
+                }
+            }
+            _searched.addAndGet(end - chunk * CHUNK_SIZE);
+        }
+    }
+
+    protected List<int[]> toClusters(List<Long> pairs) {
+        Map<Integer, Set<Integer>> neighbours = new HashMap<>();
+        for (long pair : pairs) {
+            int a = (int) (pair >>> 32);
+            int b = (int) pair;
+            neighbours.computeIfAbsent(a, k -> new HashSet<>()).add(b);
+            neighbours.computeIfAbsent(b, k -> new HashSet<>()).add(a);
+        }
+        Set<List<Integer>> clusters = new LinkedHashSet<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : neighbours.entrySet()) {
+            List<Integer> cluster = new ArrayList<>(entry.getValue());
+            cluster.add(entry.getKey());
+            cluster.sort(null);
+            clusters.add(cluster);
+        }
+        List<int[]> result = new ArrayList<>(clusters.size());
+        for (List<Integer> cluster : clusters) {
+            result.add(cluster.stream().mapToInt(Integer::intValue).toArray());
+        }
+        result.sort((a, b) -> a.length != b.length ? b.length - a.length : Arrays.compare(a, b));
+        return result;
+    }
+
+    /**
+     * Normalizes a value the way the Vicino n-gram tokenizer does before it is split in n-grams.
+     */
+    static protected String normalize(String s) {
+        s = EXTRA.matcher(s.trim()).replaceAll("");
+        s = WHITESPACE.matcher(s).replaceAll(" ");
+        return s.toLowerCase();
+    }
+
+    protected void checkCanceled() {
+        if (_canceled) {
+            throw new CancellationException("Clustering was canceled");
+        }
+    }
+
+    /**
+     * Stops the search: {@link #getClusters(String[])} throws a {@link CancellationException} soon after.
+     */
+    public void cancel() {
+        _canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return _canceled;
+    }
+
+    /**
+     * @return the percentage of the values searched so far
+     */
+    public int getProgress() {
+        int total = _total;
+        return total == 0 ? 0 : (int) (_searched.get() * 100L / total);
+    }
+
+    static synchronized protected ThreadPoolExecutor getExecutor() {
+        if (s_executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            s_executor = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "knn-clustering-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            s_executor.allowCoreThreadTimeOut(true);
+        }
+        return s_executor;
+    }
+}
@@ -40,4 +40,21 @@ public interface SimilarityDistance {
      * their differences increase.
      */
     public double compute(String a, String b);
+
+    /**
+     * Compute the distance between two strings, knowing that it is only of interest if it does not exceed a bound.
+     * Distances which can tell early that the bound is exceeded may stop there and return any value greater than the
+     * bound.
+     */
+    public default double compute(String a, String b, double bound) {
+        return compute(a, b);
+    }
+
+    /**
+     * @return true if the distance can be computed from several threads at once, in which case values are compared
+     *         in parallel when clustering
+     */
+    public default boolean isThreadSafe() {
+        return false;
+    }
 }
@@ -34,33 +34,30 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.clustering.knn;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
-import edu.mit.simile.vicino.clustering.NGramClusterer;
-import edu.mit.simile.vicino.clustering.VPTreeClusterer;
-import edu.mit.simile.vicino.distances.Distance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.browsing.Engine;
-import com.google.refine.browsing.FilteredRows;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
-import com.google.refine.model.Cell;
+import com.google.refine.clustering.DistinctValueCache.DistinctValues;
 import com.google.refine.model.Project;
-import com.google.refine.model.Row;
 
 public class kNNClusterer extends Clusterer {
 
@@ -132,116 +129,72 @@ public class kNNClusterer extends Clusterer {
 
     final static Logger logger = LoggerFactory.getLogger("kNN_clusterer");
 
-    class VPTreeClusteringRowVisitor implements RowVisitor {
+    protected volatile DistinctValues _values;
+    protected volatile NGramBlockingEngine _engine;
+    protected volatile boolean _canceled = false;
 
-        Distance _distance;
-        kNNClustererConfigParameters _params;
-        VPTreeClusterer _clusterer;
-
-        public VPTreeClusteringRowVisitor(Distance d, kNNClustererConfigParameters params) {
-            _distance = d;
-            _clusterer = new VPTreeClusterer(_distance);
-            _params = params;
-        }
-
-        @Override
-        public void start(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public void end(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public boolean visit(Project project, int rowIndex, Row row) {
-            Cell cell = row.getCell(_colindex);
-            if (cell != null && cell.value != null) {
-                Object v = cell.value;
-                String s = (v instanceof String) ? ((String) v) : v.toString();
-                _clusterer.populate(s);
-                count(s);
-            }
-            return false;
-        }
-
-        public List<Set<Serializable>> getClusters() {
-            return _clusterer.getClusters(_params.radius);
-        }
+    public void initializeFromConfig(Project project, kNNClustererConfig config) {
+        super.initializeFromConfig(project, config);
+        _distance = config.getDistance();
+        _params = config.getParameters();
     }
 
-    class BlockingClusteringRowVisitor implements RowVisitor {
-
-        SimilarityDistance _distance;
-        double _radius = 1.0d;
-        int _blockingNgramSize = 6;
-        HashSet<String> _data;
-        NGramClusterer _clusterer;
-
-        private class DistanceWrapper extends Distance {
-
-            private final SimilarityDistance _d;
-
-            protected DistanceWrapper(SimilarityDistance d) {
-                _d = d;
-            }
-
-            @Override
-            public double d(String arg0, String arg1) {
-                return _d.compute(arg0, arg1);
-            }
-        }
-
-        public BlockingClusteringRowVisitor(SimilarityDistance _distance2, kNNClustererConfigParameters params) {
-            _distance = _distance2;
-            _data = new HashSet<String>();
-            _blockingNgramSize = params.blockingNgramSize;
-            _radius = params.radius;
-            _clusterer = new NGramClusterer(new DistanceWrapper(_distance), _blockingNgramSize);
-        }
-
-        @Override
-        public void start(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public void end(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public boolean visit(Project project, int rowIndex, Row row) {
-            Cell cell = row.getCell(_colindex);
-            if (cell != null && cell.value != null) {
-                Object v = cell.value;
-                String s = (v instanceof String) ? ((String) v) : v.toString().intern();
-                _clusterer.populate(s);
-                count(s);
+    @Override
+    public void computeClusters(Engine engine) {
+        DistinctValues values = _project.getDistinctValueCache().getDistinctValues(_project, _colindex, engine);
+        String[] strings = new String[values.size()];
+        for (int i = 0; i != strings.length; i++) {
+            strings[i] = values.getValue(i);
+        }
+
+        _values = values;
+        _engine = new NGramBlockingEngine(_distance, _params.radius, _params.blockingNgramSize);
+        if (_canceled) {
+            _engine.cancel();
+        }
+        long start = System.nanoTime();
+        List<int[]> clusters = _engine.getClusters(strings);
+        logger.debug("compared {} distinct values in {}ms", strings.length, (System.nanoTime() - start) / 1000000);
+
+        _clusters = new ArrayList<>(clusters.size());
+        for (int[] cluster : clusters) {
+            Set<Serializable> set = new TreeSet<>();
+            for (int index : cluster) {
+                set.add(values.getValue(index));
+                _counts.put(values.getValue(index), values.getCount(index));
             }
-            return false;
-        }
-
-        public List<Set<Serializable>> getClusters() {
-            return _clusterer.getClusters(_radius);
+            _clusters.add(set);
         }
     }
 
-    public void initializeFromConfig(Project project, kNNClustererConfig config) {
-        super.initializeFromConfig(project, config);
-        _distance = config.getDistance();
-        _params = config.getParameters();
+    @Override
+    public List<List<ClusteredEntry>> getPartialClusters() {
+        NGramBlockingEngine engine = _engine;
+        DistinctValues values = _values;
+        if (engine == null || values == null) {
+            return Collections.emptyList();
+        }
+        return engine.getPartialClusters().stream()
+                .map(cluster -> Arrays.stream(cluster)
+                        .mapToObj(index -> new ClusteredEntry(values.getValue(index), values.getCount(index)))
+                        .sorted(ClusteredEntry.comparator)
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public void computeClusters(Engine engine) {
-        // VPTreeClusteringRowVisitor visitor = new VPTreeClusteringRowVisitor(_distance,_config);
-        BlockingClusteringRowVisitor visitor = new BlockingClusteringRowVisitor(_distance, _params);
-        FilteredRows filteredRows = engine.getAllFilteredRows();
-        filteredRows.accept(_project, visitor);
+    public void cancel() {
+        _canceled = true;
+        NGramBlockingEngine engine = _engine;
+        if (engine != null) {
+            engine.cancel();
+        }
+    }
 
-        _clusters = visitor.getClusters();
+    @Override
+    public int getProgress() {
+        NGramBlockingEngine engine = _engine;
+        return engine == null ? 0 : engine.getProgress();
     }
 
     public static class ValuesComparator implements Comparator<Entry<Serializable, Integer>>, Serializable {
@@ -268,12 +221,4 @@ public class kNNClusterer extends Clusterer {
                 .map(m -> getClusteredEntries(m))
                 .collect(Collectors.toList());
     }
-
-    private void count(Serializable s) {
-        if (_counts.containsKey(s)) {
-            _counts.put(s, _counts.get(s) + 1);
-        } else {
-            _counts.put(s, 1);
-        }
-    }
 }
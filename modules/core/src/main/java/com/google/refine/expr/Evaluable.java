@@ -106,4 +106,25 @@ public interface Evaluable {
         return this;
     }
 
+    /**
+     * Whether this expression can be evaluated from several threads at once, each with its own bindings. When it
+     * cannot, rows are evaluated one after the other.
+     *
+     * @return false by default (for compatibility with older extensions)
+     */
+    public default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Whether this expression always evaluates to the same value on the same row of the same version of the project.
+     * Expressions reading other projects, the current time or random numbers are not deterministic: their values
+     * cannot be cached until the project changes.
+     *
+     * @return false by default (for compatibility with older extensions)
+     */
+    public default boolean isDeterministic() {
+        return false;
+    }
+
 }
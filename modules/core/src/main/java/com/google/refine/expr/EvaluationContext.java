@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import java.util.Objects;
+import java.util.Properties;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Bindings in which expressions are evaluated, reused from one row to the next. The variables describing the current
+ * row ({@code rowIndex}, {@code row}, {@code cells}, {@code cell} and {@code value}) are held in typed fields instead of
+ * the underlying hash table, and the {@link WrappedRow}, {@link CellTuple} and {@link WrappedCell} objects are only
+ * created when an expression reads them.
+ * <p>
+ * This class extends {@link Properties} so that it can be passed to existing expression languages and {@link Binder}s:
+ * {@link #get(Object)}, {@link #put(Object, Object)}, {@link #remove(Object)} and {@link #containsKey(Object)} see the
+ * row variables, while other methods of {@link Properties} (such as iteration) only see the other variables.
+ */
+public class EvaluationContext extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    static public final int ROW_INDEX = 0;
+    static public final int ROW = 1;
+    static public final int CELLS = 2;
+    static public final int CELL = 3;
+    static public final int VALUE = 4;
+    static protected final int SLOT_COUNT = 5;
+
+    /**
+     * Marks a slot whose value is derived from the current row when it is first read
+     */
+    static private final Object UNRESOLVED = new Object();
+
+    protected Project _project;
+    protected Row _row;
+    protected int _rowIndex;
+    protected String _columnName;
+    protected Cell _cell;
+    // the index of the cell read when the variable is first read, if _cell was not given
+    protected int _cellIndex = -1;
+    final protected Object[] _slots = new Object[SLOT_COUNT];
+
+    public EvaluationContext(Project project) {
+        super();
+        if (project != null) {
+            super.put("project", project);
+        }
+        _project = project;
+    }
+
+    /**
+     * @return the slot holding the variable with the given name, or -1 if it is not a row variable
+     */
+    static public int getSlot(Object name) {
+        if (!(name instanceof String)) {
+            return -1;
+        }
+        switch ((String) name) {
+            case "rowIndex":
+                return ROW_INDEX;
+            case "row":
+                return ROW;
+            case "cells":
+                return CELLS;
+            case "cell":
+                return CELL;
+            case "value":
+                return VALUE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Binds the row variables to a new row, without creating any object.
+     */
+    public void bind(Row row, int rowIndex, String columnName, Cell cell) {
+        _row = row;
+        _rowIndex = rowIndex;
+        _columnName = columnName;
+        _cell = cell;
+        _cellIndex = -1;
+        if (columnName != null) {
+            super.put("columnName", columnName);
+        }
+        _slots[ROW_INDEX] = UNRESOLVED;
+        _slots[ROW] = UNRESOLVED;
+        _slots[CELLS] = UNRESOLVED;
+        _slots[CELL] = cell == null ? null : UNRESOLVED;
+        _slots[VALUE] = cell == null ? null : cell.value;
+    }
+
+    /**
+     * Binds the row variables to a new row and the cell at the given index of that row. Cells stored without a
+     * {@link Cell} object are only created if the expression reads the {@code cell} variable.
+     */
+    public void bind(Row row, int rowIndex, String columnName, int cellIndex) {
+        Object value = row.getCellValue(cellIndex);
+        // cells without a value are rare: creating them tells whether there is a cell at all
+        bind(row, rowIndex, columnName, value != null ? null : row.getCell(cellIndex));
+        if (value != null) {
+            _cellIndex = cellIndex;
+            _slots[CELL] = UNRESOLVED;
+            _slots[VALUE] = value;
+        }
+    }
+
+    public Project getProject() {
+        return _project;
+    }
+
+    /**
+     * @return the value of a row variable, or null if it is not bound
+     */
+    public Object get(int slot) {
+        Object value = _slots[slot];
+        if (value == UNRESOLVED) {
+            value = resolve(slot);
+            _slots[slot] = value;
+        }
+        return value;
+    }
+
+    protected Object resolve(int slot) {
+        switch (slot) {
+            case ROW_INDEX:
+                return _rowIndex;
+            case ROW:
+                return new WrappedRow(_project, _rowIndex, _row);
+            case CELLS:
+                return new CellTuple(_project, _row);
+            case CELL:
+                return new WrappedCell(_project, _columnName, _cell != null ? _cell : _row.getCell(_cellIndex));
+            default:
+                throw new IllegalArgumentException("Unknown slot " + slot);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = getSlot(key);
+        return slot >= 0 ? get(slot) : super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = getSlot(key);
+        return slot >= 0 ? _slots[slot] != null : super.containsKey(key);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        int slot = getSlot(key);
+        if (slot < 0) {
+            if ("project".equals(key)) {
+                _project = (Project) value;
+            }
+            return super.put(key, value);
+        }
+        Object previous = get(slot);
+        _slots[slot] = Objects.requireNonNull(value);
+        return previous;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        int slot = getSlot(key);
+        if (slot < 0) {
+            return super.remove(key);
+        }
+        Object previous = get(slot);
+        _slots[slot] = null;
+        return previous;
+    }
+}
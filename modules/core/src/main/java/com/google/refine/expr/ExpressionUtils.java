@@ -57,7 +57,7 @@ public class ExpressionUtils {
     }
 
     static public Properties createBindings(Project project) {
-        Properties bindings = new Properties();
+        Properties bindings = new EvaluationContext(project);
 
         bindings.put("true", true);
         bindings.put("false", false);
@@ -73,6 +73,14 @@ public class ExpressionUtils {
     }
 
     static public void bind(Properties bindings, Row row, int rowIndex, String columnName, Cell cell) {
+        if (bindings instanceof EvaluationContext) {
+            ((EvaluationContext) bindings).bind(row, rowIndex, columnName, cell);
+            for (Binder binder : s_binders) {
+                binder.bind(bindings, row, rowIndex, columnName, cell);
+            }
+            return;
+        }
+
         Project project = (Project) bindings.get("project");
 
         bindings.put("rowIndex", rowIndex);
@@ -100,6 +108,19 @@ public class ExpressionUtils {
         }
     }
 
+    /**
+     * Binds the row variables to a new row and the cell at the given index of that row, or to no cell if the index is
+     * negative. Unless {@link Binder}s are registered, cells stored without a {@link Cell} object are only created if
+     * the expression reads them.
+     */
+    static public void bind(Properties bindings, Row row, int rowIndex, String columnName, int cellIndex) {
+        if (bindings instanceof EvaluationContext && s_binders.isEmpty()) {
+            ((EvaluationContext) bindings).bind(row, rowIndex, columnName, cellIndex);
+        } else {
+            bind(bindings, row, rowIndex, columnName, row.getCell(cellIndex));
+        }
+    }
+
     static public boolean isError(Object o) {
         return o instanceof EvalError;
     }
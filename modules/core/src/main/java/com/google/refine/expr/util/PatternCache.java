@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr.util;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded cache of compiled regular expressions, shared by all expressions evaluated in this process. Expressions
+ * which match a regular expression supplied as a string (such as {@code value.match("(\d+)-(\d+)")}) would otherwise
+ * compile it again for every cell they are evaluated on. The cache is safe for concurrent use.
+ */
+public class PatternCache {
+
+    /**
+     * The maximum number of compiled patterns kept, configured with the {@code refine.expr.patternCacheSize} system
+     * property.
+     */
+    static public final int MAXIMUM_SIZE = Integer.getInteger("refine.expr.patternCacheSize", 512);
+
+    static private final Cache<Key, Pattern> s_cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * Returns the compiled form of a regular expression, compiling it only if it is not cached yet.
+     *
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the expression is not a valid regular expression, exactly like {@link Pattern#compile(String)}
+     */
+    static public Pattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Returns the compiled form of a regular expression with the given flags, compiling it only if it is not cached
+     * yet.
+     */
+    static public Pattern compile(String regex, int flags) {
+        Key key = new Key(regex, flags);
+        Pattern pattern = s_cache.getIfPresent(key);
+        if (pattern == null) {
+            // Compiled outside of the cache loader so that syntax errors reach the caller unwrapped.
+            // Two threads may compile the same pattern concurrently, which is harmless.
+            pattern = Pattern.compile(regex, flags);
+            s_cache.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    static public long size() {
+        return s_cache.size();
+    }
+
+    static public CacheStats getStats() {
+        return s_cache.stats();
+    }
+
+    static public void invalidateAll() {
+        s_cache.invalidateAll();
+    }
+
+    static private class Key {
+
+        final String regex;
+        final int flags;
+
+        Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(regex, flags);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return flags == other.flags && regex.equals(other.regex);
+        }
+    }
+}
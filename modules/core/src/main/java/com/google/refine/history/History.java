@@ -46,6 +46,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.ProjectManager;
@@ -118,6 +119,8 @@ public class History {
     protected List<HistoryEntry> _pastEntries; // done changes, can be undone
     @JsonProperty("future")
     protected List<HistoryEntry> _futureEntries; // undone changes, can be redone
+    @JsonIgnore
+    protected volatile long _changeCount = 0; // odd while a change is being applied or reverted
 
     public History(Project project) {
         _projectID = project.id;
@@ -165,6 +168,37 @@ public class History {
         projectMetadata.updateModified(); // Redundant, but for safety in case setRowCount implementation changes
     }
 
+    /**
+     * @return the ID of the last entry applied to the project, or 0 if the project is in its initial state
+     */
+    @JsonIgnore
+    synchronized public long getCurrentEntryID() {
+        return _pastEntries.isEmpty() ? 0 : _pastEntries.get(_pastEntries.size() - 1).id;
+    }
+
+    /**
+     * Counts the changes applied to or reverted from the project, for caches of data derived from the rows. The count
+     * is incremented before and after each change, so it is odd while the project is being changed.
+     */
+    @JsonIgnore
+    public long getChangeCount() {
+        return _changeCount;
+    }
+
+    /**
+     * Called by history entries, with the project lock held, before applying or reverting their change.
+     */
+    void beginChange() {
+        _changeCount++;
+    }
+
+    /**
+     * Called by history entries, with the project lock held, after applying or reverting their change.
+     */
+    void endChange() {
+        _changeCount++;
+    }
+
     synchronized public List<HistoryEntry> getLastPastEntries(int count) {
         if (count <= 0) {
             return new LinkedList<HistoryEntry>(_pastEntries);
@@ -173,6 +207,17 @@ public class History {
         }
     }
 
+    /**
+     * Replaces the entries of this history by those of another history of the same project, once the rows of the
+     * project were brought by other means to the state that history describes.
+     */
+    synchronized public void setEntries(History history) {
+        _pastEntries = new ArrayList<HistoryEntry>(history.getLastPastEntries(0));
+        synchronized (history) {
+            _futureEntries = new ArrayList<HistoryEntry>(history._futureEntries);
+        }
+    }
+
     synchronized public void undoRedo(long lastDoneEntryID) {
         if (lastDoneEntryID == 0) {
             // undo all the way back to the start of the project
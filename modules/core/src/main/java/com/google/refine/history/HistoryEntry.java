@@ -151,19 +151,27 @@ public class HistoryEntry {
         }
 
         synchronized (project) {
-            getChange().apply(project);
+            project.history.beginChange();
+            // the change works on a copy of the rows, published once it is complete
+            project.getRowStore().beginWrite();
+            try {
+                getChange().apply(project);
 
-            // When a change is applied, it can hang on to old data (in order to be able
-            // to revert later). Hence, we need to save the change out.
+                // When a change is applied, it can hang on to old data (in order to be able
+                // to revert later). Hence, we need to save the change out.
 
-            try {
-                _manager.saveChange(this);
-            } catch (Exception e) {
-                e.printStackTrace();
+                try {
+                    _manager.saveChange(this);
+                } catch (Exception e) {
+                    e.printStackTrace();
 
-                getChange().revert(project);
+                    getChange().revert(project);
 
-                throw new RuntimeException("Failed to apply change", e);
+                    throw new RuntimeException("Failed to apply change", e);
+                }
+            } finally {
+                project.getRowStore().endWrite();
+                project.history.endChange();
             }
         }
     }
@@ -172,7 +180,16 @@ public class HistoryEntry {
         if (getChange() == null) {
             _manager.loadChange(this);
         }
-        getChange().revert(project);
+        synchronized (project) {
+            project.history.beginChange();
+            project.getRowStore().beginWrite();
+            try {
+                getChange().revert(project);
+            } finally {
+                project.getRowStore().endWrite();
+                project.history.endChange();
+            }
+        }
     }
 
     static public HistoryEntry load(Project project, String s) throws IOException {
@@ -45,6 +45,7 @@ import com.google.refine.ProjectMetadata;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.model.Cell;
+import com.google.refine.model.CellValueDictionary;
 import com.google.refine.model.Column;
 import com.google.refine.model.ModelException;
 import com.google.refine.model.Project;
@@ -140,6 +141,8 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
 
         List<Object> cells = null;
         int rowsWithData = 0;
+        // shares the repeated string values of each column
+        CellValueDictionary dictionary = new CellValueDictionary();
 
         try {
             while (!job.canceled && (cells = reader.getNextRowOfCells()) != null) {
@@ -191,7 +194,7 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
 
                             Object value = cells.get(c);
                             if (value instanceof Cell) {
-                                row.setCell(cellIndex, (Cell) value);
+                                row.setCell(cellIndex, dictionary.intern(cellIndex, (Cell) value));
                                 rowHasData = true;
                                 columnsHasData.set(cellIndex, true);
                             } else if (ExpressionUtils.isNonBlankData(value)) {
@@ -201,6 +204,9 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
                                         value = CharMatcher.whitespace().trimFrom(((String) value));
                                     }
                                     storedValue = guessCellValueTypes ? ImporterUtilities.parseCellValue((String) value) : (String) value;
+                                    if (storedValue instanceof String) {
+                                        storedValue = dictionary.intern(cellIndex, (String) storedValue);
+                                    }
 
                                 } else {
                                     storedValue = ExpressionUtils.wrapStorable(value);
@@ -226,6 +232,7 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
                     }
                 }
             }
+            dictionary.logStats(logger, "table");
             if (!storeBlankColumns) {// if user don't choose storeBlankColumns, delete all empty columns.
                 deleteEmptyColumns(columnsHasData, project);
             }
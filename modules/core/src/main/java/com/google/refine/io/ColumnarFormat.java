@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+/**
+ * Constants describing the layout of the columnar project data files, one per saved snapshot (see
+ * {@link ProjectUtilities#getDataFile(java.io.File)}).
+ * <p>
+ * The file starts with a magic number, a format version and a fixed-size table of contents holding the offsets of the
+ * following sections:
+ * <ul>
+ * <li>the project header (column model, history and overlay models) in the textual format of
+ * {@link com.google.refine.model.Project#saveHeaderToOutputStream};</li>
+ * <li>one block per cell index, made of a tag byte per row, an 8-byte payload per row and, if any cell of that column
+ * is reconciled, an 8-byte recon id per row;</li>
+ * <li>a flag byte per row (flagged and starred);</li>
+ * <li>the recon pool in its textual format;</li>
+ * <li>the string dictionary, to which string, date, error and other payloads refer.</li>
+ * </ul>
+ * All fixed-width sections can be addressed directly from a row index, which lets the reader decode any row without
+ * touching the others.
+ * <p>
+ * Since version 2, the table of contents also holds a random id identifying the snapshot of the project stored in the
+ * file, which {@link ProjectSaveLog} refers to.
+ */
+final class ColumnarFormat {
+
+    static final int MAGIC = 0x4F524346; // "ORCF"
+    static final int VERSION = 2;
+
+    static final int TOC_OFFSET = 8;
+    static final int TOC_HEADER_OFFSET = 0;
+    static final int TOC_HEADER_LENGTH = 1;
+    static final int TOC_POOL_OFFSET = 2;
+    static final int TOC_POOL_LENGTH = 3;
+    static final int TOC_ROW_COUNT = 4;
+    static final int TOC_COLUMN_COUNT = 5;
+    static final int TOC_ROW_FLAGS_OFFSET = 6;
+    static final int TOC_STRING_COUNT = 7;
+    static final int TOC_STRING_OFFSETS_OFFSET = 8;
+    static final int TOC_STRING_DATA_OFFSET = 9;
+    static final int TOC_COLUMN_DIRECTORY_OFFSET = 10;
+    static final int TOC_SNAPSHOT_ID = 11;
+    static final int TOC_SIZE = 12;
+    static final int TOC_SIZE_V1 = 11;
+
+    static final int COLUMN_DIRECTORY_ENTRY_SIZE = 3 * Long.BYTES;
+
+    // cell tags: the low bits store the type of the value, the high bit marks reconciled cells
+    static final byte TAG_ABSENT = 0; // beyond the end of the row's cell list
+    static final byte TAG_NULL_CELL = 1;
+    static final byte TAG_NULL_VALUE = 2;
+    static final byte TAG_STRING = 3;
+    static final byte TAG_INTEGER = 4;
+    static final byte TAG_LONG = 5;
+    static final byte TAG_DOUBLE = 6;
+    static final byte TAG_BOOLEAN = 7;
+    static final byte TAG_DATE = 8;
+    static final byte TAG_ERROR = 9;
+    static final byte TAG_JSON = 10; // any other value, stored as its JSON serialization
+    static final byte TAG_TYPE_MASK = 0x7F;
+    static final byte TAG_RECON = (byte) 0x80;
+
+    static final byte ROW_FLAGGED = 1;
+    static final byte ROW_STARRED = 2;
+
+    private ColumnarFormat() {
+    }
+}
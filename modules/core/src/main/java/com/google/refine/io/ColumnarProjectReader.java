@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.model.RowStore;
+import com.google.refine.util.ParsingUtilities;
+import com.google.refine.util.Pool;
+
+/**
+ * Reads projects stored in the columnar binary format written by {@link ColumnarProjectWriter}. The file is memory
+ * mapped and every row can be decoded independently from the others.
+ */
+public class ColumnarProjectReader implements Closeable {
+
+    final static Logger logger = LoggerFactory.getLogger("columnar_project_reader");
+
+    final protected MappedFile _file;
+    final protected long[] _toc = new long[ColumnarFormat.TOC_SIZE];
+    final protected int _rowCount;
+    final protected int _columnCount;
+    final protected long[] _directory;
+    protected String[] _strings;
+    protected boolean _shareStrings = true;
+
+    public ColumnarProjectReader(File file) throws IOException {
+        _file = new MappedFile(file);
+        try {
+            if (_file.length() < ColumnarFormat.TOC_OFFSET + ColumnarFormat.TOC_SIZE_V1 * Long.BYTES
+                    || _file.getInt(0) != ColumnarFormat.MAGIC) {
+                throw new IOException("Not a columnar project file: " + file.getAbsolutePath());
+            }
+            int version = _file.getInt(Integer.BYTES);
+            if (version != ColumnarFormat.VERSION && version != 1) {
+                throw new IOException("Unsupported columnar project file version " + version + ": " + file.getAbsolutePath());
+            }
+            // files of the first version have no snapshot id
+            int tocSize = version == 1 ? ColumnarFormat.TOC_SIZE_V1 : ColumnarFormat.TOC_SIZE;
+            for (int i = 0; i < tocSize; i++) {
+                _toc[i] = _file.getLong(ColumnarFormat.TOC_OFFSET + (long) i * Long.BYTES);
+            }
+            _rowCount = (int) _toc[ColumnarFormat.TOC_ROW_COUNT];
+            _columnCount = (int) _toc[ColumnarFormat.TOC_COLUMN_COUNT];
+            _directory = new long[_columnCount * 3];
+            for (int i = 0; i < _directory.length; i++) {
+                _directory[i] = _file.getLong(_toc[ColumnarFormat.TOC_COLUMN_DIRECTORY_OFFSET] + (long) i * Long.BYTES);
+            }
+        } catch (IOException | RuntimeException e) {
+            _file.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return _file.getFile();
+    }
+
+    public int getRowCount() {
+        return _rowCount;
+    }
+
+    /**
+     * @return the random id of the snapshot stored in this file, or 0 if the file predates snapshot ids
+     */
+    public long getSnapshotID() {
+        return _toc[ColumnarFormat.TOC_SNAPSHOT_ID];
+    }
+
+    /**
+     * @return the number of cell indices stored for each row
+     */
+    public int getColumnCount() {
+        return _columnCount;
+    }
+
+    /**
+     * Loads the whole project, rows included.
+     */
+    public Project loadProject(long id) throws IOException {
+        long start = System.currentTimeMillis();
+
+        Pool pool = loadPool();
+        Project project = loadHeader(id, pool);
+        for (int r = 0; r < _rowCount; r++) {
+            project.rows.add(readRow(r, pool));
+        }
+        project.columnModel.setMaxCellIndex(_columnCount - 1);
+        project.update();
+
+        logger.info("Decoded {} rows of project {} in {} ms", _rowCount, id, System.currentTimeMillis() - start);
+        return project;
+    }
+
+    /**
+     * Loads the project but leaves its rows on disk: they are decoded page by page when accessed. The rows of the
+     * project take ownership of this reader, which is closed when the project is disposed.
+     */
+    public Project loadPagedProject(long id) throws IOException {
+        Pool pool = loadPool();
+        Project project = loadHeader(id, pool);
+        // decoded strings are only kept as long as the pages holding them, so that memory use stays bounded
+        _shareStrings = false;
+        project.getRowStore().setSource(new RowStore.RowSource() {
+
+            @Override
+            public int getRowCount() {
+                return _rowCount;
+            }
+
+            @Override
+            public Row readRow(int rowIndex) {
+                return ColumnarProjectReader.this.readRow(rowIndex, pool);
+            }
+
+            @Override
+            public void close() throws IOException {
+                ColumnarProjectReader.this.close();
+            }
+        });
+        project.columnModel.setMaxCellIndex(_columnCount - 1);
+        project.update();
+
+        logger.info("Opened project {} with {} paged rows", id, _rowCount);
+        return project;
+    }
+
+    /**
+     * Loads the project without any of its rows.
+     */
+    public Project loadHeader(long id, Pool pool) throws IOException {
+        byte[] header = _file.getBytes(_toc[ColumnarFormat.TOC_HEADER_OFFSET], (int) _toc[ColumnarFormat.TOC_HEADER_LENGTH]);
+        return Project.loadFromInputStream(new ByteArrayInputStream(header), id, pool);
+    }
+
+    public Pool loadPool() throws IOException {
+        Pool pool = new Pool();
+        byte[] bytes = _file.getBytes(_toc[ColumnarFormat.TOC_POOL_OFFSET], (int) _toc[ColumnarFormat.TOC_POOL_LENGTH]);
+        pool.load(new ByteArrayInputStream(bytes));
+        return pool;
+    }
+
+    public Row readRow(int rowIndex, Pool pool) {
+        if (rowIndex < 0 || rowIndex >= _rowCount) {
+            throw new IndexOutOfBoundsException("Row index " + rowIndex + " out of range, row count " + _rowCount);
+        }
+        int cellCount = 0;
+        byte[] tags = new byte[_columnCount];
+        for (int c = 0; c < _columnCount; c++) {
+            tags[c] = _file.getByte(_directory[c * 3] + rowIndex);
+            if (tags[c] != ColumnarFormat.TAG_ABSENT) {
+                cellCount = c + 1;
+            }
+        }
+
+        Row row = new Row(cellCount);
+        for (int c = 0; c < cellCount; c++) {
+            row.cells.add(readCell(tags[c], c, rowIndex, pool));
+        }
+        byte flags = _file.getByte(_toc[ColumnarFormat.TOC_ROW_FLAGS_OFFSET] + rowIndex);
+        row.flagged = (flags & ColumnarFormat.ROW_FLAGGED) != 0;
+        row.starred = (flags & ColumnarFormat.ROW_STARRED) != 0;
+        return row;
+    }
+
+    protected Cell readCell(byte tag, int columnIndex, int rowIndex, Pool pool) {
+        byte type = (byte) (tag & ColumnarFormat.TAG_TYPE_MASK);
+        if (type == ColumnarFormat.TAG_ABSENT || type == ColumnarFormat.TAG_NULL_CELL) {
+            return null;
+        }
+        long payload = _file.getLong(_directory[columnIndex * 3 + 1] + (long) rowIndex * Long.BYTES);
+        Recon recon = null;
+        if ((tag & ColumnarFormat.TAG_RECON) != 0) {
+            long reconId = _file.getLong(_directory[columnIndex * 3 + 2] + (long) rowIndex * Long.BYTES);
+            recon = pool.getRecon(Long.toString(reconId));
+        }
+        return new Cell(decodeValue(type, payload), recon);
+    }
+
+    protected Serializable decodeValue(byte type, long payload) {
+        switch (type) {
+            case ColumnarFormat.TAG_NULL_VALUE:
+                return null;
+            case ColumnarFormat.TAG_STRING:
+                return getString((int) payload);
+            case ColumnarFormat.TAG_INTEGER:
+                return (int) payload;
+            case ColumnarFormat.TAG_LONG:
+                return payload;
+            case ColumnarFormat.TAG_DOUBLE:
+                return Double.longBitsToDouble(payload);
+            case ColumnarFormat.TAG_BOOLEAN:
+                return payload != 0L;
+            case ColumnarFormat.TAG_DATE:
+                return ParsingUtilities.stringToDate(getString((int) payload));
+            case ColumnarFormat.TAG_ERROR:
+                return new EvalError(getString((int) payload));
+            case ColumnarFormat.TAG_JSON:
+                try {
+                    return (Serializable) ParsingUtilities.mapper.readValue(getString((int) payload), Object.class);
+                } catch (IOException e) {
+                    return new EvalError(e.getMessage());
+                }
+            default:
+                throw new IllegalStateException("Unknown cell tag " + type + " in " + _file.getFile().getAbsolutePath());
+        }
+    }
+
+    /**
+     * Decodes an entry of the string dictionary. Unless the project is paged, decoded strings are kept so that all the
+     * cells holding the same string share a single instance.
+     */
+    public String getString(int id) {
+        if (!_shareStrings) {
+            return decodeString(id);
+        }
+        String[] strings = _strings;
+        if (strings == null) {
+            strings = new String[(int) _toc[ColumnarFormat.TOC_STRING_COUNT]];
+            _strings = strings;
+        }
+        String s = strings[id];
+        if (s == null) {
+            s = decodeString(id);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    protected String decodeString(int id) {
+        long offsets = _toc[ColumnarFormat.TOC_STRING_OFFSETS_OFFSET] + (long) id * Long.BYTES;
+        long start = _file.getLong(offsets);
+        long end = _file.getLong(offsets + Long.BYTES);
+        byte[] bytes = _file.getBytes(_toc[ColumnarFormat.TOC_STRING_DATA_OFFSET] + start, (int) (end - start));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        _file.close();
+    }
+}
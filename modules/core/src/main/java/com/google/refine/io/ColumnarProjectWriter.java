@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+import com.google.refine.util.Pool;
+
+/**
+ * Writes a project to the columnar binary format described in {@link ColumnarFormat}, to be read back with
+ * {@link ColumnarProjectReader}.
+ */
+public class ColumnarProjectWriter {
+
+    static final int BUFFER_SIZE = 1 << 20;
+    static final int CHUNK_ROWS = 1 << 16;
+
+    final protected Project _project;
+    final protected Pool _pool = new Pool();
+    final protected Map<String, Integer> _stringIds = new HashMap<>();
+    final protected List<String> _strings = new ArrayList<>();
+    final protected long[] _toc = new long[ColumnarFormat.TOC_SIZE];
+
+    protected FileChannel _channel;
+    protected ByteBuffer _buffer;
+
+    // rows and header captured by capture(), if called
+    protected List<Row> _rows;
+    protected byte[] _header;
+
+    // payload of the last value encoded by encodeValue
+    private long _payload;
+
+    public ColumnarProjectWriter(Project project) {
+        _project = project;
+        long snapshotID;
+        do {
+            snapshotID = ThreadLocalRandom.current().nextLong();
+        } while (snapshotID == 0L);
+        _toc[ColumnarFormat.TOC_SNAPSHOT_ID] = snapshotID;
+    }
+
+    /**
+     * @return the random id written in the file, distinguishing it from files written for other states of the project
+     */
+    public long getSnapshotID() {
+        return _toc[ColumnarFormat.TOC_SNAPSHOT_ID];
+    }
+
+    /**
+     * @return the number of rows captured by {@link #capture()}
+     */
+    public int getRowCount() {
+        return _rows.size();
+    }
+
+    /**
+     * Captures the current version of the rows and the header of the project, to be written by {@link #write(File)}.
+     * Must be called with the project lock held. When the rows are changed by copy (see
+     * {@link com.google.refine.model.RowStore#COPY_ON_WRITE}), the lock can then be released before writing, changes
+     * applied meanwhile being left out of the file.
+     */
+    public void capture() throws IOException {
+        _rows = _project.getRowStore().getView();
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        _project.saveHeaderToOutputStream(header, _pool);
+        _header = header.toByteArray();
+    }
+
+    public void write(File file) throws IOException {
+        if (_header == null) {
+            capture();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            _channel = channel;
+            _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            _buffer.putInt(ColumnarFormat.MAGIC);
+            _buffer.putInt(ColumnarFormat.VERSION);
+            for (int i = 0; i < ColumnarFormat.TOC_SIZE; i++) {
+                _buffer.putLong(0L);
+            }
+
+            List<Row> rows = _rows;
+            int rowCount = rows.size();
+            int columnCount = 0;
+            for (Row row : rows) {
+                columnCount = Math.max(columnCount, row.cells.size());
+            }
+            _toc[ColumnarFormat.TOC_ROW_COUNT] = rowCount;
+            _toc[ColumnarFormat.TOC_COLUMN_COUNT] = columnCount;
+
+            _toc[ColumnarFormat.TOC_HEADER_OFFSET] = position();
+            _toc[ColumnarFormat.TOC_HEADER_LENGTH] = _header.length;
+            putBytes(_header);
+
+            long[] directory = writeColumns(rows, rowCount, columnCount);
+
+            _toc[ColumnarFormat.TOC_ROW_FLAGS_OFFSET] = position();
+            for (Row row : rows) {
+                putByte((byte) ((row.flagged ? ColumnarFormat.ROW_FLAGGED : 0) | (row.starred ? ColumnarFormat.ROW_STARRED : 0)));
+            }
+
+            // the pool is only complete once all the cells have been written
+            ByteArrayOutputStream pool = new ByteArrayOutputStream();
+            _pool.save(pool);
+            _toc[ColumnarFormat.TOC_POOL_OFFSET] = position();
+            _toc[ColumnarFormat.TOC_POOL_LENGTH] = pool.size();
+            putBytes(pool.toByteArray());
+
+            writeStrings();
+
+            _toc[ColumnarFormat.TOC_COLUMN_DIRECTORY_OFFSET] = position();
+            for (long offset : directory) {
+                putLong(offset);
+            }
+            flush();
+
+            ByteBuffer toc = ByteBuffer.allocate(ColumnarFormat.TOC_SIZE * Long.BYTES);
+            for (long value : _toc) {
+                toc.putLong(value);
+            }
+            toc.flip();
+            writeFully(toc, ColumnarFormat.TOC_OFFSET);
+        } finally {
+            _channel = null;
+            _buffer = null;
+        }
+    }
+
+    /**
+     * Writes the column blocks. Their sizes only depend on the number of rows and on whether the column contains any
+     * reconciled cell, so each block is laid out in advance and filled in by chunks of rows.
+     */
+    protected long[] writeColumns(List<Row> rows, int rowCount, int columnCount) throws IOException {
+        boolean[] reconciled = new boolean[columnCount];
+        for (Row row : rows) {
+            for (int c = 0; c < row.cells.size(); c++) {
+                Cell cell = row.cells.get(c);
+                if (cell != null && cell.recon != null) {
+                    reconciled[c] = true;
+                }
+            }
+        }
+
+        flush();
+        long position = _channel.position();
+        long[] directory = new long[columnCount * 3];
+        ByteBuffer tags = ByteBuffer.allocate(CHUNK_ROWS);
+        ByteBuffer payloads = ByteBuffer.allocate(CHUNK_ROWS * Long.BYTES);
+        ByteBuffer recons = ByteBuffer.allocate(CHUNK_ROWS * Long.BYTES);
+
+        for (int c = 0; c < columnCount; c++) {
+            long tagsOffset = position;
+            long payloadsOffset = tagsOffset + rowCount;
+            long reconsOffset = reconciled[c] ? payloadsOffset + (long) rowCount * Long.BYTES : -1;
+            directory[c * 3] = tagsOffset;
+            directory[c * 3 + 1] = payloadsOffset;
+            directory[c * 3 + 2] = reconsOffset;
+
+            for (int start = 0; start < rowCount; start += CHUNK_ROWS) {
+                int end = Math.min(rowCount, start + CHUNK_ROWS);
+                tags.clear();
+                payloads.clear();
+                recons.clear();
+                for (int r = start; r < end; r++) {
+                    Row row = rows.get(r);
+                    byte tag;
+                    long recon = 0L;
+                    _payload = 0L;
+                    if (c >= row.cells.size()) {
+                        tag = ColumnarFormat.TAG_ABSENT;
+                    } else {
+                        Cell cell = row.cells.get(c);
+                        if (cell == null) {
+                            tag = ColumnarFormat.TAG_NULL_CELL;
+                        } else {
+                            tag = encodeValue(cell.value);
+                            if (cell.recon != null) {
+                                tag |= ColumnarFormat.TAG_RECON;
+                                recon = cell.recon.id;
+                                _pool.pool(cell.recon);
+                            }
+                        }
+                    }
+                    tags.put(tag);
+                    payloads.putLong(_payload);
+                    recons.putLong(recon);
+                }
+                tags.flip();
+                writeFully(tags, tagsOffset + start);
+                payloads.flip();
+                writeFully(payloads, payloadsOffset + (long) start * Long.BYTES);
+                if (reconciled[c]) {
+                    recons.flip();
+                    writeFully(recons, reconsOffset + (long) start * Long.BYTES);
+                }
+            }
+
+            position = (reconciled[c] ? reconsOffset : payloadsOffset) + (long) rowCount * Long.BYTES;
+        }
+
+        _channel.position(position);
+        return directory;
+    }
+
+    protected byte encodeValue(Serializable value) {
+        if (value == null) {
+            return ColumnarFormat.TAG_NULL_VALUE;
+        } else if (value instanceof String) {
+            _payload = stringId((String) value);
+            return ColumnarFormat.TAG_STRING;
+        } else if (value instanceof Integer) {
+            _payload = (Integer) value;
+            return ColumnarFormat.TAG_INTEGER;
+        } else if (value instanceof Long) {
+            _payload = (Long) value;
+            return ColumnarFormat.TAG_LONG;
+        } else if (value instanceof Double || value instanceof Float) {
+            _payload = Double.doubleToRawLongBits(((Number) value).doubleValue());
+            return ColumnarFormat.TAG_DOUBLE;
+        } else if (value instanceof Boolean) {
+            _payload = ((Boolean) value) ? 1L : 0L;
+            return ColumnarFormat.TAG_BOOLEAN;
+        } else if (value instanceof OffsetDateTime) {
+            _payload = stringId(((OffsetDateTime) value).toInstant().toString());
+            return ColumnarFormat.TAG_DATE;
+        } else if (value instanceof LocalDateTime) {
+            _payload = stringId(((LocalDateTime) value).toInstant(ZoneOffset.UTC).toString());
+            return ColumnarFormat.TAG_DATE;
+        } else if (value instanceof EvalError) {
+            _payload = stringId(((EvalError) value).message);
+            return ColumnarFormat.TAG_ERROR;
+        } else {
+            // rare value types are stored as in the JSON format, which is how they used to be read back
+            try {
+                _payload = stringId(ParsingUtilities.mapper.writeValueAsString(new Cell(value, null).getValue()));
+                return ColumnarFormat.TAG_JSON;
+            } catch (JsonProcessingException e) {
+                _payload = stringId(value.toString());
+                return ColumnarFormat.TAG_STRING;
+            }
+        }
+    }
+
+    protected int stringId(String s) {
+        Integer id = _stringIds.get(s);
+        if (id == null) {
+            id = _strings.size();
+            _stringIds.put(s, id);
+            _strings.add(s);
+        }
+        return id;
+    }
+
+    protected void writeStrings() throws IOException {
+        long[] offsets = new long[_strings.size() + 1];
+        long dataOffset = position();
+        for (int i = 0; i < _strings.size(); i++) {
+            offsets[i] = position() - dataOffset;
+            putBytes(_strings.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        offsets[_strings.size()] = position() - dataOffset;
+
+        _toc[ColumnarFormat.TOC_STRING_COUNT] = _strings.size();
+        _toc[ColumnarFormat.TOC_STRING_DATA_OFFSET] = dataOffset;
+        _toc[ColumnarFormat.TOC_STRING_OFFSETS_OFFSET] = position();
+        for (long offset : offsets) {
+            putLong(offset);
+        }
+    }
+
+    protected long position() throws IOException {
+        return _channel.position() + _buffer.position();
+    }
+
+    protected void putByte(byte b) throws IOException {
+        if (_buffer.remaining() < 1) {
+            flush();
+        }
+        _buffer.put(b);
+    }
+
+    protected void putLong(long l) throws IOException {
+        if (_buffer.remaining() < Long.BYTES) {
+            flush();
+        }
+        _buffer.putLong(l);
+    }
+
+    protected void putBytes(byte[] bytes) throws IOException {
+        if (bytes.length > _buffer.remaining()) {
+            flush();
+            if (bytes.length > _buffer.remaining()) {
+                writeFully(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        _buffer.put(bytes);
+    }
+
+    protected void flush() throws IOException {
+        _buffer.flip();
+        writeFully(_buffer);
+        _buffer.clear();
+    }
+
+    protected void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+        }
+    }
+
+    protected void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += _channel.write(buffer, position);
+        }
+    }
+}
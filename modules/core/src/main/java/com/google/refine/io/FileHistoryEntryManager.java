@@ -36,9 +36,20 @@ package com.google.refine.io;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -50,15 +61,48 @@ import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
 
+/**
+ * Stores the changes of history entries in the history directory of their project, one file per change.
+ * <p>
+ * Each change file starts with a small header giving the offset and length of the second of its two sections, which
+ * hold the serialized change and the pool of the recons it refers to, as text deflated with a fast level. Both are
+ * written and read through a file channel, and the change is decoded while it is read rather than after inflating the
+ * whole file. Change files of earlier versions, zip archives holding the same two sections, are still read.
+ */
 public class FileHistoryEntryManager implements HistoryEntryManager {
 
     public static final String HISTORY_DIR = "history";
 
+    static final String CHANGE_EXTENSION = ".change.deflate";
+    static final String LEGACY_CHANGE_EXTENSION = ".change.zip";
+
+    static final int MAGIC = 0x4F524348; // "ORCH"
+    static final int VERSION = 1;
+    // magic, version, then the offset and length of the pool section
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Whether changes are saved as zip archives readable by earlier versions, configured with
+     * {@code -Drefine.history.legacyChangeFiles=true}.
+     */
+    static public final boolean LEGACY_CHANGE_FILES = Boolean.getBoolean("refine.history.legacyChangeFiles");
+
+    /**
+     * The deflate level of change files, configured with {@code refine.history.compressionLevel}. The default favors
+     * speed, as changes are saved while the project lock is held.
+     */
+    static public final int COMPRESSION_LEVEL = Integer.getInteger("refine.history.compressionLevel",
+            Deflater.BEST_SPEED);
+
     @Override
     public void delete(HistoryEntry historyEntry) {
-        File file = getChangeFile(historyEntry);
-        if (file.exists()) {
-            file.delete();
+        File dir = getHistoryDir(historyEntry);
+        for (String extension : new String[] { CHANGE_EXTENSION, LEGACY_CHANGE_EXTENSION }) {
+            File file = new File(dir, historyEntry.id + extension);
+            if (file.exists()) {
+                file.delete();
+            }
         }
     }
 
@@ -87,6 +131,54 @@ public class FileHistoryEntryManager implements HistoryEntryManager {
     }
 
     protected void loadChange(HistoryEntry historyEntry, File file) throws Exception {
+        if (file.getName().endsWith(LEGACY_CHANGE_EXTENSION)) {
+            loadLegacyChange(historyEntry, file);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a change file");
+            }
+            int version = header.getInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported change file version " + version);
+            }
+            long poolOffset = header.getLong();
+
+            Pool pool = new Pool();
+            try (InputStream in = openSection(channel, poolOffset)) {
+                pool.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+
+            // the change is parsed as it is inflated
+            try (InputStream in = openSection(channel, HEADER_SIZE)) {
+                historyEntry.setChange(History.readOneChange(in, pool));
+            }
+        }
+    }
+
+    /**
+     * Inflates a section of a change file. The stream reads the channel from the start of the section, and must be
+     * consumed before another section is opened.
+     */
+    static protected InputStream openSection(FileChannel channel, long offset) throws IOException {
+        channel.position(offset);
+        return new InflaterInputStream(Channels.newInputStream(channel), new Inflater(), BUFFER_SIZE) {
+
+            @Override
+            public void close() throws IOException {
+                // leaves the channel open for the next section
+                inf.end();
+            }
+        };
+    }
+
+    protected void loadLegacyChange(HistoryEntry historyEntry, File file) throws Exception {
         ZipFile zipFile = new ZipFile(file);
         try {
             Pool pool = new Pool();
@@ -112,6 +204,66 @@ public class FileHistoryEntryManager implements HistoryEntryManager {
     }
 
     protected void saveChange(HistoryEntry historyEntry, File file) throws Exception {
+        if (file.getName().endsWith(LEGACY_CHANGE_EXTENSION)) {
+            saveLegacyChange(historyEntry, file);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Pool pool = new Pool();
+
+            // the pool is only complete once the change has been written
+            channel.position(HEADER_SIZE);
+            OutputStream out = openSection(channel);
+            try {
+                History.writeOneChange(out, historyEntry.getChange(), pool);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                out.close();
+            }
+
+            long poolOffset = channel.position();
+            out = openSection(channel);
+            try {
+                pool.save(out);
+            } finally {
+                out.close();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(poolOffset);
+            header.putLong(channel.position() - poolOffset);
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+
+    /**
+     * Deflates a section of a change file, from the current position of the channel. Closing the stream ends the
+     * section and leaves the channel open for the next one.
+     */
+    static protected OutputStream openSection(FileChannel channel) {
+        return new DeflaterOutputStream(Channels.newOutputStream(channel), new Deflater(COMPRESSION_LEVEL), BUFFER_SIZE) {
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    finish();
+                    flush();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    protected void saveLegacyChange(HistoryEntry historyEntry, File file) throws Exception {
         ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
         try {
             Pool pool = new Pool();
@@ -137,7 +289,28 @@ public class FileHistoryEntryManager implements HistoryEntryManager {
     }
 
     protected File getChangeFile(HistoryEntry historyEntry) {
-        return new File(getHistoryDir(historyEntry), historyEntry.id + ".change.zip");
+        return getChangeFile(getHistoryDir(historyEntry), historyEntry.id, LEGACY_CHANGE_FILES);
+    }
+
+    /**
+     * @return the file in which the change of a history entry is saved, given the directory of its project
+     */
+    static protected File getChangeFile(File projectDir, long historyEntryID) {
+        return getChangeFile(new File(projectDir, HISTORY_DIR), historyEntryID, LEGACY_CHANGE_FILES);
+    }
+
+    /**
+     * @return the existing change file of a history entry, whatever its format, or else the file in which to save it
+     */
+    static protected File getChangeFile(File historyDir, long historyEntryID, boolean legacy) {
+        File file = new File(historyDir, historyEntryID + CHANGE_EXTENSION);
+        File legacyFile = new File(historyDir, historyEntryID + LEGACY_CHANGE_EXTENSION);
+        if (file.exists()) {
+            return file;
+        } else if (legacyFile.exists() || legacy) {
+            return legacyFile;
+        }
+        return file;
     }
 
     protected File getHistoryDir(HistoryEntry historyEntry) {
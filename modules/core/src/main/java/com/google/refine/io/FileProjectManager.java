@@ -41,7 +41,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -60,6 +64,7 @@ import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
 import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.Project;
+import com.google.refine.model.recon.ReconCache;
 import com.google.refine.preference.PreferenceStore;
 import com.google.refine.preference.TopList;
 import com.google.refine.util.LocaleUtils;
@@ -74,6 +79,11 @@ public class FileProjectManager extends ProjectManager {
 
     protected File _workspaceDir;
 
+    /**
+     * The index of the metadata of the projects, or null if the workspace has none.
+     */
+    protected ProjectMetadataIndex _metadataIndex;
+
     protected static boolean projectRemoved = false;
 
     final static Logger logger = LoggerFactory.getLogger("FileProjectManager");
@@ -91,6 +101,8 @@ public class FileProjectManager extends ProjectManager {
     protected FileProjectManager(File dir) {
         super();
         _workspaceDir = dir;
+        _metadataIndex = ProjectMetadataIndex.ENABLED ? new ProjectMetadataIndex(dir) : null;
+        _reconCache = ReconCache.ENABLED ? new ReconCache(dir) : null;
         if (!_workspaceDir.exists() && !_workspaceDir.mkdirs()) {
             logger.error("Failed to create directory : " + _workspaceDir);
             return;
@@ -149,6 +161,7 @@ public class FileProjectManager extends ProjectManager {
             if (metadata != null) {
                 _projectsMetadata.put(projectID, metadata);
                 addProjectTags(metadata.getTags());
+                indexMetadata(projectID, metadata);
                 return true;
             } else {
                 return false;
@@ -162,8 +175,10 @@ public class FileProjectManager extends ProjectManager {
         destDir.mkdirs();
 
         if (gziped) {
-            GZIPInputStream gis = new GZIPInputStream(inputStream);
-            untar(destDir, gis);
+            // decompress the archive while the files already decompressed are written
+            try (InputStream gis = new ReadAheadInputStream(new GZIPInputStream(inputStream, 1 << 16))) {
+                untar(destDir, gis);
+            }
         } else {
             untar(destDir, inputStream);
         }
@@ -187,12 +202,7 @@ public class FileProjectManager extends ProjectManager {
             if (tarEntry.isDirectory()) {
                 destEntry.mkdirs();
             } else {
-                FileOutputStream fout = new FileOutputStream(destEntry);
-                try {
-                    tin.transferTo(fout);
-                } finally {
-                    fout.close();
-                }
+                Files.copy(tin, destEntry.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
         }
 
@@ -224,8 +234,7 @@ public class FileProjectManager extends ProjectManager {
 
                     tos.putArchiveEntry(entry);
 
-                    // TODO: replace with Files.copy(file.toPath(), tos);
-                    copyFile(file, tos);
+                    Files.copy(file.toPath(), tos);
 
                     tos.closeArchiveEntry();
                 }
@@ -257,6 +266,23 @@ public class FileProjectManager extends ProjectManager {
     public void saveMetadata(ProjectMetadata metadata, long projectId) throws Exception {
         File projectDir = getProjectDir(projectId);
         ProjectMetadataUtilities.save(metadata, projectDir);
+        indexMetadata(projectId, metadata);
+    }
+
+    /**
+     * @return the metadata file of a project, whether it exists or not
+     */
+    protected File getMetadataFile(long projectID) {
+        return new File(new File(_workspaceDir, projectID + PROJECT_DIR_SUFFIX), ProjectMetadata.DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * Records the metadata of a project, as found in its metadata file, in the metadata index.
+     */
+    protected void indexMetadata(long projectID, ProjectMetadata metadata) {
+        if (_metadataIndex != null) {
+            _metadataIndex.put(projectID, metadata, getMetadataFile(projectID).lastModified());
+        }
     }
 
     @Override
@@ -339,6 +365,7 @@ public class FileProjectManager extends ProjectManager {
             ProjectMetadata metadata = _projectsMetadata.get(id);
             if (metadata != null) {
                 ProjectMetadataUtilities.save(metadata, getProjectDir(id));
+                indexMetadata(id, metadata);
             } else {
                 logger.error("Missing metadata on save for project ID {}", id);
             }
@@ -351,6 +378,35 @@ public class FileProjectManager extends ProjectManager {
             ParsingUtilities.defaultWriter.writeValue(stream, this);
             saveProjectMetadata(getModifiedProjectIds());
         }
+        if (_metadataIndex != null && _metadataIndex.needsCompaction()) {
+            compactMetadataIndex();
+        }
+    }
+
+    /**
+     * Rewrites the metadata index from the metadata of the projects in memory. Projects whose metadata was modified
+     * since it was saved are left out, so that their metadata file is read when the workspace is next loaded.
+     */
+    protected void compactMetadataIndex() {
+        Map<Long, ProjectMetadataIndex.Entry> entries = new HashMap<>();
+        for (Entry<Long, ProjectMetadata> entry : _projectsMetadata.entrySet()) {
+            ProjectMetadata metadata = entry.getValue();
+            if (metadata != null && !metadata.isDirty()) {
+                try {
+                    entries.put(entry.getKey(), ProjectMetadataIndex.Entry.of(metadata,
+                            getMetadataFile(entry.getKey()).lastModified()));
+                } catch (IOException e) {
+                    logger.warn("Failed to index metadata of project {}", entry.getKey(), e);
+                }
+            }
+        }
+        _metadataIndex.rewrite(entries);
+    }
+
+    @Override
+    protected void disposeProject(Project project) {
+        super.disposeProject(project);
+        ProjectUtilities.releaseSaveLock(project.id);
     }
 
     @Override
@@ -367,6 +423,11 @@ public class FileProjectManager extends ProjectManager {
             }
 
             removeProject(projectID);
+            if (_metadataIndex != null) {
+                _metadataIndex.remove(projectID);
+            }
+
+            ProjectUtilities.releaseSaveLock(projectID);
 
             File dir = getProjectDir(projectID);
             if (dir.exists()) {
@@ -459,8 +520,13 @@ public class FileProjectManager extends ProjectManager {
         return new FileHistoryEntryManager();
     }
 
+    /**
+     * Writes the project as a gzipped tar archive to the stream, compressing it on several threads unless
+     * {@link ParallelGZIPOutputStream#THREADS} is 1.
+     */
     public static void gzipTarToOutputStream(Project project, OutputStream os) throws IOException {
-        GZIPOutputStream gos = new GZIPOutputStream(os);
+        OutputStream gos = ParallelGZIPOutputStream.THREADS > 1 ? new ParallelGZIPOutputStream(os)
+                : new GZIPOutputStream(os, 1 << 16);
         TarArchiveOutputStream tos = new TarArchiveOutputStream(gos);
         try {
             ProjectManager.singleton.exportProject(project.id, tos);
@@ -475,16 +541,44 @@ public class FileProjectManager extends ProjectManager {
         return _projectsMetadata.keySet();
     }
 
+    /**
+     * Loads the metadata of the projects of the workspace. The metadata of each project is taken from the metadata index
+     * when its metadata file was not modified since it was indexed, and read from the metadata file otherwise.
+     */
     @JsonProperty("projectIDs")
     protected void loadProjects(List<Long> projectIDs) {
+        Map<Long, ProjectMetadataIndex.Entry> indexed = _metadataIndex != null ? _metadataIndex.read()
+                : Collections.emptyMap();
+        Map<Long, ProjectMetadataIndex.Entry> entries = new HashMap<>();
+        int misses = 0;
         for (Long id : projectIDs) {
+            ProjectMetadata metadata = null;
+            ProjectMetadataIndex.Entry entry = indexed.get(id);
+            if (entry != null && entry.getModified() == getMetadataFile(id).lastModified()) {
+                try {
+                    metadata = entry.toMetadata();
+                    entries.put(id, entry);
+                } catch (IOException e) {
+                    logger.warn("Failed to read indexed metadata of project {}", id, e);
+                }
+            }
 
-            File projectDir = getProjectDir(id, false);
-            if (projectDir == null) {
-                logger.error("Missing project directory for project {}", id);
-                continue;
+            if (metadata == null) {
+                File projectDir = getProjectDir(id, false);
+                if (projectDir == null) {
+                    logger.error("Missing project directory for project {}", id);
+                    continue;
+                }
+                metadata = ProjectMetadataUtilities.load(projectDir);
+                if (metadata != null && _metadataIndex != null) {
+                    misses++;
+                    try {
+                        entries.put(id, ProjectMetadataIndex.Entry.of(metadata, getMetadataFile(id).lastModified()));
+                    } catch (IOException e) {
+                        logger.warn("Failed to index metadata of project {}", id, e);
+                    }
+                }
             }
-            ProjectMetadata metadata = ProjectMetadataUtilities.load(projectDir);
 
             mergeEmptyUserMetadata(metadata);
 
@@ -494,6 +588,11 @@ public class FileProjectManager extends ProjectManager {
                 addProjectTags(metadata.getTags());
             }
         }
+        if (_metadataIndex != null && (misses > 0 || entries.size() != indexed.size()
+                || _metadataIndex.needsCompaction())) {
+            logger.info("Rewriting metadata index, which missed the metadata of {} projects", misses);
+            _metadataIndex.rewrite(entries);
+        }
     }
 
     @JsonProperty("preferences")
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a file mapped into memory through a series of {@link MappedByteBuffer} segments, so that files
+ * larger than 2GB can be addressed with long offsets. Pages are only read from disk by the operating system when they
+ * are first accessed.
+ */
+public class MappedFile implements Closeable {
+
+    static final int SEGMENT_SHIFT = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    final protected File _file;
+    final protected long _length;
+    protected FileChannel _channel;
+    protected MappedByteBuffer[] _segments;
+
+    public MappedFile(File file) throws IOException {
+        _file = file;
+        _channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            _length = _channel.size();
+            int segmentCount = (int) ((_length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            _segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = ((long) i) << SEGMENT_SHIFT;
+                _segments[i] = _channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, _length - start));
+            }
+        } catch (IOException e) {
+            _channel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public long length() {
+        return _length;
+    }
+
+    public byte getByte(long position) {
+        return _segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    public int getInt(long position) {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset <= SEGMENT_SIZE - Integer.BYTES) {
+            return _segments[(int) (position >>> SEGMENT_SHIFT)].getInt(offset);
+        }
+        return ByteBuffer.wrap(getBytes(position, Integer.BYTES)).getInt();
+    }
+
+    public long getLong(long position) {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset <= SEGMENT_SIZE - Long.BYTES) {
+            return _segments[(int) (position >>> SEGMENT_SHIFT)].getLong(offset);
+        }
+        return ByteBuffer.wrap(getBytes(position, Long.BYTES)).getLong();
+    }
+
+    /**
+     * Copies a range of the file into a new array, which may span segment boundaries.
+     */
+    public byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            ByteBuffer segment = _segments[(int) (current >>> SEGMENT_SHIFT)].duplicate();
+            int offset = (int) (current & SEGMENT_MASK);
+            int count = Math.min(length - copied, segment.capacity() - offset);
+            segment.position(offset);
+            segment.get(bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases the underlying file channel. The mapped segments stay valid until they are garbage collected, as the JVM
+     * offers no way to unmap them explicitly.
+     */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip stream whose compression is spread over several threads. The data is cut into blocks which are deflated
+ * independently, each primed with the end of the previous block, and flushed to a byte boundary so that the deflated
+ * blocks can be written in order to the underlying stream as soon as they are ready. The blocks form the data of a
+ * single gzip member, whose checksum is computed by the writing thread, so the output can be read by any gzip
+ * decompressor, including {@link java.util.zip.GZIPInputStream} which may stop reading at the end of a member.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    /**
+     * The number of threads which compress archives, configured with the {@code refine.archive.compressionThreads}
+     * system property. Archives are compressed in the calling thread when set to 1.
+     */
+    static public final int THREADS = Integer.getInteger("refine.archive.compressionThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The size of the blocks compressed independently.
+     */
+    static public final int BLOCK_SIZE = 1 << 20;
+
+    /**
+     * The size of the window of deflate, and so of the end of the previous block used to prime the next one.
+     */
+    static final int DICTIONARY_SIZE = 1 << 15;
+
+    static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    static private ThreadPoolExecutor s_executor;
+
+    final protected OutputStream _out;
+    final protected int _blockSize;
+    final protected int _level;
+    // the blocks being compressed, in the order they must be written
+    final protected ArrayDeque<Future<byte[]>> _pending = new ArrayDeque<>();
+    final protected int _maxPending;
+    final protected CRC32 _crc = new CRC32();
+    protected byte[] _block;
+    protected int _count;
+    // the previous block, whose end primes the next one
+    protected byte[] _previous;
+    protected int _previousCount;
+    protected long _length;
+    protected boolean _headerWritten;
+    protected boolean _closed;
+
+    public ParallelGZIPOutputStream(OutputStream out) {
+        this(out, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGZIPOutputStream(OutputStream out, int blockSize, int level) {
+        _out = out;
+        _blockSize = blockSize;
+        _level = level;
+        // enough blocks to keep all threads busy while the compressed ones are written
+        _maxPending = 2 * THREADS;
+        _block = new byte[blockSize];
+    }
+
+    static synchronized protected ThreadPoolExecutor getExecutor() {
+        if (s_executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            s_executor = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "archive-compression-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            s_executor.allowCoreThreadTimeOut(true);
+        }
+        return s_executor;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        _block[_count++] = (byte) b;
+        if (_count == _blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, _blockSize - _count);
+            System.arraycopy(b, off, _block, _count, n);
+            _count += n;
+            off += n;
+            len -= n;
+            if (_count == _blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks which are compressed already. Like {@link java.util.zip.GZIPOutputStream}, the data of the
+     * current block is only written once the block is full or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!_pending.isEmpty() && _pending.peek().isDone()) {
+            writeBlock();
+        }
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        try {
+            // the last block ends the deflate stream, even when empty
+            submitBlock(true);
+            while (!_pending.isEmpty()) {
+                writeBlock();
+            }
+            byte[] trailer = new byte[8];
+            writeInt(trailer, 0, _crc.getValue());
+            writeInt(trailer, 4, _length);
+            _out.write(trailer);
+        } finally {
+            _closed = true;
+            for (Future<byte[]> future : _pending) {
+                future.cancel(true);
+            }
+            _out.close();
+        }
+    }
+
+    protected void ensureOpen() throws IOException {
+        if (_closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    protected void submitBlock() throws IOException {
+        submitBlock(false);
+    }
+
+    protected void submitBlock(boolean last) throws IOException {
+        byte[] block = _block;
+        int count = _count;
+        byte[] previous = _previous;
+        int previousCount = _previousCount;
+        _crc.update(block, 0, count);
+        _length += count;
+        if (THREADS <= 1) {
+            writeHeader();
+            _out.write(compress(block, count, previous, previousCount, _level, last));
+            // the block is reused, so its end is kept apart to prime the next one
+            int dictionaryLength = Math.min(DICTIONARY_SIZE, count);
+            _previous = Arrays.copyOfRange(block, count - dictionaryLength, count);
+            _previousCount = dictionaryLength;
+        } else {
+            _pending.add(getExecutor().submit(() -> compress(block, count, previous, previousCount, _level, last)));
+            _previous = block;
+            _previousCount = count;
+            _block = new byte[_blockSize];
+            while (_pending.size() >= _maxPending) {
+                writeBlock();
+            }
+        }
+        _count = 0;
+    }
+
+    protected void writeHeader() throws IOException {
+        if (!_headerWritten) {
+            _out.write(HEADER);
+            _headerWritten = true;
+        }
+    }
+
+    protected void writeBlock() throws IOException {
+        try {
+            byte[] compressed = _pending.poll().get();
+            writeHeader();
+            _out.write(compressed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress", e.getCause());
+        }
+    }
+
+    /**
+     * Deflates a block as part of a raw deflate stream.
+     *
+     * @param previous
+     *            the block before this one, if any, whose end primes the compression of this one
+     * @param last
+     *            whether the block ends the deflate stream, or is flushed to a byte boundary so that the next block
+     *            can follow it
+     */
+    static protected byte[] compress(byte[] block, int count, byte[] previous, int previousCount, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (previous != null && previousCount > 0) {
+                int dictionaryLength = Math.min(DICTIONARY_SIZE, previousCount);
+                deflater.setDictionary(previous, previousCount - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(block, 0, count);
+            if (last) {
+                deflater.finish();
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(count / 2 + 64);
+            byte[] buffer = new byte[1 << 16];
+            while (true) {
+                int n = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                bytes.write(buffer, 0, n);
+                // a flush is complete once it leaves room in the buffer
+                if (last ? deflater.finished() : n < buffer.length) {
+                    break;
+                }
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static protected void writeInt(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
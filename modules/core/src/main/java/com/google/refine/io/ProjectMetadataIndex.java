@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.ProjectMetadata;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * The index of the metadata of the projects of a workspace, which lets the workspace be loaded with a single sequential
+ * read rather than by reading the metadata file of each project. Each record holds the metadata of a project along
+ * with the modification time of its metadata file, so that a record is only used while the metadata file has not been
+ * changed behind its back.
+ * <p>
+ * The index is append-only: saving the metadata of a project appends a record for it, and deleting a project appends
+ * a record without metadata. Each record ends with a checksum, so that a record truncated by a crash is ignored. The
+ * index is rewritten with one record per project once it holds too many records which were superseded.
+ */
+public class ProjectMetadataIndex {
+
+    final static Logger logger = LoggerFactory.getLogger("project_metadata_index");
+
+    /**
+     * Whether the workspace keeps an index of the metadata of its projects, configured with the
+     * {@code refine.workspace.metadataIndex} system property.
+     */
+    static public final boolean ENABLED = Boolean.parseBoolean(System.getProperty("refine.workspace.metadataIndex", "true"));
+
+    static public final String FILE_NAME = "metadata.index";
+    static public final String TEMP_FILE_NAME = "metadata.index.temp";
+
+    static final int MAGIC = 0x4F524D49; // "ORMI"
+    // the number of superseded records which are tolerated before the index is rewritten, beyond one per project
+    static final int SLACK_RECORDS = 64;
+
+    final protected File _file;
+    // the projects which have a record in the index, the number of valid records and the length they take
+    final protected Set<Long> _ids = new HashSet<>();
+    protected int _records;
+    protected long _length;
+
+    /**
+     * The metadata of a project held in the index, still serialized.
+     */
+    static public class Entry {
+
+        final protected long _modified;
+        final protected byte[] _json;
+
+        protected Entry(long modified, byte[] json) {
+            _modified = modified;
+            _json = json;
+        }
+
+        static public Entry of(ProjectMetadata metadata, long modified) throws IOException {
+            return new Entry(modified, ParsingUtilities.saveWriter.writeValueAsBytes(metadata));
+        }
+
+        /**
+         * @return the modification time of the metadata file of the project when the entry was recorded
+         */
+        public long getModified() {
+            return _modified;
+        }
+
+        public ProjectMetadata toMetadata() throws IOException {
+            ProjectMetadata metadata = ParsingUtilities.mapper.readValue(_json, ProjectMetadata.class);
+            metadata.setLastSave(); // No need to write it until it has been modified
+            return metadata;
+        }
+    }
+
+    public ProjectMetadataIndex(File workspaceDir) {
+        _file = new File(workspaceDir, FILE_NAME);
+    }
+
+    /**
+     * Reads the valid records of the index.
+     *
+     * @return the latest entry of each project of the index
+     */
+    synchronized public Map<Long, Entry> read() {
+        Map<Long, Entry> entries = new HashMap<>();
+        _ids.clear();
+        _records = 0;
+        _length = 0L;
+        if (!_file.exists()) {
+            return entries;
+        }
+        long position = 0L;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                logger.warn("Ignoring metadata index {} of an unknown format", _file.getAbsolutePath());
+                return entries;
+            }
+            position = Integer.BYTES;
+            long fileLength = _file.length();
+            CRC32 crc = new CRC32();
+            while (position + 2 * Long.BYTES + Integer.BYTES <= fileLength) {
+                long id = in.readLong();
+                long modified = in.readLong();
+                int length = in.readInt();
+                long end = position + 2 * Long.BYTES + Integer.BYTES + Math.max(length, 0) + Long.BYTES;
+                if (end > fileLength) {
+                    break;
+                }
+                byte[] json = length < 0 ? null : new byte[length];
+                crc.reset();
+                crc.update(ByteBuffer.allocate(2 * Long.BYTES + Integer.BYTES).putLong(id).putLong(modified)
+                        .putInt(length).array());
+                if (json != null) {
+                    in.readFully(json);
+                    crc.update(json);
+                }
+                if (in.readLong() != crc.getValue()) {
+                    break;
+                }
+                if (json == null) {
+                    entries.remove(id);
+                } else {
+                    entries.put(id, new Entry(modified, json));
+                }
+                records++;
+                position = end;
+            }
+        } catch (EOFException e) {
+            // truncated index: keep the records read so far
+        } catch (IOException e) {
+            logger.warn("Failed to read metadata index {}", _file.getAbsolutePath(), e);
+            entries.clear();
+            return entries;
+        }
+        _ids.addAll(entries.keySet());
+        _records = records;
+        _length = position;
+        return entries;
+    }
+
+    /**
+     * Records the metadata of a project which was just saved to or loaded from its metadata file.
+     *
+     * @param modified
+     *            the modification time of the metadata file
+     */
+    public void put(long id, ProjectMetadata metadata, long modified) {
+        try {
+            append(id, Entry.of(metadata, modified));
+        } catch (IOException e) {
+            logger.warn("Failed to update metadata index {}", _file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Records that a project was deleted.
+     */
+    public void remove(long id) {
+        try {
+            append(id, null);
+        } catch (IOException e) {
+            logger.warn("Failed to update metadata index {}", _file.getAbsolutePath(), e);
+        }
+    }
+
+    synchronized protected void append(long id, Entry entry) throws IOException {
+        if (entry == null && !_ids.contains(id)) {
+            return;
+        }
+        int length = entry == null ? -1 : entry._json.length;
+        long modified = entry == null ? 0L : entry._modified;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 3 * Long.BYTES + Integer.BYTES + Math.max(length, 0));
+        // a fresh index starts with its magic number; otherwise anything after the last valid record is overwritten
+        long position = _length;
+        if (position == 0L) {
+            buffer.putInt(MAGIC);
+        }
+        int start = buffer.position();
+        buffer.putLong(id);
+        buffer.putLong(modified);
+        buffer.putInt(length);
+        if (entry != null) {
+            buffer.put(entry._json);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        _length = position;
+        _records++;
+        if (entry == null) {
+            _ids.remove(id);
+        } else {
+            _ids.add(id);
+        }
+    }
+
+    /**
+     * @return true if the index holds so many superseded records that it should be rewritten
+     */
+    synchronized public boolean needsCompaction() {
+        return _records > 2 * _ids.size() + SLACK_RECORDS;
+    }
+
+    /**
+     * Replaces the index by one holding the given entries only, in a safe way: the entries are written to a temporary
+     * file first, which is then moved over the index.
+     */
+    synchronized public void rewrite(Map<Long, Entry> entries) {
+        File tempFile = new File(_file.getParentFile(), TEMP_FILE_NAME);
+        long length = Integer.BYTES;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            CRC32 crc = new CRC32();
+            ByteBuffer header = ByteBuffer.allocate(2 * Long.BYTES + Integer.BYTES);
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                header.clear();
+                header.putLong(e.getKey()).putLong(entry._modified).putInt(entry._json.length);
+                crc.reset();
+                crc.update(header.array());
+                crc.update(entry._json);
+                out.write(header.array());
+                out.write(entry._json);
+                out.writeLong(crc.getValue());
+                length += header.capacity() + entry._json.length + Long.BYTES;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write metadata index {}", tempFile.getAbsolutePath(), e);
+            tempFile.delete();
+            return;
+        }
+        try {
+            Files.move(tempFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to replace metadata index {}", _file.getAbsolutePath(), e);
+            return;
+        }
+        _ids.clear();
+        _ids.addAll(entries.keySet());
+        _records = entries.size();
+        _length = length;
+    }
+}
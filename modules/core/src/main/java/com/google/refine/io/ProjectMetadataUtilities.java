@@ -135,7 +135,10 @@ public class ProjectMetadataUtilities {
             long ctime;
             long mtime;
 
-            File dataFile = new File(projectDir, DATA_ZIP);
+            File dataFile = ProjectUtilities.getDataFile(projectDir);
+            if (dataFile == null) {
+                dataFile = new File(projectDir, DATA_ZIP);
+            }
             ctime = mtime = dataFile.lastModified();
 
             File historyDir = new File(projectDir, HISTORY_DIR);
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Project;
+import com.google.refine.util.Pool;
+
+/**
+ * The append-only log which lets projects be saved incrementally. The rows of a project are only saved from time to
+ * time, in the data file of the project (the snapshot). In between, each save appends to this log a record holding the
+ * header of the project (its column model, history and overlay models), whose size does not depend on the number of
+ * rows. When the project is loaded, the changes of the history entries applied or undone since the snapshot was taken
+ * are replayed on its rows, from the change files which the history keeps anyway.
+ * <p>
+ * The log starts with the id of the snapshot it applies to, so that it is ignored once the snapshot is replaced, and
+ * each record ends with a checksum, so that a record truncated by a crash is ignored as well. Projects are saved in
+ * full again, which compacts the log, once it holds too many records, once too many changes would have to be replayed,
+ * or when the change files needed to replay them are gone.
+ */
+public class ProjectSaveLog {
+
+    final static Logger logger = LoggerFactory.getLogger("project_save_log");
+
+    /**
+     * Whether projects are saved incrementally, configured with the {@code refine.save.incremental} system property.
+     */
+    static public final boolean INCREMENTAL = Boolean.parseBoolean(System.getProperty("refine.save.incremental", "true"));
+
+    /**
+     * The number of incremental saves after which a project is saved in full, configured with the
+     * {@code refine.save.maxLogRecords} system property.
+     */
+    static public final int MAX_RECORDS = Integer.getInteger("refine.save.maxLogRecords", 100);
+
+    /**
+     * The number of changes which loading a project may have to replay, beyond which it is saved in full, configured
+     * with the {@code refine.save.maxReplayedChanges} system property.
+     */
+    static public final int MAX_REPLAYED_CHANGES = Integer.getInteger("refine.save.maxReplayedChanges", 50);
+
+    static final int MAGIC = 0x4F52434C; // "ORCL"
+    static final int LOG_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    // the snapshot which each project in memory was loaded from or last saved to
+    static private final Map<Project, Snapshot> s_snapshots = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static protected class Snapshot {
+
+        final protected long _id;
+        final protected List<Long> _entryIDs;
+        // the number of valid records in the log, and the length of the log up to the end of the last one
+        protected int _records;
+        protected long _length;
+
+        protected Snapshot(long id, List<Long> entryIDs) {
+            _id = id;
+            _entryIDs = entryIDs;
+        }
+    }
+
+    /**
+     * The location of a record in the log.
+     */
+    static protected class Record {
+
+        final protected long _offset;
+        final protected int _length;
+
+        protected Record(long offset, int length) {
+            _offset = offset;
+            _length = length;
+        }
+    }
+
+    static public File getLogFile(File dir) {
+        return new File(dir, ProjectUtilities.DATA_LOG);
+    }
+
+    /**
+     * Records that the data file of the project, identified by the given snapshot id, holds the current state of the
+     * project.
+     */
+    static protected void setSnapshot(Project project, long snapshotID) {
+        setSnapshot(project, snapshotID, getEntryIDs(project.history.getLastPastEntries(0)));
+    }
+
+    /**
+     * Records that the data file of the project, identified by the given snapshot id, holds the state of the project
+     * reached by applying the history entries of the given ids.
+     */
+    static protected void setSnapshot(Project project, long snapshotID, List<Long> entryIDs) {
+        s_snapshots.put(project, new Snapshot(snapshotID, entryIDs));
+    }
+
+    static protected void deleteLog(File dir) {
+        File logFile = getLogFile(dir);
+        if (logFile.exists() && !logFile.delete()) {
+            logger.warn("Failed to delete save log {}", logFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Appends the current header of the project to the log of its snapshot, if the project can be restored from it.
+     *
+     * @return false if the project must be saved in full instead
+     */
+    static protected boolean append(Project project, File dir) throws IOException {
+        Snapshot snapshot = s_snapshots.get(project);
+        if (!INCREMENTAL || snapshot == null || snapshot._id == 0L || snapshot._records >= MAX_RECORDS
+                || ProjectUtilities.getDataFile(dir) == null
+                || !(ProjectManager.singleton.getHistoryEntryManager() instanceof FileHistoryEntryManager)) {
+            return false;
+        }
+        List<Long> entryIDs = getEntryIDs(project.history.getLastPastEntries(0));
+        int common = commonPrefix(snapshot._entryIDs, entryIDs);
+        if (snapshot._entryIDs.size() + entryIDs.size() - 2 * common > MAX_REPLAYED_CHANGES
+                || !changeFilesExist(dir, snapshot._entryIDs, entryIDs, common)) {
+            return false;
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        project.saveHeaderToOutputStream(header, new Pool());
+        byte[] bytes = header.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        // a fresh log starts with the id of the snapshot; otherwise anything after the last valid record is overwritten
+        long position = snapshot._records == 0 ? 0L : snapshot._length;
+        ByteBuffer buffer = ByteBuffer.allocate(LOG_HEADER_SIZE + Integer.BYTES + bytes.length + Long.BYTES);
+        if (position == 0L) {
+            buffer.putInt(MAGIC);
+            buffer.putLong(snapshot._id);
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(getLogFile(dir).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+        snapshot._records++;
+        snapshot._length = position;
+        return true;
+    }
+
+    /**
+     * Reads the valid records of the log of the snapshot the project was loaded from, which must have been set with
+     * {@link #setSnapshot(Project, long)}.
+     */
+    static protected List<Record> readRecords(Project project, File dir) {
+        Snapshot snapshot = s_snapshots.get(project);
+        File logFile = getLogFile(dir);
+        List<Record> records = new ArrayList<>();
+        if (snapshot == null || !logFile.exists()) {
+            return records;
+        }
+        long position = 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (in.readInt() != MAGIC || in.readLong() != snapshot._id) {
+                logger.info("Ignoring save log {} of another snapshot", logFile.getAbsolutePath());
+                return records;
+            }
+            position = LOG_HEADER_SIZE;
+            long fileLength = logFile.length();
+            CRC32 crc = new CRC32();
+            while (position + Integer.BYTES <= fileLength) {
+                int length = in.readInt();
+                if (length < 0 || position + Integer.BYTES + length + Long.BYTES > fileLength) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if (in.readLong() != crc.getValue()) {
+                    break;
+                }
+                records.add(new Record(position + Integer.BYTES, length));
+                position += Integer.BYTES + length + Long.BYTES;
+            }
+        } catch (EOFException e) {
+            // truncated log: keep the records read so far
+        } catch (IOException e) {
+            logger.warn("Failed to read save log {}", logFile.getAbsolutePath(), e);
+        }
+        if (records.size() == 0) {
+            position = 0L;
+        }
+        snapshot._records = records.size();
+        snapshot._length = position;
+        return records;
+    }
+
+    /**
+     * Brings a project freshly loaded from its snapshot to the state saved in a record of the log, by reverting and
+     * applying the changes of the history entries which differ.
+     *
+     * @return false if the change files needed are missing, in which case the project is left untouched
+     * @throws Exception
+     *             if a change could not be replayed, in which case the rows of the project are left in an
+     *             inconsistent state
+     */
+    static protected boolean replay(Project project, File dir, Record record) throws Exception {
+        byte[] bytes = new byte[record._length];
+        try (RandomAccessFile file = new RandomAccessFile(getLogFile(dir), "r")) {
+            file.seek(record._offset);
+            file.readFully(bytes);
+        }
+        Project target = Project.loadFromInputStream(new ByteArrayInputStream(bytes), project.id, new Pool());
+
+        List<HistoryEntry> from = project.history.getLastPastEntries(0);
+        List<HistoryEntry> to = target.history.getLastPastEntries(0);
+        int common = commonPrefix(getEntryIDs(from), getEntryIDs(to));
+        if (!changeFilesExist(dir, getEntryIDs(from), getEntryIDs(to), common)) {
+            return false;
+        }
+        for (int i = from.size() - 1; i >= common; i--) {
+            from.get(i).revert(project);
+        }
+        for (int i = common; i < to.size(); i++) {
+            to.get(i).apply(project);
+        }
+        project.history.setEntries(target.history);
+        project.overlayModels.clear();
+        project.overlayModels.putAll(target.overlayModels);
+        project.update();
+
+        logger.info("Replayed {} changes on project {} since its last full save", from.size() + to.size() - 2 * common,
+                project.id);
+        return true;
+    }
+
+    static protected List<Long> getEntryIDs(List<HistoryEntry> entries) {
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (HistoryEntry entry : entries) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    static protected int commonPrefix(List<Long> from, List<Long> to) {
+        int common = 0;
+        while (common < from.size() && common < to.size() && from.get(common).equals(to.get(common))) {
+            common++;
+        }
+        return common;
+    }
+
+    static protected boolean changeFilesExist(File dir, List<Long> from, List<Long> to, int common) {
+        for (List<Long> ids : List.of(from, to)) {
+            for (int i = common; i < ids.size(); i++) {
+                if (!FileHistoryEntryManager.getChangeFile(dir, ids.get(i)).exists()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
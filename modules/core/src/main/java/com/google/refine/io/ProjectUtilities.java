@@ -34,17 +34,30 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.io;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.model.Project;
+import com.google.refine.model.RowStore;
 import com.google.refine.util.Pool;
 
 public class ProjectUtilities {
@@ -54,71 +67,314 @@ public class ProjectUtilities {
     public static final String DATA_TEMP_ZIP = "data.temp.zip";
     public static final String DATA_OLD_ZIP = "data.old.zip";
 
-    synchronized public static void save(Project project) throws IOException {
-        synchronized (project) {
-            long id = project.id;
-            File dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(id);
+    // each snapshot is saved in a data file of its own, named after its id, which the pointer file names
+    public static final String DATA_POINTER = "data.current";
+    public static final String DATA_TEMP_POINTER = "data.current.temp";
+    public static final String DATA_TEMP_BIN = "data.temp.bin";
+    // the data files of earlier versions, which were replaced by each save
+    public static final String DATA_BIN = "data.bin";
+    public static final String DATA_OLD_BIN = "data.old.bin";
 
-            File tempFile = new File(dir, DATA_TEMP_ZIP);
-            try {
-                saveToFile(project, tempFile);
-            } catch (IOException e) {
-                logger.warn("Failed to save project {}", id, e);
-                try {
-                    tempFile.delete();
-                } catch (Exception e2) {
-                    // just ignore - file probably was never created.
+    public static final String DATA_LOG = "data.log";
+
+    // serializes the saves of each project, which only hold the project lock while capturing its state
+    static final Map<Long, ReentrantLock> s_saveLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Saves a project. Saves of different projects can run concurrently, while saves of the same project are
+     * serialized. The project lock is only held while its state is captured, and while the save log is appended to:
+     * the rows are then written without blocking the changes applied to the project meanwhile.
+     */
+    public static void save(Project project) throws IOException {
+        long id = project.id;
+        File dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(id);
+
+        ReentrantLock saveLock = lockSave(id);
+        try {
+            ColumnarProjectWriter writer;
+            List<Long> entryIDs;
+            Instant captureTime;
+            synchronized (project) {
+                if (appendToLog(project, dir)) {
+                    logger.info("Saved changes to project '{}'", id);
+                    project.setLastSave();
+                    return;
                 }
-                throw e;
+                captureTime = Instant.now();
+                writer = new ColumnarProjectWriter(project);
+                writer.capture();
+                entryIDs = ProjectSaveLog.getEntryIDs(project.history.getLastPastEntries(0));
+                if (!RowStore.COPY_ON_WRITE) {
+                    // the rows are changed in place, they must be written before releasing the lock
+                    saveToDir(project, dir, writer, entryIDs);
+                }
+            }
+            if (RowStore.COPY_ON_WRITE) {
+                saveToDir(project, dir, writer, entryIDs);
             }
+            logger.info("Saved project '{}'", id);
 
-            File file = new File(dir, DATA_ZIP);
-            File oldFile = new File(dir, DATA_OLD_ZIP);
+            // changes applied while writing are more recent than the save, so the project stays modified
+            project.setLastSave(captureTime);
+        } finally {
+            saveLock.unlock();
+        }
+    }
 
-            if (file.exists()) {
-                file.renameTo(oldFile);
+    /**
+     * Acquires the lock serializing the saves of a project.
+     */
+    protected static ReentrantLock lockSave(long id) {
+        while (true) {
+            ReentrantLock lock = s_saveLocks.computeIfAbsent(id, k -> new ReentrantLock());
+            lock.lock();
+            if (s_saveLocks.get(id) == lock) {
+                return lock;
             }
+            // the lock was released meanwhile, with the project
+            lock.unlock();
+        }
+    }
 
-            tempFile.renameTo(file);
-            if (oldFile.exists()) {
-                oldFile.delete();
+    /**
+     * Forgets the lock serializing the saves of a project, once it is disposed or deleted. The lock is kept if a save
+     * is running, rather than waiting for it.
+     */
+    public static void releaseSaveLock(long id) {
+        ReentrantLock lock = s_saveLocks.get(id);
+        if (lock != null && lock.tryLock()) {
+            try {
+                s_saveLocks.remove(id, lock);
+            } finally {
+                lock.unlock();
             }
+        }
+    }
 
-            project.setLastSave();
+    /**
+     * Saves the project incrementally, by appending its header to the log of its last full save.
+     *
+     * @return false if the project must be saved in full instead
+     */
+    protected static boolean appendToLog(Project project, File dir) {
+        try {
+            return ProjectSaveLog.append(project, dir);
+        } catch (IOException e) {
+            logger.warn("Failed to save project {} incrementally", project.id, e);
+            return false;
+        }
+    }
 
-            logger.info("Saved project '{}'", id);
+    /**
+     * Saves the project in the columnar format, replacing any previous data file in the given directory in a safe way.
+     */
+    protected static void saveToDir(Project project, File dir) throws IOException {
+        ColumnarProjectWriter writer = new ColumnarProjectWriter(project);
+        writer.capture();
+        saveToDir(project, dir, writer, ProjectSaveLog.getEntryIDs(project.history.getLastPastEntries(0)));
+    }
+
+    /**
+     * Writes the state of the project captured by the given writer.
+     *
+     * @param entryIDs
+     *            the ids of the history entries applied to the project when its state was captured
+     */
+    protected static void saveToDir(Project project, File dir, ColumnarProjectWriter writer, List<Long> entryIDs)
+            throws IOException {
+        File tempFile = new File(dir, DATA_TEMP_BIN);
+        try {
+            writer.write(tempFile);
+        } catch (IOException e) {
+            logger.warn("Failed to save project {}", project.id, e);
+            try {
+                tempFile.delete();
+            } catch (Exception e2) {
+                // just ignore - file probably was never created.
+            }
+            throw e;
+        }
+
+        // the previous data file may still be mapped by the rows of the project, and mapped files cannot be
+        // replaced on some platforms: the snapshot gets a file of its own, and the pointer to it is replaced instead
+        File file = new File(dir, getDataFileName(writer.getSnapshotID()));
+        try {
+            replace(tempFile, file);
+            setDataFile(dir, file);
+        } catch (IOException e) {
+            // the previous data file and its save log are left untouched, and still hold the project
+            logger.warn("Failed to replace the data file of project {}", project.id, e);
+            tempFile.delete();
+            file.delete();
+            throw e;
         }
+        ProjectSaveLog.setSnapshot(project, writer.getSnapshotID(), entryIDs);
+        ProjectSaveLog.deleteLog(dir);
+
+        deleteStaleDataFiles(dir, file);
+        deleteLegacyFiles(dir, file, writer);
     }
 
-    protected static void saveToFile(Project project, File file) throws IOException {
-        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    /**
+     * Moves a file in place of another one, atomically where the file system allows it.
+     */
+    protected static void replace(File tempFile, File file) throws IOException {
         try {
-            Pool pool = new Pool();
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the name of the data file holding the snapshot of the given id
+     */
+    protected static String getDataFileName(long snapshotID) {
+        return "data." + Long.toHexString(snapshotID) + ".bin";
+    }
 
-            out.putNextEntry(new ZipEntry("data.txt"));
+    /**
+     * Makes the given file the current data file of the project in the given directory. The pointer file, which is
+     * never mapped, is replaced atomically where the file system allows it.
+     */
+    protected static void setDataFile(File dir, File file) throws IOException {
+        File tempPointer = new File(dir, DATA_TEMP_POINTER);
+        try {
+            Files.write(tempPointer.toPath(), file.getName().getBytes(StandardCharsets.UTF_8));
+            replace(tempPointer, new File(dir, DATA_POINTER));
+        } catch (IOException e) {
+            tempPointer.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the current data file of the project in the given directory, or null if there is none
+     */
+    public static File getDataFile(File dir) {
+        File pointer = new File(dir, DATA_POINTER);
+        if (pointer.isFile()) {
             try {
-                project.saveToOutputStream(out, pool);
-            } finally {
-                out.closeEntry();
+                String filename = new String(Files.readAllBytes(pointer.toPath()), StandardCharsets.UTF_8).trim();
+                File file = new File(dir, filename);
+                if (file.isFile()) {
+                    return file;
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read data file pointer {}", pointer.getAbsolutePath(), e);
             }
+        }
+        File file = new File(dir, DATA_BIN);
+        return file.isFile() ? file : null;
+    }
 
-            out.putNextEntry(new ZipEntry("pool.txt"));
-            try {
-                pool.save(out);
-            } finally {
-                out.closeEntry();
+    /**
+     * @return the data files the project in the given directory can be loaded from, starting with the current one
+     */
+    protected static List<File> getDataFiles(File dir) {
+        Set<File> files = new LinkedHashSet<>();
+        File current = getDataFile(dir);
+        if (current != null) {
+            files.add(current);
+        }
+        for (String filename : new String[] { DATA_BIN, DATA_TEMP_BIN, DATA_OLD_BIN }) {
+            File file = new File(dir, filename);
+            if (file.isFile()) {
+                files.add(file);
+            }
+        }
+        // the data files of earlier snapshots which could not be deleted yet, most recent first
+        File[] snapshotFiles = listDataFiles(dir);
+        Arrays.sort(snapshotFiles, Comparator.comparingLong(File::lastModified).reversed());
+        files.addAll(Arrays.asList(snapshotFiles));
+        return new ArrayList<>(files);
+    }
+
+    protected static File[] listDataFiles(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("data.") && name.endsWith(".bin"));
+        return files != null ? files : new File[0];
+    }
+
+    /**
+     * Deletes the data files of earlier snapshots. Files which are still mapped cannot be deleted on some platforms:
+     * they are left in place, and deleted after a later save.
+     */
+    protected static void deleteStaleDataFiles(File dir, File current) {
+        for (File file : listDataFiles(dir)) {
+            if (!file.equals(current) && !file.getName().equals(DATA_TEMP_BIN) && !file.delete()) {
+                logger.debug("Could not delete data file {}, which may still be mapped", file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Deletes the data files in the legacy format, which are superseded once the columnar one is in place. They are
+     * only deleted once the columnar file has been read back successfully.
+     */
+    protected static void deleteLegacyFiles(File dir, File file, ColumnarProjectWriter writer) {
+        List<File> legacyFiles = new ArrayList<>();
+        for (String filename : new String[] { DATA_ZIP, DATA_TEMP_ZIP, DATA_OLD_ZIP }) {
+            File legacyFile = new File(dir, filename);
+            if (legacyFile.exists()) {
+                legacyFiles.add(legacyFile);
+            }
+        }
+        if (legacyFiles.isEmpty()) {
+            return;
+        }
+        try {
+            verify(file, writer.getSnapshotID(), writer.getRowCount());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read back data file {}, keeping the legacy ones", file.getAbsolutePath(), e);
+            return;
+        }
+        for (File legacyFile : legacyFiles) {
+            if (!legacyFile.delete()) {
+                logger.warn("Failed to delete legacy data file {}", legacyFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Reads back all the rows of a columnar data file, checking that it holds the snapshot written.
+     */
+    protected static void verify(File file, long snapshotID, int rowCount) throws IOException {
+        try (ColumnarProjectReader reader = new ColumnarProjectReader(file)) {
+            if (reader.getSnapshotID() != snapshotID || reader.getRowCount() != rowCount) {
+                throw new IOException("Data file " + file.getAbsolutePath() + " does not hold the snapshot written");
+            }
+            Pool pool = reader.loadPool();
+            for (int r = 0; r < rowCount; r++) {
+                reader.readRow(r, pool);
             }
-        } finally {
-            out.close();
         }
     }
 
+    /**
+     * @return the id of the snapshot written
+     */
+    protected static long saveToFile(Project project, File file) throws IOException {
+        ColumnarProjectWriter writer = new ColumnarProjectWriter(project);
+        writer.write(file);
+        return writer.getSnapshotID();
+    }
+
     static public Project load(File dir, long id) {
+        for (File file : getDataFiles(dir)) {
+            try {
+                return loadFromSnapshot(dir, file, id);
+            } catch (IOException e) {
+                logger.warn("Failed to load from data file {} / {}", dir, file.getName(), e);
+            }
+        }
+        // fall back on the legacy format, and migrate the project to the columnar one
         for (String filename : new String[] { DATA_ZIP, DATA_TEMP_ZIP, DATA_OLD_ZIP }) {
             try {
                 File file = new File(dir, filename);
                 if (file.exists()) {
-                    return loadFromFile(file, id);
+                    Project project = loadFromFile(file, id);
+                    migrate(project, dir);
+                    return project;
                 }
             } catch (IOException e) {
                 logger.warn("Failed to load from data file {} / {}", dir, filename, e);
@@ -128,6 +384,59 @@ public class ProjectUtilities {
         return null;
     }
 
+    static protected void migrate(Project project, File dir) {
+        try {
+            saveToDir(project, dir);
+            logger.info("Migrated project {} to the columnar data format", project.id);
+        } catch (IOException e) {
+            logger.warn("Failed to migrate project {} to the columnar data format, keeping the legacy one", project.id, e);
+        }
+    }
+
+    /**
+     * Loads a project from a columnar data file, and replays on it the changes saved since then in the save log.
+     */
+    static protected Project loadFromSnapshot(File dir, File file, long id) throws IOException {
+        Project project = loadFromColumnarFile(file, id);
+        List<ProjectSaveLog.Record> records = ProjectSaveLog.readRecords(project, dir);
+        // fall back on earlier records if the changes needed by the last ones are gone
+        for (int i = records.size() - 1; i >= 0; i--) {
+            try {
+                if (ProjectSaveLog.replay(project, dir, records.get(i))) {
+                    break;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to replay the changes saved for project {}", id, e);
+                // the rows may have been partially changed: start again from the snapshot
+                project.dispose();
+                project = loadFromColumnarFile(file, id);
+                ProjectSaveLog.readRecords(project, dir);
+            }
+        }
+        return project;
+    }
+
+    static protected Project loadFromColumnarFile(File file, long id) throws IOException {
+        ColumnarProjectReader reader = new ColumnarProjectReader(file);
+        boolean paged = false;
+        try {
+            Project project;
+            if (reader.getRowCount() > RowStore.PAGING_THRESHOLD) {
+                project = reader.loadPagedProject(id);
+                // the reader is now owned by the rows of the project
+                paged = true;
+            } else {
+                project = reader.loadProject(id);
+            }
+            ProjectSaveLog.setSnapshot(project, reader.getSnapshotID());
+            return project;
+        } finally {
+            if (!paged) {
+                reader.close();
+            }
+        }
+    }
+
     static protected Project loadFromFile(
             File file,
             long id) throws IOException {
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stream which reads its source ahead in a thread of its own, so that producing the data of the source, such as
+ * decompressing it, overlaps with what the reader does with the data, such as writing it to files. At most a few
+ * blocks are read ahead.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    static final int BLOCK_SIZE = 1 << 16;
+    static final int MAX_BLOCKS = 16;
+    // marks the end of the source
+    static final byte[] END = new byte[0];
+
+    static private final AtomicInteger s_threadCount = new AtomicInteger();
+
+    final protected InputStream _source;
+    final protected BlockingQueue<byte[]> _blocks = new ArrayBlockingQueue<>(MAX_BLOCKS);
+    final protected Thread _thread;
+    protected volatile IOException _error;
+    protected byte[] _block;
+    protected int _position;
+    protected volatile boolean _closed;
+
+    public ReadAheadInputStream(InputStream source) {
+        _source = source;
+        _thread = new Thread(this::readAhead, "archive-read-ahead-" + s_threadCount.incrementAndGet());
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    protected void readAhead() {
+        try {
+            while (true) {
+                byte[] block = new byte[BLOCK_SIZE];
+                int count = _source.readNBytes(block, 0, BLOCK_SIZE);
+                if (count == 0) {
+                    break;
+                }
+                _blocks.put(count < BLOCK_SIZE ? Arrays.copyOf(block, count) : block);
+            }
+        } catch (IOException e) {
+            _error = e;
+        } catch (RuntimeException e) {
+            // the source may fail this way when it is closed while being read
+            if (!_closed) {
+                _error = new IOException(e);
+            }
+        } catch (InterruptedException e) {
+            // the stream was closed
+            return;
+        }
+        try {
+            _blocks.put(END);
+        } catch (InterruptedException e) {
+            // the stream was closed
+        }
+    }
+
+    /**
+     * @return false at the end of the source
+     */
+    protected boolean nextBlock() throws IOException {
+        if (_closed) {
+            throw new IOException("Stream closed");
+        }
+        if (_block == END) {
+            return false;
+        }
+        if (_block == null || _position == _block.length) {
+            try {
+                _block = _blocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading");
+            }
+            _position = 0;
+            if (_block == END) {
+                if (_error != null) {
+                    throw _error;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextBlock() ? _block[_position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, _block.length - _position);
+        System.arraycopy(_block, _position, b, off, n);
+        _position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return _block == null || _block == END ? 0 : _block.length - _position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        _thread.interrupt();
+        _source.close();
+    }
+}
@@ -169,8 +169,17 @@ public class Cell implements HasFields, Serializable {
     static public Cell loadStreaming(String s, Pool pool) throws Exception {
         InjectableValues injectableValues = new InjectableValues.Std()
                 .addValue("pool", pool);
-        return ParsingUtilities.mapper.setInjectableValues(injectableValues)
-                .readValue(s, Cell.class);
+        return ParsingUtilities.mapper.reader(injectableValues).forType(Cell.class).readValue(s);
+    }
+
+    /**
+     * Reads a cell of the given column, whose string value is shared with the other cells of the column loaded with
+     * the same pool.
+     */
+    static public Cell loadStreaming(String s, Pool pool, int cellIndex) throws Exception {
+        Cell cell = loadStreaming(s, pool);
+        CellValueDictionary dictionary = pool != null ? pool.getValueDictionary() : null;
+        return dictionary != null ? dictionary.intern(cellIndex, cell) : cell;
     }
 
     @JsonCreator
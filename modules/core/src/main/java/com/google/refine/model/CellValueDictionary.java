@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+/**
+ * Dictionaries of the string values of the cells of each column, which let the cells holding the same string share a
+ * single instance of it while rows are loaded or imported. Categorical columns, where many rows hold a few distinct
+ * values, then take much less memory.
+ * <p>
+ * The dictionary of a column is dropped once its values turn out to be mostly distinct, as it would only cost memory
+ * and lookups there, and values are looked up no more in that column.
+ */
+public class CellValueDictionary {
+
+    /**
+     * Whether the string values of cells are shared while loading and importing rows, configured with the
+     * {@code refine.cells.dictionary} system property.
+     */
+    static public final boolean ENABLED = Boolean.parseBoolean(System.getProperty("refine.cells.dictionary", "true"));
+
+    /**
+     * The number of distinct values beyond which the dictionary of a column is dropped, configured with the
+     * {@code refine.cells.dictionaryMaxEntries} system property.
+     */
+    static public final int MAX_ENTRIES = Integer.getInteger("refine.cells.dictionaryMaxEntries", 1 << 16);
+
+    // longer strings are rarely repeated, so they are not looked up
+    static final int MAX_LENGTH = 256;
+    // the number of lookups after which the share of distinct values of a column is checked
+    static final int SAMPLE_SIZE = 1000;
+    static final double MAX_DISTINCT_RATIO = 0.5;
+
+    static protected class ColumnDictionary {
+
+        protected Map<String, String> _values = new HashMap<>();
+        protected long _hits;
+        protected long _misses;
+        protected boolean _dropped;
+
+        synchronized protected String intern(String value) {
+            if (_dropped) {
+                return value;
+            }
+            String shared = _values.putIfAbsent(value, value);
+            if (shared != null) {
+                _hits++;
+                return shared;
+            }
+            _misses++;
+            if (_values.size() > MAX_ENTRIES
+                    || (_hits + _misses == SAMPLE_SIZE && _misses > SAMPLE_SIZE * MAX_DISTINCT_RATIO)) {
+                _dropped = true;
+                _values = null;
+            }
+            return value;
+        }
+    }
+
+    protected ColumnDictionary[] _columns = new ColumnDictionary[0];
+
+    synchronized protected ColumnDictionary getColumn(int cellIndex) {
+        if (cellIndex >= _columns.length) {
+            _columns = Arrays.copyOf(_columns, Math.max(cellIndex + 1, 2 * _columns.length));
+        }
+        ColumnDictionary column = _columns[cellIndex];
+        if (column == null) {
+            column = new ColumnDictionary();
+            _columns[cellIndex] = column;
+        }
+        return column;
+    }
+
+    /**
+     * @return the instance of the string shared by the cells of the column, or the string itself if it is not shared
+     */
+    public String intern(int cellIndex, String value) {
+        if (!ENABLED || cellIndex < 0 || value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        return getColumn(cellIndex).intern(value);
+    }
+
+    /**
+     * @return a cell holding the shared instance of the string value of the given cell, which is returned as is if its
+     *         value is not a string or is shared already
+     */
+    public Cell intern(int cellIndex, Cell cell) {
+        if (cell == null || !(cell.value instanceof String)) {
+            return cell;
+        }
+        String value = intern(cellIndex, (String) cell.value);
+        return value == cell.value ? cell : new Cell(value, cell.recon);
+    }
+
+    /**
+     * Replaces the string values of the cells of the row by their shared instances.
+     */
+    public void intern(Row row) {
+        List<Cell> cells = row.cells;
+        for (int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            Cell interned = intern(i, cell);
+            if (interned != cell) {
+                cells.set(i, interned);
+            }
+        }
+    }
+
+    /**
+     * @return the number of values looked up which were found in the dictionaries
+     */
+    synchronized public long getHits() {
+        long hits = 0;
+        for (ColumnDictionary column : _columns) {
+            if (column != null) {
+                synchronized (column) {
+                    hits += column._hits;
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return the number of values looked up, in the columns whose dictionary was not dropped when they were
+     */
+    synchronized public long getLookups() {
+        long lookups = 0;
+        for (ColumnDictionary column : _columns) {
+            if (column != null) {
+                synchronized (column) {
+                    lookups += column._hits + column._misses;
+                }
+            }
+        }
+        return lookups;
+    }
+
+    public double getHitRate() {
+        long lookups = getLookups();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    /**
+     * @return the number of columns whose dictionary was dropped, as they hold mostly distinct values
+     */
+    synchronized public int getDroppedColumnCount() {
+        int dropped = 0;
+        for (ColumnDictionary column : _columns) {
+            if (column != null) {
+                synchronized (column) {
+                    dropped += column._dropped ? 1 : 0;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Logs the hit rate of the dictionaries, if any value was looked up.
+     */
+    public void logStats(Logger logger, String what) {
+        long lookups = getLookups();
+        if (lookups > 0) {
+            logger.info("Shared {}% of {} string values while loading {}, dropped the dictionary of {} columns",
+                    Math.round(100 * getHitRate()), lookups, what, getDroppedColumnCount());
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of rows stored in chunks of consecutive rows, which are shared between a list and its copies: copying the
+ * list only costs one reference per chunk, and a shared chunk is itself copied before being modified, so that a list
+ * and its copies never affect each other. Keeping the previous version of the rows of a project, for readers or to
+ * undo a change, therefore costs memory in proportion to the chunks changed since rather than to the number of rows.
+ * <p>
+ * Chunks can also be read from a {@link ChunkSource} rather than held by the list, such as the pages of rows of a
+ * project which is too large to be held in memory: such a chunk is only copied in memory when it is modified.
+ * <p>
+ * Like other lists, instances are not thread-safe: a list must not be read while it is being modified. Copies can be
+ * read and modified independently of each other, in different threads.
+ */
+public class ChunkedRowList extends AbstractList<Row> implements RandomAccess {
+
+    /**
+     * Number of rows per chunk. Chunks can grow up to twice this size, and shrink, as rows are inserted and removed.
+     */
+    static public final int CHUNK_SIZE = Integer.getInteger("refine.rows.chunkSize", 1024);
+
+    static final Row[][] NO_CHUNKS = new Row[0][];
+
+    /**
+     * Rows of a chunk which are not held by the list, but read each time they are accessed.
+     */
+    public interface ChunkSource {
+
+        /**
+         * @return the rows of the chunk, which must not be modified. Must be safe to call from several threads at once.
+         */
+        public Row[] getRows();
+    }
+
+    protected final int _chunkSize;
+    protected Row[][] _chunks = NO_CHUNKS;
+    // the source of each chunk which is not held in memory, whose entry in _chunks is then null
+    protected ChunkSource[] _sources = new ChunkSource[0];
+    // _offsets[k] is the index of the first row of chunk k, and _offsets[_chunkCount] the size of the list
+    protected int[] _offsets = new int[1];
+    // whether each chunk belongs to this list only, and can be modified in place
+    protected boolean[] _owned = new boolean[0];
+    protected int _chunkCount;
+    // whether all chunks but the last one are full, and the last one is not larger, so that chunks can be found
+    // without searching
+    protected boolean _uniform = true;
+
+    public ChunkedRowList() {
+        this(CHUNK_SIZE);
+    }
+
+    public ChunkedRowList(int chunkSize) {
+        _chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * @return a list holding the given rows, sharing their storage if they are held by a {@link ChunkedRowList}
+     */
+    static public ChunkedRowList copyOf(List<Row> rows) {
+        if (rows instanceof LazyRowList) {
+            rows = ((LazyRowList) rows).getRows();
+        }
+        if (rows instanceof ChunkedRowList) {
+            return ((ChunkedRowList) rows).copy();
+        }
+        ChunkedRowList list = new ChunkedRowList();
+        list.addAll(rows);
+        return list;
+    }
+
+    /**
+     * @return the given rows if their storage can be shared without decoding them, or else a list holding them which
+     *         can be shared
+     */
+    static public List<Row> toShareable(List<Row> rows) {
+        if (rows instanceof ChunkedRowList || rows instanceof LazyRowList) {
+            return rows;
+        }
+        return copyOf(rows);
+    }
+
+    /**
+     * @return a copy of this list sharing its chunks, which costs one reference per chunk
+     */
+    public ChunkedRowList copy() {
+        ChunkedRowList copy = new ChunkedRowList(_chunkSize);
+        copy._chunks = Arrays.copyOf(_chunks, _chunkCount);
+        copy._sources = Arrays.copyOf(_sources, _chunkCount);
+        copy._offsets = Arrays.copyOf(_offsets, _chunkCount + 1);
+        copy._owned = new boolean[_chunkCount];
+        copy._chunkCount = _chunkCount;
+        copy._uniform = _uniform;
+        // the chunks are now shared
+        Arrays.fill(_owned, 0, _chunkCount, false);
+        return copy;
+    }
+
+    /**
+     * Appends a chunk of rows which are read from the given source when accessed, rather than held by this list.
+     */
+    public void addChunk(ChunkSource source, int length) {
+        insertChunk(_chunkCount, null, length, false);
+        _sources[_chunkCount - 1] = source;
+        modCount++;
+    }
+
+    /**
+     * @return true if some rows of this list are read from a {@link ChunkSource} rather than held in memory
+     */
+    public boolean hasChunkSources() {
+        for (int k = 0; k < _chunkCount; k++) {
+            if (_sources[k] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return up to the given number of rows of this list, spread over the chunks held in memory
+     */
+    public List<Row> sampleLoadedRows(int max) {
+        int loaded = getLoadedRowCount();
+        List<Row> sample = new ArrayList<>();
+        int step = Math.max(1, loaded / Math.max(1, max));
+        int position = 0;
+        for (int k = 0; k < _chunkCount; k++) {
+            if (_chunks[k] == null) {
+                continue;
+            }
+            int length = chunkLength(k);
+            for (; position < length; position += step) {
+                sample.add(_chunks[k][position]);
+            }
+            position -= length;
+        }
+        return sample;
+    }
+
+    /**
+     * @return the number of rows held in memory by this list, rather than read from a {@link ChunkSource}
+     */
+    public int getLoadedRowCount() {
+        int count = 0;
+        for (int k = 0; k < _chunkCount; k++) {
+            if (_chunks[k] != null) {
+                count += chunkLength(k);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of chunks the rows are stored in
+     */
+    public int getChunkCount() {
+        return _chunkCount;
+    }
+
+    @Override
+    public int size() {
+        return _offsets[_chunkCount];
+    }
+
+    @Override
+    public Row get(int index) {
+        int k = chunkOf(index);
+        return rowsOf(k)[index - _offsets[k]];
+    }
+
+    @Override
+    public Row set(int index, Row row) {
+        int k = chunkOf(index);
+        Row[] chunk = ownChunk(k, 0);
+        int i = index - _offsets[k];
+        Row old = chunk[i];
+        chunk[i] = row;
+        return old;
+    }
+
+    @Override
+    public boolean add(Row row) {
+        int k = _chunkCount - 1;
+        if (k < 0 || chunkLength(k) >= _chunkSize) {
+            Row[] chunk = new Row[_chunkSize];
+            chunk[0] = row;
+            insertChunk(_chunkCount, chunk, 1, true);
+        } else {
+            Row[] chunk = ownChunk(k, 1);
+            chunk[chunkLength(k)] = row;
+            _offsets[_chunkCount]++;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Row row) {
+        int size = size();
+        if (index == size) {
+            add(row);
+            return;
+        }
+        int k = chunkOf(index);
+        int length = chunkLength(k);
+        Row[] chunk = ownChunk(k, 1);
+        int i = index - _offsets[k];
+        System.arraycopy(chunk, i, chunk, i + 1, length - i);
+        chunk[i] = row;
+        for (int j = k + 1; j <= _chunkCount; j++) {
+            _offsets[j]++;
+        }
+        _uniform = false;
+        if (length + 1 >= 2 * _chunkSize) {
+            splitChunk(k);
+        }
+        modCount++;
+    }
+
+    @Override
+    public Row remove(int index) {
+        int k = chunkOf(index);
+        int length = chunkLength(k);
+        Row[] chunk = ownChunk(k, 0);
+        int i = index - _offsets[k];
+        Row old = chunk[i];
+        System.arraycopy(chunk, i + 1, chunk, i, length - i - 1);
+        chunk[length - 1] = null;
+        for (int j = k + 1; j <= _chunkCount; j++) {
+            _offsets[j]--;
+        }
+        if (length == 1) {
+            removeChunk(k);
+        } else if (k < _chunkCount - 1) {
+            _uniform = false;
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Row> c) {
+        for (Row row : c) {
+            add(row);
+        }
+        return !c.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        _chunks = NO_CHUNKS;
+        _sources = new ChunkSource[0];
+        _offsets = new int[1];
+        _owned = new boolean[0];
+        _chunkCount = 0;
+        _uniform = true;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int[] indices = new int[toIndex - fromIndex];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = fromIndex + i;
+        }
+        removeAll(indices);
+    }
+
+    /**
+     * Removes the rows at the given indices, in a single pass over the chunks. Chunks without any of these rows are
+     * left untouched, and remain shared with the copies of this list.
+     *
+     * @param indices
+     *            strictly increasing row indices
+     * @return the rows removed, in the same order
+     */
+    public List<Row> removeAll(int[] indices) {
+        List<Row> removed = new ArrayList<>(indices.length);
+        Rebuilder rebuilder = new Rebuilder();
+        int next = 0;
+        for (int k = 0; k < _chunkCount; k++) {
+            int start = _offsets[k];
+            int end = _offsets[k + 1];
+            if (next >= indices.length || indices[next] >= end) {
+                rebuilder.keepChunk(k);
+                continue;
+            }
+            Row[] rows = rowsOf(k);
+            Row[] chunk = new Row[end - start];
+            int length = 0;
+            for (int r = start; r < end; r++) {
+                Row row = rows[r - start];
+                if (next < indices.length && indices[next] == r) {
+                    removed.add(row);
+                    next++;
+                } else {
+                    chunk[length++] = row;
+                }
+            }
+            rebuilder.addRows(chunk, length);
+        }
+        if (next < indices.length) {
+            throw new IndexOutOfBoundsException("Row index " + indices[next] + " out of range, row count " + size());
+        }
+        rebuilder.install();
+        return removed;
+    }
+
+    /**
+     * Inserts rows at the given indices, in a single pass over the chunks. Chunks where no row is inserted are left
+     * untouched, and remain shared with the copies of this list. This reverts {@link #removeAll(int[])}.
+     *
+     * @param indices
+     *            strictly increasing indices of the inserted rows in the resulting list
+     * @param rows
+     *            the rows to insert, in the same order
+     */
+    public void insertAll(int[] indices, List<Row> rows) {
+        int size = size();
+        if (indices.length > 0 && indices[indices.length - 1] - (indices.length - 1) > size) {
+            throw new IndexOutOfBoundsException("Row index " + indices[indices.length - 1] + " out of range");
+        }
+        Rebuilder rebuilder = new Rebuilder();
+        int next = 0;
+        for (int k = 0; k < _chunkCount; k++) {
+            int start = _offsets[k];
+            int end = _offsets[k + 1];
+            boolean last = k == _chunkCount - 1;
+            // rows inserted at the end of the list go into the last chunk
+            if (next >= indices.length || indices[next] - next > (last ? end : end - 1)) {
+                rebuilder.keepChunk(k);
+                continue;
+            }
+            Row[] current = rowsOf(k);
+            Row[] chunk = new Row[end - start + indices.length - next];
+            int length = 0;
+            for (int r = start; r < end; r++) {
+                while (next < indices.length && indices[next] - next == r) {
+                    chunk[length++] = rows.get(next++);
+                }
+                chunk[length++] = current[r - start];
+            }
+            while (last && next < indices.length) {
+                chunk[length++] = rows.get(next++);
+            }
+            rebuilder.addRows(chunk, length);
+        }
+        if (_chunkCount == 0) {
+            rebuilder.addRows(rows.toArray(new Row[0]), rows.size());
+        }
+        rebuilder.install();
+    }
+
+    /**
+     * Finds the chunk holding the row at the given index.
+     */
+    protected int chunkOf(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Row index " + index + " out of range, row count " + size());
+        }
+        if (_uniform) {
+            return index / _chunkSize;
+        }
+        int low = 0;
+        int high = _chunkCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (_offsets[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    protected int chunkLength(int k) {
+        return _offsets[k + 1] - _offsets[k];
+    }
+
+    /**
+     * @return the rows of a chunk, read from its source if it is not held in memory
+     */
+    protected Row[] rowsOf(int k) {
+        Row[] chunk = _chunks[k];
+        return chunk != null ? chunk : _sources[k].getRows();
+    }
+
+    /**
+     * Returns a chunk which can be modified in place, copying it first if it is shared.
+     *
+     * @param extra
+     *            the number of rows about to be added to the chunk
+     */
+    protected Row[] ownChunk(int k, int extra) {
+        Row[] chunk = rowsOf(k);
+        int needed = chunkLength(k) + extra;
+        if (!_owned[k] || chunk.length < needed) {
+            // leave room for a few more rows in chunks which grow
+            int capacity = extra == 0 ? needed : Math.max(needed, Math.min(2 * _chunkSize, needed + _chunkSize / 2));
+            chunk = Arrays.copyOf(chunk, capacity);
+            _chunks[k] = chunk;
+            _sources[k] = null;
+            _owned[k] = true;
+        }
+        return chunk;
+    }
+
+    protected void insertChunk(int k, Row[] chunk, int length, boolean owned) {
+        if (_chunkCount == _chunks.length) {
+            int capacity = Math.max(4, _chunkCount * 2);
+            _chunks = Arrays.copyOf(_chunks, capacity);
+            _sources = Arrays.copyOf(_sources, capacity);
+            _offsets = Arrays.copyOf(_offsets, capacity + 1);
+            _owned = Arrays.copyOf(_owned, capacity);
+        }
+        System.arraycopy(_chunks, k, _chunks, k + 1, _chunkCount - k);
+        System.arraycopy(_sources, k, _sources, k + 1, _chunkCount - k);
+        System.arraycopy(_owned, k, _owned, k + 1, _chunkCount - k);
+        System.arraycopy(_offsets, k, _offsets, k + 1, _chunkCount - k + 1);
+        _chunks[k] = chunk;
+        _sources[k] = null;
+        _owned[k] = owned;
+        _chunkCount++;
+        for (int j = k + 1; j <= _chunkCount; j++) {
+            _offsets[j] += length;
+        }
+        if (k < _chunkCount - 1 || (k > 0 && chunkLength(k - 1) != _chunkSize)) {
+            _uniform = false;
+        }
+    }
+
+    protected void removeChunk(int k) {
+        System.arraycopy(_chunks, k + 1, _chunks, k, _chunkCount - k - 1);
+        System.arraycopy(_sources, k + 1, _sources, k, _chunkCount - k - 1);
+        System.arraycopy(_owned, k + 1, _owned, k, _chunkCount - k - 1);
+        System.arraycopy(_offsets, k + 1, _offsets, k, _chunkCount - k);
+        _chunkCount--;
+        _chunks[_chunkCount] = null;
+        _sources[_chunkCount] = null;
+        if (k < _chunkCount) {
+            _uniform = false;
+        }
+    }
+
+    protected void splitChunk(int k) {
+        Row[] chunk = _chunks[k];
+        int length = chunkLength(k);
+        int half = length / 2;
+        Row[] second = Arrays.copyOfRange(chunk, half, length);
+        Arrays.fill(chunk, half, length, null);
+        // the rows moved to the new chunk are already counted in the offsets of the following chunks
+        insertChunk(k + 1, second, 0, true);
+        _offsets[k + 1] = _offsets[k] + half;
+    }
+
+    /**
+     * Builds the chunks of this list anew, reusing the chunks which are kept as they are.
+     */
+    protected class Rebuilder {
+
+        final List<Row[]> chunks = new ArrayList<>();
+        final List<ChunkSource> sources = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+        final List<Boolean> owned = new ArrayList<>();
+
+        void keepChunk(int k) {
+            chunks.add(_chunks[k]);
+            sources.add(_sources[k]);
+            lengths.add(chunkLength(k));
+            owned.add(_owned[k]);
+        }
+
+        /**
+         * Adds rows which belong to this list only, split into chunks of the standard size if they are too many.
+         */
+        void addRows(Row[] rows, int length) {
+            if (length == 0) {
+                return;
+            }
+            if (length < 2 * _chunkSize) {
+                chunks.add(rows);
+                sources.add(null);
+                lengths.add(length);
+                owned.add(true);
+                return;
+            }
+            for (int start = 0; start < length; start += _chunkSize) {
+                int end = Math.min(length, start + _chunkSize);
+                chunks.add(Arrays.copyOfRange(rows, start, end));
+                sources.add(null);
+                lengths.add(end - start);
+                owned.add(true);
+            }
+        }
+
+        void install() {
+            int count = chunks.size();
+            int rowCount = 0;
+            for (int length : lengths) {
+                rowCount += length;
+            }
+            // chunks read from a source are left as they are, rather than loaded in memory
+            if (count > 2 * ((rowCount + _chunkSize - 1) / _chunkSize) + 4 && !sources.stream().anyMatch(source -> source != null)) {
+                // too many small chunks: gather the rows in full chunks again
+                Row[] rows = new Row[rowCount];
+                int position = 0;
+                for (int k = 0; k < count; k++) {
+                    System.arraycopy(chunks.get(k), 0, rows, position, lengths.get(k));
+                    position += lengths.get(k);
+                }
+                clear();
+                for (Row row : rows) {
+                    add(row);
+                }
+                return;
+            }
+            _chunks = chunks.toArray(new Row[Math.max(4, count)][]);
+            _sources = sources.toArray(new ChunkSource[_chunks.length]);
+            _offsets = new int[_chunks.length + 1];
+            _owned = new boolean[_chunks.length];
+            _uniform = true;
+            for (int k = 0; k < count; k++) {
+                _offsets[k + 1] = _offsets[k] + lengths.get(k);
+                _owned[k] = owned.get(k);
+                if (k < count - 1 ? lengths.get(k) != _chunkSize : lengths.get(k) > _chunkSize) {
+                    _uniform = false;
+                }
+            }
+            _chunkCount = count;
+            modCount++;
+        }
+    }
+}
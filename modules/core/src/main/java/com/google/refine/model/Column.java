@@ -125,20 +125,20 @@ public class Column {
      * {@link com.google.refine.LookupCacheManager#flushLookupsInvolvingProjectColumn(long, String)} e.g.
      * ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, column.getName())
      */
-    public void clearPrecomputes() {
+    synchronized public void clearPrecomputes() {
         if (_precomputes != null) {
             _precomputes.clear();
         }
     }
 
-    public Object getPrecompute(String key) {
+    synchronized public Object getPrecompute(String key) {
         if (_precomputes != null) {
             return _precomputes.get(key);
         }
         return null;
     }
 
-    public void setPrecompute(String key, Object value) {
+    synchronized public void setPrecompute(String key, Object value) {
         if (_precomputes == null) {
             _precomputes = new HashMap<String, Object>();
         }
@@ -317,6 +317,21 @@ public class ColumnModel {
         _maxCellIndex = maxCellIndex;
     }
 
+    /**
+     * @return a copy of this model, sharing its columns and column groups, which is not affected by later changes to
+     *         the list of columns
+     */
+    synchronized public ColumnModel copy() {
+        ColumnModel copy = new ColumnModel();
+        copy.columns.addAll(columns);
+        copy.columnGroups.addAll(columnGroups);
+        copy._keyColumnIndex = _keyColumnIndex;
+        copy._rootColumnGroups = _rootColumnGroups;
+        copy.generateMaps();
+        copy._maxCellIndex = _maxCellIndex;
+        return copy;
+    }
+
     /**
      * Clear cached value computations for all columns
      */
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The cells of a row, stored without a {@link Cell} object for the cells which are not reconciled. The values of such
+ * cells are kept as they are, except for longs, doubles and booleans, which are kept unboxed. Reconciled cells are kept
+ * as they are. A cell which is not reconciled therefore takes a few bytes of references, tags and payload rather than
+ * a cell object, and a boxed number, of its own.
+ * <p>
+ * The cells which are not reconciled are created again each time they are read: like their values, they must be
+ * compared with {@link Cell#equals(Object)} rather than by identity. {@link #getValue(int)} reads their value without
+ * creating them.
+ */
+public class CompactCellList extends AbstractList<Cell> implements RandomAccess {
+
+    static final byte TAG_NULL = 0;
+    // a cell which is not reconciled, whose value is held in _objects
+    static final byte TAG_VALUE = 1;
+    // a cell held as is in _objects
+    static final byte TAG_CELL = 2;
+    // cells which are not reconciled, whose value is held in _primitives
+    static final byte TAG_LONG = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_BOOLEAN = 5;
+
+    static final byte[] NO_TAGS = new byte[0];
+    static final Object[] NO_OBJECTS = new Object[0];
+
+    protected byte[] _tags;
+    protected Object[] _objects;
+    // only allocated once a cell holds a primitive value
+    protected long[] _primitives;
+    protected int _size;
+
+    public CompactCellList() {
+        this(0);
+    }
+
+    public CompactCellList(int capacity) {
+        _tags = capacity == 0 ? NO_TAGS : new byte[capacity];
+        _objects = capacity == 0 ? NO_OBJECTS : new Object[capacity];
+    }
+
+    public CompactCellList(Collection<Cell> cells) {
+        this(cells.size());
+        addAll(cells);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public Cell get(int index) {
+        checkIndex(index, _size);
+        switch (_tags[index]) {
+            case TAG_NULL:
+                return null;
+            case TAG_CELL:
+                return (Cell) _objects[index];
+            default:
+                return new Cell(getValue(index), null);
+        }
+    }
+
+    /**
+     * @return the value of the cell at the given index, or null if there is no cell there
+     */
+    public Serializable getValue(int index) {
+        checkIndex(index, _size);
+        switch (_tags[index]) {
+            case TAG_NULL:
+                return null;
+            case TAG_VALUE:
+                return (Serializable) _objects[index];
+            case TAG_CELL:
+                return ((Cell) _objects[index]).value;
+            case TAG_LONG:
+                return _primitives[index];
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(_primitives[index]);
+            case TAG_BOOLEAN:
+                return _primitives[index] != 0L;
+            default:
+                throw new IllegalStateException("Unknown cell tag " + _tags[index]);
+        }
+    }
+
+    @Override
+    public Cell set(int index, Cell cell) {
+        checkIndex(index, _size);
+        Cell previous = get(index);
+        store(index, cell);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Cell cell) {
+        checkIndex(index, _size + 1);
+        ensureCapacity(_size + 1);
+        if (index < _size) {
+            System.arraycopy(_tags, index, _tags, index + 1, _size - index);
+            System.arraycopy(_objects, index, _objects, index + 1, _size - index);
+            if (_primitives != null) {
+                System.arraycopy(_primitives, index, _primitives, index + 1, _size - index);
+            }
+        }
+        _size++;
+        modCount++;
+        store(index, cell);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Cell> cells) {
+        if (!(cells instanceof CompactCellList)) {
+            return super.addAll(cells);
+        }
+        // copy the storage of the other list rather than creating its cells
+        CompactCellList other = (CompactCellList) cells;
+        int count = other._size;
+        ensureCapacity(_size + count);
+        System.arraycopy(other._tags, 0, _tags, _size, count);
+        System.arraycopy(other._objects, 0, _objects, _size, count);
+        if (other._primitives != null) {
+            ensurePrimitives();
+            System.arraycopy(other._primitives, 0, _primitives, _size, count);
+        }
+        _size += count;
+        modCount++;
+        return count > 0;
+    }
+
+    @Override
+    public Cell remove(int index) {
+        checkIndex(index, _size);
+        Cell previous = get(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int count = toIndex - fromIndex;
+        if (count <= 0) {
+            return;
+        }
+        System.arraycopy(_tags, toIndex, _tags, fromIndex, _size - toIndex);
+        System.arraycopy(_objects, toIndex, _objects, fromIndex, _size - toIndex);
+        if (_primitives != null) {
+            System.arraycopy(_primitives, toIndex, _primitives, fromIndex, _size - toIndex);
+        }
+        Arrays.fill(_objects, _size - count, _size, null);
+        _size -= count;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, _size);
+    }
+
+    protected void store(int index, Cell cell) {
+        _objects[index] = null;
+        if (cell == null) {
+            _tags[index] = TAG_NULL;
+        } else if (cell.recon != null || cell.getClass() != Cell.class) {
+            _tags[index] = TAG_CELL;
+            _objects[index] = cell;
+        } else if (cell.value instanceof Long) {
+            storePrimitive(index, TAG_LONG, (Long) cell.value);
+        } else if (cell.value instanceof Double) {
+            storePrimitive(index, TAG_DOUBLE, Double.doubleToRawLongBits((Double) cell.value));
+        } else if (cell.value instanceof Boolean) {
+            storePrimitive(index, TAG_BOOLEAN, (Boolean) cell.value ? 1L : 0L);
+        } else {
+            _tags[index] = TAG_VALUE;
+            _objects[index] = cell.value;
+        }
+    }
+
+    protected void storePrimitive(int index, byte tag, long bits) {
+        ensurePrimitives();
+        _tags[index] = tag;
+        _primitives[index] = bits;
+    }
+
+    protected void ensurePrimitives() {
+        if (_primitives == null) {
+            _primitives = new long[_tags.length];
+        }
+    }
+
+    protected void ensureCapacity(int capacity) {
+        if (capacity > _tags.length) {
+            int newCapacity = Math.max(capacity, _tags.length + (_tags.length >> 1) + 1);
+            _tags = Arrays.copyOf(_tags, newCapacity);
+            _objects = Arrays.copyOf(_objects, newCapacity);
+            if (_primitives != null) {
+                _primitives = Arrays.copyOf(_primitives, newCapacity);
+            }
+        }
+    }
+
+    static protected void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Estimates the memory held by the list and the values of its cells, assuming compressed object pointers.
+     */
+    public long estimateMemorySize() {
+        long size = 24 + 16 + _tags.length + 16 + 4L * _objects.length;
+        if (_primitives != null) {
+            size += 16 + 8L * _primitives.length;
+        }
+        for (int i = 0; i < _size; i++) {
+            Object object = _objects[i];
+            if (object instanceof Cell) {
+                // the cell, and its recon which can be shared by several cells
+                size += 24 + 160;
+                object = ((Cell) object).value;
+            }
+            if (object instanceof String) {
+                // compact strings take one byte per character in most data
+                size += 40 + ((String) object).length();
+            } else if (object instanceof OffsetDateTime) {
+                size += 72;
+            } else if (object != null) {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a list of the given cells, which is the given list if it is compact already
+     */
+    static public CompactCellList copyOf(List<Cell> cells) {
+        return cells instanceof CompactCellList ? (CompactCellList) cells : new CompactCellList(cells);
+    }
+}
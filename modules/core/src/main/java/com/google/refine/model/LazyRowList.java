@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import com.google.refine.util.Pool;
+
+/**
+ * Rows read from a saved change, which are only decoded when first accessed. Undoing or redoing a change only needs
+ * one of the lists of rows it holds: the other one is kept as the lines read from the change, rather than decoded for
+ * nothing.
+ */
+public class LazyRowList extends AbstractList<Row> implements RandomAccess {
+
+    final protected Pool _pool;
+    final protected int _size;
+    protected String[] _lines;
+    protected volatile ChunkedRowList _rows;
+
+    protected LazyRowList(String[] lines, Pool pool) {
+        _lines = lines;
+        _size = lines.length;
+        _pool = pool;
+    }
+
+    /**
+     * Reads the given number of serialized rows, one per line, without decoding them.
+     */
+    static public LazyRowList read(LineNumberReader reader, int count, Pool pool) throws IOException {
+        String[] lines = new String[count];
+        int size = 0;
+        while (size < count) {
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            lines[size++] = line;
+        }
+        return new LazyRowList(size < count ? Arrays.copyOf(lines, size) : lines, pool);
+    }
+
+    /**
+     * @return whether the rows have been decoded
+     */
+    public boolean isDecoded() {
+        return _rows != null;
+    }
+
+    /**
+     * Decodes the rows if needed.
+     *
+     * @return the decoded rows, which must not be modified
+     */
+    public ChunkedRowList getRows() {
+        ChunkedRowList rows = _rows;
+        if (rows == null) {
+            synchronized (this) {
+                rows = _rows;
+                if (rows == null) {
+                    rows = new ChunkedRowList();
+                    try {
+                        for (String line : _lines) {
+                            rows.add(Row.load(line, _pool));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to decode saved rows", e);
+                    }
+                    _rows = rows;
+                    _lines = null;
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Row get(int index) {
+        return getRows().get(index);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+}
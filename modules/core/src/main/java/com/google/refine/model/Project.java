@@ -42,7 +42,6 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,8 +55,12 @@ import org.slf4j.LoggerFactory;
 import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
 import com.google.refine.RefineServlet;
+import com.google.refine.browsing.util.RowFilterCache;
+import com.google.refine.clustering.ClusteringJobManager;
+import com.google.refine.clustering.DistinctValueCache;
 import com.google.refine.history.History;
 import com.google.refine.process.ProcessManager;
+import com.google.refine.sorting.SortedViewCache;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
 
@@ -69,14 +72,21 @@ public class Project {
     final static protected Map<String, Class<? extends OverlayModel>> s_overlayModelClasses = new HashMap<String, Class<? extends OverlayModel>>();
 
     final public long id;
-    final public List<Row> rows = new ArrayList<>();
+    final public List<Row> rows = new RowStore();
     final public ColumnModel columnModel = new ColumnModel();
     final public RecordModel recordModel = new RecordModel();
     final public Map<String, OverlayModel> overlayModels = new HashMap<String, OverlayModel>();
     final public History history;
 
     transient public ProcessManager processManager = new ProcessManager();
+    transient private final RowFilterCache _rowFilterCache = new RowFilterCache();
+    transient private final SortedViewCache _sortedViewCache = new SortedViewCache();
+    transient private final DistinctValueCache _distinctValueCache = new DistinctValueCache();
+    transient private final ClusteringJobManager _clusteringJobManager = new ClusteringJobManager();
     transient private Instant _lastSave = Instant.now();
+    // the last memory estimate, and the change count of the history it was computed at
+    transient private long _estimatedMemorySize = -1;
+    transient private long _estimatedChangeCount = -1;
 
     final static Logger logger = LoggerFactory.getLogger(Project.class);
 
@@ -100,6 +110,7 @@ public class Project {
     protected Project(long id) {
         this.id = id;
         this.history = new History(this);
+        getRowStore().setModels(columnModel, recordModel);
     }
 
     static public void registerOverlayModel(String modelName, Class<? extends OverlayModel> klass) {
@@ -118,9 +129,80 @@ public class Project {
             }
         }
         ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(this.id);
+        _clusteringJobManager.cancelAll();
+        getRowStore().close();
         // The rest of the project should get garbage collected when we return.
     }
 
+    /**
+     * Estimates the memory retained by the project, which is dominated by its rows: their cells and values are estimated
+     * on a sample of them, and the record model adds a few objects per row. The estimate is kept until the project is
+     * changed, unless its rows are paged, in which case the decoded pages held in memory vary.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedMemorySize() {
+        long changeCount = history.getChangeCount();
+        if (_estimatedMemorySize < 0 || changeCount != _estimatedChangeCount || getRowStore().isPaged()) {
+            _estimatedMemorySize = getRowStore().estimateMemorySize() + 64L * getRowStore().size();
+            _estimatedChangeCount = changeCount;
+        }
+        return _estimatedMemorySize;
+    }
+
+    /**
+     * @return the column model as seen by the calling thread: the one published along with the version of the rows it
+     *         pins, if any, or else the current one
+     */
+    public ColumnModel getColumnModel() {
+        ColumnModel pinned = getRowStore().getPinnedColumnModel();
+        return pinned != null ? pinned : columnModel;
+    }
+
+    /**
+     * @return the record model as seen by the calling thread: the one published along with the version of the rows it
+     *         pins, if any, or else the current one
+     */
+    public RecordModel getRecordModel() {
+        RecordModel pinned = getRowStore().getPinnedRecordModel();
+        return pinned != null ? pinned : recordModel;
+    }
+
+    /**
+     * @return the rows of the project, which may be read lazily from disk
+     */
+    public RowStore getRowStore() {
+        return (RowStore) rows;
+    }
+
+    /**
+     * @return the rows matched by the filters of the facets of this project, as computed recently
+     */
+    public RowFilterCache getRowFilterCache() {
+        return _rowFilterCache;
+    }
+
+    /**
+     * @return the sorted orders of rows or records of this project, as computed recently
+     */
+    public SortedViewCache getSortedViewCache() {
+        return _sortedViewCache;
+    }
+
+    /**
+     * @return the distinct values of the columns of this project being clustered, as computed recently
+     */
+    public DistinctValueCache getDistinctValueCache() {
+        return _distinctValueCache;
+    }
+
+    /**
+     * @return the computations of clusters running for this project, and the clusters computed recently
+     */
+    public ClusteringJobManager getClusteringJobManager() {
+        return _clusteringJobManager;
+    }
+
     public Instant getLastSave() {
         return this._lastSave;
     }
@@ -129,7 +211,15 @@ public class Project {
      * Sets the lastSave time to now
      */
     public void setLastSave() {
-        this._lastSave = Instant.now();
+        setLastSave(Instant.now());
+    }
+
+    /**
+     * @param time
+     *            the time at which the saved state of the project was captured
+     */
+    public void setLastSave(Instant time) {
+        this._lastSave = time;
     }
 
     public ProjectMetadata getMetadata() {
@@ -137,6 +227,19 @@ public class Project {
     }
 
     public void saveToOutputStream(OutputStream out, Pool pool) throws IOException {
+        saveToOutputStream(out, pool, true);
+    }
+
+    /**
+     * Saves everything but the rows of the project, for storage formats which persist the rows separately. The result
+     * can be read back with {@link #loadFromInputStream(InputStream, long, Pool)}, which then yields a project without
+     * any rows.
+     */
+    public void saveHeaderToOutputStream(OutputStream out, Pool pool) throws IOException {
+        saveToOutputStream(out, pool, false);
+    }
+
+    protected void saveToOutputStream(OutputStream out, Pool pool, boolean includeRows) throws IOException {
         for (OverlayModel overlayModel : overlayModels.values()) {
             try {
                 overlayModel.onBeforeSave(this);
@@ -151,7 +254,11 @@ public class Project {
             options.setProperty("mode", "save");
             options.put("pool", pool);
 
-            saveToWriter(writer, options);
+            if (includeRows) {
+                saveToWriter(writer, options);
+            } else {
+                saveHeaderToWriter(writer, options);
+            }
         } finally {
             writer.flush();
         }
@@ -166,6 +273,18 @@ public class Project {
     }
 
     protected void saveToWriter(Writer writer, Properties options) throws IOException {
+        saveHeaderToWriter(writer, options);
+
+        writer.write("rowCount=");
+        writer.write(Integer.toString(rows.size()));
+        writer.write('\n');
+        for (Row row : rows) {
+            row.save(writer, options);
+            writer.write('\n');
+        }
+    }
+
+    protected void saveHeaderToWriter(Writer writer, Properties options) throws IOException {
         writer.write(RefineServlet.VERSION);
         writer.write('\n');
 
@@ -182,14 +301,6 @@ public class Project {
             ParsingUtilities.saveWriter.writeValue(writer, overlayModels.get(modelName));
             writer.write('\n');
         }
-
-        writer.write("rowCount=");
-        writer.write(Integer.toString(rows.size()));
-        writer.write('\n');
-        for (Row row : rows) {
-            row.save(writer, options);
-            writer.write('\n');
-        }
     }
 
     static public Project loadFromInputStream(InputStream is, long id, Pool pool) throws IOException {
@@ -238,6 +349,7 @@ public class Project {
                         maxCellCount = Math.max(maxCellCount, row.cells.size());
                     }
                 }
+                pool.getValueDictionary().logStats(logger, "project " + id);
             } else if (field.startsWith("overlayModel:")) {
                 String modelName = field.substring("overlayModel:".length());
                 if (s_overlayModelClasses.containsKey(modelName)) {
@@ -267,6 +379,7 @@ public class Project {
     public void update() {
         columnModel.update();
         recordModel.update(this);
+        getRowStore().publishModels();
         // Old projects may have a row count of 0, but we don't want the act of filling this in to change modified time.
         if (getMetadata() != null) {
             getMetadata().setRowCountInternal(rows.size());
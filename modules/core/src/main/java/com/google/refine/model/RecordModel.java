@@ -78,8 +78,8 @@ public class RecordModel {
         }
     }
 
-    protected List<RowDependency> _rowDependencies;
-    protected List<Record> _records;
+    protected volatile List<RowDependency> _rowDependencies;
+    protected volatile List<Record> _records;
 
     public RowDependency getRowDependency(int rowIndex) {
         return _rowDependencies != null && rowIndex >= 0 && rowIndex < _rowDependencies.size() ? _rowDependencies.get(rowIndex) : null;
@@ -128,7 +128,8 @@ public class RecordModel {
 
     synchronized public void update(Project project) {
         synchronized (project) {
-            List<Row> rows = project.rows;
+            // reads the rows without copying them when called while applying a change
+            List<Row> rows = project.getRowStore().getView();
             int rowCount = rows.size();
 
             ColumnModel columnModel = project.columnModel;
@@ -140,7 +141,7 @@ public class RecordModel {
                 lastNonBlankRowsByGroup[i] = -1;
             }
 
-            _rowDependencies = new ArrayList<RowDependency>(rowCount);
+            List<RowDependency> rowDependencies = new ArrayList<RowDependency>(rowCount);
 
             int recordIndex = 0;
             for (int r = 0; r < rowCount; r++) {
@@ -183,29 +184,43 @@ public class RecordModel {
                     rowDependency.recordIndex = recordIndex++;
                 }
 
-                _rowDependencies.add(rowDependency);
+                rowDependencies.add(rowDependency);
             }
 
-            _records = new ArrayList<Record>(recordIndex);
+            List<Record> records = new ArrayList<Record>(recordIndex);
             if (recordIndex > 0) {
                 recordIndex = 0;
 
                 int recordRowIndex = 0;
                 for (int r = 1; r < rowCount; r++) {
-                    RowDependency rd = _rowDependencies.get(r);
+                    RowDependency rd = rowDependencies.get(r);
                     if (rd.recordIndex >= 0) {
-                        _records.add(new Record(recordRowIndex, r, recordIndex++));
+                        records.add(new Record(recordRowIndex, r, recordIndex++));
 
                         recordIndex = rd.recordIndex;
                         recordRowIndex = r;
                     }
                 }
 
-                _records.add(new Record(recordRowIndex, rowCount, recordIndex++));
+                records.add(new Record(recordRowIndex, rowCount, recordIndex++));
             }
+
+            // readers do not take the project lock: only publish complete structures
+            _rowDependencies = rowDependencies;
+            _records = records;
         }
     }
 
+    /**
+     * @return a copy of the records currently computed, which is not affected by later updates
+     */
+    synchronized public RecordModel copy() {
+        RecordModel copy = new RecordModel();
+        copy._rowDependencies = _rowDependencies;
+        copy._records = _records;
+        return copy;
+    }
+
     protected List<KeyedGroup> computeKeyedGroups(ColumnModel columnModel) {
         List<KeyedGroup> keyedGroups = new ArrayList<KeyedGroup>();
 
@@ -60,6 +60,12 @@ public class Row implements HasFields {
     public boolean starred;
     final public List<Cell> cells;
 
+    /**
+     * Whether the cells of rows are stored in a {@link CompactCellList}, configured with the
+     * {@code refine.cells.compact} system property.
+     */
+    static public final boolean COMPACT_CELLS = Boolean.parseBoolean(System.getProperty("refine.cells.compact", "true"));
+
     private static final String FLAGGED = "flagged";
     private static final String STARRED = "starred";
 
@@ -70,11 +76,11 @@ public class Row implements HasFields {
      *            number of cells to give row initially (can be extended later)
      */
     public Row(int cellCount) {
-        cells = new ArrayList<Cell>(cellCount);
+        cells = COMPACT_CELLS ? new CompactCellList(cellCount) : new ArrayList<Cell>(cellCount);
     }
 
     protected Row(List<Cell> cells, boolean flagged, boolean starred) {
-        this.cells = cells;
+        this.cells = COMPACT_CELLS ? CompactCellList.copyOf(cells) : cells;
         this.flagged = flagged;
         this.starred = starred;
     }
@@ -110,8 +116,8 @@ public class Row implements HasFields {
 
     @JsonIgnore
     public boolean isEmpty() {
-        for (Cell cell : cells) {
-            if (cell != null && cell.value != null && !isValueBlank(cell.value)) {
+        for (int i = 0; i < cells.size(); i++) {
+            if (!isValueBlank(getCellValue(i))) {
                 return false;
             }
         }
@@ -133,6 +139,9 @@ public class Row implements HasFields {
 
     public Object getCellValue(int cellIndex) {
         if (cellIndex >= 0 && cellIndex < cells.size()) {
+            if (cells instanceof CompactCellList) {
+                return ((CompactCellList) cells).getValue(cellIndex);
+            }
             Cell cell = cells.get(cellIndex);
             if (cell != null) {
                 return cell.value;
@@ -218,11 +227,18 @@ public class Row implements HasFields {
         return new Row(cells, flagged, starred);
     }
 
+    /**
+     * Reads a row, whose string values are shared with the other cells of their column loaded with the same pool.
+     */
     static public Row loadStreaming(String s, Pool pool) throws IOException {
         InjectableValues injectableValues = new InjectableValues.Std()
                 .addValue("pool", pool);
-        return ParsingUtilities.mapper.setInjectableValues(injectableValues)
-                .readValue(s, Row.class);
+        Row row = ParsingUtilities.mapper.reader(injectableValues).forType(Row.class).readValue(s);
+        CellValueDictionary dictionary = pool != null ? pool.getValueDictionary() : null;
+        if (dictionary != null) {
+            dictionary.intern(row);
+        }
+        return row;
     }
 
     @Override
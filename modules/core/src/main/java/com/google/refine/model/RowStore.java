@@ -0,0 +1,678 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The rows of a project. Rows are either all held in memory, or read lazily from a {@link RowSource} (typically the
+ * data file of the project) by pages of consecutive rows, of which only a bounded number is kept decoded in memory.
+ * <p>
+ * Reading rows never requires more than the page cache, so a paged project can be browsed, faceted and exported
+ * whatever its size. The pages are the chunks of a {@link ChunkedRowList} which are read from the source rather than
+ * held in memory: changing the rows, or applying or reverting a change of the project history, only copies in memory
+ * the pages it touches. Rows handed out by a paged store outside of a write transaction must be treated as read-only.
+ * <p>
+ * Changes are applied as write transactions ({@link #beginWrite()} and {@link #endWrite()}) on a private copy of the
+ * list of rows, which shares the chunks of the published list (see {@link ChunkedRowList}) until they are modified:
+ * the rows read by the writing thread are copied on first access, and the new list is only published
+ * when the transaction ends. Readers therefore never see a half-applied change, and a reader which needs a consistent
+ * view over several calls (rendering a page of rows, computing facets, exporting) can {@link #pin()} the current
+ * version without holding the project lock.
+ */
+public class RowStore extends AbstractList<Row> implements RandomAccess, Closeable {
+
+    final static Logger logger = LoggerFactory.getLogger("row_store");
+
+    /**
+     * Number of consecutive rows decoded together.
+     */
+    static public final int PAGE_SIZE = Integer.getInteger("refine.rows.pageSize", 4096);
+    /**
+     * Maximum number of decoded pages kept in memory for each paged project.
+     */
+    static public final int CACHED_PAGES = Integer.getInteger("refine.rows.cachedPages", 64);
+    /**
+     * Projects with more rows than this are paged when loaded from disk rather than loaded in memory.
+     */
+    static public final int PAGING_THRESHOLD = Integer.getInteger("refine.rows.pagingThreshold", 1000000);
+    /**
+     * Whether changes are applied to a copy of the rows, published when the change completes. When disabled with
+     * {@code -Drefine.rows.copyOnWrite=false}, changes modify the published rows in place and pinning has no effect.
+     */
+    static public final boolean COPY_ON_WRITE = !"false".equals(System.getProperty("refine.rows.copyOnWrite"));
+
+    /**
+     * Random access to rows which are not held in memory.
+     */
+    public interface RowSource extends Closeable {
+
+        public int getRowCount();
+
+        /**
+         * Decodes a row. Must be safe to call from several threads at once.
+         */
+        public Row readRow(int rowIndex);
+    }
+
+    static protected class Page {
+
+        final int index;
+        final Row[] rows;
+
+        Page(int index, Row[] rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * The pages of rows of a source, of which a bounded number is kept decoded in memory. They stay readable as long as
+     * versions of the rows share them, even after the rows of the store have been replaced.
+     */
+    static protected class PageCache {
+
+        final RowSource _source;
+        final int _rowCount;
+        final int _pageSize;
+        final LinkedHashMap<Integer, Page> _pages;
+        volatile Page _lastPage;
+
+        PageCache(RowSource source, int pageSize, int maxCachedPages) {
+            _source = source;
+            _rowCount = source.getRowCount();
+            _pageSize = pageSize;
+            _pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                    return size() > maxCachedPages;
+                }
+            };
+        }
+
+        /**
+         * @return a list of rows whose chunks are the pages of the source
+         */
+        ChunkedRowList toRows() {
+            ChunkedRowList rows = new ChunkedRowList(_pageSize);
+            int pageCount = (_rowCount + _pageSize - 1) / _pageSize;
+            for (int p = 0; p < pageCount; p++) {
+                int pageIndex = p;
+                rows.addChunk(() -> getPage(pageIndex).rows, Math.min(_pageSize, _rowCount - p * _pageSize));
+            }
+            return rows;
+        }
+
+        Page getPage(int pageIndex) {
+            Page page = _lastPage;
+            if (page != null && page.index == pageIndex) {
+                return page;
+            }
+            synchronized (_pages) {
+                page = _pages.get(pageIndex);
+            }
+            if (page == null) {
+                // decode outside of the lock so that concurrent readers of other pages are not blocked
+                Page read = readPage(pageIndex);
+                synchronized (_pages) {
+                    page = _pages.get(pageIndex);
+                    if (page == null) {
+                        page = read;
+                        _pages.put(pageIndex, page);
+                    }
+                }
+            }
+            _lastPage = page;
+            return page;
+        }
+
+        Page readPage(int pageIndex) {
+            int start = pageIndex * _pageSize;
+            Row[] rows = new Row[Math.min(_pageSize, _rowCount - start)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = _source.readRow(start + i);
+            }
+            return new Page(pageIndex, rows);
+        }
+
+        int getCachedPageCount() {
+            synchronized (_pages) {
+                return _pages.size();
+            }
+        }
+
+        List<Row> sampleRows(int max) {
+            List<Row> sample = new ArrayList<>();
+            synchronized (_pages) {
+                for (Page page : _pages.values()) {
+                    for (int i = 0; i < page.rows.length && sample.size() < max; i += 16) {
+                        sample.add(page.rows[i]);
+                    }
+                }
+            }
+            return sample;
+        }
+
+        int getCachedRowCount() {
+            int count = 0;
+            synchronized (_pages) {
+                for (Page page : _pages.values()) {
+                    count += page.rows.length;
+                }
+            }
+            return count;
+        }
+    }
+
+    protected volatile ChunkedRowList _rows = new ChunkedRowList();
+    protected volatile PageCache _pages;
+
+    /**
+     * Versions pinned by the current thread, if any.
+     */
+    protected final ThreadLocal<Version> _pinned = new ThreadLocal<>();
+    protected final AtomicInteger _pinCount = new AtomicInteger();
+
+    // the models of the project the rows belong to, if any, and copies of them published along with the rows
+    protected ColumnModel _columnModel;
+    protected RecordModel _recordModel;
+    protected volatile ColumnModel _publishedColumnModel;
+    protected volatile RecordModel _publishedRecordModel;
+
+    // state of the current write transaction, only accessed by the writing thread apart from _writer
+    protected volatile Thread _writer;
+    protected int _writeDepth;
+    protected ChunkedRowList _working;
+    protected Set<Row> _written;
+
+    /**
+     * A version of the rows pinned by a thread, which keeps reading it until the version is closed, along with the
+     * column and record models published with these rows.
+     */
+    public final class Version implements AutoCloseable {
+
+        final List<Row> _rows;
+        final ColumnModel _columnModel;
+        final RecordModel _recordModel;
+
+        Version(List<Row> rows, ColumnModel columnModel, RecordModel recordModel) {
+            _rows = rows;
+            _columnModel = columnModel;
+            _recordModel = recordModel;
+        }
+
+        /**
+         * @return a read-only view of the rows of this version
+         */
+        public List<Row> getRows() {
+            return Collections.unmodifiableList(_rows);
+        }
+
+        /**
+         * Stops pinning this version in the current thread. Does nothing for a nested pin.
+         */
+        @Override
+        public void close() {
+            if (_pinned.get() == this) {
+                _pinned.remove();
+                _pinCount.decrementAndGet();
+            }
+        }
+    }
+
+    protected final Version _nestedVersion = new Version(Collections.emptyList(), null, null);
+
+    /**
+     * Pins the current version of the rows in the calling thread: until the returned version is closed, the rows read
+     * through this store from that thread are those of this version, whatever changes are applied concurrently. The
+     * version should be closed in a finally block, or with a try-with-resources statement. Pinning again in a thread
+     * which already pins a version, or which is applying a change, returns a version whose closing does nothing.
+     */
+    public synchronized Version pin() {
+        if (_writer == Thread.currentThread() || _pinned.get() != null) {
+            return _nestedVersion;
+        }
+        // changes modify the models in place when they do not copy the rows either
+        Version version = COPY_ON_WRITE ? new Version(getPublished(), _publishedColumnModel, _publishedRecordModel)
+                : new Version(getPublished(), null, null);
+        _pinned.set(version);
+        _pinCount.incrementAndGet();
+        return version;
+    }
+
+    /**
+     * Sets the models of the project the rows belong to, which are published along with the rows.
+     */
+    public void setModels(ColumnModel columnModel, RecordModel recordModel) {
+        _columnModel = columnModel;
+        _recordModel = recordModel;
+    }
+
+    /**
+     * Publishes the current state of the models of the project, after they have been updated outside of a write
+     * transaction. Those updated by a transaction are published when it ends, along with the rows.
+     */
+    public synchronized void publishModels() {
+        if (_writer != Thread.currentThread()) {
+            copyModels();
+        }
+    }
+
+    protected void copyModels() {
+        if (_columnModel != null) {
+            _publishedColumnModel = _columnModel.copy();
+        }
+        if (_recordModel != null) {
+            _publishedRecordModel = _recordModel.copy();
+        }
+    }
+
+    /**
+     * @return the column model published along with the version of the rows pinned by the calling thread, or null if
+     *         it pins none
+     */
+    public ColumnModel getPinnedColumnModel() {
+        Version pinned = _pinCount.get() > 0 ? _pinned.get() : null;
+        return pinned != null ? pinned._columnModel : null;
+    }
+
+    /**
+     * @return the record model published along with the version of the rows pinned by the calling thread, or null if
+     *         it pins none
+     */
+    public RecordModel getPinnedRecordModel() {
+        Version pinned = _pinCount.get() > 0 ? _pinned.get() : null;
+        return pinned != null ? pinned._recordModel : null;
+    }
+
+    /**
+     * @return true if a thread pins a version of the rows or is applying a change to them, in which case the rows are
+     *         still in use
+     */
+    public boolean isPinned() {
+        return _pinCount.get() > 0 || _writer != null;
+    }
+
+    /**
+     * @return true unless the calling thread pins a version which has been replaced by a later change since
+     */
+    public boolean isViewingLatest() {
+        if (_pinCount.get() == 0) {
+            return true;
+        }
+        Version pinned = _pinned.get();
+        return pinned == null || pinned._rows == getPublished();
+    }
+
+    /**
+     * Returns a read-only view of the rows as seen by the calling thread, which other threads may read on its behalf.
+     * Unlike reading through the store, reading rows from the view of a thread applying a change does not copy them.
+     */
+    public List<Row> getView() {
+        if (_writer == Thread.currentThread()) {
+            return Collections.unmodifiableList(_working);
+        }
+        return Collections.unmodifiableList(getReadable());
+    }
+
+    /**
+     * Returns a copy of the rows as seen by the calling thread, which shares their storage: copying costs one reference
+     * per chunk of rows rather than one per row, and the copy keeps its rows whatever changes are applied later. The
+     * rows of the copy must not be modified.
+     */
+    public List<Row> copyRows() {
+        if (_writer == Thread.currentThread()) {
+            return _working.copy();
+        }
+        return ChunkedRowList.copyOf(getReadable());
+    }
+
+    /**
+     * Replaces all the rows, sharing the storage of the given list if it is a {@link ChunkedRowList}, such as a list
+     * returned by {@link #copyRows()}.
+     */
+    public synchronized void setRows(List<Row> rows) {
+        if (_writer == Thread.currentThread()) {
+            _working = ChunkedRowList.copyOf(rows);
+        } else {
+            _rows = ChunkedRowList.copyOf(rows);
+        }
+        modCount++;
+    }
+
+    /**
+     * Removes the rows at the given strictly increasing indices, without copying the chunks of rows where no row is
+     * removed.
+     *
+     * @return the rows removed
+     */
+    public List<Row> removeRows(int[] indices) {
+        modCount++;
+        return getModifiable().removeAll(indices);
+    }
+
+    /**
+     * Inserts rows at the given strictly increasing indices of the resulting list, without copying the chunks of rows
+     * where no row is inserted.
+     */
+    public void insertRows(int[] indices, List<Row> rows) {
+        modCount++;
+        getModifiable().insertAll(indices, rows);
+    }
+
+    /**
+     * Starts a write transaction in the calling thread, which must hold the project lock. Transactions may be nested.
+     */
+    public synchronized void beginWrite() {
+        if (_writer == Thread.currentThread()) {
+            _writeDepth++;
+            return;
+        }
+        if (!COPY_ON_WRITE) {
+            // changes modify rows in place, which must not be evicted from memory
+            materialize();
+            return;
+        }
+        // shares the chunks of the published rows until the writer modifies them
+        _working = _rows.copy();
+        _written = Collections.newSetFromMap(new IdentityHashMap<>());
+        _writeDepth = 1;
+        _writer = Thread.currentThread();
+    }
+
+    /**
+     * Ends a write transaction, publishing the rows it has changed when it is the outermost one.
+     */
+    public synchronized void endWrite() {
+        if (_writer != Thread.currentThread() || --_writeDepth > 0) {
+            return;
+        }
+        _rows = _working;
+        copyModels();
+        _working = null;
+        _written = null;
+        _writer = null;
+        modCount++;
+    }
+
+    /**
+     * @return the latest published rows
+     */
+    protected List<Row> getPublished() {
+        return _rows;
+    }
+
+    /**
+     * @return the rows read by the calling thread, when it is not applying a change
+     */
+    protected List<Row> getReadable() {
+        if (_pinCount.get() > 0) {
+            Version pinned = _pinned.get();
+            if (pinned != null) {
+                return pinned._rows;
+            }
+        }
+        return getPublished();
+    }
+
+    /**
+     * @return the rows to modify: those of the current transaction in the writing thread, the published ones otherwise
+     */
+    protected ChunkedRowList getModifiable() {
+        if (_writer == Thread.currentThread()) {
+            return _working;
+        }
+        if (!COPY_ON_WRITE) {
+            materialize();
+        }
+        return _rows;
+    }
+
+    /**
+     * Replaces the rows of this store by the rows of the given source, which are then read lazily.
+     */
+    public void setSource(RowSource source) {
+        setSource(source, PAGE_SIZE, CACHED_PAGES);
+    }
+
+    public synchronized void setSource(RowSource source, int pageSize, int maxCachedPages) {
+        closeSource();
+        PageCache pages = new PageCache(source, Math.max(1, pageSize), Math.max(1, maxCachedPages));
+        _pages = pages;
+        _rows = pages.toRows();
+        modCount++;
+    }
+
+    /**
+     * @return true if some of the rows are read lazily from a source rather than held in memory
+     */
+    public boolean isPaged() {
+        return _pages != null && _rows.hasChunkSources();
+    }
+
+    /**
+     * @return the number of decoded pages currently held in memory, 0 for a store which is not paged
+     */
+    public int getCachedPageCount() {
+        PageCache pages = _pages;
+        return pages != null ? pages.getCachedPageCount() : 0;
+    }
+
+    /**
+     * Loads all the rows in memory, and releases the source they were read from. Only needed when changes modify the
+     * rows in place (see {@link #COPY_ON_WRITE}). Does nothing if the store is not paged.
+     */
+    public synchronized void materialize() {
+        if (_pages == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ChunkedRowList rows = new ChunkedRowList();
+        rows.addAll(_rows);
+        _rows = rows;
+        closeSource();
+        _pages = null;
+        logger.info("Loaded {} paged rows in memory in {} ms", rows.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public Row get(int index) {
+        if (_writer == Thread.currentThread()) {
+            // copy the row on first access, as the writer may modify it
+            Row row = _working.get(index);
+            if (!_written.contains(row)) {
+                row = row.dup();
+                _working.set(index, row);
+                _written.add(row);
+            }
+            return row;
+        }
+        return getReadable().get(index);
+    }
+
+    @Override
+    public int size() {
+        if (_writer == Thread.currentThread()) {
+            return _working.size();
+        }
+        return getReadable().size();
+    }
+
+    @Override
+    public Row set(int index, Row row) {
+        return getModifiable().set(index, row);
+    }
+
+    @Override
+    public void add(int index, Row row) {
+        getModifiable().add(index, row);
+        modCount++;
+    }
+
+    @Override
+    public Row remove(int index) {
+        modCount++;
+        return getModifiable().remove(index);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Row> c) {
+        modCount++;
+        return getModifiable().addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Row> c) {
+        modCount++;
+        return getModifiable().addAll(index, c);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        getModifiable().subList(fromIndex, toIndex).clear();
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (_writer == Thread.currentThread()) {
+            _working.clear();
+        } else {
+            // the rows are dropped without being decoded
+            _rows.clear();
+        }
+        modCount++;
+    }
+
+    /**
+     * Number of rows sampled to estimate the memory held by a store.
+     */
+    static final int SIZE_SAMPLE = 1000;
+
+    /**
+     * Estimates the memory held by the rows of this store which are in memory: the rows held by the list of rows, and
+     * the decoded pages of a paged store. The size of the rows is extrapolated from a sample of them.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateMemorySize() {
+        ChunkedRowList rows = _rows;
+        List<Row> sample = rows.sampleLoadedRows(SIZE_SAMPLE);
+        long rowCount = rows.getLoadedRowCount();
+        PageCache pages = _pages;
+        if (pages != null) {
+            sample.addAll(pages.sampleRows(SIZE_SAMPLE));
+            rowCount += pages.getCachedRowCount();
+        }
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        long sampleSize = 0;
+        for (Row row : sample) {
+            sampleSize += estimateRowSize(row);
+        }
+        // the reference to each row held by its list
+        return rowCount * (sampleSize / sample.size() + 4);
+    }
+
+    /**
+     * Estimates the memory held by a row, its cells and their values, assuming compressed object pointers.
+     */
+    static protected long estimateRowSize(Row row) {
+        if (row == null) {
+            return 0;
+        }
+        if (row.cells instanceof CompactCellList) {
+            return 24 + ((CompactCellList) row.cells).estimateMemorySize();
+        }
+        // the row and the list of its cells
+        long size = 24 + 40 + 4L * row.cells.size();
+        for (Cell cell : row.cells) {
+            if (cell == null) {
+                continue;
+            }
+            size += 24;
+            Object value = cell.value;
+            if (value instanceof String) {
+                // compact strings take one byte per character in most data
+                size += 40 + ((String) value).length();
+            } else if (value instanceof OffsetDateTime) {
+                size += 72;
+            } else if (value != null && !(value instanceof Boolean)) {
+                size += 24;
+            }
+            if (cell.recon != null) {
+                // recons and their candidates, which can be shared by several cells
+                size += 160;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Releases the source of a paged store. The store should not be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        closeSource();
+    }
+
+    /**
+     * Closes the current source, if any. The fields are left in place so that readers which started before the rows
+     * were replaced do not fail: the columnar data file, for instance, stays mapped in memory after being closed.
+     */
+    protected void closeSource() {
+        PageCache pages = _pages;
+        if (pages != null) {
+            try {
+                pages._source.close();
+            } catch (IOException e) {
+                logger.warn("Error closing row source", e);
+            }
+        }
+    }
+}
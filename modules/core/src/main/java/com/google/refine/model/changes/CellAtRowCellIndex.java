@@ -76,7 +76,7 @@ public class CellAtRowCellIndex {
 
         int row = Integer.parseInt(s.substring(0, semicolon));
         int cellIndex = Integer.parseInt(s.substring(semicolon + 1, nextSemicolon));
-        Cell cell = nextSemicolon < s.length() - 1 ? Cell.loadStreaming(s.substring(nextSemicolon + 1), pool)
+        Cell cell = nextSemicolon < s.length() - 1 ? Cell.loadStreaming(s.substring(nextSemicolon + 1), pool, cellIndex)
                 : null;
 
         return new CellAtRowCellIndex(row, cellIndex, cell);
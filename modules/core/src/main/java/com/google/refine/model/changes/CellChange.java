@@ -118,9 +118,9 @@ public class CellChange implements Change {
             } else if ("cell".equals(field)) {
                 cellIndex = Integer.parseInt(value);
             } else if ("new".equals(field) && value.length() > 0) {
-                newCell = Cell.loadStreaming(value, pool);
+                newCell = Cell.loadStreaming(value, pool, cellIndex);
             } else if ("old".equals(field) && value.length() > 0) {
-                oldCell = Cell.loadStreaming(value, pool);
+                oldCell = Cell.loadStreaming(value, pool, cellIndex);
             }
         }
 
@@ -47,6 +47,7 @@ import com.google.refine.history.Change;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
 import com.google.refine.model.ColumnGroup;
+import com.google.refine.model.LazyRowList;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.ParsingUtilities;
@@ -394,23 +395,15 @@ public class ColumnSplitChange implements Change {
             } else if ("oldRowCount".equals(field)) {
                 int count = Integer.parseInt(value);
 
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                oldRows = LazyRowList.read(reader, count, pool);
             } else if ("newRowCount".equals(field)) {
                 int count = Integer.parseInt(value);
 
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                newRows = LazyRowList.read(reader, count, pool);
             } else if ("oldColumnGroupCount".equals(field)) {
                 int oldColumnGroupCount = Integer.parseInt(line.substring(equal + 1));
 
@@ -45,7 +45,9 @@ import java.util.Properties;
 
 import com.google.refine.history.Change;
 import com.google.refine.model.Cell;
+import com.google.refine.model.ChunkedRowList;
 import com.google.refine.model.Column;
+import com.google.refine.model.LazyRowList;
 import com.google.refine.model.ModelException;
 import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
@@ -145,9 +147,9 @@ public class DataExtensionChange implements Change {
                     project.columnModel.allocateNewCellIndex();
                 }
 
-                _oldRows = new ArrayList<Row>(project.rows);
+                _oldRows = project.getRowStore().copyRows();
 
-                _newRows = new ArrayList<Row>(project.rows.size());
+                _newRows = new ChunkedRowList();
 
                 int cellIndex = project.columnModel.getColumnByName(_baseColumnName).getCellIndex();
                 int keyCellIndex = project.columnModel.columns.get(project.columnModel.getKeyColumnIndex()).getCellIndex();
@@ -206,8 +208,7 @@ public class DataExtensionChange implements Change {
                 }
             }
 
-            project.rows.clear();
-            project.rows.addAll(_newRows);
+            project.getRowStore().setRows(_newRows);
 
             for (int i = 0; i < _columnNames.size(); i++) {
                 String name = _columnNames.get(i);
@@ -281,8 +282,7 @@ public class DataExtensionChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
-            project.rows.clear();
-            project.rows.addAll(_oldRows);
+            project.getRowStore().setRows(_oldRows);
 
             for (int i = 0; i < _columnNames.size(); i++) {
                 project.columnModel.columns.remove(_columnInsertIndex);
@@ -452,23 +452,15 @@ public class DataExtensionChange implements Change {
             } else if ("oldRowCount".equals(field)) {
                 int count = Integer.parseInt(value);
 
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                oldRows = LazyRowList.read(reader, count, pool);
             } else if ("newRowCount".equals(field)) {
                 int count = Integer.parseInt(value);
 
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                newRows = LazyRowList.read(reader, count, pool);
             }
 
         }
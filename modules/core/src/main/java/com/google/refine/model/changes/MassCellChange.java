@@ -161,6 +161,9 @@ public class MassCellChange implements Change {
             } else if ("cellChangeCount".equals(field)) {
                 int cellChangeCount = Integer.parseInt(line.substring(equal + 1));
 
+                // unlike rows, cell changes are decoded right away: applying or reverting them needs the row and
+                // cell index of each of them anyway, and a single serialized cell takes about as much memory as the
+                // decoded one
                 cellChanges = new CellChange[cellChangeCount];
                 for (int i = 0; i < cellChangeCount; i++) {
                     cellChanges[i] = CellChange.load(reader, pool);
@@ -36,12 +36,13 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.model.ChunkedRowList;
+import com.google.refine.model.LazyRowList;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
@@ -54,15 +55,15 @@ public class MassRowChange implements Change {
     protected List<Row> _oldRows;
 
     public MassRowChange(List<Row> newRows) {
-        _newRows = newRows;
+        _newRows = ChunkedRowList.toShareable(newRows);
     }
 
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            _oldRows = new ArrayList<Row>(project.rows);
-            project.rows.clear();
-            project.rows.addAll(_newRows);
+            // the old rows share the storage of the project rows, as the new ones do after the first application
+            _oldRows = project.getRowStore().copyRows();
+            project.getRowStore().setRows(_newRows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -74,8 +75,7 @@ public class MassRowChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
-            project.rows.clear();
-            project.rows.addAll(_oldRows);
+            project.getRowStore().setRows(_oldRows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -115,23 +115,15 @@ public class MassRowChange implements Change {
             if ("oldRowCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                oldRows = LazyRowList.read(reader, count, pool);
             } else if ("newRowCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                newRows = LazyRowList.read(reader, count, pool);
             }
         }
 
@@ -43,8 +43,10 @@ import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.model.ChunkedRowList;
 import com.google.refine.model.Column;
 import com.google.refine.model.ColumnGroup;
+import com.google.refine.model.LazyRowList;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
@@ -59,7 +61,7 @@ public class MassRowColumnChange implements Change {
 
     public MassRowColumnChange(List<Column> newColumns, List<Row> newRows) {
         _newColumns = newColumns;
-        _newRows = newRows;
+        _newRows = ChunkedRowList.toShareable(newRows);
     }
 
     @Override
@@ -72,15 +74,14 @@ public class MassRowColumnChange implements Change {
                 _oldColumns = new ArrayList<Column>(project.columnModel.columns);
             }
             if (_oldRows == null) {
-                _oldRows = new ArrayList<Row>(project.rows);
+                _oldRows = project.getRowStore().copyRows();
             }
 
             project.columnModel.columns.clear();
             project.columnModel.columns.addAll(_newColumns);
             project.columnModel.columnGroups.clear();
 
-            project.rows.clear();
-            project.rows.addAll(_newRows);
+            project.getRowStore().setRows(_newRows);
 
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
 
@@ -97,8 +98,7 @@ public class MassRowColumnChange implements Change {
             project.columnModel.columnGroups.clear();
             project.columnModel.columnGroups.addAll(_oldColumnGroups);
 
-            project.rows.clear();
-            project.rows.addAll(_oldRows);
+            project.getRowStore().setRows(_oldRows);
 
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
 
@@ -156,23 +156,15 @@ public class MassRowColumnChange implements Change {
             if ("oldRowCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                oldRows = LazyRowList.read(reader, count, pool);
             } else if ("newRowCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
+                // decoded when the change is applied or reverted
+
+                newRows = LazyRowList.read(reader, count, pool);
             } else if ("oldColumnCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
 
@@ -58,19 +58,8 @@ public class RowRemovalChange implements Change {
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            int count = _rowIndices.size();
-
-            _rows = new ArrayList<Row>(count);
-
-            int offset = 0;
-            for (int i = 0; i < count; i++) {
-                int index = _rowIndices.get(i);
-
-                Row row = project.rows.remove(index + offset);
-                _rows.add(row);
-
-                offset--;
-            }
+            // chunks of rows without any removed row are shared with the previous version of the rows
+            _rows = project.getRowStore().removeRows(toArray(_rowIndices));
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -82,14 +71,7 @@ public class RowRemovalChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
-            int count = _rowIndices.size();
-
-            for (int i = 0; i < count; i++) {
-                int index = _rowIndices.get(i);
-                Row row = _rows.get(i);
-
-                project.rows.add(index, row);
-            }
+            project.getRowStore().insertRows(toArray(_rowIndices), _rows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -98,6 +80,14 @@ public class RowRemovalChange implements Change {
         }
     }
 
+    static protected int[] toArray(List<Integer> indices) {
+        int[] array = new int[indices.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = indices.get(i);
+        }
+        return array;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("rowIndexCount=");
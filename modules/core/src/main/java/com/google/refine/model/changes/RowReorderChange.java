@@ -37,34 +37,39 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.history.Change;
+import com.google.refine.model.ChunkedRowList;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
 public class RowReorderChange implements Change {
 
-    final protected List<Integer> _rowIndices;
+    // kept as primitives, as the history holds one index per row for each reordering
+    final protected int[] _rowIndices;
 
     public RowReorderChange(List<Integer> rowIndices) {
-        _rowIndices = rowIndices;
+        _rowIndices = new int[rowIndices.size()];
+        for (int i = 0; i < _rowIndices.length; i++) {
+            _rowIndices[i] = rowIndices.get(i);
+        }
     }
 
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            List<Row> oldRows = project.rows;
-            List<Row> newRows = new ArrayList<Row>(oldRows.size());
+            List<Row> oldRows = project.getRowStore().getView();
+            ChunkedRowList newRows = new ChunkedRowList();
 
-            for (Integer oldIndex : _rowIndices) {
+            for (int oldIndex : _rowIndices) {
                 newRows.add(oldRows.get(oldIndex));
             }
 
-            project.rows.clear();
-            project.rows.addAll(newRows);
+            project.getRowStore().setRows(newRows);
             project.update();
         }
     }
@@ -74,21 +79,14 @@ public class RowReorderChange implements Change {
         synchronized (project) {
             int count = project.rows.size();
 
-            List<Row> newRows = project.rows;
-            List<Row> oldRows = new ArrayList<Row>(count);
-
-            for (int r = 0; r < count; r++) {
-                oldRows.add(null);
-            }
+            List<Row> newRows = project.getRowStore().getView();
+            Row[] oldRows = new Row[count];
 
             for (int newIndex = 0; newIndex < count; newIndex++) {
-                int oldIndex = _rowIndices.get(newIndex);
-                Row row = newRows.get(newIndex);
-                oldRows.set(oldIndex, row);
+                oldRows[_rowIndices[newIndex]] = newRows.get(newIndex);
             }
 
-            project.rows.clear();
-            project.rows.addAll(oldRows);
+            project.getRowStore().setRows(Arrays.asList(oldRows));
             project.update();
         }
     }
@@ -96,10 +94,10 @@ public class RowReorderChange implements Change {
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("rowIndexCount=");
-        writer.write(Integer.toString(_rowIndices.size()));
+        writer.write(Integer.toString(_rowIndices.length));
         writer.write('\n');
-        for (Integer index : _rowIndices) {
-            writer.write(index.toString());
+        for (int index : _rowIndices) {
+            writer.write(Integer.toString(index));
             writer.write('\n');
         }
         writer.write("/ec/\n"); // end of change marker
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.model.recon;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the answers of reconciliation services, kept on disk in the workspace so that it is shared by all projects
+ * and survives restarts. Answers are keyed on the service and the query sent to it, and expire after
+ * {@link #TTL_HOURS}.
+ * <p>
+ * The cache file is append-only: each answer is appended as a record ending with a checksum, so that a record
+ * truncated by a crash is ignored. Only the position of the answers in the file is kept in memory. When the answers
+ * take more than {@link #MAX_SIZE_MB}, the least recently used are dropped, and the file is rewritten once it holds too
+ * many answers which were dropped or superseded.
+ */
+public class ReconCache {
+
+    final static Logger logger = LoggerFactory.getLogger("recon_cache");
+
+    /**
+     * Whether answers of reconciliation services are cached, configured with the {@code refine.recon.cache} system
+     * property.
+     */
+    static public final boolean ENABLED = Boolean.parseBoolean(System.getProperty("refine.recon.cache", "true"));
+
+    /**
+     * Maximum size of the cached answers, in megabytes, set by the refine.recon.cacheSize system property.
+     */
+    static public final long MAX_SIZE_MB = Long.getLong("refine.recon.cacheSize", 256);
+
+    /**
+     * Number of hours answers are kept for, set by the refine.recon.cacheTTL system property.
+     */
+    static public final long TTL_HOURS = Long.getLong("refine.recon.cacheTTL", 24);
+
+    static public final String FILE_NAME = "recon.cache";
+    static public final String TEMP_FILE_NAME = "recon.cache.temp";
+
+    static final int MAGIC = 0x4F524352; // "ORCR"
+    static final int HEADER_LENGTH = Long.BYTES + 2 * Integer.BYTES;
+    // the length of dropped or superseded records which is tolerated before the file is rewritten, beyond the length
+    // of the cached answers
+    static final long SLACK_LENGTH = 1 << 20;
+
+    final protected File _file;
+    final protected long _maxSize;
+    final protected long _ttl;
+    // where the answers are in the file, by key, from the least recently used
+    final protected LinkedHashMap<String, Location> _locations = new LinkedHashMap<>(16, 0.75f, true);
+    protected FileChannel _channel;
+    protected long _length;
+    protected long _size;
+    final protected Stats _stats = new Stats();
+
+    static protected class Location {
+
+        final protected long _written;
+        final protected long _position;
+        final protected int _keyLength;
+        final protected int _valueLength;
+
+        protected Location(long written, long position, int keyLength, int valueLength) {
+            _written = written;
+            _position = position;
+            _keyLength = keyLength;
+            _valueLength = valueLength;
+        }
+
+        protected long getRecordLength() {
+            return HEADER_LENGTH + _keyLength + _valueLength + Long.BYTES;
+        }
+    }
+
+    /**
+     * How often answers were found in the cache.
+     */
+    static public class Stats {
+
+        protected long _hits;
+        protected long _misses;
+        protected long _expired;
+        protected long _evicted;
+
+        synchronized public long getHits() {
+            return _hits;
+        }
+
+        synchronized public long getMisses() {
+            return _misses;
+        }
+
+        /**
+         * @return the number of answers found too old to be used
+         */
+        synchronized public long getExpired() {
+            return _expired;
+        }
+
+        /**
+         * @return the number of answers dropped to keep the cache within its size
+         */
+        synchronized public long getEvicted() {
+            return _evicted;
+        }
+
+        synchronized public double getHitRate() {
+            long lookups = _hits + _misses;
+            return lookups == 0 ? 0.0 : (double) _hits / lookups;
+        }
+    }
+
+    public ReconCache(File workspaceDir) {
+        this(new File(workspaceDir, FILE_NAME), MAX_SIZE_MB << 20, TimeUnit.HOURS.toMillis(TTL_HOURS));
+    }
+
+    protected ReconCache(File file, long maxSize, long ttl) {
+        _file = file;
+        _maxSize = maxSize;
+        _ttl = ttl;
+    }
+
+    /**
+     * @return the cached answer to a query, or null if it is not cached or has expired
+     */
+    synchronized public String get(String key) {
+        try {
+            open();
+            Location location = _locations.get(key);
+            if (location != null && System.currentTimeMillis() - location._written > _ttl) {
+                remove(key);
+                location = null;
+                synchronized (_stats) {
+                    _stats._expired++;
+                }
+            }
+            if (location == null) {
+                synchronized (_stats) {
+                    _stats._misses++;
+                }
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(location._valueLength);
+            long position = location._position + HEADER_LENGTH + location._keyLength;
+            while (buffer.hasRemaining()) {
+                int read = _channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                position += read;
+            }
+            synchronized (_stats) {
+                _stats._hits++;
+            }
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Failed to read reconciliation cache {}", _file.getAbsolutePath(), e);
+            remove(key);
+            synchronized (_stats) {
+                _stats._misses++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Caches the answer to a query.
+     */
+    synchronized public void put(String key, String value) {
+        try {
+            open();
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            long written = System.currentTimeMillis();
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length + valueBytes.length + Long.BYTES);
+            buffer.putLong(written).putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            long position = _length;
+            while (buffer.hasRemaining()) {
+                _length += _channel.write(buffer, _length);
+            }
+            add(key, new Location(written, position, keyBytes.length, valueBytes.length));
+            evict();
+            if (_length > 2 * _size + SLACK_LENGTH) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write reconciliation cache {}", _file.getAbsolutePath(), e);
+        }
+    }
+
+    public Stats getStats() {
+        return _stats;
+    }
+
+    synchronized public int size() {
+        return _locations.size();
+    }
+
+    protected void add(String key, Location location) {
+        remove(key);
+        _locations.put(key, location);
+        _size += location.getRecordLength();
+    }
+
+    protected void remove(String key) {
+        Location location = _locations.remove(key);
+        if (location != null) {
+            _size -= location.getRecordLength();
+        }
+    }
+
+    protected void evict() {
+        Iterator<Location> iterator = _locations.values().iterator();
+        while (_size > _maxSize && iterator.hasNext()) {
+            _size -= iterator.next().getRecordLength();
+            iterator.remove();
+            synchronized (_stats) {
+                _stats._evicted++;
+            }
+        }
+    }
+
+    /**
+     * Opens the cache file, reading the location of the answers it holds, unless it is open already.
+     */
+    protected void open() throws IOException {
+        if (_channel != null) {
+            return;
+        }
+        _locations.clear();
+        _size = 0L;
+        _length = 0L;
+        if (_file.exists()) {
+            read();
+        }
+        _channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (_length == 0L) {
+            _channel.truncate(0L);
+            _length = _channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, MAGIC), 0L);
+        } else {
+            // anything after the last valid record is overwritten
+            _channel.truncate(_length);
+        }
+        evict();
+    }
+
+    protected void read() {
+        long now = System.currentTimeMillis();
+        long fileLength = _file.length();
+        long position = 0L;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(_file.toPath()), 1 << 16);
+                DataInputStream in = new DataInputStream(stream)) {
+            if (in.readInt() != MAGIC) {
+                logger.warn("Ignoring reconciliation cache {} of an unknown format", _file.getAbsolutePath());
+                return;
+            }
+            position = Integer.BYTES;
+            CRC32 crc = new CRC32();
+            while (position + HEADER_LENGTH <= fileLength) {
+                long written = in.readLong();
+                int keyLength = in.readInt();
+                int valueLength = in.readInt();
+                if (keyLength < 0 || valueLength < 0
+                        || position + HEADER_LENGTH + keyLength + valueLength + Long.BYTES > fileLength) {
+                    break;
+                }
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                crc.reset();
+                crc.update(ByteBuffer.allocate(HEADER_LENGTH).putLong(written).putInt(keyLength).putInt(valueLength)
+                        .array());
+                crc.update(keyBytes);
+                // values are only read back when they are looked up
+                byte[] value = new byte[valueLength];
+                in.readFully(value);
+                crc.update(value);
+                if (in.readLong() != crc.getValue()) {
+                    break;
+                }
+                Location location = new Location(written, position, keyLength, valueLength);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (now - written <= _ttl) {
+                    add(key, location);
+                } else {
+                    remove(key);
+                }
+                position += location.getRecordLength();
+            }
+        } catch (EOFException e) {
+            // truncated cache: keep the records read so far
+        } catch (IOException e) {
+            logger.warn("Failed to read reconciliation cache {}", _file.getAbsolutePath(), e);
+            _locations.clear();
+            _size = 0L;
+            position = 0L;
+        }
+        _length = position;
+    }
+
+    /**
+     * Rewrites the cache file with the cached answers only, in a safe way: they are written to a temporary file first,
+     * which is then moved over the cache file.
+     */
+    protected void compact() throws IOException {
+        File tempFile = new File(_file.getParentFile(), TEMP_FILE_NAME);
+        LinkedHashMap<String, Location> locations = new LinkedHashMap<>(16, 0.75f, true);
+        long length = Integer.BYTES;
+        try (FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, MAGIC));
+            for (Map.Entry<String, Location> entry : _locations.entrySet()) {
+                Location location = entry.getValue();
+                long recordLength = location.getRecordLength();
+                long copied = 0L;
+                while (copied < recordLength) {
+                    copied += _channel.transferTo(location._position + copied, recordLength - copied, out);
+                }
+                locations.put(entry.getKey(), new Location(location._written, length, location._keyLength,
+                        location._valueLength));
+                length += recordLength;
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        _channel.close();
+        _channel = null;
+        Files.move(tempFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        _channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        _locations.clear();
+        _locations.putAll(locations);
+        _length = length;
+    }
+
+    /**
+     * Closes the cache file. It is opened again if the cache is used again.
+     */
+    synchronized public void close() {
+        if (_channel != null) {
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close reconciliation cache {}", _file.getAbsolutePath(), e);
+            }
+            _channel = null;
+        }
+    }
+}
@@ -116,6 +116,25 @@ abstract public class ReconConfig {
 
     abstract public List<Recon> batchRecon(List<ReconJob> jobs, long historyEntryID);
 
+    /**
+     * Looks up the answer to a job in the cache of the answers of reconciliation services, which lets answers given
+     * recently be reused without asking the service again.
+     *
+     * @return the reconciliation of the job, or null if it is not cached
+     */
+    public Recon getCachedRecon(ReconJob job, long historyEntryID) {
+        return null;
+    }
+
+    /**
+     * @return true if {@link #batchRecon(List, long)} can be called from several threads at once, in which case several
+     *         batches are reconciled concurrently
+     */
+    @JsonIgnore
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     abstract public Recon createNewRecon(long historyEntryID);
 
     public void save(Writer writer) {
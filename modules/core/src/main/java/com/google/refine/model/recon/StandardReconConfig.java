@@ -54,12 +54,14 @@ import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.Nulls;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.refine.ProjectManager;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
@@ -80,6 +82,13 @@ public class StandardReconConfig extends ReconConfig {
     private static final String DEFAULT_IDENTIFIER_SPACE = "http://localhost/identifier";
     private static final int DEFAULT_BATCH_SIZE = 10;
 
+    /**
+     * Minimum number of milliseconds between two requests to reconciliation services, across the batches reconciled
+     * concurrently, set by the refine.recon.requestDelay system property to respect the rate limits of services. It
+     * defaults to the pause batches used to be separated by when they were sent one at a time.
+     */
+    static public final int REQUEST_DELAY = Integer.getInteger("refine.recon.requestDelay", 50);
+
     static public class ColumnDetail {
 
         @JsonProperty("column")
@@ -158,6 +167,11 @@ public class StandardReconConfig extends ReconConfig {
     @JsonProperty("limit")
     final private int limit;
 
+    // whether answers are always asked to the service, rather than taken from the reconciliation cache
+    @JsonProperty("bypassCache")
+    @JsonInclude(Include.NON_DEFAULT)
+    private boolean bypassCache = false;
+
     // initialized lazily
     private HttpClient httpClient = null;
 
@@ -522,9 +536,9 @@ public class StandardReconConfig extends ReconConfig {
         return job;
     }
 
-    private HttpClient getHttpClient() {
+    synchronized private HttpClient getHttpClient() {
         if (httpClient == null) {
-            httpClient = new HttpClient();
+            httpClient = new HttpClient(REQUEST_DELAY);
         }
         return httpClient;
     }
@@ -571,6 +585,7 @@ public class StandardReconConfig extends ReconConfig {
             recons.add(recon);
 
         } else {
+            ReconCache cache = bypassCache ? null : getReconCache();
             for (int i = 0; i < jobs.size(); i++) {
                 StandardReconJob job = (StandardReconJob) jobs.get(i);
                 Recon recon = null;
@@ -583,6 +598,9 @@ public class StandardReconConfig extends ReconConfig {
                         ArrayNode results = (ArrayNode) o2.get("result");
 
                         recon = createReconServiceResults(text, results, historyEntryID);
+                        if (cache != null) {
+                            cacheAnswer(cache, job, o2);
+                        }
                     } else {
                         recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
                         recon.error = "The service returned a JSON response without \"result\" field for query " + key;
@@ -614,6 +632,84 @@ public class StandardReconConfig extends ReconConfig {
         return recons;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @JsonProperty("bypassCache")
+    public void setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+    }
+
+    @JsonProperty("bypassCache")
+    public boolean getBypassCache() {
+        return bypassCache;
+    }
+
+    /**
+     * @return the cache of the answers of reconciliation services, or null if there is none
+     */
+    protected ReconCache getReconCache() {
+        return ProjectManager.singleton == null ? null : ProjectManager.singleton.getReconCache();
+    }
+
+    /**
+     * @return the key of the answer to a query in the reconciliation cache: the service and the query, its fields
+     *         sorted so that the same query is always written the same way
+     */
+    protected String getCacheKey(StandardReconJob job) throws IOException {
+        return service + " " + ParsingUtilities.mapper.writeValueAsString(sortFields(ParsingUtilities.mapper.readTree(job.code)));
+    }
+
+    static protected JsonNode sortFields(JsonNode node) {
+        if (node instanceof ObjectNode) {
+            ObjectNode sorted = ParsingUtilities.mapper.createObjectNode();
+            List<String> names = new ArrayList<>();
+            node.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            for (String name : names) {
+                sorted.set(name, sortFields(node.get(name)));
+            }
+            return sorted;
+        } else if (node instanceof ArrayNode) {
+            ArrayNode array = ParsingUtilities.mapper.createArrayNode();
+            node.forEach(element -> array.add(sortFields(element)));
+            return array;
+        }
+        return node;
+    }
+
+    @Override
+    public Recon getCachedRecon(ReconJob job, long historyEntryID) {
+        ReconCache cache = bypassCache ? null : getReconCache();
+        if (cache == null || !(job instanceof StandardReconJob)) {
+            return null;
+        }
+        StandardReconJob standardJob = (StandardReconJob) job;
+        try {
+            String answer = cache.get(getCacheKey(standardJob));
+            if (answer == null) {
+                return null;
+            }
+            ObjectNode o = ParsingUtilities.mapper.readValue(answer, ObjectNode.class);
+            Recon recon = createReconServiceResults(standardJob.text, (ArrayNode) o.get("result"), historyEntryID);
+            recon.service = service;
+            return recon;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring invalid answer in the reconciliation cache", e);
+            return null;
+        }
+    }
+
+    protected void cacheAnswer(ReconCache cache, StandardReconJob job, ObjectNode answer) {
+        try {
+            cache.put(getCacheKey(job), ParsingUtilities.mapper.writeValueAsString(answer));
+        } catch (IOException e) {
+            logger.warn("Failed to cache the answer of a reconciliation service", e);
+        }
+    }
+
     @Override
     public Recon createNewRecon(long historyEntryID) {
         Recon recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
@@ -42,8 +42,8 @@ import org.apache.commons.lang.Validate;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.EngineConfig;
-import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.MergeableRowVisitor;
 import com.google.refine.history.Change;
 import com.google.refine.history.HistoryEntry;
 import com.google.refine.model.Column;
@@ -82,9 +82,13 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
 
         List<CellChange> cellChanges = new ArrayList<CellChange>(project.rows.size());
 
-        FilteredRows filteredRows = engine.getAllFilteredRows();
         try {
-            filteredRows.accept(project, createRowVisitor(project, cellChanges, historyEntryID));
+            RowVisitor visitor = createRowVisitor(project, cellChanges, historyEntryID);
+            if (visitor instanceof MergeableRowVisitor) {
+                engine.acceptFilteredRows((MergeableRowVisitor) visitor);
+            } else {
+                engine.getAllFilteredRows().accept(project, visitor);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -33,7 +33,10 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.sorting;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 
 import com.google.refine.expr.EvalError;
 import com.google.refine.model.Project;
@@ -57,6 +60,9 @@ abstract public class BaseSorter {
         }
 
         public Object getKey(Project project, Object o, int index) {
+            if (_keys == null) {
+                _keys = new ArrayList<Object[]>();
+            }
             while (index >= _keys.size()) {
                 _keys.add(null);
             }
@@ -129,6 +135,38 @@ abstract public class BaseSorter {
         return keys;
     }
 
+    /**
+     * Sorts rows or records by the criteria of this sorter. The keys of each criterion are made once for each object
+     * and held in primitive arrays, then the positions of the objects are sorted by a stable merge sort, in parallel
+     * for large projects.
+     *
+     * @param count
+     *            the number of objects to sort
+     * @param objects
+     *            the object (row or record) at each position
+     * @param indices
+     *            the row or record index of the object at each position
+     * @return the positions of the objects, in sorted order
+     */
+    protected int[] sort(Project project, int count, IntFunction<Object> objects, IntUnaryOperator indices) {
+        SortKeys[] sortKeys = new SortKeys[_criteria.length];
+        for (int c = 0; c < _criteria.length; c++) {
+            Object[] keys = new Object[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = makeKey(project, _keyMakers[c], _criteria[c], objects.apply(i), indices.applyAsInt(i));
+            }
+            sortKeys[c] = new SortKeys(_criteria[c], _keyMakers[c], keys);
+        }
+
+        return IndexSorter.sortedPositions(count, (i1, i2) -> {
+            int c = 0;
+            for (int k = 0; c == 0 && k < sortKeys.length; k++) {
+                c = sortKeys[k].compare(i1, i2);
+            }
+            return c;
+        });
+    }
+
     protected int compare(Project project, Object o1, int i1, Object o2, int i2) {
         int c = 0;
         for (int i = 0; c == 0 && i < _comparatorWrappers.length; i++) {
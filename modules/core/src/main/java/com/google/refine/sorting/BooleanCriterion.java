@@ -62,6 +62,16 @@ public class BooleanCriterion extends Criterion {
             public int compareKeys(Object key1, Object key2) {
                 return ((Boolean) key1).compareTo((Boolean) key2);
             }
+
+            @Override
+            public boolean hasLongKeys() {
+                return true;
+            }
+
+            @Override
+            public long toLong(Object key) {
+                return ((Boolean) key).booleanValue() ? 1 : 0;
+            }
         };
     }
 
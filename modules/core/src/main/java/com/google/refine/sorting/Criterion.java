@@ -78,7 +78,7 @@ abstract public class Criterion {
     // that has not been applied yet).
     protected int getCellIndex(Project project) {
         if (cellIndex == -2) {
-            Column column = project.columnModel.getColumnByName(columnName);
+            Column column = project.getColumnModel().getColumnByName(columnName);
             cellIndex = column != null ? column.getCellIndex() : -1;
         }
         return cellIndex;
@@ -138,6 +138,24 @@ abstract public class Criterion {
 
         abstract public int compareKeys(Object key1, Object key2);
 
+        /**
+         * @return whether non-blank, non-error keys can be encoded by {@link #toLong(Object)}
+         */
+        public boolean hasLongKeys() {
+            return false;
+        }
+
+        /**
+         * Encodes a non-blank, non-error key as a long, such that encoded keys compare like
+         * {@link #compareKeys(Object, Object)} compares the keys.
+         *
+         * @throws ArithmeticException
+         *             if the key is out of the range of the encoding
+         */
+        public long toLong(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
         abstract protected Object makeKey(Object value);
     }
 
@@ -63,6 +63,18 @@ public class DateCriterion extends Criterion {
             public int compareKeys(Object key1, Object key2) {
                 return ((Instant) key1).compareTo((Instant) key2);
             }
+
+            @Override
+            public boolean hasLongKeys() {
+                return true;
+            }
+
+            @Override
+            public long toLong(Object key) {
+                // nanoseconds since the epoch, which overflow for dates outside of years 1677 to 2262
+                Instant instant = (Instant) key;
+                return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1000000000L), instant.getNano());
+            }
         };
     }
 
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.sorting;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable merge sort of arrays of positions, comparing positions with a primitive comparator so that no position needs
+ * to be boxed. Large arrays are sorted in parallel in the common fork-join pool.
+ */
+public class IndexSorter {
+
+    /**
+     * Minimum number of positions for a range to be split across threads, set by the refine.sorting.parallelThreshold
+     * system property.
+     */
+    static public final int PARALLEL_THRESHOLD = Integer.getInteger("refine.sorting.parallelThreshold", 8192);
+
+    static protected final int INSERTION_SORT_THRESHOLD = 32;
+
+    @FunctionalInterface
+    public interface IndexComparator {
+
+        public int compare(int i1, int i2);
+    }
+
+    /**
+     * Sorts the given positions in place. Positions which compare as equal keep their relative order.
+     */
+    static public void sort(int[] positions, IndexComparator comparator) {
+        if (positions.length < 2) {
+            return;
+        }
+        int[] buffer = new int[positions.length];
+        if (positions.length > PARALLEL_THRESHOLD) {
+            new SortTask(positions, buffer, 0, positions.length, comparator).invoke();
+        } else {
+            mergeSort(positions, buffer, 0, positions.length, comparator);
+        }
+    }
+
+    /**
+     * @return the positions 0 to count - 1, in sorted order
+     */
+    static public int[] sortedPositions(int count, IndexComparator comparator) {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = i;
+        }
+        sort(positions, comparator);
+        return positions;
+    }
+
+    static protected class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final protected int[] _positions;
+        final protected int[] _buffer;
+        final protected int _from;
+        final protected int _to;
+        final protected IndexComparator _comparator;
+
+        protected SortTask(int[] positions, int[] buffer, int from, int to, IndexComparator comparator) {
+            _positions = positions;
+            _buffer = buffer;
+            _from = from;
+            _to = to;
+            _comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= PARALLEL_THRESHOLD) {
+                mergeSort(_positions, _buffer, _from, _to, _comparator);
+            } else {
+                int middle = (_from + _to) >>> 1;
+                invokeAll(new SortTask(_positions, _buffer, _from, middle, _comparator),
+                        new SortTask(_positions, _buffer, middle, _to, _comparator));
+                merge(_positions, _buffer, _from, middle, _to, _comparator);
+            }
+        }
+    }
+
+    static protected void mergeSort(int[] positions, int[] buffer, int from, int to, IndexComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int position = positions[i];
+                int j = i;
+                while (j > from && comparator.compare(positions[j - 1], position) > 0) {
+                    positions[j] = positions[j - 1];
+                    j--;
+                }
+                positions[j] = position;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(positions, buffer, from, middle, comparator);
+        mergeSort(positions, buffer, middle, to, comparator);
+        merge(positions, buffer, from, middle, to, comparator);
+    }
+
+    static protected void merge(int[] positions, int[] buffer, int from, int middle, int to, IndexComparator comparator) {
+        if (comparator.compare(positions[middle - 1], positions[middle]) <= 0) {
+            // both halves are already in order
+            return;
+        }
+        System.arraycopy(positions, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                positions[i] = buffer[left++];
+            } else {
+                positions[i] = buffer[right++];
+            }
+        }
+    }
+}
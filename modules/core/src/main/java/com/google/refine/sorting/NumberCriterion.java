@@ -76,6 +76,20 @@ public class NumberCriterion extends Criterion {
                 double d2 = ((Number) key2).doubleValue();
                 return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
             }
+
+            @Override
+            public boolean hasLongKeys() {
+                return true;
+            }
+
+            @Override
+            public long toLong(Object key) {
+                double d = ((Number) key).doubleValue();
+                // -0.0 and 0.0 compare as equal
+                long bits = Double.doubleToLongBits(d == 0.0 ? 0.0 : d);
+                // flip the bits of negative numbers so that longs are ordered like doubles
+                return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
         };
     }
 
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.sorting;
+
+import java.util.Arrays;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.sorting.Criterion.KeyMaker;
+
+/**
+ * Keys of a sorting criterion for the rows or records being sorted, held in primitive arrays. Values which can be
+ * encoded as longs by their {@link KeyMaker} are stored as such, other values are replaced by their rank among all
+ * the values. Blanks and errors are placed in groups according to the positions set on the criterion.
+ */
+public class SortKeys {
+
+    /**
+     * For each position, twice the position of its group relative to non-blank values (which are in group 0), plus one
+     * for blanks and errors. Null when all the keys are non-blank values.
+     */
+    final protected int[] _groups;
+    /**
+     * For each non-blank value, its encoding or rank, complemented if the criterion is reversed
+     */
+    final protected long[] _values;
+
+    /**
+     * @param keys
+     *            the keys made by the key maker of the criterion, as compared by
+     *            {@link KeyMaker#compareKeys(Object, Object)}
+     */
+    public SortKeys(Criterion criterion, KeyMaker keyMaker, Object[] keys) {
+        int count = keys.length;
+        int[] groups = null;
+        int[] values = new int[count];
+        int valueCount = 0;
+        for (int i = 0; i < count; i++) {
+            Object key = keys[i];
+            if (key == null || key instanceof EvalError) {
+                if (groups == null) {
+                    groups = new int[count];
+                }
+                groups[i] = 2 * (key == null ? criterion.blankPosition : criterion.errorPosition) + 1;
+            } else {
+                values[valueCount++] = i;
+            }
+        }
+        values = Arrays.copyOf(values, valueCount);
+        _groups = groups;
+        _values = new long[count];
+
+        if (!encode(keyMaker, keys, values)) {
+            rank(keyMaker, keys, values);
+        }
+        if (criterion.reverse) {
+            for (int i : values) {
+                _values[i] = ~_values[i];
+            }
+        }
+    }
+
+    protected boolean encode(KeyMaker keyMaker, Object[] keys, int[] values) {
+        if (!keyMaker.hasLongKeys()) {
+            return false;
+        }
+        try {
+            for (int i : values) {
+                _values[i] = keyMaker.toLong(keys[i]);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            // some value is out of the range of the encoding
+            return false;
+        }
+    }
+
+    protected void rank(KeyMaker keyMaker, Object[] keys, int[] values) {
+        IndexSorter.sort(values, (i1, i2) -> keyMaker.compareKeys(keys[i1], keys[i2]));
+        long rank = 0;
+        for (int k = 0; k < values.length; k++) {
+            if (k > 0 && keyMaker.compareKeys(keys[values[k - 1]], keys[values[k]]) != 0) {
+                rank++;
+            }
+            _values[values[k]] = rank;
+        }
+    }
+
+    public int compare(int i1, int i2) {
+        if (_groups != null) {
+            int g1 = _groups[i1];
+            int g2 = _groups[i2];
+            if (g1 != g2) {
+                return Integer.compare(g1, g2);
+            } else if (g1 % 2 != 0) {
+                // blanks and errors at the same position
+                return 0;
+            }
+        }
+        return Long.compare(_values[i1], _values[i2]);
+    }
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.sorting;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.Engine.Mode;
+import com.google.refine.browsing.RecordVisitor;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.history.History;
+import com.google.refine.model.Project;
+import com.google.refine.model.Record;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * Caches, for one project, the order of the rows or records selected by an engine and sorted by a sorting
+ * configuration. Paging through a sorted grid then only needs to read a slice of the cached order instead of sorting
+ * all the rows again for each page. Views are keyed on the engine configuration, the sorting configuration and the
+ * current state of the project (its last history entry and change count), and are dropped whenever the project
+ * changes. Views of engines whose facets are not cacheable are computed again on each request.
+ */
+public class SortedViewCache {
+
+    /**
+     * Maximum number of row or record indices cached for each project, set by the refine.sorting.viewCacheSize system
+     * property.
+     */
+    static public final long MAX_WEIGHT = Long.getLong("refine.sorting.viewCacheSize", 4000000L);
+
+    /**
+     * Rows or records selected by an engine, in sorted order.
+     */
+    static public class SortedView {
+
+        final public Mode mode;
+        /**
+         * Indices of the rows (in row mode) or records (in record mode), in sorted order
+         */
+        final public int[] order;
+        /**
+         * In record mode, the sorted index of the first row of each record of {@link #order}, followed by the total
+         * number of rows. Null in row mode, where each position holds a single row.
+         */
+        final protected int[] _sortedStarts;
+
+        public SortedView(Mode mode, int[] order, int[] sortedStarts) {
+            this.mode = mode;
+            this.order = order;
+            _sortedStarts = sortedStarts;
+        }
+
+        /**
+         * @return the number of rows or records in the view
+         */
+        public int size() {
+            return order.length;
+        }
+
+        /**
+         * @return the number of rows in the view, including the rows of records in record mode
+         */
+        public int getRowCount() {
+            return _sortedStarts == null ? order.length : _sortedStarts[order.length];
+        }
+
+        /**
+         * @return the sorted index of the (first) row at the given position
+         */
+        public int getSortedRowIndex(int position) {
+            return _sortedStarts == null ? position : _sortedStarts[position];
+        }
+
+        /**
+         * @return the first position whose sorted row index is greater than or equal to the given one
+         */
+        public int getPosition(int sortedRowIndex) {
+            if (_sortedStarts == null) {
+                return Math.max(0, Math.min(sortedRowIndex, order.length));
+            }
+            int position = Arrays.binarySearch(_sortedStarts, 0, order.length, sortedRowIndex);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        protected int getWeight() {
+            return order.length + (_sortedStarts == null ? 0 : _sortedStarts.length);
+        }
+    }
+
+    final protected Cache<String, SortedView> _cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((String key, SortedView view) -> view.getWeight())
+            .recordStats()
+            .build();
+    protected volatile long _changeCount = 0;
+
+    /**
+     * Returns the rows or records selected by the engine, sorted according to the given configuration, sorting them if
+     * they are not cached yet.
+     */
+    public SortedView getSortedView(Project project, Engine engine, SortingConfig sortingConfig) {
+        if (!engine.isCacheable()) {
+            // the rows selected by its facets may change without the project changing
+            return computeSortedView(project, engine, sortingConfig);
+        }
+        String key;
+        try {
+            key = ParsingUtilities.mapper.writeValueAsString(engine.getConfig())
+                    + ParsingUtilities.mapper.writeValueAsString(sortingConfig);
+        } catch (JsonProcessingException e) {
+            return computeSortedView(project, engine, sortingConfig);
+        }
+
+        History history = project.history;
+        long changeCount = history.getChangeCount();
+        if (!project.getRowStore().isViewingLatest()) {
+            // this thread reads a version of the rows which has been changed since: its view cannot be shared
+            return computeSortedView(project, engine, sortingConfig);
+        }
+        if (changeCount != _changeCount) {
+            // the views cached so far were computed on a previous state of the project
+            _cache.invalidateAll();
+            _changeCount = changeCount;
+        }
+        key = history.getCurrentEntryID() + ":" + changeCount + ":" + key;
+
+        SortedView view = _cache.getIfPresent(key);
+        if (view == null) {
+            view = computeSortedView(project, engine, sortingConfig);
+            // do not cache views which might have been computed while the project was changed
+            if (changeCount % 2 == 0 && history.getChangeCount() == changeCount) {
+                _cache.put(key, view);
+            }
+        }
+        return view;
+    }
+
+    static public SortedView computeSortedView(Project project, Engine engine, SortingConfig sortingConfig) {
+        IndexCollector collector = new IndexCollector();
+        if (engine.getMode() == Mode.RowBased) {
+            SortingRowVisitor srv = new SortingRowVisitor(collector);
+            srv.initializeFromConfig(project, sortingConfig);
+            engine.getAllFilteredRows().accept(project, srv.hasCriteria() ? srv : collector);
+            return new SortedView(Mode.RowBased, collector.getIndices(), null);
+        } else {
+            SortingRecordVisitor srv = new SortingRecordVisitor(collector);
+            srv.initializeFromConfig(project, sortingConfig);
+            engine.getFilteredRecords().accept(project, srv.hasCriteria() ? srv : collector);
+            return new SortedView(Mode.RecordBased, collector.getIndices(), collector.getSortedStarts());
+        }
+    }
+
+    public CacheStats getStats() {
+        return _cache.stats();
+    }
+
+    public void clear() {
+        _cache.invalidateAll();
+    }
+
+    /**
+     * Records the indices of the rows or records it visits, in the order they are visited.
+     */
+    static protected class IndexCollector implements RowVisitor, RecordVisitor {
+
+        protected int[] _indices = new int[1024];
+        protected int[] _sortedStarts = new int[1025];
+        protected int _size = 0;
+        protected int _rowCount = 0;
+
+        @Override
+        public void start(Project project) {
+            _size = 0;
+            _rowCount = 0;
+        }
+
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            add(rowIndex, 1);
+            return false;
+        }
+
+        @Override
+        public boolean visit(Project project, Record record) {
+            add(record.recordIndex, record.toRowIndex - record.fromRowIndex);
+            return false;
+        }
+
+        protected void add(int index, int rowCount) {
+            if (_size == _indices.length) {
+                _indices = Arrays.copyOf(_indices, _size * 2);
+                _sortedStarts = Arrays.copyOf(_sortedStarts, _size * 2 + 1);
+            }
+            _indices[_size] = index;
+            _sortedStarts[_size] = _rowCount;
+            _size++;
+            _rowCount += rowCount;
+        }
+
+        public int[] getIndices() {
+            return Arrays.copyOf(_indices, _size);
+        }
+
+        public int[] getSortedStarts() {
+            int[] sortedStarts = Arrays.copyOf(_sortedStarts, _size + 1);
+            sortedStarts[_size] = _rowCount;
+            return sortedStarts;
+        }
+    }
+}
@@ -34,8 +34,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.sorting;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import com.google.refine.browsing.RecordVisitor;
@@ -54,32 +52,18 @@ public class SortingRecordVisitor extends BaseSorter implements RecordVisitor {
 
     @Override
     public void start(Project project) {
-        int count = project.recordModel.getRecordCount();
-        _records = new ArrayList<Record>(count);
-        _keys = new ArrayList<Object[]>(count);
+        _records = new ArrayList<Record>(project.getRecordModel().getRecordCount());
     }
 
     @Override
     public void end(Project project) {
         _visitor.start(project);
 
-        Collections.sort(_records, new Comparator<Record>() {
-
-            Project project;
-
-            Comparator<Record> init(Project project) {
-                this.project = project;
-                return this;
-            }
-
-            @Override
-            public int compare(Record o1, Record o2) {
-                return SortingRecordVisitor.this.compare(project, o1, o1.recordIndex, o2, o2.recordIndex);
-            }
-        }.init(project));
+        int[] sorted = sort(project, _records.size(), i -> _records.get(i), i -> _records.get(i).recordIndex);
 
         int sortedIndex = 0;
-        for (Record record : _records) {
+        for (int position : sorted) {
+            Record record = _records.get(position);
             _visitor.visit(project, sortedIndex, record);
             sortedIndex += record.toRowIndex - record.fromRowIndex;
         }
@@ -34,8 +34,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.sorting;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import com.google.refine.browsing.RowVisitor;
@@ -65,32 +63,19 @@ public class SortingRowVisitor extends BaseSorter implements RowVisitor {
 
     @Override
     public void start(Project project) {
-        int count = project.rows.size();
-        _indexedRows = new ArrayList<IndexedRow>(count);
-        _keys = new ArrayList<Object[]>(count);
+        _indexedRows = new ArrayList<IndexedRow>(project.rows.size());
     }
 
     @Override
     public void end(Project project) {
         _visitor.start(project);
 
-        Collections.sort(_indexedRows, new Comparator<IndexedRow>() {
-
-            Project project;
-
-            Comparator<IndexedRow> init(Project project) {
-                this.project = project;
-                return this;
-            }
-
-            @Override
-            public int compare(IndexedRow o1, IndexedRow o2) {
-                return SortingRowVisitor.this.compare(project, o1.row, o1.index, o2.row, o2.index);
-            }
-        }.init(project));
+        int[] sorted = sort(project, _indexedRows.size(),
+                i -> _indexedRows.get(i).row, i -> _indexedRows.get(i).index);
 
         int sortedIndex = 0;
-        for (IndexedRow indexedRow : _indexedRows) {
+        for (int position : sorted) {
+            IndexedRow indexedRow = _indexedRows.get(position);
             _visitor.visit(project, indexedRow.index, sortedIndex, indexedRow.row);
             sortedIndex++;
         }
@@ -73,6 +73,12 @@ public class HttpClient {
 
     final static Logger logger = LoggerFactory.getLogger("http-client");
 
+    /**
+     * Maximum number of connections open at once to the same host, set by the refine.http.maxConnectionsPerRoute
+     * system property.
+     */
+    static public final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger("refine.http.maxConnectionsPerRoute", 10);
+
     final private RequestConfig defaultRequestConfig;
     private HttpClientBuilder httpClientBuilder;
     private CloseableHttpClient httpClient;
@@ -101,6 +107,8 @@ public class HttpClient {
                 .setSoTimeout(60, TimeUnit.SECONDS)
                 .build();
         connManager.setDefaultSocketConfig(socketConfig);
+        connManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        connManager.setMaxTotal(Math.max(MAX_CONNECTIONS_PER_ROUTE, connManager.getMaxTotal()));
 
         defaultRequestConfig = RequestConfig.custom()
                 .setConnectTimeout(60, TimeUnit.SECONDS)
@@ -125,14 +133,20 @@ public class HttpClient {
                             final EntityDetails entity,
                             final HttpContext context) throws HttpException, IOException {
 
-                        long delay = nextRequestTime - System.currentTimeMillis();
+                        // requests sent from several threads at once are spaced by the delay in turn
+                        long delay;
+                        synchronized (this) {
+                            long now = System.currentTimeMillis();
+                            long requestTime = Math.max(now, nextRequestTime);
+                            nextRequestTime = requestTime + _delay;
+                            delay = requestTime - now;
+                        }
                         if (delay > 0) {
                             try {
                                 Thread.sleep(delay);
                             } catch (InterruptedException e) {
                             }
                         }
-                        nextRequestTime = System.currentTimeMillis() + _delay;
 
                     }
                 });
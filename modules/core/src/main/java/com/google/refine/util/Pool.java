@@ -46,9 +46,11 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.RefineServlet;
+import com.google.refine.model.CellValueDictionary;
 import com.google.refine.model.Recon;
 import com.google.refine.model.ReconCandidate;
 
@@ -64,6 +66,9 @@ public class Pool {
     // This is only for backward compatibility while loading old project files
     final protected Map<String, ReconCandidate> candidates = new HashMap<String, ReconCandidate>();
 
+    // shares the string values of the cells loaded with this pool
+    protected CellValueDictionary valueDictionary;
+
     private void pool(ReconCandidate candidate) {
         candidates.put(candidate.id, candidate);
     }
@@ -92,6 +97,17 @@ public class Pool {
         return candidates.get(topicID);
     }
 
+    /**
+     * @return the dictionaries of the string values of the cells loaded with this pool
+     */
+    @JsonIgnore
+    synchronized public CellValueDictionary getValueDictionary() {
+        if (valueDictionary == null) {
+            valueDictionary = new CellValueDictionary();
+        }
+        return valueDictionary;
+    }
+
     public void save(OutputStream out) throws IOException {
         Writer writer = new OutputStreamWriter(out, "UTF-8");
         try {
@@ -34,6 +34,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine;
 
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -42,11 +44,18 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import java.lang.reflect.Field;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
@@ -59,6 +68,7 @@ import org.testng.annotations.Test;
 import com.google.refine.model.Project;
 import com.google.refine.model.ProjectStub;
 import com.google.refine.model.Row;
+import com.google.refine.model.RowStore;
 import com.google.refine.process.ProcessManager;
 
 public class ProjectManagerTests extends RefineTest {
@@ -95,6 +105,7 @@ public class ProjectManagerTests extends RefineTest {
         procmgr = mock(ProcessManager.class);
         when(project.getProcessManager()).thenReturn(procmgr);
         when(procmgr.hasPending()).thenReturn(false); // always false for now, but should test separately
+        when(project.getRowStore()).thenReturn(mock(RowStore.class));
     }
 
     private void addRows(Project p) {
@@ -187,6 +198,7 @@ public class ProjectManagerTests extends RefineTest {
         verify(metadata, atLeastOnce()).getTags();
         verify(metadata).setRowCount(ROW_COUNT);
         verify(project, atLeastOnce()).getProcessManager();
+        verify(project, atLeastOnce()).getRowStore();
         verify(project, atLeastOnce()).getLastSave();
         verify(project, times(1)).dispose();
         verify(SUT, never()).saveProject(project);
@@ -227,6 +239,162 @@ public class ProjectManagerTests extends RefineTest {
     }
     // TODO test canSaveAllModifiedWithRaceCondition
 
+    @Test
+    public void canUseManagerWhileSaving() throws Exception {
+        whenGetSaveTimes(project, metadata);
+        registerProject();
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return null;
+        }).when(SUT).saveProject(project);
+
+        Thread saver = new Thread(() -> SUT.save(true));
+        saver.start();
+        assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+        // the manager is not locked while the project is being saved
+        Project project2 = new ProjectStub(2);
+        SUT.registerProject(project2, mock(ProjectMetadata.class));
+        Assert.assertSame(SUT.getProject(2), project2);
+        assertEquals(SUT.getSaveMetrics().getQueueDepth(), 1);
+
+        release.countDown();
+        saver.join(10000);
+        assertEquals(SUT.getSaveMetrics().getQueueDepth(), 0);
+        assertEquals(SUT.getSaveMetrics().getSaveCount(), 1);
+    }
+
+    @Test
+    public void submitsOneSaveAfterPendingSave() throws Exception {
+        registerProject();
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch releaseOthers = new CountDownLatch(1);
+        AtomicInteger saves = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (saves.incrementAndGet() == 1) {
+                releaseFirst.await();
+            } else {
+                releaseOthers.await();
+            }
+            return null;
+        }).when(SUT).saveProject(project);
+
+        Future<?> first = SUT.submitSave(project, false);
+        Assert.assertNull(SUT.submitSave(project, false));
+
+        // two threads wait for the pending save, then only one of them submits another save
+        List<Future<?>> submitted = Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> submitted.add(SUT.submitSave(project, true)));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(10);
+            }
+        }
+        releaseFirst.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        assertEquals(submitted.size(), 2);
+        Assert.assertNotNull(submitted.get(0));
+        Assert.assertSame(submitted.get(0), submitted.get(1));
+        Assert.assertSame(SUT._pendingSaves.get(project.id), submitted.get(0));
+
+        releaseOthers.countDown();
+        submitted.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals(saves.get(), 2);
+        assertEquals(SUT.getSaveMetrics().getQueueDepth(), 0);
+    }
+
+    @Test
+    public void canEvictLeastRecentlyUsedProjects() {
+        Project project1 = spy(new ProjectStub(1));
+        Project project2 = spy(new ProjectStub(2));
+        Project project3 = spy(new ProjectStub(3));
+        for (Project p : new Project[] { project1, project2, project3 }) {
+            doReturn(100L).when(p).getEstimatedMemorySize();
+            whenProjectGetLastSave(p);
+        }
+        ProjectMetadata metadata1 = mock(ProjectMetadata.class);
+        ProjectMetadata metadata2 = mock(ProjectMetadata.class);
+        whenMetadataGetModified(metadata1, -10);
+        whenMetadataGetModified(metadata2, -10);
+        registerProject(project1, metadata1);
+        registerProject(project2, metadata2);
+        SUT._memoryBudget = 250;
+        long now = System.nanoTime();
+        SUT._lastAccess.put(1L, now - TimeUnit.MINUTES.toNanos(2));
+        SUT._lastAccess.put(2L, now - TimeUnit.MINUTES.toNanos(1));
+        doReturn(project3).when(SUT).loadProject(3);
+
+        Assert.assertSame(SUT.getProject(3), project3);
+
+        // the least recently used project is evicted, which is enough to fit in the budget
+        verify(project1, times(1)).dispose();
+        verify(project2, never()).dispose();
+        Assert.assertFalse(SUT._projects.containsKey(1L));
+        Assert.assertSame(SUT.getProject(2), project2);
+        ProjectManager.ProjectCacheStats stats = SUT.getProjectCacheStats();
+        assertEquals(stats.getEvictions(), 1);
+        assertEquals(stats.getEvictedBytes(), 100);
+        assertEquals(stats.getEstimatedBytes(), 200);
+        assertEquals(stats.getMisses(), 1);
+        assertEquals(stats.getHits(), 1);
+    }
+
+    @Test
+    public void doesNotEvictProjectsWhoseRowsArePinned() throws Exception {
+        Project project1 = spy(new ProjectStub(1));
+        Project project2 = spy(new ProjectStub(2));
+        for (Project p : new Project[] { project1, project2 }) {
+            doReturn(100L).when(p).getEstimatedMemorySize();
+            whenProjectGetLastSave(p);
+        }
+        ProjectMetadata metadata1 = mock(ProjectMetadata.class);
+        whenMetadataGetModified(metadata1, -10);
+        registerProject(project1, metadata1);
+        SUT._memoryBudget = 150;
+        SUT._lastAccess.put(1L, System.nanoTime() - TimeUnit.MINUTES.toNanos(2));
+        doReturn(project2).when(SUT).loadProject(2);
+
+        // a request on another thread reads the rows of the project while the other one is loaded
+        CountDownLatch pinned = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try (RowStore.Version version = project1.getRowStore().pin()) {
+                pinned.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+        try {
+            assertTrue(pinned.await(10, TimeUnit.SECONDS));
+            Assert.assertSame(SUT.getProject(2), project2);
+
+            verify(project1, never()).dispose();
+            Assert.assertTrue(SUT._projects.containsKey(1L));
+            assertEquals(SUT.getProjectCacheStats().getEvictions(), 0);
+        } finally {
+            release.countDown();
+            reader.join(10000);
+        }
+
+        // once the request completes, the project can be evicted
+        Assert.assertFalse(project1.getRowStore().isPinned());
+        SUT.evictProjects(2);
+        verify(project1, times(1)).dispose();
+        Assert.assertFalse(SUT._projects.containsKey(1L));
+    }
+
     // -------------helpers-------------
 
     protected void registerProject() {
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.Engine.Mode;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.facets.ListFacet.ListFacetConfig;
+import com.google.refine.browsing.facets.TextSearchFacet.TextSearchFacetConfig;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.LanguageSpecificParser;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.util.ParsingUtilities;
+
+public class RowFilterCacheTests extends RefineTest {
+
+    Project project;
+    TextSearchFacetConfig config;
+    RowFilter filter;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        project = createProject(new String[] { "letter" },
+                new Serializable[][] {
+                        { "a" },
+                        { "b" },
+                        { "a" },
+                        { "c" },
+                });
+        config = ParsingUtilities.mapper.readValue("{\"type\":\"text\",\"name\":\"letter\",\"columnName\":\"letter\","
+                + "\"query\":\"a\",\"mode\":\"text\",\"caseSensitive\":false,\"invert\":false}", TextSearchFacetConfig.class);
+        filter = config.apply(project).getRowFilter(project);
+    }
+
+    static BitSet bits(int... indices) {
+        BitSet bitSet = new BitSet();
+        for (int i : indices) {
+            bitSet.set(i);
+        }
+        return bitSet;
+    }
+
+    @Test
+    public void testCachedUntilHistoryChanges() {
+        RowFilterCache cache = project.getRowFilterCache();
+
+        BitSet initial = cache.getMatchingRows(project, config, filter);
+        assertEquals(initial, bits(0, 2));
+        assertSame(cache.getMatchingRows(project, config, filter), initial);
+        assertEquals(cache.getStats().hitCount(), 1);
+
+        project.history.addEntry(new HistoryEntry(HistoryEntry.allocateID(), project, "Edit cell", null,
+                new CellChange(1, 0, project.rows.get(1).getCell(0), new Cell("a", null))));
+
+        BitSet changed = cache.getMatchingRows(project, config, filter);
+        assertNotSame(changed, initial);
+        assertEquals(changed, bits(0, 1, 2));
+
+        project.history.undoRedo(0);
+        assertEquals(cache.getMatchingRows(project, config, filter), bits(0, 2));
+        assertEquals(cache.getStats().hitCount(), 1);
+    }
+
+    @Test
+    public void testMissingRowsAreComputedInSharedScan() throws Exception {
+        Serializable[][] rows = new Serializable[1000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Serializable[] { i % 3 == 0 ? "a" : "b" };
+        }
+        Project large = createProject(new String[] { "letter" }, rows);
+        TextSearchFacetConfig otherConfig = ParsingUtilities.mapper.readValue("{\"type\":\"text\",\"name\":\"letter\","
+                + "\"columnName\":\"letter\",\"query\":\"b\",\"mode\":\"text\",\"caseSensitive\":false,"
+                + "\"invert\":false}", TextSearchFacetConfig.class);
+        AtomicInteger evaluations = new AtomicInteger();
+        RowFilter[] filters = new RowFilter[2];
+        RowFilter[] countedFilters = new RowFilter[2];
+        filters[0] = config.apply(large).getRowFilter(large);
+        filters[1] = otherConfig.apply(large).getRowFilter(large);
+        for (int i = 0; i < filters.length; i++) {
+            RowFilter rowFilter = filters[i];
+            countedFilters[i] = (project, rowIndex, row) -> {
+                evaluations.incrementAndGet();
+                return rowFilter.filterRow(project, rowIndex, row);
+            };
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            BitSet[] matchingRows = large.getRowFilterCache().getMatchingRows(large, Arrays.asList(config, otherConfig),
+                    countedFilters, pool, 100);
+            for (int i = 0; i < rows.length; i++) {
+                assertEquals(matchingRows[0].get(i), i % 3 == 0);
+                assertEquals(matchingRows[1].get(i), i % 3 != 0);
+            }
+            assertEquals(evaluations.get(), 2 * rows.length);
+            assertEquals(large.getRowFilterCache().getStats().missCount(), 2);
+
+            // both sets were cached
+            assertSame(large.getRowFilterCache().getMatchingRows(large, otherConfig, filters[1]), matchingRows[1]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEngineUsesCache() {
+        Engine engine = new Engine(project);
+        engine.initializeFromConfig(new EngineConfig(Collections.singletonList(config), Mode.RowBased));
+
+        AtomicInteger count = new AtomicInteger();
+        RowVisitor counter = new RowVisitor() {
+
+            @Override
+            public void start(Project project) {
+            }
+
+            @Override
+            public boolean visit(Project project, int rowIndex, Row row) {
+                count.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public void end(Project project) {
+            }
+        };
+        engine.getAllFilteredRows().accept(project, counter);
+        engine.getAllFilteredRows().accept(project, counter);
+
+        assertEquals(count.get(), 4);
+        assertEquals(project.getRowFilterCache().getStats().missCount(), 1);
+        assertEquals(project.getRowFilterCache().getStats().hitCount(), 1);
+    }
+
+    @Test
+    public void testFacetsDependingOnOutsideStateAreNotCached() throws Exception {
+        // an expression reading state outside of the project, which changes between two evaluations of the facet
+        AtomicInteger evaluations = new AtomicInteger();
+        Evaluable outside = new Evaluable() {
+
+            @Override
+            public Object evaluate(Properties bindings) {
+                return evaluations.getAndIncrement() < 4 ? "a" : "b";
+            }
+        };
+        MetaParser.registerLanguageParser("outside", "Outside", new LanguageSpecificParser() {
+
+            @Override
+            public Evaluable parse(String source, String languagePrefix) {
+                return outside;
+            }
+        }, "");
+        try {
+            ListFacetConfig listConfig = ParsingUtilities.mapper.readValue("{\"type\":\"list\",\"name\":\"letter\","
+                    + "\"columnName\":\"letter\",\"expression\":\"outside:value\",\"omitBlank\":false,"
+                    + "\"omitError\":false,\"selection\":[{\"v\":{\"v\":\"a\",\"l\":\"a\"}}],\"selectBlank\":false,"
+                    + "\"selectError\":false,\"invert\":false}", ListFacetConfig.class);
+            Engine engine = new Engine(project);
+            engine.initializeFromConfig(new EngineConfig(Collections.singletonList(listConfig), Mode.RowBased));
+
+            AtomicInteger count = new AtomicInteger();
+            RowVisitor counter = new RowVisitor() {
+
+                @Override
+                public void start(Project project) {
+                }
+
+                @Override
+                public boolean visit(Project project, int rowIndex, Row row) {
+                    count.incrementAndGet();
+                    return false;
+                }
+
+                @Override
+                public void end(Project project) {
+                }
+            };
+            engine.getAllFilteredRows().accept(project, counter);
+            assertEquals(count.get(), 4);
+            engine.getAllFilteredRows().accept(project, counter);
+            assertEquals(count.get(), 4);
+            assertEquals(project.getRowFilterCache().getStats().requestCount(), 0);
+        } finally {
+            MetaParser.unregisterLanguageParser("outside");
+        }
+    }
+}
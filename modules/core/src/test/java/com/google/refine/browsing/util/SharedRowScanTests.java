@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.filters.ExpressionEqualRowFilter;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class SharedRowScanTests extends RefineTest {
+
+    static final int ROW_COUNT = 10000;
+
+    static Evaluable value = new Evaluable() {
+
+        @Override
+        public Object evaluate(Properties bindings) {
+            return bindings.get("value");
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    };
+
+    Project project;
+    ForkJoinPool pool;
+    RowFilter[] filters;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        project = createProjectWithColumns("SharedRowScanTests", "letter", "number");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Row row = new Row(2);
+            row.setCell(0, i % 11 == 0 ? null : new Cell("v" + (i % 7), null));
+            row.setCell(1, new Cell(i % 100, null));
+            project.rows.add(row);
+        }
+        filters = new RowFilter[] {
+                new ExpressionEqualRowFilter(value, "letter", 0, new Object[] { "v1", "v3" }, false, false, false),
+                new ExpressionEqualRowFilter(value, "number", 1, new Object[] { 10, 20, 30, 40 }, false, false, true),
+        };
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    protected ExpressionNominalValueGrouper newGrouper() {
+        return new ExpressionNominalValueGrouper(value, "letter", 0);
+    }
+
+    protected ExpressionNumericValueBinner newBinner() {
+        RowEvaluable rowEvaluable = new ExpressionBasedRowEvaluable("number", 1, value);
+        return new ExpressionNumericValueBinner(rowEvaluable, new NumericBinRowIndex(project, rowEvaluable));
+    }
+
+    protected void accept(RowFilter filter, MergeableRowVisitor visitor) {
+        ConjunctiveFilteredRows filteredRows = new ConjunctiveFilteredRows();
+        filteredRows.add(filter);
+        filteredRows.accept(project, visitor);
+    }
+
+    @Test
+    public void testSharedScanMatchesSeparateScans() {
+        // each visitor only sees the rows selected by the other filter
+        ExpressionNominalValueGrouper expectedGrouper = newGrouper();
+        accept(filters[1], expectedGrouper);
+        ExpressionNumericValueBinner expectedBinner = newBinner();
+        accept(filters[0], expectedBinner);
+
+        for (ForkJoinPool p : new ForkJoinPool[] { null, pool }) {
+            ExpressionNominalValueGrouper grouper = newGrouper();
+            ExpressionNumericValueBinner binner = newBinner();
+            SharedRowScan.scan(project, filters, new MergeableRowVisitor[] { grouper, binner }, p, 128);
+
+            assertEquals(grouper.choices.keySet(), expectedGrouper.choices.keySet());
+            for (Object key : expectedGrouper.choices.keySet()) {
+                assertEquals(grouper.choices.get(key).count, expectedGrouper.choices.get(key).count);
+            }
+            assertEquals(grouper.blankCount, expectedGrouper.blankCount);
+            assertEquals(grouper.errorCount, expectedGrouper.errorCount);
+
+            assertEquals(binner.bins, expectedBinner.bins);
+            assertEquals(binner.numericCount, expectedBinner.numericCount);
+            assertEquals(binner.nonNumericCount, expectedBinner.nonNumericCount);
+            assertEquals(binner.blankCount, expectedBinner.blankCount);
+        }
+    }
+
+    @Test
+    public void testPositionsWithoutVisitor() {
+        ExpressionNominalValueGrouper grouper = newGrouper();
+        SharedRowScan.scan(project, filters, new MergeableRowVisitor[] { grouper, null }, pool, 100);
+
+        ExpressionNominalValueGrouper expectedGrouper = newGrouper();
+        accept(filters[1], expectedGrouper);
+        assertEquals(grouper.choices.get("v1").count, expectedGrouper.choices.get("v1").count);
+        assertEquals(grouper.blankCount, expectedGrouper.blankCount);
+    }
+}
@@ -31,6 +31,8 @@ import static org.testng.Assert.assertEquals;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Properties;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -39,7 +41,14 @@ import org.testng.annotations.Test;
 
 import com.google.refine.RefineTest;
 import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.Engine.Mode;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.facets.ListFacet.ListFacetConfig;
+import com.google.refine.clustering.DistinctValueCache;
 import com.google.refine.clustering.binning.BinningClusterer.BinningClustererConfig;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.LanguageSpecificParser;
+import com.google.refine.expr.MetaParser;
 import com.google.refine.model.Project;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
@@ -111,4 +120,68 @@ public class BinningClustererTests extends RefineTest {
         clusterer.computeClusters(new Engine(project));
         assertEquals(clusterer.getJsonRepresentation().size(), 1);
     }
+
+    @Test
+    public void testDistinctValuesAreCachedAcrossKeyers() throws IOException {
+        Serializable[][] rows = new Serializable[2 * DistinctValueCache.PARALLEL_THRESHOLD][];
+        for (int i = 0; i < rows.length; i++) {
+            // each value comes in two spellings, so that the values are keyed on several threads
+            rows[i] = new Serializable[] { (i % 2 == 0 ? "Value " : "value. ") + (i / 2) };
+        }
+        Project project = createProject(new String[] { "column" }, rows);
+        BinningClusterer clusterer = ParsingUtilities.mapper.readValue(configJson, BinningClustererConfig.class)
+                .apply(project);
+        clusterer.computeClusters(new Engine(project));
+        assertEquals(clusterer.getJsonRepresentation().size(), DistinctValueCache.PARALLEL_THRESHOLD);
+
+        BinningClusterer ngramClusterer = ParsingUtilities.mapper.readValue(configNgramJson, BinningClustererConfig.class)
+                .apply(project);
+        ngramClusterer.computeClusters(new Engine(project));
+        clusterer.computeClusters(new Engine(project));
+        assertEquals(clusterer.getJsonRepresentation().size(), DistinctValueCache.PARALLEL_THRESHOLD);
+
+        // the column was scanned once only
+        assertEquals(project.getDistinctValueCache().getStats().missCount(), 1);
+        assertEquals(project.getDistinctValueCache().getStats().hitCount(), 2);
+    }
+
+    @Test
+    public void testDistinctValuesOfFacetsDependingOnOutsideStateAreNotCached() throws IOException {
+        Project project = createProject(
+                new String[] { "column" },
+                new Serializable[][] {
+                        { "a" },
+                        { "à" },
+                        { "b" }
+                });
+        MetaParser.registerLanguageParser("outside", "Outside", new LanguageSpecificParser() {
+
+            @Override
+            public Evaluable parse(String source, String languagePrefix) {
+                return new Evaluable() {
+
+                    @Override
+                    public Object evaluate(Properties bindings) {
+                        return "a";
+                    }
+                };
+            }
+        }, "");
+        try {
+            ListFacetConfig listConfig = ParsingUtilities.mapper.readValue("{\"type\":\"list\",\"name\":\"column\","
+                    + "\"columnName\":\"column\",\"expression\":\"outside:value\",\"omitBlank\":false,"
+                    + "\"omitError\":false,\"selection\":[],\"selectBlank\":false,\"selectError\":false,"
+                    + "\"invert\":false}", ListFacetConfig.class);
+            Engine engine = new Engine(project);
+            engine.initializeFromConfig(new EngineConfig(Collections.singletonList(listConfig), Mode.RowBased));
+            BinningClusterer clusterer = ParsingUtilities.mapper.readValue(configJson, BinningClustererConfig.class)
+                    .apply(project);
+            clusterer.computeClusters(engine);
+            clusterer.computeClusters(engine);
+            assertEquals(clusterer.getJsonRepresentation().size(), 1);
+            assertEquals(project.getDistinctValueCache().getStats().requestCount(), 0);
+        } finally {
+            MetaParser.unregisterLanguageParser("outside");
+        }
+    }
 }
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.clustering.knn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class LevenshteinDistanceTests {
+
+    SimilarityDistance vicino = new VicinoDistance(new edu.mit.simile.vicino.distances.LevenshteinDistance());
+    SimilarityDistance distance = new LevenshteinDistance();
+
+    @Test
+    public void testDistances() {
+        assertEquals(distance.compute("New York", "NewYork"), 1.0);
+        assertEquals(distance.compute("M. Makeba", "Miriam Makeba"), 5.0);
+        assertEquals(distance.compute("", "abc"), 3.0);
+        assertEquals(distance.compute("ABC", "abc"), 0.0);
+    }
+
+    @Test
+    public void testSameDistancesAsVicino() {
+        Random random = new Random(42);
+        for (int i = 0; i != 2000; i++) {
+            String a = randomString(random);
+            String b = randomString(random);
+            double expected = vicino.compute(a, b);
+            assertEquals(distance.compute(a, b), expected, a + " / " + b);
+            double bound = random.nextInt(4);
+            double bounded = distance.compute(a, b, bound);
+            if (expected <= bound) {
+                assertEquals(bounded, expected, a + " / " + b);
+            } else {
+                assertTrue(bounded > bound, a + " / " + b);
+            }
+        }
+    }
+
+    String randomString(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(8);
+        for (int i = 0; i != length; i++) {
+            sb.append("abcAB ".charAt(random.nextInt(6)));
+        }
+        return sb.toString();
+    }
+}
@@ -27,10 +27,16 @@
 
 package com.google.refine.clustering.knn;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -100,4 +106,72 @@ public class kNNClustererTests extends RefineTest {
 
         assertTrue(clusterer.getJsonRepresentation().isEmpty());
     }
+
+    @Test
+    public void testLevenshteinClustersAcrossBlocks() throws Exception {
+        DistanceFactory.put("levenshtein", new LevenshteinDistance());
+        Project project = createProject(
+                new String[] { "column" },
+                new Serializable[][] {
+                        { "Miriam Makeba" },
+                        { "Miriam Makeba" },
+                        { "Miriam Makéba" },
+                        { "miriam makeba." },
+                        { "Nina Simone" },
+                        { "Nina Simone " }
+                });
+        String config = "{\"type\":\"knn\",\"function\":\"levenshtein\",\"column\":\"column\","
+                + "\"params\":{\"radius\":1,\"blocking-ngram-size\":4}}";
+        kNNClusterer clusterer = ParsingUtilities.mapper.readValue(config, kNNClustererConfig.class).apply(project);
+        clusterer.computeClusters(new Engine(project));
+
+        // "Miriam Makéba" and "miriam makeba." are within the radius of "Miriam Makeba" but not of each other
+        TestUtils.isSerializedTo(clusterer, "["
+                + "[{\"v\":\"Miriam Makeba\",\"c\":2},{\"v\":\"Miriam Makéba\",\"c\":1},{\"v\":\"miriam makeba.\",\"c\":1}],"
+                + "[{\"v\":\"Miriam Makeba\",\"c\":2},{\"v\":\"Miriam Makéba\",\"c\":1}],"
+                + "[{\"v\":\"Miriam Makeba\",\"c\":2},{\"v\":\"miriam makeba.\",\"c\":1}],"
+                + "[{\"v\":\"Nina Simone\",\"c\":1},{\"v\":\"Nina Simone \",\"c\":1}]"
+                + "]");
+        assertEquals(clusterer.getProgress(), 100);
+    }
+
+    @Test
+    public void testDistanceWhichIsNotThreadSafe() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean concurrent = new AtomicBoolean();
+        SimilarityDistance distance = new SimilarityDistance() {
+
+            @Override
+            public double compute(String a, String b) {
+                if (active.incrementAndGet() > 1) {
+                    concurrent.set(true);
+                }
+                active.decrementAndGet();
+                return LevenshteinDistance.distance(a, b, Integer.MAX_VALUE - 1);
+            }
+        };
+        String[] values = new String[5000];
+        for (int i = 0; i != values.length; i++) {
+            values[i] = "value " + i;
+        }
+
+        List<int[]> clusters = new NGramBlockingEngine(distance, 1, 2).getClusters(values);
+
+        assertFalse(concurrent.get());
+        assertFalse(clusters.isEmpty());
+    }
+
+    @Test(expectedExceptions = CancellationException.class)
+    public void testCanceledClustering() throws Exception {
+        Project project = createProject(
+                new String[] { "column" },
+                new Serializable[][] {
+                        { "ab" },
+                        { "abc" }
+                });
+        kNNClustererConfig config = ParsingUtilities.mapper.readValue(configJson, kNNClustererConfig.class);
+        kNNClusterer clusterer = config.apply(project);
+        clusterer.cancel();
+        clusterer.computeClusters(new Engine(project));
+    }
 }
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+
+public class EvaluationContextTests extends RefineTest {
+
+    Project project;
+
+    @BeforeMethod
+    public void setUp() {
+        project = createProject(new String[] { "a", "b" },
+                new Serializable[][] {
+                        { "x", 1 },
+                        { null, 2 },
+                });
+    }
+
+    @Test
+    public void testBindRows() {
+        Properties bindings = ExpressionUtils.createBindings(project);
+        assertTrue(bindings instanceof EvaluationContext);
+        assertSame(bindings.get("project"), project);
+        assertEquals(bindings.get("PI"), Math.PI);
+        assertNull(bindings.get("value"));
+
+        Row row = project.rows.get(0);
+        ExpressionUtils.bind(bindings, row, 0, "a", row.getCell(0));
+        assertEquals(bindings.get("value"), "x");
+        assertEquals(bindings.get("rowIndex"), 0);
+        assertEquals(bindings.get("columnName"), "a");
+        // cells which are not reconciled are created each time they are read from a row
+        assertEquals(((WrappedCell) bindings.get("cell")).cell, row.getCell(0));
+        assertSame(((WrappedRow) bindings.get("row")).row, row);
+        assertSame(((CellTuple) bindings.get("cells")).row, row);
+        // wrappers are created once per row
+        assertSame(bindings.get("cell"), bindings.get("cell"));
+
+        row = project.rows.get(1);
+        ExpressionUtils.bind(bindings, row, 1, "a", row.getCell(0));
+        assertNull(bindings.get("value"));
+        assertNull(bindings.get("cell"));
+        assertFalse(bindings.containsKey("cell"));
+        assertEquals(bindings.get("rowIndex"), 1);
+        assertSame(((WrappedRow) bindings.get("row")).row, row);
+    }
+
+    @Test
+    public void testBindCellIndex() {
+        Properties bindings = ExpressionUtils.createBindings(project);
+        Row row = project.rows.get(0);
+        ExpressionUtils.bind(bindings, row, 0, "b", 1);
+        assertEquals(bindings.get("value"), 1);
+        assertTrue(bindings.containsKey("cell"));
+        assertEquals(((WrappedCell) bindings.get("cell")).cell, row.getCell(1));
+        assertEquals(((WrappedCell) bindings.get("cell")).columnName, "b");
+
+        Cell reconciled = new Cell("x", new Recon(0, null, null));
+        row.setCell(0, reconciled);
+        ExpressionUtils.bind(bindings, row, 0, "a", 0);
+        assertEquals(bindings.get("value"), "x");
+        assertSame(((WrappedCell) bindings.get("cell")).cell, reconciled);
+
+        row = project.rows.get(1);
+        ExpressionUtils.bind(bindings, row, 1, "a", 0);
+        assertNull(bindings.get("value"));
+        assertFalse(bindings.containsKey("cell"));
+
+        ExpressionUtils.bind(bindings, row, 1, null, -1);
+        assertNull(bindings.get("value"));
+        assertFalse(bindings.containsKey("cell"));
+    }
+
+    @Test
+    public void testPutAndRemoveRowVariables() {
+        EvaluationContext context = new EvaluationContext(project);
+        Row row = project.rows.get(0);
+        context.bind(row, 0, "b", row.getCell(1));
+        assertEquals(context.get(EvaluationContext.VALUE), 1);
+
+        assertEquals(context.put("value", "y"), 1);
+        assertEquals(context.get("value"), "y");
+        assertEquals(context.remove("value"), "y");
+        assertNull(context.get("value"));
+
+        context.put("foo", "bar");
+        assertEquals(context.get("foo"), "bar");
+
+        context.bind(row, 0, "b", row.getCell(1));
+        assertEquals(context.get("value"), 1);
+        assertEquals(context.get("foo"), "bar");
+    }
+
+    @Test
+    public void testBindWithoutCell() {
+        EvaluationContext context = new EvaluationContext(project);
+        context.bind(new Row(0), 3, null, new Cell("z", null));
+        assertEquals(context.get("value"), "z");
+        assertNull(((WrappedCell) context.get("cell")).columnName);
+        assertFalse(context.containsKey("columnName"));
+    }
+}
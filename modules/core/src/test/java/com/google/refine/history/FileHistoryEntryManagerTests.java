@@ -2,9 +2,15 @@
 package com.google.refine.history;
 
 import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import org.testng.annotations.BeforeMethod;
@@ -12,7 +18,11 @@ import org.testng.annotations.Test;
 
 import com.google.refine.RefineTest;
 import com.google.refine.io.FileHistoryEntryManager;
+import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.MassRowChange;
 import com.google.refine.operations.OperationRegistry;
 import com.google.refine.util.TestUtils;
 
@@ -27,6 +37,45 @@ public class FileHistoryEntryManagerTests extends RefineTest {
         OperationRegistry.registerOperation(getCoreModule(), "mock-operation", HistoryEntryTests.MockOperation.class);
     }
 
+    static class ExposedManager extends FileHistoryEntryManager {
+
+        void save(HistoryEntry historyEntry, File file) throws Exception {
+            saveChange(historyEntry, file);
+        }
+
+        void load(HistoryEntry historyEntry, File file) throws Exception {
+            loadChange(historyEntry, file);
+        }
+    }
+
+    @Test
+    public void testChangeFileRoundTrip() throws Exception {
+        for (String extension : new String[] { ".change.deflate", ".change.zip" }) {
+            Project project = createProject(new String[] { "a" }, new Serializable[][] { { "foo" }, { "bar" } });
+            List<Row> newRows = new ArrayList<>();
+            Row row = new Row(1);
+            row.setCell(0, new Cell("reconciled", new Recon(0L, null, null)));
+            newRows.add(row);
+            MassRowChange change = new MassRowChange(newRows);
+            HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "Replace rows", null, change);
+            change.apply(project);
+
+            ExposedManager manager = new ExposedManager();
+            File file = File.createTempFile("history", extension);
+            manager.save(entry, file);
+            HistoryEntry loaded = new HistoryEntry(entry.id, project, "Replace rows", null, null);
+            manager.load(loaded, file);
+            file.delete();
+
+            loaded.getChange().revert(project);
+            assertEquals(project.rows.size(), 2);
+            assertEquals(project.rows.get(1).getCellValue(0), "bar");
+            loaded.getChange().apply(project);
+            assertEquals(project.rows.size(), 1);
+            assertTrue(project.rows.get(0).getCell(0).recon != null);
+        }
+    }
+
     @Test
     public void testWriteHistoryEntry() throws IOException {
         StringWriter writer = new StringWriter();
@@ -37,8 +37,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.io.FileUtils;
@@ -161,6 +163,42 @@ public class FileProjectManagerTests {
         assertEquals(manager.getProjectID("B"), idB);
     }
 
+    @Test
+    public void loadMetadataFromIndex() throws Exception {
+        FileProjectManager manager = new FileProjectManager(workspaceDir);
+        ProjectMetadata metaA = new ProjectMetadata();
+        ProjectMetadata metaB = new ProjectMetadata();
+        metaA.setName("A");
+        metaB.setName("B");
+        manager.registerProject(new Project(), metaA);
+        manager.registerProject(new Project(), metaB);
+        manager.saveWorkspace();
+        long idA = manager.getProjectID("A");
+        long idB = manager.getProjectID("B");
+        assertTrue(new File(workspaceDir, ProjectMetadataIndex.FILE_NAME).exists());
+
+        // a metadata file which was not modified since it was indexed is not read
+        File metaAFile = manager.getMetadataFile(idA);
+        long modified = metaAFile.lastModified();
+        String json = FileUtils.readFileToString(metaAFile, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(metaAFile, json.replace("\"A\"", "\"Changed\""), StandardCharsets.UTF_8);
+        metaAFile.setLastModified(modified);
+        manager = new FileProjectManager(workspaceDir);
+        assertEquals(manager.getProjectMetadata(idA).getName(), "A");
+        assertEquals(manager.getProjectMetadata(idB).getName(), "B");
+
+        // otherwise it is read again
+        metaAFile.setLastModified(modified - 10000);
+        manager = new FileProjectManager(workspaceDir);
+        assertEquals(manager.getProjectMetadata(idA).getName(), "Changed");
+
+        // deleted projects are dropped from the index
+        manager.deleteProject(idB);
+        manager = new FileProjectManager(workspaceDir);
+        assertEquals(manager.getAllProjectMetadata().keySet(), Set.of(idA));
+        assertEquals(new ProjectMetadataIndex(workspaceDir).read().keySet(), Set.of(idA));
+    }
+
     @Test
     public void testUntarZipSlip() throws IOException {
         FileProjectManager manager = new FileProjectManagerStub(workspaceDir);
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.Test;
+
+public class ParallelGZIPOutputStreamTests {
+
+    protected byte[] compress(byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(bytes, blockSize, Deflater.BEST_SPEED)) {
+            // write in chunks which do not line up with the blocks
+            for (int i = 0; i < data.length; i += 1000) {
+                out.write(data, i, Math.min(1000, data.length - i));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    protected byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream in = new ReadAheadInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[300000];
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+
+        // many blocks, each compressed on its own, are read back as a single stream
+        assertEquals(decompress(compress(data, 4096)), data);
+        assertEquals(decompress(compress(data, 1 << 20)), data);
+        assertEquals(decompress(compress(new byte[0], 4096)), new byte[0]);
+    }
+
+    @Test
+    public void testSingleMemberWhenNothingIsAvailable() throws IOException {
+        byte[] data = new byte[100000];
+        Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        byte[] compressed = compress(data, 4096);
+
+        // GZIPInputStream stops at the end of a gzip member when the underlying stream has no bytes available, as
+        // streams of uploaded files or of URLs can
+        InputStream unavailable = new FilterInputStream(new ByteArrayInputStream(compressed)) {
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+        try (InputStream in = new GZIPInputStream(unavailable)) {
+            assertEquals(in.readAllBytes(), data);
+        }
+    }
+}
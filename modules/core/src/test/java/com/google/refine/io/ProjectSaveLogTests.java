@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.RefineTest;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.util.TestUtils;
+
+public class ProjectSaveLogTests extends RefineTest {
+
+    File projectDir;
+    Project project;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        FileProjectManager.initialize(TestUtils.createTempDirectory("openrefine-test-save-log"));
+        project = createProject(new String[] { "a", "b" },
+                new Serializable[][] {
+                        { "foo", 1 },
+                        { "bar", 2 },
+                });
+        projectDir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(project.id);
+        ProjectUtilities.save(project);
+    }
+
+    protected HistoryEntry editCell(int rowIndex, int cellIndex, String value) {
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "Edit cell", null,
+                new CellChange(rowIndex, cellIndex, project.rows.get(rowIndex).getCell(cellIndex), new Cell(value, null)));
+        project.history.addEntry(entry);
+        return entry;
+    }
+
+    protected long getSnapshotID() throws IOException {
+        try (ColumnarProjectReader reader = new ColumnarProjectReader(ProjectUtilities.getDataFile(projectDir))) {
+            return reader.getSnapshotID();
+        }
+    }
+
+    @Test
+    public void testSaveIncrementally() throws IOException {
+        long snapshotID = getSnapshotID();
+
+        editCell(0, 0, "changed");
+        ProjectUtilities.save(project);
+        editCell(1, 1, "other");
+        ProjectUtilities.save(project);
+
+        assertEquals(getSnapshotID(), snapshotID);
+        assertTrue(ProjectSaveLog.getLogFile(projectDir).exists());
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "changed");
+        assertEquals(loaded.rows.get(1).getCellValue(1), "other");
+        assertEquals(loaded.history.getLastPastEntries(0).size(), 2);
+    }
+
+    @Test
+    public void testSaveUndoIncrementally() throws IOException {
+        HistoryEntry entry = editCell(0, 0, "changed");
+        ProjectUtilities.save(project);
+        project.history.undoRedo(0);
+        ProjectUtilities.save(project);
+
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "foo");
+        assertEquals(loaded.history.getCurrentEntryID(), 0L);
+        // the undone entry can still be redone
+        assertEquals(loaded.history.getPrecedingEntryID(entry.id), 0L);
+    }
+
+    @Test
+    public void testTruncatedRecordIsIgnored() throws IOException {
+        editCell(0, 0, "changed");
+        ProjectUtilities.save(project);
+        try (FileOutputStream out = new FileOutputStream(ProjectSaveLog.getLogFile(projectDir), true)) {
+            out.write(new byte[] { 0, 0, 1, 0, 42 });
+        }
+
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "changed");
+
+        // the next record overwrites the truncated one
+        editCell(1, 0, "other");
+        ProjectUtilities.save(project);
+        loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(1).getCellValue(0), "other");
+    }
+
+    @Test
+    public void testFullSaveWhenChangesAreMissing() throws IOException {
+        long snapshotID = getSnapshotID();
+        HistoryEntry entry = editCell(0, 0, "changed");
+        ProjectUtilities.save(project);
+
+        assertTrue(FileHistoryEntryManager.getChangeFile(projectDir, entry.id).delete());
+        // the snapshot is loaded as it is if the log cannot be replayed
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "foo");
+
+        ProjectUtilities.save(project);
+        assertTrue(getSnapshotID() != snapshotID);
+        assertFalse(ProjectSaveLog.getLogFile(projectDir).exists());
+        loaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "changed");
+    }
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+import com.google.refine.util.TestUtils;
+
+public class ProjectUtilitiesTests extends RefineTest {
+
+    File projectDir;
+    Project project;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        projectDir = TestUtils.createTempDirectory("openrefine-test-project-dir");
+        Recon recon = testRecon("Paris", "Q90", Recon.Judgment.Matched, 5678L);
+        project = createProject(new String[] { "a", "b", "c" },
+                new Serializable[][] {
+                        { "foo", 1, 12345678901L },
+                        { "foo", 3.5, Double.NaN },
+                        { true, OffsetDateTime.of(2024, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC), new EvalError("boom") },
+                        { null, new Cell(null, null), new Cell("Paris", recon) },
+                });
+        project.rows.get(1).flagged = true;
+        project.rows.get(2).starred = true;
+        Row shortRow = new Row(1);
+        shortRow.setCell(0, new Cell("bar", null));
+        project.rows.add(shortRow);
+    }
+
+    @Test
+    public void testSaveAndLoadColumnarFormat() throws IOException {
+        ProjectUtilities.saveToDir(project, projectDir);
+        assertTrue(new File(projectDir, ProjectUtilities.DATA_POINTER).exists());
+        assertTrue(ProjectUtilities.getDataFile(projectDir).exists());
+
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+
+        assertRowsEqual(loaded);
+        assertEquals(loaded.columnModel.getColumnNames(), project.columnModel.getColumnNames());
+        // the string dictionary makes identical values share a single instance
+        assertSame(loaded.rows.get(0).getCellValue(0), loaded.rows.get(1).getCellValue(0));
+    }
+
+    @Test
+    public void testReadSingleRow() throws IOException {
+        File file = new File(projectDir, ProjectUtilities.DATA_BIN);
+        ProjectUtilities.saveToFile(project, file);
+
+        try (ColumnarProjectReader reader = new ColumnarProjectReader(file)) {
+            assertEquals(reader.getRowCount(), 5);
+            assertEquals(reader.getColumnCount(), 3);
+            Pool pool = reader.loadPool();
+            Row row = reader.readRow(3, pool);
+            assertNull(row.getCell(0));
+            assertEquals(row.getCell(2).recon.id, 5678L);
+        }
+    }
+
+    @Test
+    public void testMigrateLegacyFormat() throws IOException {
+        File legacyFile = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(legacyFile))) {
+            Pool pool = new Pool();
+            out.putNextEntry(new ZipEntry("data.txt"));
+            project.saveToOutputStream(out, pool);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("pool.txt"));
+            pool.save(out);
+            out.closeEntry();
+        }
+
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+
+        assertEquals(loaded.rows.size(), project.rows.size());
+        assertEquals(loaded.rows.get(0).getCellValue(0), "foo");
+        assertEquals(loaded.rows.get(3).getCell(2).recon.id, 5678L);
+        assertTrue(ProjectUtilities.getDataFile(projectDir).exists());
+        assertFalse(legacyFile.exists());
+
+        Project reloaded = ProjectUtilities.load(projectDir, project.id);
+        assertEquals(reloaded.rows.size(), project.rows.size());
+        assertEquals(reloaded.rows.get(3).getCell(2).recon.id, 5678L);
+    }
+
+    @Test
+    public void testFailedReplaceKeepsLogAndLegacyFiles() throws IOException {
+        File legacyFile = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        File logFile = new File(projectDir, ProjectUtilities.DATA_LOG);
+        for (File file : new File[] { legacyFile, logFile }) {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write("previous".getBytes());
+            }
+        }
+        // a non-empty directory in place of the pointer to the data file makes the move fail
+        File pointerDir = new File(projectDir, ProjectUtilities.DATA_POINTER);
+        pointerDir.mkdir();
+        new File(pointerDir, "file").createNewFile();
+
+        try {
+            ProjectUtilities.saveToDir(project, projectDir);
+            fail("The data file should not have been replaced");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(legacyFile.exists());
+        assertTrue(logFile.exists());
+        assertFalse(new File(projectDir, ProjectUtilities.DATA_TEMP_BIN).exists());
+        assertEquals(ProjectUtilities.listDataFiles(projectDir).length, 0);
+    }
+
+    @Test
+    public void testEachSnapshotIsSavedInNewFile() throws IOException {
+        ProjectUtilities.saveToDir(project, projectDir);
+        File first = ProjectUtilities.getDataFile(projectDir);
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+
+        ProjectUtilities.saveToDir(loaded, projectDir);
+        File second = ProjectUtilities.getDataFile(projectDir);
+        assertNotEquals(second, first);
+        assertEquals(ProjectUtilities.listDataFiles(projectDir), new File[] { second });
+        assertRowsEqual(loaded);
+        assertRowsEqual(ProjectUtilities.load(projectDir, project.id));
+    }
+
+    @Test
+    public void testLoadsFilesOfEarlierVersions() throws IOException {
+        ProjectUtilities.saveToFile(project, new File(projectDir, ProjectUtilities.DATA_BIN));
+
+        assertEquals(ProjectUtilities.getDataFile(projectDir), new File(projectDir, ProjectUtilities.DATA_BIN));
+        assertRowsEqual(ProjectUtilities.load(projectDir, project.id));
+    }
+
+    @Test
+    public void testReleaseSaveLock() throws Exception {
+        ReentrantLock lock = ProjectUtilities.lockSave(project.id);
+        // not released while a save is running
+        Thread thread = new Thread(() -> ProjectUtilities.releaseSaveLock(project.id));
+        thread.start();
+        thread.join();
+        lock.unlock();
+        assertSame(ProjectUtilities.s_saveLocks.get(project.id), lock);
+
+        ProjectUtilities.releaseSaveLock(project.id);
+        assertNull(ProjectUtilities.s_saveLocks.get(project.id));
+    }
+
+    @Test
+    public void testCorruptedFileFallsBackOnBackup() throws IOException {
+        ProjectUtilities.saveToFile(project, new File(projectDir, ProjectUtilities.DATA_OLD_BIN));
+        try (FileOutputStream out = new FileOutputStream(new File(projectDir, ProjectUtilities.DATA_BIN))) {
+            out.write("not a project".getBytes());
+        }
+
+        Project loaded = ProjectUtilities.load(projectDir, project.id);
+
+        assertRowsEqual(loaded);
+    }
+
+    protected void assertRowsEqual(Project loaded) {
+        assertEquals(loaded.rows.size(), project.rows.size());
+        for (int i = 0; i != project.rows.size(); i++) {
+            Row expected = project.rows.get(i);
+            Row actual = loaded.rows.get(i);
+            assertEquals(actual.flagged, expected.flagged);
+            assertEquals(actual.starred, expected.starred);
+            assertEquals(actual.cells.size(), expected.cells.size());
+            for (int j = 0; j != expected.cells.size(); j++) {
+                Cell expectedCell = expected.cells.get(j);
+                Cell actualCell = actual.cells.get(j);
+                if (expectedCell == null) {
+                    assertNull(actualCell);
+                    continue;
+                }
+                if (expectedCell.value instanceof EvalError) {
+                    assertEquals(((EvalError) actualCell.value).message, ((EvalError) expectedCell.value).message);
+                } else {
+                    assertEquals(actualCell.value, expectedCell.value);
+                }
+                if (expectedCell.recon == null) {
+                    assertNull(actualCell.recon);
+                } else {
+                    assertEquals(actualCell.recon.id, expectedCell.recon.id);
+                    assertEquals(actualCell.recon.judgment, expectedCell.recon.judgment);
+                    assertEquals(actualCell.recon.match.id, expectedCell.recon.match.id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.util.Pool;
+
+public class CellValueDictionaryTests {
+
+    @Test
+    public void testSharedValues() throws IOException {
+        Pool pool = new Pool();
+        Row first = Row.load("{\"cells\":[{\"v\":\"red\"},{\"v\":\"id-0\"}]}", pool);
+        Row second = Row.load("{\"cells\":[{\"v\":\"red\"},{\"v\":\"red\"}]}", pool);
+
+        // a value is shared within its column only
+        assertEquals(second.getCellValue(0), "red");
+        assertSame(second.getCellValue(0), first.getCellValue(0));
+        assertNotSame(second.getCellValue(1), first.getCellValue(0));
+        assertEquals(pool.getValueDictionary().getHits(), 1);
+        assertEquals(pool.getValueDictionary().getLookups(), 4);
+    }
+
+    @Test
+    public void testHighCardinalityColumnIsDropped() {
+        CellValueDictionary dictionary = new CellValueDictionary();
+        for (int i = 0; i < 2 * CellValueDictionary.SAMPLE_SIZE; i++) {
+            dictionary.intern(0, "id-" + i);
+            dictionary.intern(1, "category-" + (i % 10));
+        }
+        assertEquals(dictionary.getDroppedColumnCount(), 1);
+
+        String value = new String("category-1");
+        assertNotSame(dictionary.intern(1, value), value);
+        value = new String("id-1");
+        assertSame(dictionary.intern(0, value), value);
+    }
+}
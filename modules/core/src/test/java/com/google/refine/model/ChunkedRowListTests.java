@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class ChunkedRowListTests {
+
+    static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Row(0));
+        }
+        return rows;
+    }
+
+    @Test
+    public void testMatchesArrayList() {
+        Random random = new Random(42);
+        List<Row> expected = new ArrayList<>();
+        ChunkedRowList list = new ChunkedRowList(4);
+        for (int step = 0; step < 2000; step++) {
+            int size = expected.size();
+            int operation = random.nextInt(size == 0 ? 2 : 5);
+            Row row = new Row(0);
+            if (operation == 0) {
+                expected.add(row);
+                list.add(row);
+            } else if (operation == 1) {
+                int index = random.nextInt(size + 1);
+                expected.add(index, row);
+                list.add(index, row);
+            } else if (operation == 2) {
+                int index = random.nextInt(size);
+                assertSame(list.remove(index), expected.remove(index));
+            } else if (operation == 3) {
+                int index = random.nextInt(size);
+                assertSame(list.set(index, row), expected.set(index, row));
+            } else {
+                int from = random.nextInt(size);
+                int to = from + random.nextInt(Math.min(5, size - from) + 1);
+                expected.subList(from, to).clear();
+                list.subList(from, to).clear();
+            }
+            assertEquals(list, expected);
+        }
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        ChunkedRowList list = ChunkedRowList.copyOf(rows(100));
+        ChunkedRowList copy = list.copy();
+        List<Row> before = new ArrayList<>(list);
+
+        copy.set(5, new Row(0));
+        copy.add(50, new Row(0));
+        copy.remove(99);
+        list.set(10, new Row(0));
+
+        assertSame(list.get(5), before.get(5));
+        assertEquals(list.size(), 100);
+        assertSame(copy.get(10), before.get(10));
+        assertSame(copy.get(51), before.get(50));
+    }
+
+    @Test
+    public void testRemoveAndInsertAll() {
+        List<Row> original = rows(50);
+        ChunkedRowList list = new ChunkedRowList(8);
+        list.addAll(original);
+        ChunkedRowList copy = list.copy();
+
+        int[] indices = { 0, 3, 4, 17, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40, 49 };
+        List<Row> removed = list.removeAll(indices);
+
+        assertEquals(removed.size(), indices.length);
+        assertEquals(list.size(), 50 - indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            assertSame(removed.get(i), original.get(indices[i]));
+        }
+        assertEquals(copy, original);
+        // untouched chunks are still shared
+        assertSame(list._chunks[1], copy._chunks[1]);
+
+        list.insertAll(indices, removed);
+        assertEquals(list, original);
+        assertTrue(list.getChunkCount() <= 2 * 7 + 4);
+    }
+
+    @Test
+    public void testInsertAllIntoEmptyList() {
+        List<Row> rows = rows(3);
+        ChunkedRowList list = new ChunkedRowList(2);
+        list.insertAll(new int[] { 0, 1, 2 }, rows);
+        assertEquals(list, rows);
+        assertEquals(Arrays.asList(list.removeAll(new int[] { 1 }).get(0)), rows.subList(1, 2));
+    }
+}
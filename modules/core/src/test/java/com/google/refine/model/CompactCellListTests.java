@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class CompactCellListTests {
+
+    @Test
+    public void testCells() {
+        Recon recon = new Recon(1L, null, null);
+        Cell reconciled = new Cell("matched", recon);
+        List<Cell> expected = new ArrayList<>(Arrays.asList(
+                new Cell("a", null), new Cell(12L, null), null, new Cell(-0.5, null), new Cell(true, null),
+                new Cell(OffsetDateTime.parse("2020-01-01T00:00:00Z"), null), new Cell(3, null), reconciled));
+        CompactCellList cells = new CompactCellList(expected);
+        assertEquals(cells, expected);
+        assertEquals(cells.getValue(1), 12L);
+        assertEquals(cells.getValue(3), -0.5);
+        assertNull(cells.getValue(2));
+        // reconciled cells are kept as they are
+        assertSame(cells.get(7), reconciled);
+
+        cells.set(0, new Cell(4.0, null));
+        expected.set(0, new Cell(4.0, null));
+        cells.add(1, null);
+        expected.add(1, null);
+        cells.remove(4);
+        expected.remove(4);
+        assertEquals(cells, expected);
+
+        CompactCellList copy = new CompactCellList();
+        copy.addAll(cells);
+        copy.set(0, new Cell("b", null));
+        assertEquals(cells, expected);
+        assertEquals(copy.get(0), new Cell("b", null));
+        assertEquals(copy.subList(1, copy.size()), expected.subList(1, expected.size()));
+
+        cells.clear();
+        assertEquals(cells.size(), 0);
+    }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.util.Pool;
+
+public class LazyRowListTests {
+
+    @Test
+    public void testDecodesOnFirstAccess() throws Exception {
+        StringWriter writer = new StringWriter();
+        for (int i = 0; i < 100; i++) {
+            Row row = new Row(1);
+            row.setCell(0, new Cell("value " + i, null));
+            row.save(writer, new Properties());
+            writer.write('\n');
+        }
+        writer.write("end\n");
+        LineNumberReader reader = new LineNumberReader(new StringReader(writer.toString()));
+
+        LazyRowList rows = LazyRowList.read(reader, 100, new Pool());
+        assertEquals(reader.readLine(), "end");
+        assertEquals(rows.size(), 100);
+        assertFalse(rows.isDecoded());
+
+        assertEquals(rows.get(42).getCellValue(0), "value 42");
+        assertTrue(rows.isDecoded());
+        assertEquals(rows.size(), 100);
+        assertEquals(rows.get(99).getCellValue(0), "value 99");
+    }
+
+    @Test
+    public void testCountsRowsRead() throws Exception {
+        LazyRowList rows = LazyRowList.read(new LineNumberReader(new StringReader("")), 3, new Pool());
+        assertEquals(rows.size(), 0);
+        assertEquals(rows.getRows().size(), 0);
+    }
+}
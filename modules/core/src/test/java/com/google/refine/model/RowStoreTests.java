@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.io.ColumnarProjectReader;
+import com.google.refine.io.ColumnarProjectWriter;
+import com.google.refine.util.TestUtils;
+
+public class RowStoreTests extends RefineTest {
+
+    static class CountingSource implements RowStore.RowSource {
+
+        final int rowCount;
+        final AtomicInteger reads = new AtomicInteger();
+        boolean closed = false;
+
+        CountingSource(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public Row readRow(int rowIndex) {
+            reads.incrementAndGet();
+            Row row = new Row(1);
+            row.setCell(0, new Cell(rowIndex, null));
+            return row;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testInMemoryStore() {
+        RowStore store = new RowStore();
+        store.add(new Row(0));
+        store.add(new Row(0));
+        store.remove(0);
+
+        assertFalse(store.isPaged());
+        assertEquals(store.size(), 1);
+        assertEquals(store.getCachedPageCount(), 0);
+    }
+
+    @Test
+    public void testPagedReadsAreBounded() {
+        CountingSource source = new CountingSource(100);
+        RowStore store = new RowStore();
+        store.setSource(source, 10, 3);
+
+        assertTrue(store.isPaged());
+        assertEquals(store.size(), 100);
+        assertEquals(source.reads.get(), 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(store.get(i).getCellValue(0), i);
+        }
+        assertEquals(source.reads.get(), 100);
+        assertEquals(store.getCachedPageCount(), 3);
+
+        // cached pages are not read again
+        Row row = store.get(95);
+        assertSame(store.get(95), row);
+        assertEquals(source.reads.get(), 100);
+
+        // evicted ones are
+        store.get(5);
+        assertEquals(source.reads.get(), 110);
+        assertEquals(store.getCachedPageCount(), 3);
+    }
+
+    @Test
+    public void testPinnedVersion() throws Exception {
+        RowStore store = new RowStore();
+        Row original = new Row(1);
+        original.setCell(0, new Cell("a", null));
+        store.add(original);
+
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch checked = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            store.beginWrite();
+            try {
+                store.get(0).setCell(0, new Cell("b", null));
+                store.add(new Row(0));
+                assertEquals(store.size(), 2);
+                written.countDown();
+                checked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                store.endWrite();
+            }
+        });
+
+        try (RowStore.Version version = store.pin()) {
+            writer.start();
+            written.await();
+            // the change is not visible until it is complete
+            assertEquals(store.size(), 1);
+            checked.countDown();
+            writer.join();
+
+            // the pinned version is not affected by the change, nor are its rows
+            assertFalse(store.isViewingLatest());
+            assertEquals(store.size(), 1);
+            assertSame(store.get(0), original);
+            assertEquals(original.getCellValue(0), "a");
+            assertEquals(version.getRows().size(), 1);
+        }
+
+        assertTrue(store.isViewingLatest());
+        assertEquals(store.size(), 2);
+        assertEquals(store.get(0).getCellValue(0), "b");
+    }
+
+    @Test
+    public void testPinnedVersionKeepsModels() throws Exception {
+        Project project = createProject(new String[] { "key", "value" },
+                new Serializable[][] {
+                        { "a", 1 },
+                        { null, 2 },
+                        { "b", 3 },
+                });
+        RowStore store = project.getRowStore();
+        assertEquals(project.recordModel.getRecordCount(), 2);
+
+        try (RowStore.Version version = store.pin()) {
+            Thread writer = new Thread(() -> {
+                synchronized (project) {
+                    store.beginWrite();
+                    try {
+                        Row row = new Row(2);
+                        row.setCell(0, new Cell("c", null));
+                        project.rows.add(row);
+                        project.columnModel.columns.add(new Column(2, "other"));
+                        project.update();
+                    } finally {
+                        store.endWrite();
+                    }
+                }
+            });
+            writer.start();
+            writer.join();
+
+            // the records and columns read by this thread are those of the rows it pins
+            assertEquals(project.recordModel.getRecordCount(), 3);
+            assertEquals(project.getRecordModel().getRecordCount(), 2);
+            assertEquals(project.getRecordModel().getRecord(1).toRowIndex, 3);
+            assertEquals(project.getColumnModel().columns.size(), 2);
+            assertEquals(project.rows.size(), 3);
+        }
+
+        assertEquals(project.getRecordModel().getRecordCount(), 3);
+        assertEquals(project.getColumnModel().columns.size(), 3);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testPagedOutOfRange() {
+        RowStore store = new RowStore();
+        store.setSource(new CountingSource(5), 10, 3);
+        store.get(5);
+    }
+
+    @Test
+    public void testMutationOnlyLoadsPagesTouched() {
+        CountingSource source = new CountingSource(25);
+        RowStore store = new RowStore();
+        store.setSource(source, 10, 2);
+        Row cached = store.get(3);
+
+        store.add(new Row(0));
+
+        // only the last page was copied in memory to append the row
+        assertTrue(store.isPaged());
+        assertFalse(source.closed);
+        assertEquals(source.reads.get(), 15);
+        assertEquals(store.size(), 26);
+        assertSame(store.get(3), cached);
+        assertEquals(store.get(24).getCellValue(0), 24);
+        assertEquals(source.reads.get(), 15);
+    }
+
+    @Test
+    public void testChangeOnlyCopiesPagesTouched() {
+        CountingSource source = new CountingSource(1000);
+        RowStore store = new RowStore();
+        store.setSource(source, 10, 2);
+
+        store.beginWrite();
+        try {
+            store.get(505).setCell(0, new Cell("changed", null));
+        } finally {
+            store.endWrite();
+        }
+
+        assertTrue(store.isPaged());
+        assertEquals(source.reads.get(), 10);
+        assertEquals(store.getCachedPageCount(), 1);
+        assertEquals(store.get(505).getCellValue(0), "changed");
+        // the changed page stays in memory when evicted from the cache, the others are read again
+        store.get(0);
+        store.get(10);
+        store.get(20);
+        assertEquals(store.get(505).getCellValue(0), "changed");
+        assertEquals(store.get(506).getCellValue(0), 506);
+        assertEquals(source.reads.get(), 40);
+    }
+
+    @Test
+    public void testClearDoesNotReadRows() {
+        CountingSource source = new CountingSource(25);
+        RowStore store = new RowStore();
+        store.setSource(source, 10, 2);
+
+        store.clear();
+
+        assertFalse(store.isPaged());
+        assertTrue(store.isEmpty());
+        assertEquals(source.reads.get(), 0);
+    }
+
+    @Test
+    public void testPagedProjectCanBeBrowsed() throws IOException {
+        Project project = createProject(new String[] { "a", "b" },
+                new Serializable[][] {
+                        { "x", 1 },
+                        { "y", 2 },
+                        { "x", 3 },
+                        { null, 4 },
+                });
+        File file = new File(TestUtils.createTempDirectory("openrefine-test-row-store"), "data.bin");
+        new ColumnarProjectWriter(project).write(file);
+
+        ColumnarProjectReader reader = new ColumnarProjectReader(file);
+        Project paged = reader.loadPagedProject(project.id);
+        try {
+            assertTrue(paged.getRowStore().isPaged());
+            assertEquals(paged.rows.size(), 4);
+            assertEquals(paged.rows.get(2).getCellValue(1), 3);
+
+            Engine engine = new Engine(paged);
+            FilteredRows filteredRows = engine.getAllFilteredRows();
+            AtomicInteger sum = new AtomicInteger();
+            filteredRows.accept(paged, new RowVisitor() {
+
+                @Override
+                public void start(Project project) {
+                }
+
+                @Override
+                public boolean visit(Project project, int rowIndex, Row row) {
+                    sum.addAndGet((Integer) row.getCellValue(1));
+                    return false;
+                }
+
+                @Override
+                public void end(Project project) {
+                }
+            });
+            assertEquals(sum.get(), 10);
+            assertTrue(paged.getRowStore().isPaged());
+        } finally {
+            paged.getRowStore().close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+
+package com.google.refine.model.recon;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.util.TestUtils;
+
+public class ReconCacheTests {
+
+    File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = new File(TestUtils.createTempDirectory("openrefine-test-recon-cache"), ReconCache.FILE_NAME);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        ReconCache cache = new ReconCache(file, 1 << 20, 60000);
+        assertNull(cache.get("http://service {\"query\":\"a\"}"));
+        cache.put("http://service {\"query\":\"a\"}", "{\"result\":[]}");
+        cache.put("http://service {\"query\":\"b\"}", "{\"result\":[{\"id\":\"Q1\"}]}");
+        cache.put("http://service {\"query\":\"a\"}", "{\"result\":[{\"id\":\"Q2\"}]}");
+
+        assertEquals(cache.get("http://service {\"query\":\"a\"}"), "{\"result\":[{\"id\":\"Q2\"}]}");
+        assertEquals(cache.get("http://service {\"query\":\"b\"}"), "{\"result\":[{\"id\":\"Q1\"}]}");
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getStats().getHits(), 2);
+        assertEquals(cache.getStats().getMisses(), 1);
+        assertEquals(cache.getStats().getHitRate(), 2.0 / 3.0, 0.001);
+        cache.close();
+    }
+
+    @Test
+    public void testPersistence() {
+        ReconCache cache = new ReconCache(file, 1 << 20, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.close();
+
+        ReconCache reopened = new ReconCache(file, 1 << 20, 60000);
+        assertEquals(reopened.get("a"), "1");
+        assertEquals(reopened.get("b"), "2");
+        assertEquals(reopened.size(), 2);
+        reopened.close();
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        ReconCache cache = new ReconCache(file, 1 << 20, 10);
+        cache.put("a", "1");
+        Thread.sleep(50);
+
+        assertNull(cache.get("a"));
+        assertEquals(cache.getStats().getExpired(), 1);
+        assertEquals(cache.size(), 0);
+        cache.close();
+    }
+
+    @Test
+    public void testEviction() {
+        ReconCache cache = new ReconCache(file, 200, 60000);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        assertEquals(cache.get("key9"), "value9");
+        assertNull(cache.get("key0"));
+        assertEquals(cache.getStats().getEvicted(), 10 - cache.size());
+        cache.close();
+    }
+}
@@ -32,10 +32,12 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -55,6 +57,7 @@ import org.testng.annotations.Test;
 import com.google.refine.RefineTest;
 import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
+import com.google.refine.model.ReconType;
 import com.google.refine.model.Row;
 import com.google.refine.model.recon.StandardReconConfig.ColumnDetail;
 import com.google.refine.model.recon.StandardReconConfig.ReconResult;
@@ -423,6 +426,53 @@ public class StandardReconConfigTests extends RefineTest {
         }
     }
 
+    @Test
+    public void batchReconTestCached() throws Exception {
+        String reconResponse = "{\"q0\":{\"result\":[{\"id\":\"Q2071\",\"name\":\"David Lynch\",\"score\":100,"
+                + "\"match\":true,\"type\":[{\"id\":\"Q5\",\"name\":\"human\"}]}]}}";
+        ReconCache cache = new ReconCache(new File(TestUtils.createTempDirectory("openrefine-test-recon-cache"),
+                ReconCache.FILE_NAME), 1 << 20, 60000);
+        try (MockWebServer server = new MockWebServer()) {
+            server.start();
+            HttpUrl url = server.url("/openrefine-wikidata/en/api");
+            server.enqueue(new MockResponse().setBody(reconResponse));
+
+            StandardReconConfig config = new StandardReconConfig(url.toString(), "http://www.wikidata.org/entity/",
+                    "http://www.wikidata.org/prop/direct/", new ReconType("Q5", "human"), true, new ArrayList<ColumnDetail>(), 0) {
+
+                @Override
+                protected ReconCache getReconCache() {
+                    return cache;
+                }
+            };
+            StandardReconConfig.StandardReconJob job = new StandardReconConfig.StandardReconJob();
+            job.text = "david lynch";
+            job.code = "{\"query\":\"david lynch\",\"type\":\"Q5\"}";
+            assertNull(config.getCachedRecon(job, 1000000000));
+            Recon recon = config.batchRecon(Collections.singletonList(job), 1000000000).get(0);
+            assertEquals(server.getRequestCount(), 1);
+
+            // the same query, its fields in another order, is answered by the cache
+            StandardReconConfig.StandardReconJob sameJob = new StandardReconConfig.StandardReconJob();
+            sameJob.text = "david lynch";
+            sameJob.code = "{\"type\":\"Q5\",\"query\":\"david lynch\"}";
+            Recon cached = config.getCachedRecon(sameJob, 1000000000);
+            assertNotNull(cached);
+            assertEquals(cached.match.id, recon.match.id);
+            assertEquals(cached.service, url.toString());
+            assertEquals(server.getRequestCount(), 1);
+            assertEquals(cache.getStats().getHits(), 1);
+
+            config.setBypassCache(true);
+            assertNull(config.getCachedRecon(sameJob, 1000000000));
+            assertTrue(ParsingUtilities.mapper.writeValueAsString(config).contains("\"bypassCache\":true"));
+            assertTrue(StandardReconConfig.reconstruct("{\"mode\":\"standard-service\",\"service\":\"" + url
+                    + "\",\"autoMatch\":true,\"columnDetails\":[],\"bypassCache\":true}").getBypassCache());
+        } finally {
+            cache.close();
+        }
+    }
+
     @Test
     public void batchReconTestConnectionError() throws Exception {
         try (MockWebServer server = new MockWebServer()) {
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.sorting;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.sorting.Criterion.KeyMaker;
+
+public class SortKeysTests {
+
+    static int[] sort(Criterion criterion, Object... keys) {
+        SortKeys sortKeys = new SortKeys(criterion, criterion.createKeyMaker(), keys);
+        return IndexSorter.sortedPositions(keys.length, sortKeys::compare);
+    }
+
+    @Test
+    public void testNumbers() {
+        NumberCriterion criterion = new NumberCriterion();
+        assertEquals(sort(criterion, 3, -1.5, 0.0, Double.NEGATIVE_INFINITY, 2L, -0.0, 1e300),
+                new int[] { 3, 1, 2, 5, 4, 0, 6 });
+    }
+
+    @Test
+    public void testReverseWithBlanksAndErrors() {
+        NumberCriterion criterion = new NumberCriterion();
+        criterion.reverse = true;
+        criterion.blankPosition = 2;
+        criterion.errorPosition = -1;
+        EvalError error = new EvalError("error");
+        // blanks and errors are not reversed
+        assertEquals(sort(criterion, null, 1, error, 3, null, 2, error),
+                new int[] { 2, 6, 3, 5, 1, 0, 4 });
+    }
+
+    @Test
+    public void testStrings() {
+        StringCriterion criterion = new StringCriterion();
+        KeyMaker keyMaker = criterion.createKeyMaker();
+        Object[] keys = new Object[] { "banana", "Apple", null, "apple", "cherry" };
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyMaker.makeKey(keys[i]);
+        }
+        SortKeys sortKeys = new SortKeys(criterion, keyMaker, keys);
+        assertEquals(IndexSorter.sortedPositions(keys.length, sortKeys::compare), new int[] { 1, 3, 0, 4, 2 });
+        // case-insensitive keys of equal strings have the same rank
+        assertEquals(sortKeys.compare(1, 3), 0);
+    }
+
+    @Test
+    public void testDatesOutOfNanosecondRange() {
+        DateCriterion criterion = new DateCriterion();
+        assertEquals(sort(criterion, Instant.parse("2020-01-01T00:00:00Z"), Instant.parse("1500-01-01T00:00:00Z"),
+                Instant.parse("1999-01-01T00:00:00Z")), new int[] { 1, 2, 0 });
+    }
+
+    @Test
+    public void testParallelSortIsStable() {
+        int count = IndexSorter.PARALLEL_THRESHOLD * 4 + 17;
+        int[] values = new int[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(100);
+        }
+        int[] sorted = IndexSorter.sortedPositions(count, (i1, i2) -> Integer.compare(values[i1], values[i2]));
+        for (int i = 1; i < count; i++) {
+            int c = Integer.compare(values[sorted[i - 1]], values[sorted[i]]);
+            assertTrue(c < 0 || (c == 0 && sorted[i - 1] < sorted[i]));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.sorting;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.Engine.Mode;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.facets.ListFacet.ListFacetConfig;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.LanguageSpecificParser;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.sorting.SortedViewCache.SortedView;
+import com.google.refine.util.ParsingUtilities;
+
+public class SortedViewCacheTests extends RefineTest {
+
+    Project project;
+    SortingConfig sortingConfig;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        project = createProject(new String[] { "key", "value" },
+                new Serializable[][] {
+                        { "b", 1 },
+                        { null, 2 },
+                        { "a", 3 },
+                        { "c", 4 },
+                });
+        sortingConfig = SortingConfig.reconstruct("{\"criteria\":[{\"column\":\"key\",\"valueType\":\"string\","
+                + "\"reverse\":false,\"blankPosition\":2,\"errorPosition\":1,\"caseSensitive\":false}]}");
+    }
+
+    Engine engine(Mode mode) {
+        Engine engine = new Engine(project);
+        engine.initializeFromConfig(new EngineConfig(Collections.emptyList(), mode));
+        return engine;
+    }
+
+    @Test
+    public void testRowView() {
+        SortedView view = project.getSortedViewCache().getSortedView(project, engine(Mode.RowBased), sortingConfig);
+
+        assertEquals(view.order, new int[] { 2, 0, 3, 1 });
+        assertEquals(view.size(), 4);
+        assertEquals(view.getRowCount(), 4);
+        assertEquals(view.getPosition(2), 2);
+        assertEquals(view.getPosition(10), 4);
+    }
+
+    @Test
+    public void testRecordView() {
+        SortedView view = project.getSortedViewCache().getSortedView(project, engine(Mode.RecordBased), sortingConfig);
+
+        assertEquals(view.order, new int[] { 1, 0, 2 });
+        assertEquals(view.size(), 3);
+        assertEquals(view.getRowCount(), 4);
+        assertEquals(view.getSortedRowIndex(1), 1);
+        assertEquals(view.getSortedRowIndex(2), 3);
+        assertEquals(view.getPosition(1), 1);
+        assertEquals(view.getPosition(2), 2);
+        assertEquals(view.getPosition(4), 3);
+    }
+
+    @Test
+    public void testCachedUntilHistoryChanges() {
+        SortedViewCache cache = project.getSortedViewCache();
+        SortedView initial = cache.getSortedView(project, engine(Mode.RowBased), sortingConfig);
+        assertSame(cache.getSortedView(project, engine(Mode.RowBased), sortingConfig), initial);
+        assertEquals(cache.getStats().hitCount(), 1);
+
+        project.history.addEntry(new HistoryEntry(HistoryEntry.allocateID(), project, "Edit cell", null,
+                new CellChange(3, 0, project.rows.get(3).getCell(0), new Cell("0", null))));
+
+        SortedView changed = cache.getSortedView(project, engine(Mode.RowBased), sortingConfig);
+        assertNotSame(changed, initial);
+        assertEquals(changed.order, new int[] { 3, 2, 0, 1 });
+
+        project.history.undoRedo(0);
+        assertEquals(cache.getSortedView(project, engine(Mode.RowBased), sortingConfig).order, new int[] { 2, 0, 3, 1 });
+    }
+
+    @Test
+    public void testViewsOfFacetsDependingOnOutsideStateAreNotCached() throws Exception {
+        MetaParser.registerLanguageParser("outside", "Outside", new LanguageSpecificParser() {
+
+            @Override
+            public Evaluable parse(String source, String languagePrefix) {
+                return new Evaluable() {
+
+                    @Override
+                    public Object evaluate(Properties bindings) {
+                        return "a";
+                    }
+                };
+            }
+        }, "");
+        try {
+            ListFacetConfig listConfig = ParsingUtilities.mapper.readValue("{\"type\":\"list\",\"name\":\"key\","
+                    + "\"columnName\":\"key\",\"expression\":\"outside:value\",\"omitBlank\":false,"
+                    + "\"omitError\":false,\"selection\":[],\"selectBlank\":false,\"selectError\":false,"
+                    + "\"invert\":false}", ListFacetConfig.class);
+            Engine engine = new Engine(project);
+            engine.initializeFromConfig(new EngineConfig(Collections.singletonList(listConfig), Mode.RowBased));
+
+            SortedViewCache cache = project.getSortedViewCache();
+            SortedView initial = cache.getSortedView(project, engine, sortingConfig);
+            assertEquals(initial.order, new int[] { 2, 0, 3, 1 });
+            assertNotSame(cache.getSortedView(project, engine, sortingConfig), initial);
+            assertEquals(cache.getStats().requestCount(), 0);
+        } finally {
+            MetaParser.unregisterLanguageParser("outside");
+        }
+    }
+}
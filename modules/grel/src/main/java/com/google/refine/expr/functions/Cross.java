@@ -115,4 +115,12 @@ public class Cross implements Function {
     public String getReturns() {
         return "array";
     }
+
+    /**
+     * Lookups of other projects are built and shared under the lock of the lookup cache manager.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -43,12 +43,12 @@ import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 
-public class FacetCount implements Function {
+public class FacetCount implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
@@ -45,11 +45,11 @@ import com.google.refine.expr.EvalError;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 import com.google.refine.util.JSONUtilities;
 
-public class Uniques implements Function {
+public class Uniques implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
@@ -41,10 +41,10 @@ import com.google.common.math.BigIntegerMath;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Multinomial implements Function {
+public class Multinomial implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
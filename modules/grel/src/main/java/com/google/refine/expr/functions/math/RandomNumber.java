@@ -83,4 +83,12 @@ public class RandomNumber implements Function {
         return "number";
     }
 
+    /**
+     * Each thread draws from its own generator.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
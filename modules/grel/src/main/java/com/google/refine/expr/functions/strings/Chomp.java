@@ -37,10 +37,10 @@ import java.util.Properties;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Chomp implements Function {
+public class Chomp implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
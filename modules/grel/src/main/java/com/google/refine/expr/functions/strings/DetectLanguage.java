@@ -62,4 +62,9 @@ public class DetectLanguage implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
 }
@@ -43,11 +43,11 @@ import org.apache.commons.text.StringEscapeUtils;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 import com.google.refine.util.StringUtils;
 
-public class Escape implements Function {
+public class Escape implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
@@ -37,10 +37,10 @@ import java.util.Properties;
 
 import com.google.refine.clustering.binning.FingerprintKeyer;
 import com.google.refine.clustering.binning.Keyer;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Fingerprint implements Function {
+public class Fingerprint implements PureFunction {
 
     static Keyer fingerprint = new FingerprintKeyer();
 
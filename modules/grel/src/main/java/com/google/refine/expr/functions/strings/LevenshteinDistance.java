@@ -36,13 +36,12 @@ package com.google.refine.expr.functions.strings;
 import java.util.Properties;
 
 import com.google.refine.clustering.knn.SimilarityDistance;
-import com.google.refine.clustering.knn.VicinoDistance;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
+import com.google.refine.grel.PureFunction;
 
-public class LevenshteinDistance implements Function {
+public class LevenshteinDistance implements PureFunction {
 
     /**
      * Calculate the number of edits required to make one value match another.
@@ -59,7 +58,7 @@ public class LevenshteinDistance implements Function {
             String s1 = (String) args[0];
             String s2 = (String) args[1];
 
-            SimilarityDistance levenshteinDistance = new VicinoDistance(new edu.mit.simile.vicino.distances.LevenshteinDistance());
+            SimilarityDistance levenshteinDistance = new com.google.refine.clustering.knn.LevenshteinDistance();
             return levenshteinDistance.compute(s1, s2);
         }
         return new EvalError(EvalErrorMessage.expects_two_strings(ControlFunctionRegistry.getFunctionName(this)));
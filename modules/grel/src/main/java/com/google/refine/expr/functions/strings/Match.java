@@ -38,12 +38,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.refine.expr.EvalError;
+import com.google.refine.expr.util.PatternCache;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Match implements Function {
+public class Match implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
@@ -53,7 +54,7 @@ public class Match implements Function {
 
             if (s != null && p != null && (p instanceof String || p instanceof Pattern)) {
 
-                Pattern pattern = (p instanceof String) ? Pattern.compile((String) p) : (Pattern) p;
+                Pattern pattern = (p instanceof String) ? PatternCache.compile((String) p) : (Pattern) p;
 
                 Matcher matcher = pattern.matcher(s.toString());
 
@@ -40,10 +40,10 @@ import org.apache.commons.lang3.StringUtils;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class NGram implements Function {
+public class NGram implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
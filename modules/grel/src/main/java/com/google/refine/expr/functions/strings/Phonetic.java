@@ -44,17 +44,18 @@ import com.google.refine.clustering.binning.KeyerFactory;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Phonetic implements Function {
+public class Phonetic implements PureFunction {
 
     // TODO deprecate and drop those legacy encodings?
     static private Metaphone metaphone = null;
     static private DoubleMetaphone doubleMetaphone = null;
     static private Soundex soundex = null;
 
-    private Metaphone getMetaphone() {
+    // encoders are shared between threads evaluating expressions concurrently
+    static synchronized private Metaphone getMetaphone() {
         if (metaphone == null) {
             metaphone = new Metaphone();
             metaphone.setMaxCodeLen(2000);
@@ -62,7 +63,7 @@ public class Phonetic implements Function {
         return metaphone;
     }
 
-    private DoubleMetaphone getDoubleMetaphone() {
+    static synchronized private DoubleMetaphone getDoubleMetaphone() {
         if (doubleMetaphone == null) {
             doubleMetaphone = new DoubleMetaphone();
             doubleMetaphone.setMaxCodeLen(2000);
@@ -70,7 +71,7 @@ public class Phonetic implements Function {
         return doubleMetaphone;
     }
 
-    private Soundex getSoundex() {
+    static synchronized private Soundex getSoundex() {
         if (soundex == null) {
             soundex = new Soundex();
         }
@@ -41,11 +41,11 @@ import com.google.refine.ProjectMetadata;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 import com.google.refine.model.Project;
 
-public class Reinterpret implements Function {
+public class Reinterpret implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
@@ -39,10 +39,10 @@ import java.util.regex.Pattern;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Replace implements Function {
+public class Replace implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
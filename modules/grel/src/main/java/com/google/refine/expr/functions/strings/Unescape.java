@@ -42,10 +42,10 @@ import org.apache.commons.text.StringEscapeUtils;
 import com.google.refine.expr.EvalError;
 import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.EvalErrorMessage;
-import com.google.refine.grel.Function;
 import com.google.refine.grel.FunctionDescription;
+import com.google.refine.grel.PureFunction;
 
-public class Unescape implements Function {
+public class Unescape implements PureFunction {
 
     @Override
     public Object call(Properties bindings, Object[] args) {
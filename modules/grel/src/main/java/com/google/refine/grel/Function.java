@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -58,4 +59,26 @@ public interface Function {
 
     @JsonProperty("returns")
     public String getReturns();
+
+    /**
+     * Whether this function can be called from several threads at once, each with its own bindings. When it cannot,
+     * expressions calling it are evaluated on one row after the other.
+     *
+     * @return false by default (for compatibility with older extensions)
+     */
+    @JsonIgnore
+    default public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Whether this function always returns the same value when called with the same arguments, on the same version of
+     * the project. Functions reading other projects, the current time or random numbers are not deterministic.
+     *
+     * @return false by default (for compatibility with older extensions)
+     */
+    @JsonIgnore
+    default public boolean isDeterministic() {
+        return false;
+    }
 }
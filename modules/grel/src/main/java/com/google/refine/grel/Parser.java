@@ -40,12 +40,14 @@ import java.util.regex.Pattern;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.LanguageSpecificParser;
 import com.google.refine.expr.ParsingException;
+import com.google.refine.expr.util.PatternCache;
 import com.google.refine.grel.Scanner.NumberToken;
 import com.google.refine.grel.Scanner.RegexToken;
 import com.google.refine.grel.Scanner.Token;
 import com.google.refine.grel.Scanner.TokenType;
 import com.google.refine.grel.ast.ArrayExpr;
 import com.google.refine.grel.ast.BracketedExpr;
+import com.google.refine.grel.ast.CompiledExpr;
 import com.google.refine.grel.ast.ControlCallExpr;
 import com.google.refine.grel.ast.FieldAccessorExpr;
 import com.google.refine.grel.ast.FunctionCallExpr;
@@ -55,12 +57,18 @@ import com.google.refine.grel.ast.VariableExpr;
 
 public class Parser {
 
+    /**
+     * Whether parsed expressions are compiled before being evaluated, which can be turned off with the
+     * refine.grel.compile system property to fall back on interpreting the syntax tree.
+     */
+    static public final boolean COMPILE = !"false".equals(System.getProperty("refine.grel.compile"));
+
     static public LanguageSpecificParser grelParser = new LanguageSpecificParser() {
 
         @Override
         public Evaluable parse(String source, String languagePrefix) throws ParsingException {
             Parser parser = new Parser(source);
-            return parser.getExpression();
+            return COMPILE ? CompiledExpr.compile(parser.getExpression()) : parser.getExpression();
         }
     };
 
@@ -182,7 +190,7 @@ public class Parser {
             RegexToken t = (RegexToken) _token;
 
             try {
-                Pattern pattern = Pattern.compile(_token.text, t.caseInsensitive ? Pattern.CASE_INSENSITIVE : 0);
+                Pattern pattern = PatternCache.compile(_token.text, t.caseInsensitive ? Pattern.CASE_INSENSITIVE : 0);
                 eval = new LiteralExpr(pattern);
                 next(false);
             } catch (Exception e) {
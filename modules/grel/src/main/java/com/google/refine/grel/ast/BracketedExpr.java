@@ -30,6 +30,21 @@ public class BracketedExpr extends GrelExpr {
         return inner.evaluate(bindings);
     }
 
+    @Override
+    protected Evaluable compile() {
+        return getClass() == BracketedExpr.class ? compile(inner) : this;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return inner.isThreadSafe();
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return inner.isDeterministic();
+    }
+
     @Override
     public Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         return inner.getColumnDependencies(baseColumn);
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.ast;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.refine.expr.Evaluable;
+
+/**
+ * A GREL expression compiled into closures (see {@link GrelExpr#compile()}). It prints, compares and analyzes its
+ * column dependencies like the syntax tree it was compiled from.
+ */
+public class CompiledExpr implements Evaluable {
+
+    final protected Evaluable _source;
+    final protected Evaluable _compiled;
+
+    protected CompiledExpr(Evaluable source, Evaluable compiled) {
+        _source = source;
+        _compiled = compiled;
+    }
+
+    /**
+     * Compiles a parsed expression. Expressions which cannot be compiled are returned as they are, to be interpreted.
+     */
+    static public Evaluable compile(Evaluable expression) {
+        if (expression instanceof CompiledExpr) {
+            return expression;
+        }
+        Evaluable compiled = GrelExpr.compile(expression);
+        return compiled == expression ? expression : new CompiledExpr(expression, compiled);
+    }
+
+    /**
+     * @return the syntax tree this expression was compiled from
+     */
+    public Evaluable getSourceExpression() {
+        return _source;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        return _compiled.evaluate(bindings);
+    }
+
+    @Override
+    public String getSource() {
+        return _source.getSource();
+    }
+
+    @Override
+    public String getLanguagePrefix() {
+        return _source.getLanguagePrefix();
+    }
+
+    @Override
+    public Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
+        return _source.getColumnDependencies(baseColumn);
+    }
+
+    @Override
+    public Evaluable renameColumnDependencies(Map<String, String> substitutions) {
+        return compile(_source.renameColumnDependencies(substitutions));
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _source.isThreadSafe();
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return _source.isDeterministic();
+    }
+
+    @Override
+    public String toString() {
+        return _source.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return _source.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CompiledExpr && _source.equals(((CompiledExpr) obj)._source);
+    }
+}
@@ -87,6 +87,47 @@ public class ControlCallExpr extends GrelExpr {
         }
     }
 
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != ControlCallExpr.class) {
+            return this;
+        }
+        // controls inspect some of their arguments (such as the names of the variables they bind),
+        // so they are given expressions which still print and compare like the syntax tree
+        Evaluable[] compiledArgs = new Evaluable[_args.length];
+        for (int i = 0; i < _args.length; i++) {
+            compiledArgs[i] = _args[i] instanceof VariableExpr ? _args[i] : CompiledExpr.compile(_args[i]);
+        }
+        Control control = _control;
+        return bindings -> {
+            try {
+                return control.call(bindings, compiledArgs);
+            } catch (Exception e) {
+                return new EvalError(e.toString());
+            }
+        };
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        for (Evaluable arg : _args) {
+            if (!arg.isThreadSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        for (Evaluable arg : _args) {
+            if (!arg.isDeterministic()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public final Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         Set<String> dependencies = new HashSet<>();
@@ -64,21 +64,44 @@ public class FieldAccessorExpr extends GrelExpr {
 
     @Override
     public Object evaluate(Properties bindings) {
-        Object o = _inner.evaluate(bindings);
+        return getField(_inner.evaluate(bindings), _fieldName, bindings);
+    }
+
+    static protected Object getField(Object o, String fieldName, Properties bindings) {
         if (ExpressionUtils.isError(o)) {
             return o; // bubble the error up
         } else if (o == null) {
             return null;
         } else if (o instanceof HasFields) {
-            return ((HasFields) o).getField(_fieldName, bindings);
+            return ((HasFields) o).getField(fieldName, bindings);
         } else if (o instanceof ObjectNode) {
-            JsonNode value = ((ObjectNode) o).get(_fieldName);
+            JsonNode value = ((ObjectNode) o).get(fieldName);
             return JsonValueConverter.convert(value);
         } else {
             return null;
         }
     }
 
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != FieldAccessorExpr.class) {
+            return this;
+        }
+        Evaluable inner = compile(_inner);
+        String fieldName = _fieldName;
+        return bindings -> getField(inner.evaluate(bindings), fieldName, bindings);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _inner.isThreadSafe();
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return _inner.isDeterministic();
+    }
+
     @Override
     public Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         Optional<Set<String>> innerDeps = _inner.getColumnDependencies(baseColumn);
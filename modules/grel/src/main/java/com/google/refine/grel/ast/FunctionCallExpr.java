@@ -41,6 +41,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang3.Validate;
 
@@ -48,6 +49,8 @@ import com.google.refine.expr.EvalError;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.functions.Get;
+import com.google.refine.expr.functions.strings.Match;
+import com.google.refine.expr.util.PatternCache;
 import com.google.refine.grel.Function;
 
 /**
@@ -94,6 +97,21 @@ public class FunctionCallExpr extends GrelExpr {
         Validate.isTrue(!fluentStyle || _args.length > 0);
     }
 
+    /**
+     * Replaces a constant string used as a regular expression by its compiled pattern, so that it is not compiled
+     * again on each evaluation. Invalid regular expressions are left as they are, to be reported at evaluation time.
+     */
+    static protected Evaluable compileRegex(Evaluable compiledArg) {
+        if (compiledArg instanceof Constant && ((Constant) compiledArg).getValue() instanceof String) {
+            try {
+                return new Constant(PatternCache.compile((String) ((Constant) compiledArg).getValue()));
+            } catch (PatternSyntaxException e) {
+                return compiledArg;
+            }
+        }
+        return compiledArg;
+    }
+
     @Override
     public Object evaluate(Properties bindings) {
         Object[] args = new Object[_args.length];
@@ -104,13 +122,93 @@ public class FunctionCallExpr extends GrelExpr {
             }
             args[i] = v;
         }
+        return call(_function, bindings, args);
+    }
+
+    static protected Object call(Function function, Properties bindings, Object[] args) {
         try {
-            return _function.call(bindings, args);
+            return function.call(bindings, args);
         } catch (Exception e) {
             return new EvalError(e);
         }
     }
 
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != FunctionCallExpr.class && getClass() != ArrayExpr.class) {
+            return this;
+        }
+        Function function = _function;
+        Evaluable[] compiledArgs = new Evaluable[_args.length];
+        for (int i = 0; i < _args.length; i++) {
+            compiledArgs[i] = compile(_args[i]);
+        }
+        if (function instanceof Match && compiledArgs.length == 2) {
+            compiledArgs[1] = compileRegex(compiledArgs[1]);
+        }
+        switch (compiledArgs.length) {
+            case 0:
+                return bindings -> call(function, bindings, new Object[0]);
+            case 1: {
+                Evaluable arg0 = compiledArgs[0];
+                return bindings -> {
+                    Object v0 = arg0.evaluate(bindings);
+                    return ExpressionUtils.isError(v0) ? v0 : call(function, bindings, new Object[] { v0 });
+                };
+            }
+            case 2: {
+                Evaluable arg0 = compiledArgs[0];
+                Evaluable arg1 = compiledArgs[1];
+                return bindings -> {
+                    Object v0 = arg0.evaluate(bindings);
+                    if (ExpressionUtils.isError(v0)) {
+                        return v0;
+                    }
+                    Object v1 = arg1.evaluate(bindings);
+                    return ExpressionUtils.isError(v1) ? v1 : call(function, bindings, new Object[] { v0, v1 });
+                };
+            }
+            default:
+                return bindings -> {
+                    Object[] args = new Object[compiledArgs.length];
+                    for (int i = 0; i < compiledArgs.length; i++) {
+                        Object v = compiledArgs[i].evaluate(bindings);
+                        if (ExpressionUtils.isError(v)) {
+                            return v;
+                        }
+                        args[i] = v;
+                    }
+                    return call(function, bindings, args);
+                };
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        if (!_function.isThreadSafe()) {
+            return false;
+        }
+        for (Evaluable arg : _args) {
+            if (!arg.isThreadSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        if (!_function.isDeterministic()) {
+            return false;
+        }
+        for (Evaluable arg : _args) {
+            if (!arg.isDeterministic()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public final Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         // special case to handle "get(cells, "foo")" which only depends on the "foo" column
@@ -2,6 +2,7 @@
 package com.google.refine.grel.ast;
 
 import java.util.Map;
+import java.util.Properties;
 
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.MetaParser;
@@ -18,6 +19,73 @@ abstract class GrelExpr implements Evaluable {
         return MetaParser.GREL_LANGUAGE_CODE;
     }
 
+    /**
+     * GREL expressions hold no state of their own: all intermediate values live in the bindings. Expressions which
+     * call functions that are not thread-safe override this to return false.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * GREL expressions only read the bindings of the row they are evaluated on. Expressions which call functions that
+     * are not deterministic override this to return false.
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * Compiles this expression into closures which evaluate it without walking the syntax tree: operators and
+     * functions are resolved once and for all, and intermediate values are kept in local variables. Expressions which
+     * cannot be compiled (for instance subclasses defined outside of this package) return themselves, so that they are
+     * interpreted as before.
+     */
+    protected Evaluable compile() {
+        return this;
+    }
+
+    /**
+     * Compiles a sub-expression, if it is a GREL expression.
+     */
+    static protected Evaluable compile(Evaluable expression) {
+        return expression instanceof GrelExpr ? ((GrelExpr) expression).compile() : expression;
+    }
+
+    /**
+     * The compiled form of an expression whose value was computed at compilation time, because it does not depend on
+     * the bindings. Compiled parent expressions check for it to fold constant sub-expressions in turn.
+     */
+    static protected final class Constant implements Evaluable {
+
+        final protected Object _value;
+
+        protected Constant(Object value) {
+            _value = value;
+        }
+
+        protected Object getValue() {
+            return _value;
+        }
+
+        @Override
+        public Object evaluate(Properties bindings) {
+            return _value;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+    }
+
     // make sure all subclasses implement this method
     @Override
     public abstract Evaluable renameColumnDependencies(Map<String, String> substitutions);
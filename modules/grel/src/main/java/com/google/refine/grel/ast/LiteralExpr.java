@@ -64,6 +64,14 @@ public class LiteralExpr extends GrelExpr {
         return _value;
     }
 
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != LiteralExpr.class) {
+            return this;
+        }
+        return new Constant(_value);
+    }
+
     @Override
     public Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         return Optional.of(Collections.emptySet());
@@ -69,144 +69,193 @@ public class OperatorCallExpr extends GrelExpr {
             args[i] = v;
         }
 
-        if (args.length == 2) {
-            if (args[0] != null && args[1] != null) {
-                if (isIntegral(args[0]) && isIntegral(args[1])) {
-                    long n1 = ((Number) args[0]).longValue();
-                    long n2 = ((Number) args[1]).longValue();
-
-                    if ("+".equals(_op)) {
-                        return n1 + n2;
-                    } else if ("-".equals(_op)) {
-                        return n1 - n2;
-                    } else if ("*".equals(_op)) {
-                        return n1 * n2;
-                    } else if ("/".equals(_op)) {
-                        if (n2 == 0) {
-                            if (n1 == 0) {
-                                return Double.NaN;
-                            } else {
-                                return n1 > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
-                            }
-                        }
-                        // TODO: This will throw on divide by zero - return Double.Infinity / -Infinity instead?
-                        return n1 / n2;
-                    } else if ("%".equals(_op)) {
-                        return n1 % n2;
-                    } else if (">".equals(_op)) {
-                        return n1 > n2;
-                    } else if (">=".equals(_op)) {
-                        return n1 >= n2;
-                    } else if ("<".equals(_op)) {
-                        return n1 < n2;
-                    } else if ("<=".equals(_op)) {
-                        return n1 <= n2;
-                    } else if ("==".equals(_op)) {
-                        return n1 == n2;
-                    } else if ("!=".equals(_op)) {
-                        return n1 != n2;
-                    }
-                } else if (args[0] instanceof Number && args[1] instanceof Number) {
-                    double n1 = ((Number) args[0]).doubleValue();
-                    double n2 = ((Number) args[1]).doubleValue();
-
-                    if ("+".equals(_op)) {
-                        return n1 + n2;
-                    } else if ("-".equals(_op)) {
-                        return n1 - n2;
-                    } else if ("*".equals(_op)) {
-                        return n1 * n2;
-                    } else if ("/".equals(_op)) {
-                        if (n2 == 0 && n1 == 0) {
-                            return Double.NaN;
-                        }
-                        return n1 / n2;
-                    } else if ("%".equals(_op)) {
-                        return n1 % n2;
-                    } else if (">".equals(_op)) {
-                        return n1 > n2;
-                    } else if (">=".equals(_op)) {
-                        return n1 >= n2;
-                    } else if ("<".equals(_op)) {
-                        return n1 < n2;
-                    } else if ("<=".equals(_op)) {
-                        return n1 <= n2;
-                    } else if ("==".equals(_op)) {
-                        return n1 == n2;
-                    } else if ("!=".equals(_op)) {
-                        return n1 != n2;
-                    }
-                } else if (args[0] instanceof String && args[1] instanceof String) {
-                    String s1 = (String) args[0];
-                    String s2 = (String) args[1];
-                    Collator collator = Collator.getInstance();
-                    collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
-//                    collator.setStrength(Collator.SECONDARY);
+        return args.length == 2 ? operate(_op, args[0], args[1]) : null;
+    }
 
-                    if (">".equals(_op)) {
-                        return collator.compare(s1, s2) > 0;
-                    } else if (">=".equals(_op)) {
-                        return collator.compare(s1, s2) >= 0;
-                    } else if ("<".equals(_op)) {
-                        return collator.compare(s1, s2) < 0;
-                    } else if ("<=".equals(_op)) {
-                        return collator.compare(s1, s2) <= 0;
-                    } else if ("==".equals(_op)) {
-                        return collator.compare(s1, s2) == 0;
-                    } else if ("!=".equals(_op)) {
-                        return collator.compare(s1, s2) != 0;
-                    }
-                }
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != OperatorCallExpr.class || _args.length != 2) {
+            return this;
+        }
+        String op = _op;
+        Evaluable left = compile(_args[0]);
+        Evaluable right = compile(_args[1]);
+        if (left instanceof Constant && right instanceof Constant) {
+            // operators are pure, so an operation on constants can be evaluated once and for all
+            Object v0 = ((Constant) left).getValue();
+            Object v1 = ((Constant) right).getValue();
+            if (ExpressionUtils.isError(v0) || ExpressionUtils.isError(v1)) {
+                return new Constant(ExpressionUtils.isError(v0) ? v0 : v1);
+            }
+            return new Constant(operate(op, v0, v1));
+        }
+        return bindings -> {
+            Object v0 = left.evaluate(bindings);
+            if (ExpressionUtils.isError(v0)) {
+                return v0;
+            }
+            Object v1 = right.evaluate(bindings);
+            return ExpressionUtils.isError(v1) ? v1 : operate(op, v0, v1);
+        };
+    }
 
-                if (args[0] instanceof String || args[1] instanceof String) {
-                    String s1 = args[0] instanceof String ? (String) args[0] : args[0].toString();
-                    String s2 = args[1] instanceof String ? (String) args[1] : args[1].toString();
+    static protected Object operate(String op, Object left, Object right) {
+        if (left != null && right != null) {
+            if (isIntegral(left) && isIntegral(right)) {
+                long n1 = ((Number) left).longValue();
+                long n2 = ((Number) right).longValue();
 
-                    if ("+".equals(_op)) {
-                        return s1 + s2;
+                if ("+".equals(op)) {
+                    return n1 + n2;
+                } else if ("-".equals(op)) {
+                    return n1 - n2;
+                } else if ("*".equals(op)) {
+                    return n1 * n2;
+                } else if ("/".equals(op)) {
+                    if (n2 == 0) {
+                        if (n1 == 0) {
+                            return Double.NaN;
+                        } else {
+                            return n1 > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                        }
                     }
+                    // TODO: This will throw on divide by zero - return Double.Infinity / -Infinity instead?
+                    return n1 / n2;
+                } else if ("%".equals(op)) {
+                    return n1 % n2;
+                } else if (">".equals(op)) {
+                    return n1 > n2;
+                } else if (">=".equals(op)) {
+                    return n1 >= n2;
+                } else if ("<".equals(op)) {
+                    return n1 < n2;
+                } else if ("<=".equals(op)) {
+                    return n1 <= n2;
+                } else if ("==".equals(op)) {
+                    return n1 == n2;
+                } else if ("!=".equals(op)) {
+                    return n1 != n2;
                 }
+            } else if (left instanceof Number && right instanceof Number) {
+                double n1 = ((Number) left).doubleValue();
+                double n2 = ((Number) right).doubleValue();
 
-                if (args[0] instanceof Comparable && args[1] instanceof Comparable
-                        && (args[0].getClass().isAssignableFrom(args[1].getClass()) ||
-                                args[1].getClass().isAssignableFrom(args[0].getClass()))) {
-                    Comparable s1 = (Comparable) args[0];
-                    Comparable s2 = (Comparable) args[1];
-
-                    if (">".equals(_op)) {
-                        return s1.compareTo(s2) > 0;
-                    } else if (">=".equals(_op)) {
-                        return s1.compareTo(s2) >= 0;
-                    } else if ("<".equals(_op)) {
-                        return s1.compareTo(s2) < 0;
-                    } else if ("<=".equals(_op)) {
-                        return s1.compareTo(s2) <= 0;
-                    } else if ("==".equals(_op)) {
-                        return s1.compareTo(s2) == 0;
-                    } else if ("!=".equals(_op)) {
-                        return s1.compareTo(s2) != 0;
+                if ("+".equals(op)) {
+                    return n1 + n2;
+                } else if ("-".equals(op)) {
+                    return n1 - n2;
+                } else if ("*".equals(op)) {
+                    return n1 * n2;
+                } else if ("/".equals(op)) {
+                    if (n2 == 0 && n1 == 0) {
+                        return Double.NaN;
                     }
+                    return n1 / n2;
+                } else if ("%".equals(op)) {
+                    return n1 % n2;
+                } else if (">".equals(op)) {
+                    return n1 > n2;
+                } else if (">=".equals(op)) {
+                    return n1 >= n2;
+                } else if ("<".equals(op)) {
+                    return n1 < n2;
+                } else if ("<=".equals(op)) {
+                    return n1 <= n2;
+                } else if ("==".equals(op)) {
+                    return n1 == n2;
+                } else if ("!=".equals(op)) {
+                    return n1 != n2;
                 }
+            } else if (left instanceof String && right instanceof String) {
+                String s1 = (String) left;
+                String s2 = (String) right;
+                Collator collator = Collator.getInstance();
+                collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+//                    collator.setStrength(Collator.SECONDARY);
 
+                if (">".equals(op)) {
+                    return collator.compare(s1, s2) > 0;
+                } else if (">=".equals(op)) {
+                    return collator.compare(s1, s2) >= 0;
+                } else if ("<".equals(op)) {
+                    return collator.compare(s1, s2) < 0;
+                } else if ("<=".equals(op)) {
+                    return collator.compare(s1, s2) <= 0;
+                } else if ("==".equals(op)) {
+                    return collator.compare(s1, s2) == 0;
+                } else if ("!=".equals(op)) {
+                    return collator.compare(s1, s2) != 0;
+                }
             }
 
-            if ("==".equals(_op)) {
-                if (args[0] != null) {
-                    return args[0].equals(args[1]);
-                } else {
-                    return args[1] == null;
+            if (left instanceof String || right instanceof String) {
+                String s1 = left instanceof String ? (String) left : left.toString();
+                String s2 = right instanceof String ? (String) right : right.toString();
+
+                if ("+".equals(op)) {
+                    return s1 + s2;
                 }
-            } else if ("!=".equals(_op)) {
-                if (args[0] != null) {
-                    return !args[0].equals(args[1]);
-                } else {
-                    return args[1] != null;
+            }
+
+            if (left instanceof Comparable && right instanceof Comparable
+                    && (left.getClass().isAssignableFrom(right.getClass()) ||
+                            right.getClass().isAssignableFrom(left.getClass()))) {
+                Comparable s1 = (Comparable) left;
+                Comparable s2 = (Comparable) right;
+
+                if (">".equals(op)) {
+                    return s1.compareTo(s2) > 0;
+                } else if (">=".equals(op)) {
+                    return s1.compareTo(s2) >= 0;
+                } else if ("<".equals(op)) {
+                    return s1.compareTo(s2) < 0;
+                } else if ("<=".equals(op)) {
+                    return s1.compareTo(s2) <= 0;
+                } else if ("==".equals(op)) {
+                    return s1.compareTo(s2) == 0;
+                } else if ("!=".equals(op)) {
+                    return s1.compareTo(s2) != 0;
                 }
             }
+
+        }
+
+        if ("==".equals(op)) {
+            if (left != null) {
+                return left.equals(right);
+            } else {
+                return right == null;
+            }
+        } else if ("!=".equals(op)) {
+            if (left != null) {
+                return !left.equals(right);
+            } else {
+                return right != null;
+            }
         }
         return null;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        for (Evaluable arg : _args) {
+            if (!arg.isThreadSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        for (Evaluable arg : _args) {
+            if (!arg.isDeterministic()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public final Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         Set<String> dependencies = new HashSet<>();
@@ -245,7 +294,7 @@ public class OperatorCallExpr extends GrelExpr {
         return sb.toString();
     }
 
-    private boolean isIntegral(Object n) {
+    static private boolean isIntegral(Object n) {
         return n instanceof Long || n instanceof Integer;
     }
 
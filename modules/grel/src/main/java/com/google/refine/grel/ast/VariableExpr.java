@@ -40,6 +40,7 @@ import java.util.Properties;
 import java.util.Set;
 
 import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.EvaluationContext;
 
 /**
  * An abstract syntax tree node encapsulating the retrieval of a variable's content.
@@ -61,6 +62,22 @@ public class VariableExpr extends GrelExpr {
         return bindings.get(_name);
     }
 
+    @Override
+    protected Evaluable compile() {
+        if (getClass() != VariableExpr.class) {
+            return this;
+        }
+        String name = _name;
+        int slot = EvaluationContext.getSlot(name);
+        if (slot >= 0) {
+            // row variables are read from their slot, without looking them up by name
+            return bindings -> bindings instanceof EvaluationContext
+                    ? ((EvaluationContext) bindings).get(slot)
+                    : bindings.get(name);
+        }
+        return bindings -> bindings.get(name);
+    }
+
     @Override
     public Optional<Set<String>> getColumnDependencies(Optional<String> baseColumn) {
         if (("value".equals(_name) || "cell".equals(_name) || "recon".equals(_name)) && baseColumn.isPresent()) {
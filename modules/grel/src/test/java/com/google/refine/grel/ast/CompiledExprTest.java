@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.ast;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.ParsingException;
+import com.google.refine.expr.util.PatternCache;
+import com.google.refine.grel.Parser;
+
+public class CompiledExprTest {
+
+    static final String[] EXPRESSIONS = new String[] {
+            "value",
+            "value + 1",
+            "(value * 2) / 4",
+            "value.toString().length()",
+            "'a' + value",
+            "value > 3",
+            "foo == null",
+            "[value, 1, 'b'].join(',')",
+            "if(value > 3, 'big', 'small')",
+            "forEach([1, 2, 3], v, v * value).join(';')",
+            "with(value + 1, x, x * x)",
+            "1 / 0",
+            "value.foo.bar",
+            "toNumber('x') + 1",
+            "60 * 60 * 24 + value",
+            "('2024-' + value).match(\"(\\\\d+)-(\\\\d+)\").length()",
+            "(value + '-12').match('(\\\\d+)-(\\\\d+)')[1]",
+            "'abc'.match('(')",
+    };
+
+    static Evaluable parse(String source) throws ParsingException {
+        return new Parser(source).getExpression();
+    }
+
+    @Test
+    public void testSameResultsAsInterpreter() throws ParsingException {
+        Properties bindings = new Properties();
+        bindings.put("value", 5L);
+        for (String source : EXPRESSIONS) {
+            Evaluable interpreted = parse(source);
+            Evaluable compiled = CompiledExpr.compile(interpreted);
+            assertTrue(compiled instanceof CompiledExpr, source);
+
+            Object expected = interpreted.evaluate(bindings);
+            Object actual = compiled.evaluate(bindings);
+            if (ExpressionUtils.isError(expected)) {
+                assertTrue(actual instanceof EvalError, source);
+            } else {
+                assertEquals(actual, expected, source);
+            }
+        }
+    }
+
+    @Test
+    public void testBehavesLikeSyntaxTree() throws ParsingException {
+        Evaluable interpreted = parse("cells['foo'].value + value");
+        Evaluable compiled = CompiledExpr.compile(interpreted);
+
+        assertEquals(compiled.toString(), interpreted.toString());
+        assertEquals(compiled.getSource(), interpreted.getSource());
+        assertEquals(compiled.getColumnDependencies(Optional.of("base")), Optional.of(Set.of("foo", "base")));
+        assertEquals(compiled, CompiledExpr.compile(parse("cells['foo'].value + value")));
+        assertTrue(compiled.isThreadSafe());
+
+        Evaluable renamed = compiled.renameColumnDependencies(Map.of("foo", "bar"));
+        assertTrue(renamed instanceof CompiledExpr);
+        assertEquals(renamed.toString(), "cells.get(\"bar\").value + value");
+        assertNotSame(CompiledExpr.compile(compiled), interpreted);
+        assertEquals(CompiledExpr.compile(compiled), compiled);
+    }
+
+    @Test
+    public void testConstantFolding() throws ParsingException {
+        CompiledExpr compiled = (CompiledExpr) CompiledExpr.compile(parse("60 * 60 * (1 + 23)"));
+        assertTrue(compiled._compiled instanceof GrelExpr.Constant);
+        assertEquals(compiled.evaluate(new Properties()), 86400L);
+        assertEquals(compiled.toString(), "60 * 60 * (1 + 23)");
+
+        CompiledExpr parsed = (CompiledExpr) CompiledExpr.compile(parse("value.match('(\\\\d+)-(\\\\d+)')"));
+        FunctionCallExpr match = (FunctionCallExpr) parsed.getSourceExpression();
+        Evaluable regex = FunctionCallExpr.compileRegex(GrelExpr.compile(match._args[1]));
+        assertTrue(((GrelExpr.Constant) regex).getValue() instanceof Pattern);
+        assertSame(((GrelExpr.Constant) regex).getValue(), PatternCache.compile("(\\d+)-(\\d+)"));
+
+        Evaluable invalid = FunctionCallExpr.compileRegex(new GrelExpr.Constant("("));
+        assertEquals(((GrelExpr.Constant) invalid).getValue(), "(");
+    }
+}
@@ -4,14 +4,18 @@ package com.google.refine.grel.ast;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
 
 import java.util.Optional;
+import java.util.Properties;
 
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.google.refine.expr.Evaluable;
+import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.Function;
 
 public class FunctionCallExprTest extends ExprTestBase {
@@ -64,4 +68,62 @@ public class FunctionCallExprTest extends ExprTestBase {
         assertEquals(ev.renameColumnDependencies(sampleRename),
                 new FunctionCallExpr(new Evaluable[] { currentColumnRenamed, unanalyzable }, function, "fun", false));
     }
+
+    @Test
+    public void testThreadSafety() {
+        Function safeFunction = mock(Function.class);
+        when(safeFunction.isThreadSafe()).thenReturn(true);
+        Function unsafeFunction = mock(Function.class);
+        when(unsafeFunction.isThreadSafe()).thenReturn(false);
+        when(constant.isThreadSafe()).thenReturn(true);
+
+        assertTrue(new FunctionCallExpr(new Evaluable[] { constant }, safeFunction, "safe", false).isThreadSafe());
+        assertFalse(new FunctionCallExpr(new Evaluable[] { constant }, unsafeFunction, "unsafe", false).isThreadSafe());
+        // the unsafe call is detected when nested in other expressions
+        Evaluable nested = new OperatorCallExpr(new Evaluable[] { constant,
+                new FunctionCallExpr(new Evaluable[] { constant }, unsafeFunction, "unsafe", false) }, "+");
+        assertFalse(nested.isThreadSafe());
+        assertFalse(CompiledExpr.compile(nested).isThreadSafe());
+    }
+
+    @Test
+    public void testFunctionsAreNotThreadSafeByDefault() {
+        Function extensionFunction = new Function() {
+
+            @Override
+            public Object call(Properties bindings, Object[] args) {
+                return null;
+            }
+
+            @Override
+            public String getDescription() {
+                return "";
+            }
+
+            @Override
+            public String getReturns() {
+                return "";
+            }
+        };
+        assertFalse(extensionFunction.isThreadSafe());
+        assertTrue(ControlFunctionRegistry.getFunction("toUppercase").isThreadSafe());
+        assertTrue(ControlFunctionRegistry.getFunction("now").isThreadSafe());
+    }
+
+    @Test
+    public void testDeterminism() {
+        when(constant.isDeterministic()).thenReturn(true);
+        Function now = ControlFunctionRegistry.getFunction("now");
+        Function toUppercase = ControlFunctionRegistry.getFunction("toUppercase");
+
+        assertTrue(new FunctionCallExpr(new Evaluable[] { constant }, toUppercase, "toUppercase", false).isDeterministic());
+        assertFalse(new FunctionCallExpr(new Evaluable[] {}, now, "now", false).isDeterministic());
+        // the call to now() is detected when nested in other expressions
+        Evaluable nested = new OperatorCallExpr(new Evaluable[] { constant,
+                new FunctionCallExpr(new Evaluable[] {}, now, "now", false) }, "+");
+        assertFalse(nested.isDeterministic());
+        assertFalse(CompiledExpr.compile(nested).isDeterministic());
+        assertFalse(ControlFunctionRegistry.getFunction("cross").isDeterministic());
+        assertFalse(ControlFunctionRegistry.getFunction("random").isDeterministic());
+    }
 }